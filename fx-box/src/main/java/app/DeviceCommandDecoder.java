@@ -0,0 +1,120 @@
+package app;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 设备命令二进制格式（v1）解码，布局见后端 com.boxai.common.device.DeviceCommandCodec，两边需同步修改。
+ * 同一实例 wrap 一条命令后按字段读取：数值字段直接从字节数组读出，解码过程不创建任何对象；
+ * 只有读取字符串字段（AI视频流地址等）时才会创建 String。非线程安全，由消费线程独占使用
+ */
+final class DeviceCommandDecoder {
+  static final int MAGIC = 0xBC;
+  static final int VERSION = 1;
+  /** 向后端登记的能力名称 */
+  static final String CAPABILITY = "bin" + VERSION;
+
+  static final int TYPE_CONTROL = 1;
+  static final int TYPE_LIGHT = 2;
+  static final int TYPE_AI_VIDEO = 3;
+
+  // 动作代码，0 表示未登记的动作（动作名见 otherAction）
+  static final int CONTROL_PLAY = 1;
+  static final int CONTROL_PAUSE = 2;
+  static final int CONTROL_STOP = 3;
+  static final int CONTROL_NEXT = 4;
+  static final int AI_START_STREAM = 1;
+  static final int AI_STOP_STREAM = 2;
+
+  // 字符串字段下标
+  static final int STREAM_ID = 0;
+  static final int STREAM_URL = 1;
+  static final int HLS_URL = 2;
+  static final int WEBRTC_URL = 3;
+  static final int RESOLUTION = 4;
+
+  private static final int HEADER_SIZE = 20;
+  private static final int NULL_STRING = 0xFFFF;
+
+  private byte[] buf;
+
+  static boolean isBinary(byte[] data) {
+    return data != null && data.length > 0 && (data[0] & 0xFF) == MAGIC;
+  }
+
+  /**
+   * 指向一条命令，版本不支持或长度不足时返回 false
+   */
+  boolean wrap(byte[] data) {
+    if (!isBinary(data) || data.length < HEADER_SIZE || data[1] != VERSION) return false;
+    int fixedSize = switch (data[2]) {
+      case TYPE_CONTROL -> HEADER_SIZE + 17;
+      case TYPE_LIGHT -> HEADER_SIZE + 5;
+      case TYPE_AI_VIDEO -> HEADER_SIZE + 14;
+      default -> Integer.MAX_VALUE;
+    };
+    if (data.length < fixedSize) return false;
+    buf = data;
+    return true;
+  }
+
+  int type() { return buf[2]; }
+  long roomId() { return readLong(4); }
+  long timestamp() { return readLong(12); }
+  int actionCode() { return buf[20] & 0xFF; }
+
+  // 播放控制、AI视频流
+  boolean hasTrackId() { return flag(type() == TYPE_AI_VIDEO ? 4 : 1); }
+  long trackId() { return readLong(type() == TYPE_AI_VIDEO ? 26 : 21); }
+  boolean hasUserId() { return flag(2); }
+  long userId() { return readLong(29); }
+
+  // 灯光
+  boolean hasBrightness() { return flag(1); }
+  int brightness() { return buf[20] & 0xFF; }
+  boolean hasColor() { return flag(2); }
+  int rgb() { return (buf[21] & 0xFF) << 16 | (buf[22] & 0xFF) << 8 | (buf[23] & 0xFF); }
+  boolean hasRhythm() { return flag(4); }
+  int rhythmCode() { return buf[24] & 0xFF; }
+
+  // AI视频流
+  boolean hasFrameRate() { return flag(1); }
+  int frameRate() { return readInt(21); }
+  boolean hasAudioSync() { return flag(2); }
+  boolean audioSync() { return buf[25] != 0; }
+
+  /**
+   * AI视频流的字符串字段（STREAM_ID 等下标），会创建 String
+   */
+  String string(int index) {
+    return readString(HEADER_SIZE + 14, index);
+  }
+
+  /**
+   * 动作代码为 0 时的动作名，会创建 String
+   */
+  String otherAction() {
+    return type() == TYPE_CONTROL ? readString(HEADER_SIZE + 17, 0) : readString(HEADER_SIZE + 14, RESOLUTION + 1);
+  }
+
+  private String readString(int pos, int index) {
+    for (int i = 0; ; i++) {
+      if (pos + 2 > buf.length) return null;
+      int len = (buf[pos] & 0xFF) << 8 | (buf[pos + 1] & 0xFF);
+      pos += 2;
+      int size = len == NULL_STRING ? 0 : len;
+      if (pos + size > buf.length) return null;
+      if (i == index) return len == NULL_STRING ? null : new String(buf, pos, len, StandardCharsets.UTF_8);
+      pos += size;
+    }
+  }
+
+  private boolean flag(int bit) { return (buf[3] & bit) != 0; }
+
+  private int readInt(int pos) {
+    return (buf[pos] & 0xFF) << 24 | (buf[pos + 1] & 0xFF) << 16 | (buf[pos + 2] & 0xFF) << 8 | (buf[pos + 3] & 0xFF);
+  }
+
+  private long readLong(int pos) {
+    return (long) readInt(pos) << 32 | (readInt(pos + 4) & 0xFFFFFFFFL);
+  }
+}
@@ -5,48 +5,340 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import javafx.application.Platform;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.XAutoClaimParams;
+import redis.clients.jedis.params.XReadGroupParams;
 
 import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * 订阅后端发布的设备控制命令（Redis channel: device:control）
+ * 消费后端下发的设备控制命令
+ * 配置了房间ID时读取房间命令流 device:commands:{roomId}：本盒子独占一个消费组，处理后 XACK，
+ * 启动时先补处理上次已投递未确认的命令，并定期认领消费组内长时间未确认的命令（XAUTOCLAIM）。
+ * 读取命令流时在 device:codecs:{roomId} 登记支持二进制格式并定期续期，后端确认房间内所有盒子都支持后
+ * 改发二进制命令（{@link DeviceCommandDecoder}），JSON 命令照常处理。
+ * 使用 Pub/Sub 时只订阅本房间的分片频道（device:control:{roomId} 等），不再接收其他房间的命令；
+ * 未配置房间ID时退回订阅旧版全局频道。连接断开后按指数退避自动重连
  */
 public class DeviceControlSubscriber implements Closeable {
+  private static final String STREAM_PREFIX = "device:commands:";
+  private static final String CODECS_PREFIX = "device:codecs:";
+  private static final String[] CHANNELS = {"device:control", "device:light", "device:ai-video"};
+  private static final byte[] FROM_START = bytes("0-0");
+  private static final byte[] UNDELIVERED = bytes(">");
+  private static final byte[] LAST_ENTRY = bytes("$");
+  private static final byte[] FIELD_PAYLOAD = bytes("payload");
+  private static final int BATCH_SIZE = 64;
+  private static final int BLOCK_MILLIS = 5_000;
+  private static final long CLAIM_IDLE_MILLIS = 30_000;
+  private static final long CLAIM_INTERVAL_MILLIS = 15_000;
+  private static final long CAPABILITY_TTL_MILLIS = 90_000;
+  private static final long CAPABILITY_REFRESH_MILLIS = 30_000;
+  private static final long MIN_BACKOFF_MILLIS = 500;
+  private static final long MAX_BACKOFF_MILLIS = 30_000;
+
   private final String redisHost;
   private final int redisPort;
-  private final String channel;
+  private final Long roomId;
+  private final String boxId;
+  private final long maxCommandAgeMillis;
+  private final boolean useStream;
   private final ObjectMapper mapper = new ObjectMapper();
+  private final DeviceCommandDecoder decoder = new DeviceCommandDecoder();
   private Thread worker;
   private volatile boolean running = false;
+  private volatile JedisPubSub activePubSub;
+  private long backoffMillis = MIN_BACKOFF_MILLIS;
 
   // 播放器引用（由 MainApp 注入）
   private final MainApp app;
 
-  public DeviceControlSubscriber(MainApp app, String redisHost, int redisPort, String channel) {
+  /**
+   * @param roomId 本盒子所在房间，为空时订阅旧版全局频道
+   * @param boxId 盒子标识，用作消费组名，重启后保持不变才能接着上次的位置消费
+   * @param maxCommandAgeMillis 超过该时长的积压命令只确认不执行（如盒子关机很久后开机），0 表示不限
+   * @param useStream true 读取房间命令流，false 订阅 Pub/Sub 频道（不保证送达，需后端开启对应的 pubsub-mode）
+   */
+  public DeviceControlSubscriber(MainApp app, String redisHost, int redisPort,
+                                 Long roomId, String boxId, long maxCommandAgeMillis, boolean useStream) {
     this.app = app;
     this.redisHost = redisHost;
     this.redisPort = redisPort;
-    this.channel = channel;
+    this.roomId = roomId;
+    this.boxId = boxId;
+    this.maxCommandAgeMillis = maxCommandAgeMillis;
+    this.useStream = useStream;
   }
 
   public void start() {
     if (running) return;
     running = true;
-    worker = new Thread(() -> {
+    worker = new Thread(this::runLoop, "device-control-subscriber");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  private void runLoop() {
+    while (running) {
       try (Jedis jedis = new Jedis(redisHost, redisPort)) {
-        jedis.subscribe(new JedisPubSub() {
-          @Override public void onMessage(String ch, String msg) {
-            // 同时处理 device:control 与 device:light
-            handleMessage(msg);
-          }
-        }, channel, "device:light", "device:ai-video");
+        if (roomId != null && useStream) {
+          consumeStream(jedis);
+        } else {
+          consumePubSub(jedis);
+        }
       } catch (Exception e) {
+        if (!running) break;
         // 日志仅控制台
-        System.err.println("Redis 订阅异常: " + e.getMessage());
+        System.err.println("Redis 连接异常，" + backoffMillis + "ms 后重连: " + e.getMessage());
+        sleepBackoff();
       }
-    }, "device-control-subscriber");
-    worker.setDaemon(true);
-    worker.start();
+    }
+  }
+
+  // 命令内容可能是二进制，命令流统一使用 Jedis 的二进制接口读取
+  private void consumeStream(Jedis jedis) {
+    byte[] stream = bytes(STREAM_PREFIX + roomId);
+    byte[] group = bytes("box:" + boxId);
+    byte[] consumer = bytes(boxId);
+    ensureGroup(jedis, stream, group);
+    registerCapability(jedis);
+    backoffMillis = MIN_BACKOFF_MILLIS;
+    System.out.println("已连接房间命令流: " + STREAM_PREFIX + roomId + ", group=box:" + boxId);
+
+    // 上次已投递但未确认的命令（处理中断电、断线）
+    byte[] cursor = FROM_START;
+    while (running) {
+      List<Object> pending = entriesOf(jedis.xreadGroup(group, consumer,
+          XReadGroupParams.xReadGroupParams().count(BATCH_SIZE), streams(stream, cursor)));
+      if (pending.isEmpty()) break;
+      process(jedis, stream, group, pending);
+      cursor = idOf(pending.get(pending.size() - 1));
+    }
+
+    XReadGroupParams params = XReadGroupParams.xReadGroupParams().count(BATCH_SIZE).block(BLOCK_MILLIS);
+    Map.Entry<byte[], byte[]>[] undelivered = streams(stream, UNDELIVERED);
+    long nextClaimAt = 0;
+    long nextRegisterAt = System.currentTimeMillis() + CAPABILITY_REFRESH_MILLIS;
+    while (running) {
+      long now = System.currentTimeMillis();
+      if (now >= nextClaimAt) {
+        reclaim(jedis, stream, group, consumer);
+        nextClaimAt = now + CLAIM_INTERVAL_MILLIS;
+      }
+      if (now >= nextRegisterAt) {
+        registerCapability(jedis);
+        nextRegisterAt = now + CAPABILITY_REFRESH_MILLIS;
+      }
+      // 阻塞读取，新命令写入后立即返回
+      process(jedis, stream, group, entriesOf(jedis.xreadGroup(group, consumer, params, undelivered)));
+    }
+    // 正常退出时撤销登记，异常退出由过期时间兜底
+    jedis.hdel(CODECS_PREFIX + roomId, boxId);
+  }
+
+  /**
+   * 登记本盒子支持的命令格式，值为 "格式列表;过期时间毫秒"
+   */
+  private void registerCapability(Jedis jedis) {
+    String key = CODECS_PREFIX + roomId;
+    long expiresAt = System.currentTimeMillis() + CAPABILITY_TTL_MILLIS;
+    jedis.hset(key, boxId, DeviceCommandDecoder.CAPABILITY + ",json;" + expiresAt);
+    jedis.pexpire(key, CAPABILITY_TTL_MILLIS * 10);
+  }
+
+  /**
+   * 认领消费组内空闲过久的未确认命令（例如盒子更换标识前的旧消费者遗留的）
+   * XAUTOCLAIM 原始响应：[下一个游标, [条目...], [已删除的ID...]]
+   */
+  @SuppressWarnings("unchecked")
+  private void reclaim(Jedis jedis, byte[] stream, byte[] group, byte[] consumer) {
+    byte[] cursor = FROM_START;
+    do {
+      List<Object> result = jedis.xautoclaim(stream, group, consumer,
+          CLAIM_IDLE_MILLIS, cursor, XAutoClaimParams.xAutoClaimParams().count(BATCH_SIZE));
+      if (result == null || result.size() < 2) return;
+      process(jedis, stream, group, (List<Object>) result.get(1));
+      cursor = (byte[]) result.get(0);
+    } while (running && cursor != null && !Arrays.equals(FROM_START, cursor));
+  }
+
+  private void ensureGroup(Jedis jedis, byte[] stream, byte[] group) {
+    try {
+      // 新盒子只消费建组之后的命令；MKSTREAM 允许房间还没有任何命令
+      jedis.xgroupCreate(stream, group, LAST_ENTRY, true);
+    } catch (JedisDataException e) {
+      if (e.getMessage() == null || !e.getMessage().startsWith("BUSYGROUP")) throw e;
+    }
+  }
+
+  /**
+   * 依次执行一批命令后一次性确认；已被裁剪的条目没有字段，直接确认
+   * 条目原始格式：[ID, [字段, 值, 字段, 值...]]
+   */
+  @SuppressWarnings("unchecked")
+  private void process(Jedis jedis, byte[] stream, byte[] group, List<Object> entries) {
+    if (entries == null || entries.isEmpty()) return;
+    byte[][] ids = new byte[entries.size()][];
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < entries.size(); i++) {
+      List<Object> entry = (List<Object>) entries.get(i);
+      ids[i] = (byte[]) entry.get(0);
+      byte[] payload = entry.size() > 1 ? field((List<Object>) entry.get(1), FIELD_PAYLOAD) : null;
+      if (payload == null) continue;
+      if (maxCommandAgeMillis > 0 && now - idTime(ids[i]) > maxCommandAgeMillis) {
+        System.out.println("跳过过期命令: " + new String(ids[i], StandardCharsets.US_ASCII));
+        continue;
+      }
+      handlePayload(payload);
+    }
+    jedis.xack(stream, group, ids);
+  }
+
+  /**
+   * XREADGROUP 原始响应：[[流, [条目...]], ...]，超时无数据时为 null
+   */
+  @SuppressWarnings("unchecked")
+  private static List<Object> entriesOf(List<Object> response) {
+    List<Object> entries = new ArrayList<>();
+    if (response == null) return entries;
+    for (Object s : response) {
+      List<Object> streamEntries = (List<Object>) s;
+      if (streamEntries.size() > 1 && streamEntries.get(1) != null) {
+        entries.addAll((List<Object>) streamEntries.get(1));
+      }
+    }
+    return entries;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static byte[] idOf(Object entry) {
+    return (byte[]) ((List<Object>) entry).get(0);
+  }
+
+  private static byte[] field(List<Object> fields, byte[] name) {
+    if (fields == null) return null;
+    for (int i = 0; i + 1 < fields.size(); i += 2) {
+      if (Arrays.equals(name, (byte[]) fields.get(i))) return (byte[]) fields.get(i + 1);
+    }
+    return null;
+  }
+
+  // 条目ID为 "毫秒-序号"，取毫秒部分
+  private static long idTime(byte[] id) {
+    long ms = 0;
+    for (byte b : id) {
+      if (b == '-') break;
+      ms = ms * 10 + (b - '0');
+    }
+    return ms;
+  }
+
+  // Jedis 的二进制 xreadGroup 只有泛型可变参数版本，传入已构造好的数组，调用处不再隐式创建泛型数组
+  @SuppressWarnings("unchecked")
+  private static Map.Entry<byte[], byte[]>[] streams(byte[] stream, byte[] id) {
+    return (Map.Entry<byte[], byte[]>[]) new Map.Entry<?, ?>[] {new AbstractMap.SimpleImmutableEntry<>(stream, id)};
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private void consumePubSub(Jedis jedis) {
+    String[] channels = CHANNELS;
+    if (roomId != null) {
+      channels = new String[CHANNELS.length];
+      for (int i = 0; i < CHANNELS.length; i++) channels[i] = CHANNELS[i] + ":" + roomId;
+    }
+    JedisPubSub pubSub = new JedisPubSub() {
+      @Override public void onMessage(String ch, String msg) {
+        // 同时处理控制、灯光与AI视频流频道
+        handleMessage(msg);
+      }
+
+      @Override public void onSubscribe(String ch, int subscribedChannels) {
+        backoffMillis = MIN_BACKOFF_MILLIS;
+      }
+    };
+    activePubSub = pubSub;
+    try {
+      jedis.subscribe(pubSub, channels);
+    } finally {
+      activePubSub = null;
+    }
+  }
+
+  private void sleepBackoff() {
+    long jitter = ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+    try {
+      Thread.sleep(backoffMillis / 2 + jitter);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      running = false;
+    }
+    backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+  }
+
+  private void handlePayload(byte[] payload) {
+    if (DeviceCommandDecoder.isBinary(payload)) {
+      handleBinary(payload);
+    } else {
+      handleMessage(new String(payload, StandardCharsets.UTF_8));
+    }
+  }
+
+  // 二进制命令：数值字段直接读取，灯光等高频命令不经过 JSON 解析
+  private void handleBinary(byte[] payload) {
+    DeviceCommandDecoder d = decoder;
+    if (!d.wrap(payload)) {
+      System.err.println("不支持的二进制命令版本: " + (payload.length > 1 ? payload[1] : -1));
+      return;
+    }
+    if (roomId != null && d.roomId() != roomId) return;
+    switch (d.type()) {
+      case DeviceCommandDecoder.TYPE_CONTROL -> {
+        switch (d.actionCode()) {
+          case DeviceCommandDecoder.CONTROL_PLAY -> Platform.runLater(app::togglePlay);
+          case DeviceCommandDecoder.CONTROL_PAUSE -> Platform.runLater(() -> {
+            var p = app.videoPlayer(); if (p != null) p.pause();
+          });
+          case DeviceCommandDecoder.CONTROL_STOP -> Platform.runLater(() -> {
+            var p = app.videoPlayer(); if (p != null) p.stop();
+          });
+          case DeviceCommandDecoder.CONTROL_NEXT -> Platform.runLater(app::playNextFromList);
+          default -> {}
+        }
+      }
+      case DeviceCommandDecoder.TYPE_LIGHT -> {
+        int brightness = d.hasBrightness() ? d.brightness() : -1;
+        int rgb = d.hasColor() ? d.rgb() : -1;
+        int rhythmLevel = d.hasRhythm() ? MainApp.rhythmLevel(d.rhythmCode()) : -1;
+        Platform.runLater(() -> app.applyLightLevels(brightness, rgb, rhythmLevel));
+      }
+      case DeviceCommandDecoder.TYPE_AI_VIDEO -> {
+        switch (d.actionCode()) {
+          case DeviceCommandDecoder.AI_START_STREAM -> {
+            String streamId = d.string(DeviceCommandDecoder.STREAM_ID);
+            String streamUrl = d.string(DeviceCommandDecoder.STREAM_URL);
+            String hlsUrl = d.string(DeviceCommandDecoder.HLS_URL);
+            String webrtcUrl = d.string(DeviceCommandDecoder.WEBRTC_URL);
+            Platform.runLater(() -> app.startAiVideoStream(streamId, streamUrl, hlsUrl, webrtcUrl));
+          }
+          case DeviceCommandDecoder.AI_STOP_STREAM -> {
+            String streamId = d.string(DeviceCommandDecoder.STREAM_ID);
+            Platform.runLater(() -> app.stopAiVideoStream(streamId));
+          }
+          default -> {}
+        }
+      }
+      default -> {}
+    }
   }
 
   private void handleMessage(String msg) {
@@ -55,6 +347,8 @@ public class DeviceControlSubscriber implements Closeable {
       String action = text(root, "action");
       Long roomId = longOrNull(root, "roomId");
       Long trackId = longOrNull(root, "trackId");
+      // 全局频道上其他房间的命令
+      if (this.roomId != null && roomId != null && !this.roomId.equals(roomId)) return;
 
       // 简单演示：仅控制本机播放器
       switch (action == null ? "" : action.toUpperCase()) {
@@ -95,8 +389,10 @@ public class DeviceControlSubscriber implements Closeable {
 
   @Override public void close() {
     running = false;
+    JedisPubSub pubSub = activePubSub;
+    if (pubSub != null && pubSub.isSubscribed()) {
+      try { pubSub.unsubscribe(); } catch (Exception ignored) {}
+    }
     if (worker != null) worker.interrupt();
   }
 }
-
-
@@ -288,8 +288,15 @@ public class MainApp extends Application {
     // 初始化音频设备列表
     refreshAudioDeviceList();
 
-    // 启动 Redis 订阅（默认本机 6379，可按需改为配置文件）
-    subscriber = new DeviceControlSubscriber(this, "127.0.0.1", 6379, "device:control");
+    // 启动 Redis 命令消费（默认本机 6379；房间ID与盒子标识通过 -Dbox.roomId / -Dbox.id 或环境变量 BOX_ROOM_ID / BOX_ID 配置，
+    // box.commandTransport=pubsub 时改为只订阅本房间的 Pub/Sub 频道）
+    subscriber = new DeviceControlSubscriber(this,
+        setting("box.redis.host", "BOX_REDIS_HOST", "127.0.0.1"),
+        Integer.parseInt(setting("box.redis.port", "BOX_REDIS_PORT", "6379")),
+        roomIdSetting(),
+        setting("box.id", "BOX_ID", defaultBoxId()),
+        Long.parseLong(setting("box.commandMaxAgeMillis", "BOX_COMMAND_MAX_AGE_MILLIS", "120000")),
+        !"pubsub".equalsIgnoreCase(setting("box.commandTransport", "BOX_COMMAND_TRANSPORT", "stream")));
     subscriber.start();
 
     stage.setOnCloseRequest(e -> {
@@ -369,27 +376,37 @@ public class MainApp extends Application {
 
   // 根据亮度/颜色/节奏应用灯光，并通过 TCP 发送到 DMX 设备
   void applyLight(Integer brightness, String colorHex, String rhythm) {
-    // 简单映射：
-    // - 亮度 -> 通道1
-    // - 颜色 -> 通道2(R)/3(G)/4(B)
-    // - 节奏 -> 通道5 预设值
-    if (brightness != null) dmxData[0] = (byte) Math.max(0, Math.min(255, (int) Math.round(brightness * 2.55)));
-
+    int rgb = -1;
     if (colorHex != null && colorHex.startsWith("#") && (colorHex.length() == 7 || colorHex.length() == 9)) {
       try {
-        int r = Integer.parseInt(colorHex.substring(1, 3), 16);
-        int g = Integer.parseInt(colorHex.substring(3, 5), 16);
-        int b = Integer.parseInt(colorHex.substring(5, 7), 16);
-        dmxData[1] = (byte) r; dmxData[2] = (byte) g; dmxData[3] = (byte) b;
+        rgb = Integer.parseInt(colorHex.substring(1, 7), 16);
       } catch (Exception ignored) {}
     }
-
+    int rhythmLevel = -1;
     if (rhythm != null) {
-      int v = switch (rhythm.toUpperCase()) {
+      rhythmLevel = switch (rhythm.toUpperCase()) {
         case "SOFT" -> 32; case "NORMAL" -> 96; case "STRONG" -> 160; case "AUTO" -> 224; default -> 0;
       };
-      dmxData[4] = (byte) v;
     }
+    applyLightLevels(brightness != null ? brightness : -1, rgb, rhythmLevel);
+  }
+
+  // 节奏代码（二进制命令：1 SOFT、2 NORMAL、3 STRONG、4 AUTO，其他为 0）-> 通道5 预设值
+  static int rhythmLevel(int code) {
+    return switch (code) { case 1 -> 32; case 2 -> 96; case 3 -> 160; case 4 -> 224; default -> 0; };
+  }
+
+  // 参数为 -1 表示该项不变
+  void applyLightLevels(int brightness, int rgb, int rhythmLevel) {
+    // 简单映射：
+    // - 亮度 -> 通道1
+    // - 颜色 -> 通道2(R)/3(G)/4(B)
+    // - 节奏 -> 通道5 预设值
+    if (brightness >= 0) dmxData[0] = (byte) Math.max(0, Math.min(255, (int) Math.round(brightness * 2.55)));
+    if (rgb >= 0) {
+      dmxData[1] = (byte) (rgb >> 16); dmxData[2] = (byte) (rgb >> 8); dmxData[3] = (byte) rgb;
+    }
+    if (rhythmLevel >= 0) dmxData[4] = (byte) rhythmLevel;
 
     sendDmxFrame();
   }
@@ -499,6 +516,31 @@ public class MainApp extends Application {
     return String.format("%02d:%02d", m, s);
   }
 
+  // 读取配置：系统属性优先，其次环境变量
+  private static String setting(String property, String env, String def) {
+    String v = System.getProperty(property);
+    if (v == null || v.isBlank()) v = System.getenv(env);
+    return v == null || v.isBlank() ? def : v.trim();
+  }
+
+  private static Long roomIdSetting() {
+    String v = setting("box.roomId", "BOX_ROOM_ID", null);
+    try {
+      return v == null ? null : Long.valueOf(v);
+    } catch (NumberFormatException e) {
+      System.err.println("房间ID配置无效: " + v);
+      return null;
+    }
+  }
+
+  private static String defaultBoxId() {
+    try {
+      return java.net.InetAddress.getLocalHost().getHostName();
+    } catch (IOException e) {
+      return "box-" + ProcessHandle.current().pid();
+    }
+  }
+
   // 映射演示：将预览以左半/右半分块到两个屏（如存在）
   private void showMappingDemo() {
     if (videoPlayer == null) return;
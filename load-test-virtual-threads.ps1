@@ -0,0 +1,151 @@
+# 虚拟线程与平台线程请求处理对比压测（需要 PowerShell 7+）
+#
+# 用法：
+#   脚本在本机 -StubPort 端口启动一个模拟微信接口的桩服务（每个请求延迟 -StubDelayMs 后返回固定的openid），
+#   应用需把微信上游指向该桩服务、关闭HTTP/2（桩服务为明文HTTP），并调大隔离舱上限，
+#   否则超出 max-concurrent-calls 的请求被立即拒绝而不会阻塞：
+#     $stubArgs = "--app.http.upstreams.wechat.base-url=http://localhost:18080 --app.http.upstreams.wechat.http2=false --app.http.upstreams.wechat.bulkhead.max-concurrent-calls=1000"
+#   1. 以平台线程启动应用：  $env:VIRTUAL_THREADS="false"; mvn spring-boot:run "-Dspring-boot.run.arguments=$stubArgs"
+#      压测并记录结果：      ./load-test-virtual-threads.ps1 -Mode platform
+#   2. 以虚拟线程启动应用：  $env:VIRTUAL_THREADS="true"; mvn spring-boot:run "-Dspring-boot.run.arguments=$stubArgs"
+#      压测并记录结果：      ./load-test-virtual-threads.ps1 -Mode virtual
+#   两种结果都存在时自动输出对比。
+#   默认路径包含会阻塞在上游调用上的接口（微信静默登录，请求线程同步等待桩服务的 jscode2session 返回），
+#   压测不会访问真实的微信接口。可用 -Paths 替换，"POST 路径" 形式的条目以 -Body 为请求体发送 POST；
+#   需要登录的接口通过 -Token 传入JWT。并发数应明显大于 Tomcat 平台线程数（默认200）才能看出差异
+param(
+    [ValidateSet("platform", "virtual")]
+    [string]$Mode = "virtual",
+    [string]$BaseUrl = "http://localhost:9998",
+    [string[]]$Paths = @("/api/health", "POST /api/auth/wechat/login", "/api/auth/me"),
+    [string]$Body = '{"jsCode":"load-test"}',
+    [int]$Concurrency = 400,
+    [int]$Requests = 4000,
+    [int]$WarmupRequests = 200,
+    [string]$Token = "",
+    [int]$StubPort = 18080,
+    [int]$StubDelayMs = 200,
+    [string]$OutDir = "./target/load-test"
+)
+
+$ErrorActionPreference = "Stop"
+New-Item -ItemType Directory -Force -Path $OutDir | Out-Null
+
+Write-Host "=== 请求处理压测: mode=$Mode, 并发=$Concurrency, 请求数=$Requests ===" -ForegroundColor Green
+
+# 健康检查
+try {
+    Invoke-RestMethod -Uri "$BaseUrl/api/health" -Method GET | Out-Null
+} catch {
+    Write-Host "❌ 应用未启动: $BaseUrl" -ForegroundColor Red
+    exit 1
+}
+
+# 模拟微信 jscode2session 的桩服务：异步处理，每个请求延迟后返回固定的openid，本身不会成为瓶颈
+Add-Type -TypeDefinition @"
+using System;
+using System.Net;
+using System.Text;
+using System.Threading.Tasks;
+
+public static class WechatStub {
+    public static HttpListener Start(int port, int delayMs) {
+        var listener = new HttpListener();
+        listener.Prefixes.Add("http://localhost:" + port + "/");
+        listener.Start();
+        Task.Run(async () => {
+            while (listener.IsListening) {
+                HttpListenerContext context;
+                try {
+                    context = await listener.GetContextAsync();
+                } catch (Exception) {
+                    return;
+                }
+                _ = Task.Run(async () => {
+                    await Task.Delay(delayMs);
+                    byte[] body = Encoding.UTF8.GetBytes("{\"openid\":\"load-test-openid\",\"session_key\":\"load-test\"}");
+                    context.Response.ContentType = "application/json";
+                    context.Response.ContentLength64 = body.Length;
+                    await context.Response.OutputStream.WriteAsync(body, 0, body.Length);
+                    context.Response.Close();
+                });
+            }
+        });
+        return listener;
+    }
+}
+"@
+$stub = [WechatStub]::Start($StubPort, $StubDelayMs)
+Write-Host "微信桩服务已启动: http://localhost:$StubPort, 延迟=${StubDelayMs}ms" -ForegroundColor Yellow
+
+$headers = @{}
+if ($Token) {
+    $headers["Authorization"] = "Bearer $Token"
+}
+
+function Invoke-LoadRun([int]$count) {
+    $targets = 0..($count - 1) | ForEach-Object { $Paths[$_ % $Paths.Count] }
+    return $targets | ForEach-Object -ThrottleLimit $Concurrency -Parallel {
+        $method, $path = if ($_ -like "POST *") { "POST", $_.Substring(5) } else { "GET", $_ }
+        $url = $using:BaseUrl + $path
+        $watch = [System.Diagnostics.Stopwatch]::StartNew()
+        $ok = $true
+        try {
+            if ($method -eq "POST") {
+                Invoke-WebRequest -Uri $url -Method POST -Headers $using:headers -Body $using:Body `
+                    -ContentType "application/json" -TimeoutSec 60 -SkipHttpErrorCheck | Out-Null
+            } else {
+                Invoke-WebRequest -Uri $url -Method GET -Headers $using:headers -TimeoutSec 60 -SkipHttpErrorCheck | Out-Null
+            }
+        } catch {
+            $ok = $false
+        }
+        $watch.Stop()
+        [pscustomobject]@{ Url = $url; Ms = $watch.Elapsed.TotalMilliseconds; Ok = $ok }
+    }
+}
+
+function Get-Percentile([double[]]$sorted, [double]$p) {
+    if ($sorted.Count -eq 0) { return 0 }
+    $index = [Math]::Min($sorted.Count - 1, [Math]::Ceiling($p / 100 * $sorted.Count) - 1)
+    return [Math]::Round($sorted[[Math]::Max(0, $index)], 1)
+}
+
+try {
+    # 预热（JIT、连接池、缓存）
+    Write-Host "预热 $WarmupRequests 个请求..." -ForegroundColor Yellow
+    Invoke-LoadRun $WarmupRequests | Out-Null
+    
+    Write-Host "正式压测..." -ForegroundColor Yellow
+    $started = Get-Date
+    $results = Invoke-LoadRun $Requests
+    $elapsed = ((Get-Date) - $started).TotalSeconds
+} finally {
+    $stub.Stop()
+}
+
+$latencies = [double[]]($results | Where-Object Ok | ForEach-Object Ms | Sort-Object)
+$summary = [pscustomobject]@{
+    Mode        = $Mode
+    Concurrency = $Concurrency
+    Requests    = $Requests
+    Errors      = ($results | Where-Object { -not $_.Ok }).Count
+    Throughput  = [Math]::Round($Requests / $elapsed, 1)
+    P50Ms       = Get-Percentile $latencies 50
+    P95Ms       = Get-Percentile $latencies 95
+    P99Ms       = Get-Percentile $latencies 99
+    MaxMs       = Get-Percentile $latencies 100
+}
+
+$summary | Export-Csv -Path (Join-Path $OutDir "$Mode.csv") -NoTypeInformation
+Write-Host "✅ 结果已写入 $(Join-Path $OutDir "$Mode.csv")" -ForegroundColor Green
+$summary | Format-List
+
+# 两种模式的结果都存在时输出对比
+$platformFile = Join-Path $OutDir "platform.csv"
+$virtualFile = Join-Path $OutDir "virtual.csv"
+if ((Test-Path $platformFile) -and (Test-Path $virtualFile)) {
+    Write-Host "=== 平台线程 vs 虚拟线程 ===" -ForegroundColor Green
+    @(Import-Csv $platformFile) + @(Import-Csv $virtualFile) |
+        Format-Table Mode, Concurrency, Requests, Errors, Throughput, P50Ms, P95Ms, P99Ms, MaxMs -AutoSize
+}
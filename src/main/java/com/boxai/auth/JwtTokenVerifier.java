@@ -0,0 +1,230 @@
+package com.boxai.auth;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JWT令牌校验
+ * 解析器只构建一次（线程安全）；校验通过的令牌按SHA-256摘要缓存到过期时间，
+ * 重复出现的令牌只需一次摘要计算和一次哈希表查找。缓存按访问顺序淘汰，容量有上限。
+ * 启用撤销后，撤销记录写入Redis（TTL为令牌剩余有效期）并通过频道通知各节点立即剔除缓存；
+ * 缓存命中的令牌每隔 check-interval 回Redis复核一次，弥补丢失的通知
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JwtTokenVerifier implements MessageListener {
+
+    private static final String REVOKED_KEY_PREFIX = "jwt:revoked:";
+    private static final String REVOKED_CHANNEL = "jwt:revoked";
+
+    private final StringRedisTemplate redis;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${app.jwt.secret}")
+    private String secret;
+    @Value("${app.jwt.cache.max-size:10000}")
+    private int maxSize;
+    /**
+     * 没有exp声明的令牌的缓存时长
+     */
+    @Value("${app.jwt.cache.max-ttl:PT1H}")
+    private Duration maxTtl;
+    @Value("${app.jwt.revocation.enabled:false}")
+    private boolean revocationEnabled;
+    @Value("${app.jwt.revocation.check-interval:PT1M}")
+    private Duration revocationCheckInterval;
+
+    private JwtParser parser;
+    private Map<String, VerifiedToken> cache;
+
+    /**
+     * 本节点已知的撤销记录（摘要 → 令牌过期时间）
+     */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        parser = Jwts.parserBuilder().setSigningKey(deriveKey(secret)).build();
+        cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+                return size() > maxSize;
+            }
+        };
+        if (revocationEnabled) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(REVOKED_CHANNEL));
+        }
+    }
+
+    /**
+     * 校验令牌
+     *
+     * @param token JWT令牌
+     * @return 用户ID；令牌已撤销时返回null
+     * @throws io.jsonwebtoken.JwtException 签名无效或已过期
+     */
+    public Long verify(String token) {
+        String hash = hash(token);
+        long now = System.currentTimeMillis();
+        VerifiedToken cached;
+        synchronized (cache) {
+            cached = cache.get(hash);
+        }
+        if (cached != null && cached.expiresAtMillis() > now) {
+            if (!revocationEnabled || now - cached.revocationCheckedAt() < revocationCheckInterval.toMillis()) {
+                return cached.userId();
+            }
+            if (isRevoked(hash)) {
+                evict(hash);
+                return null;
+            }
+            put(hash, new VerifiedToken(cached.userId(), cached.expiresAtMillis(), now));
+            return cached.userId();
+        }
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        Long userId = Long.valueOf(claims.getSubject());
+        if (revocationEnabled && isRevoked(hash)) {
+            return null;
+        }
+        Date expiration = claims.getExpiration();
+        long expiresAt = expiration != null ? expiration.getTime() : now + maxTtl.toMillis();
+        put(hash, new VerifiedToken(userId, expiresAt, now));
+        return userId;
+    }
+
+    /**
+     * 撤销令牌（如退出登录），未启用撤销时忽略
+     */
+    public void revoke(String token) {
+        if (!revocationEnabled) {
+            return;
+        }
+        String hash = hash(token);
+        long expiresAt;
+        try {
+            Date expiration = parser.parseClaimsJws(token).getBody().getExpiration();
+            expiresAt = expiration != null ? expiration.getTime() : System.currentTimeMillis() + maxTtl.toMillis();
+        } catch (Exception e) {
+            // 无效或已过期的令牌无需撤销
+            return;
+        }
+        long ttl = expiresAt - System.currentTimeMillis();
+        if (ttl <= 0) {
+            return;
+        }
+        revoked.put(hash, expiresAt);
+        evict(hash);
+        redis.opsForValue().set(REVOKED_KEY_PREFIX + hash, "1", Duration.ofMillis(ttl));
+        redis.convertAndSend(REVOKED_CHANNEL, hash + ":" + expiresAt);
+        log.info("令牌已撤销: hash={}", hash);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(':');
+        if (separator <= 0) {
+            return;
+        }
+        String hash = body.substring(0, separator);
+        revoked.put(hash, Long.parseLong(body.substring(separator + 1)));
+        evict(hash);
+    }
+
+    /**
+     * 定时清理过期的缓存和撤销记录
+     */
+    @Scheduled(fixedDelayString = "${app.jwt.cache.cleanup-interval:PT5M}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            cache.values().removeIf(token -> token.expiresAtMillis() <= now);
+        }
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+
+    private boolean isRevoked(String hash) {
+        if (revoked.containsKey(hash)) {
+            return true;
+        }
+        try {
+            return Boolean.TRUE.equals(redis.hasKey(REVOKED_KEY_PREFIX + hash));
+        } catch (Exception e) {
+            // Redis不可用时不阻断请求，按本节点已知的撤销记录判断
+            log.warn("查询令牌撤销记录失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void put(String hash, VerifiedToken token) {
+        synchronized (cache) {
+            cache.put(hash, token);
+        }
+    }
+
+    private void evict(String hash) {
+        synchronized (cache) {
+            cache.remove(hash);
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Key deriveKey(String secret) {
+        try {
+            byte[] raw;
+            try {
+                raw = Decoders.BASE64.decode(JwtService.Base64Padding.ensure(secret));
+            } catch (Exception ex) {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                raw = digest.digest(secret.getBytes(StandardCharsets.UTF_8));
+            }
+            return Keys.hmacShaKeyFor(raw);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot init JWT key", e);
+        }
+    }
+
+    /**
+     * 已校验的令牌
+     *
+     * @param userId 用户ID
+     * @param expiresAtMillis 令牌过期时间
+     * @param revocationCheckedAt 最近一次复核撤销状态的时间
+     */
+    private record VerifiedToken(Long userId, long expiresAtMillis, long revocationCheckedAt) {}
+}
@@ -0,0 +1,31 @@
+package com.boxai.common.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * 定时任务配置
+ * 启用 @Scheduled 注解的后台任务（如本地媒体文件垃圾回收）。
+ * 定时任务使用固定大小的线程池调度：开启虚拟线程时 Spring Boot 默认的 SimpleAsyncTaskScheduler 只用一个调度线程
+ * 依次执行所有 fixedDelay 任务，耗时任务（微信令牌刷新、媒体索引重建等）会拖延房间状态写回等高频任务，
+ * 因此无论是否开启虚拟线程都使用这里的线程池。Tomcat请求处理在开启虚拟线程时运行在虚拟线程上
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+    @Value("${spring.task.scheduling.pool.size:8}")
+    private int poolSize;
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("scheduling-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(false);
+        return scheduler;
+    }
+}
@@ -1,44 +1,23 @@
 package com.boxai.common.config;
 
-import io.netty.channel.ChannelOption;
-import io.netty.handler.timeout.ReadTimeoutHandler;
-import io.netty.handler.timeout.WriteTimeoutHandler;
+import com.boxai.common.http.UpstreamHttpClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.netty.http.client.HttpClient;
-
-import java.time.Duration;
-import java.util.concurrent.TimeUnit;
 
 /**
  * WebClient配置
- * 用于AI视频生成服务的HTTP客户端
+ * 通用的WebClient（如下载AI生成的视频文件）使用 default 上游的连接池；
+ * 调用微信、Runway、Stability 等外部服务请通过 {@link UpstreamHttpClients} 获取带熔断和隔离舱的客户端
  */
 @Configuration
 public class WebClientConfig {
     
     /**
-     * 创建用于AI服务调用的WebClient
+     * 创建通用WebClient
      */
     @Bean
-    public WebClient webClient() {
-        // 配置HTTP客户端
-        HttpClient httpClient = HttpClient.create()
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 30000)
-                .responseTimeout(Duration.ofSeconds(60))
-                .doOnConnected(conn -> 
-                    conn.addHandlerLast(new ReadTimeoutHandler(60, TimeUnit.SECONDS))
-                        .addHandlerLast(new WriteTimeoutHandler(60, TimeUnit.SECONDS))
-                );
-        
-        return WebClient.builder()
-                .clientConnector(new ReactorClientHttpConnector(httpClient))
-                .codecs(configurer -> {
-                    // 增加缓冲区大小以处理大型响应
-                    configurer.defaultCodecs().maxInMemorySize(10 * 1024 * 1024); // 10MB
-                })
-                .build();
+    public WebClient webClient(UpstreamHttpClients upstreamHttpClients) {
+        return upstreamHttpClients.get(UpstreamHttpClients.DEFAULT).getWebClient();
     }
 }
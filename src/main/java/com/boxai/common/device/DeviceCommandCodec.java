@@ -0,0 +1,178 @@
+package com.boxai.common.device;
+
+import com.boxai.domain.dto.device.AiVideoStreamCommand;
+import com.boxai.domain.dto.device.DeviceControlCommand;
+import com.boxai.domain.dto.device.LightingControlCommand;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 设备命令二进制编码（v1）
+ * 与 fx-box 的 DeviceCommandDecoder 共用同一格式，修改布局时两边同时修改并升级版本号。
+ * 所有整数为大端序，字符串为 uint16 长度 + UTF-8（长度 0xFFFF 表示 null）。
+ * <pre>
+ * 公共头（20字节）
+ *   0      魔数 0xBC（JSON 以 '{' 开头，据此区分两种格式）
+ *   1      版本号 1
+ *   2      类型：1 播放控制，2 灯光，3 AI视频流
+ *   3      标志位，各类型含义见下
+ *   4-11   roomId
+ *   12-19  timestamp（毫秒，null 为 0）
+ * 播放控制（37字节起）
+ *   20     动作代码（见 CONTROL_ACTIONS，0 表示其他动作，动作名追加在末尾）
+ *   21-28  trackId（标志位 bit0）
+ *   29-36  userId（标志位 bit1）
+ * 灯光（25字节）
+ *   20     亮度 0-100（标志位 bit0）
+ *   21-23  颜色 R、G、B（标志位 bit1）
+ *   24     节奏代码（见 RHYTHMS，0 表示其他；标志位 bit2）
+ * AI视频流（34字节起）
+ *   20     动作代码（见 AI_VIDEO_ACTIONS，0 表示其他动作，动作名追加在末尾）
+ *   21-24  frameRate（标志位 bit0）
+ *   25     audioSync 0/1（标志位 bit1）
+ *   26-33  trackId（标志位 bit2）
+ *   34-    streamId、streamUrl、hlsUrl、webrtcUrl、resolution 五个字符串
+ * </pre>
+ */
+public final class DeviceCommandCodec {
+
+    public static final byte MAGIC = (byte) 0xBC;
+    public static final byte VERSION = 1;
+    /** 盒子在能力登记中声明支持本格式时使用的名称 */
+    public static final String CAPABILITY = "bin" + VERSION;
+
+    public static final byte TYPE_CONTROL = 1;
+    public static final byte TYPE_LIGHT = 2;
+    public static final byte TYPE_AI_VIDEO = 3;
+
+    /** 动作代码为下标，0 保留给未登记的动作 */
+    public static final List<String> CONTROL_ACTIONS = List.of("", "PLAY", "PAUSE", "STOP", "NEXT");
+    public static final List<String> AI_VIDEO_ACTIONS =
+            List.of("", "START_STREAM", "STOP_STREAM", "PAUSE_STREAM", "RESUME_STREAM");
+    public static final List<String> RHYTHMS = List.of("", "SOFT", "NORMAL", "STRONG", "AUTO");
+
+    static final int HEADER_SIZE = 20;
+    static final int NULL_STRING = 0xFFFF;
+
+    private DeviceCommandCodec() {
+    }
+
+    public static byte[] encode(DeviceControlCommand command) {
+        int actionCode = code(CONTROL_ACTIONS, command.getAction());
+        byte[] action = actionCode == 0 ? utf8(command.getAction()) : null;
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + 17 + (actionCode == 0 ? stringSize(action) : 0));
+        int flags = (command.getTrackId() != null ? 1 : 0) | (command.getUserId() != null ? 2 : 0);
+        header(buf, TYPE_CONTROL, flags, command.getRoomId(), command.getTimestamp());
+        buf.put((byte) actionCode);
+        buf.putLong(orZero(command.getTrackId()));
+        buf.putLong(orZero(command.getUserId()));
+        if (actionCode == 0) {
+            putString(buf, action);
+        }
+        return buf.array();
+    }
+
+    public static byte[] encode(LightingControlCommand command) {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + 5);
+        int rgb = parseColor(command.getColor());
+        int flags = (command.getBrightness() != null ? 1 : 0)
+                | (rgb >= 0 ? 2 : 0)
+                | (command.getRhythm() != null ? 4 : 0);
+        header(buf, TYPE_LIGHT, flags, command.getRoomId(), command.getTimestamp());
+        // 亮度范围（0-100）在灯光保存请求中校验，这里按原值编码，与JSON命令一致
+        buf.put((byte) (command.getBrightness() != null ? command.getBrightness() : 0));
+        buf.put((byte) (rgb >> 16)).put((byte) (rgb >> 8)).put((byte) rgb);
+        buf.put((byte) code(RHYTHMS, command.getRhythm()));
+        return buf.array();
+    }
+
+    public static byte[] encode(AiVideoStreamCommand command) {
+        int actionCode = code(AI_VIDEO_ACTIONS, command.getAction());
+        byte[] action = actionCode == 0 ? utf8(command.getAction()) : null;
+        byte[][] strings = {
+                utf8(command.getStreamId()), utf8(command.getStreamUrl()), utf8(command.getHlsUrl()),
+                utf8(command.getWebrtcUrl()), utf8(command.getResolution())
+        };
+        int size = HEADER_SIZE + 14 + (actionCode == 0 ? stringSize(action) : 0);
+        for (byte[] s : strings) {
+            size += stringSize(s);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        int flags = (command.getFrameRate() != null ? 1 : 0)
+                | (command.getAudioSync() != null ? 2 : 0)
+                | (command.getTrackId() != null ? 4 : 0);
+        header(buf, TYPE_AI_VIDEO, flags, command.getRoomId(), orZero(command.getTimestamp()));
+        buf.put((byte) actionCode);
+        buf.putInt(command.getFrameRate() != null ? command.getFrameRate() : 0);
+        buf.put((byte) (Boolean.TRUE.equals(command.getAudioSync()) ? 1 : 0));
+        buf.putLong(orZero(command.getTrackId()));
+        for (byte[] s : strings) {
+            putString(buf, s);
+        }
+        if (actionCode == 0) {
+            putString(buf, action);
+        }
+        return buf.array();
+    }
+
+    /**
+     * 解析 #RRGGBB 或 #RRGGBBAA（忽略透明度），格式不对返回 -1，与盒子对 JSON 命令的处理一致
+     */
+    static int parseColor(String hex) {
+        if (hex == null || !hex.startsWith("#") || (hex.length() != 7 && hex.length() != 9)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hex.substring(1, 7), 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void header(ByteBuffer buf, byte type, int flags, Long roomId, long timestamp) {
+        buf.put(MAGIC).put(VERSION).put(type).put((byte) flags);
+        buf.putLong(orZero(roomId));
+        buf.putLong(timestamp);
+    }
+
+    /**
+     * 大小写不敏感地查找代码，盒子对 JSON 命令同样先转大写再匹配
+     */
+    private static int code(List<String> table, String value) {
+        if (value == null) {
+            return 0;
+        }
+        int index = table.indexOf(value.toUpperCase());
+        return Math.max(index, 0);
+    }
+
+    private static byte[] utf8(String s) {
+        if (s == null) {
+            return null;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_STRING) {
+            throw new IllegalArgumentException("命令字段过长: " + bytes.length);
+        }
+        return bytes;
+    }
+
+    private static int stringSize(byte[] s) {
+        return 2 + (s == null ? 0 : s.length);
+    }
+
+    private static void putString(ByteBuffer buf, byte[] s) {
+        if (s == null) {
+            buf.putShort((short) NULL_STRING);
+            return;
+        }
+        buf.putShort((short) s.length);
+        buf.put(s);
+    }
+
+    private static long orZero(Long value) {
+        return value != null ? value : 0L;
+    }
+}
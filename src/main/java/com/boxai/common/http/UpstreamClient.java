@@ -0,0 +1,229 @@
+package com.boxai.common.http;
+
+import com.boxai.domain.dto.UpstreamHttpStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 单个上游服务的HTTP客户端
+ * 持有该上游专用连接池上的WebClient，所有调用经过隔离舱（并发信号量）和熔断器，并记录次数与耗时。
+ * 只有5xx、429和网络错误计入熔断失败，其他4xx属于调用方问题不影响熔断
+ */
+@Slf4j
+public class UpstreamClient {
+
+    private final String name;
+    private final WebClient webClient;
+    private final CircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final int maxConcurrentCalls;
+    private final RetrySettings retrySettings;
+    private final Collection<ConnectionPoolMetrics> poolMetrics;
+
+    private final AtomicLong totalCalls = new AtomicLong();
+    private final AtomicLong failedCalls = new AtomicLong();
+    private final AtomicLong rejectedCalls = new AtomicLong();
+    private final AtomicLong shortCircuitedCalls = new AtomicLong();
+    private final AtomicLong completedCalls = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    UpstreamClient(String name, WebClient webClient, CircuitBreaker circuitBreaker, int maxConcurrentCalls,
+                   RetrySettings retrySettings, Collection<ConnectionPoolMetrics> poolMetrics) {
+        this.name = name;
+        this.webClient = webClient;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.retrySettings = retrySettings;
+        this.poolMetrics = poolMetrics;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 未经隔离舱和熔断器保护的WebClient，仅用于不需要保护的场景
+     */
+    public WebClient getWebClient() {
+        return webClient;
+    }
+
+    /**
+     * 执行一次请求
+     *
+     * @param call 基于本上游WebClient构建请求
+     * @return 请求结果；熔断中或并发已满时立即以异常结束
+     */
+    public <T> Mono<T> execute(Function<WebClient, Mono<T>> call) {
+        return Mono.defer(() -> {
+            Permit permit = acquire();
+            if (permit == null) {
+                return Mono.error(rejection());
+            }
+            try {
+                return call.apply(webClient)
+                        .doOnSuccess(value -> permit.complete(null))
+                        .doOnError(permit::complete)
+                        .doOnCancel(permit::cancel);
+            } catch (RuntimeException e) {
+                permit.complete(e);
+                return Mono.error(e);
+            }
+        });
+    }
+
+    /**
+     * 执行一个流式请求（如SSE），流存续期间一直占用隔离舱名额
+     */
+    public <T> Flux<T> stream(Function<WebClient, Flux<T>> call) {
+        return Flux.defer(() -> {
+            Permit permit = acquire();
+            if (permit == null) {
+                return Flux.error(rejection());
+            }
+            try {
+                return call.apply(webClient)
+                        .doOnComplete(() -> permit.complete(null))
+                        .doOnError(permit::complete)
+                        .doOnCancel(permit::cancel);
+            } catch (RuntimeException e) {
+                permit.complete(e);
+                return Flux.error(e);
+            }
+        });
+    }
+
+    /**
+     * 按本上游配置的带抖动指数退避重试，不重试调用方错误（429以外的4xx）和熔断、并发已满的拒绝，
+     * 重试耗尽时抛出最后一次的原始异常
+     */
+    public Retry retry() {
+        return Retry.backoff(Math.max(0, retrySettings.maxAttempts() - 1), retrySettings.minBackoff())
+                .maxBackoff(retrySettings.maxBackoff())
+                .jitter(retrySettings.jitter())
+                .filter(error -> !(error instanceof RejectedException) && isUpstreamFailure(error))
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    public UpstreamHttpStats getStats() {
+        UpstreamHttpStats stats = new UpstreamHttpStats();
+        stats.setName(name);
+        stats.setCircuitState(circuitBreaker.getState().name());
+        stats.setFailureRate(circuitBreaker.getFailureRate());
+        stats.setActiveCalls(maxConcurrentCalls - bulkhead.availablePermits());
+        stats.setMaxConcurrentCalls(maxConcurrentCalls);
+        stats.setTotalCalls(totalCalls.get());
+        stats.setFailedCalls(failedCalls.get());
+        stats.setRejectedCalls(rejectedCalls.get());
+        stats.setShortCircuitedCalls(shortCircuitedCalls.get());
+        long completed = completedCalls.get();
+        stats.setAvgLatencyMs(completed == 0 ? 0 : totalLatencyNanos.get() / 1_000_000.0 / completed);
+        stats.setMaxLatencyMs(maxLatencyNanos.get() / 1_000_000);
+        for (ConnectionPoolMetrics metrics : poolMetrics) {
+            stats.setPoolAcquired(stats.getPoolAcquired() + metrics.acquiredSize());
+            stats.setPoolIdle(stats.getPoolIdle() + metrics.idleSize());
+            stats.setPoolPending(stats.getPoolPending() + metrics.pendingAcquireSize());
+            stats.setPoolMaxConnections(stats.getPoolMaxConnections() + metrics.maxAllocatedSize());
+        }
+        return stats;
+    }
+
+    private Permit acquire() {
+        totalCalls.incrementAndGet();
+        if (!bulkhead.tryAcquire()) {
+            rejectedCalls.incrementAndGet();
+            return null;
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            bulkhead.release();
+            shortCircuitedCalls.incrementAndGet();
+            return null;
+        }
+        return new Permit(System.nanoTime());
+    }
+
+    private RuntimeException rejection() {
+        if (circuitBreaker.getState() == CircuitBreaker.State.CLOSED) {
+            return new RejectedException("上游服务并发已满: " + name);
+        }
+        return new RejectedException("上游服务熔断中: " + name);
+    }
+
+    private static boolean isUpstreamFailure(Throwable error) {
+        if (error instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            return status >= 500 || status == 429;
+        }
+        return true;
+    }
+
+    /**
+     * 重试配置
+     */
+    record RetrySettings(int maxAttempts, Duration minBackoff, Duration maxBackoff, double jitter) {}
+
+    /**
+     * 熔断或并发已满时的拒绝，不发出请求，也不应重试
+     */
+    static class RejectedException extends RuntimeException {
+        RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 一次调用占用的隔离舱名额，结束、出错或取消时只释放一次
+     */
+    private class Permit {
+
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        void complete(Throwable error) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            bulkhead.release();
+            long latency = System.nanoTime() - startNanos;
+            completedCalls.incrementAndGet();
+            totalLatencyNanos.addAndGet(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            if (error == null) {
+                circuitBreaker.onSuccess();
+                return;
+            }
+            failedCalls.incrementAndGet();
+            if (isUpstreamFailure(error)) {
+                circuitBreaker.onFailure();
+                log.debug("上游请求失败: upstream={}, error={}", name, error.toString());
+            } else {
+                circuitBreaker.onSuccess();
+            }
+        }
+
+        void cancel() {
+            if (released.compareAndSet(false, true)) {
+                bulkhead.release();
+                circuitBreaker.onIgnored();
+            }
+        }
+    }
+}
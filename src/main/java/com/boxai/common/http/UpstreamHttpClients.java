@@ -0,0 +1,136 @@
+package com.boxai.common.http;
+
+import com.boxai.domain.dto.UpstreamHttpStats;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.handler.timeout.WriteTimeoutHandler;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 外部服务HTTP客户端注册表
+ * 每个上游（wechat、runway、stability 以及通用下载用的 default）拥有独立的连接池、隔离舱和熔断器，
+ * 互不影响。配置读取 app.http.upstreams.{name}.*，未配置的项回退到 app.http.defaults.*
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UpstreamHttpClients {
+
+    public static final String WECHAT = "wechat";
+    public static final String RUNWAY = "runway";
+    public static final String STABILITY = "stability";
+    public static final String DEFAULT = "default";
+
+    private static final int MAX_IN_MEMORY_SIZE = 10 * 1024 * 1024;
+
+    private final Environment environment;
+
+    private final Map<String, UpstreamClient> clients = new ConcurrentHashMap<>();
+    private final Map<String, ConnectionProvider> providers = new ConcurrentHashMap<>();
+
+    /**
+     * 获取指定上游的客户端，首次使用时按配置创建
+     */
+    public UpstreamClient get(String name) {
+        return clients.computeIfAbsent(name, this::create);
+    }
+
+    public List<UpstreamHttpStats> getAllStats() {
+        List<UpstreamHttpStats> stats = new ArrayList<>();
+        clients.values().forEach(client -> stats.add(client.getStats()));
+        stats.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        providers.values().forEach(provider -> provider.disposeLater().block(Duration.ofSeconds(5)));
+    }
+
+    private UpstreamClient create(String name) {
+        Map<String, ConnectionPoolMetrics> poolMetrics = new ConcurrentHashMap<>();
+        ConnectionProvider provider = ConnectionProvider.builder("upstream-" + name)
+                .maxConnections(property(name, "max-connections", Integer.class, 50))
+                .pendingAcquireMaxCount(property(name, "pending-acquire-max", Integer.class, 100))
+                .pendingAcquireTimeout(property(name, "pending-acquire-timeout", Duration.class, Duration.ofSeconds(5)))
+                .maxIdleTime(property(name, "max-idle-time", Duration.class, Duration.ofSeconds(30)))
+                .maxLifeTime(property(name, "max-life-time", Duration.class, Duration.ofMinutes(5)))
+                .evictInBackground(property(name, "evict-interval", Duration.class, Duration.ofSeconds(30)))
+                .metrics(true, () -> new ConnectionProvider.MeterRegistrar() {
+                    @Override
+                    public void registerMetrics(String poolName, String id, SocketAddress remoteAddress,
+                                                ConnectionPoolMetrics metrics) {
+                        poolMetrics.put(id + "|" + remoteAddress, metrics);
+                    }
+
+                    @Override
+                    public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+                        poolMetrics.remove(id + "|" + remoteAddress);
+                    }
+                })
+                .build();
+        providers.put(name, provider);
+
+        int ioTimeoutSeconds = (int) property(name, "io-timeout", Duration.class, Duration.ofSeconds(60)).toSeconds();
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
+                        (int) property(name, "connect-timeout", Duration.class, Duration.ofSeconds(30)).toMillis())
+                .responseTimeout(property(name, "response-timeout", Duration.class, Duration.ofSeconds(60)))
+                .doOnConnected(conn ->
+                    conn.addHandlerLast(new ReadTimeoutHandler(ioTimeoutSeconds, TimeUnit.SECONDS))
+                        .addHandlerLast(new WriteTimeoutHandler(ioTimeoutSeconds, TimeUnit.SECONDS))
+                );
+        if (property(name, "http2", Boolean.class, false)) {
+            // HTTPS上通过ALPN协商HTTP/2，服务端不支持时回退HTTP/1.1
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure();
+        }
+
+        WebClient.Builder builder = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(MAX_IN_MEMORY_SIZE));
+        String baseUrl = property(name, "base-url", String.class, null);
+        if (baseUrl != null && !baseUrl.isBlank()) {
+            builder.baseUrl(baseUrl);
+        }
+
+        CircuitBreaker circuitBreaker = new CircuitBreaker(
+                property(name, "circuit-breaker.window-size", Integer.class, 20),
+                property(name, "circuit-breaker.minimum-calls", Integer.class, 10),
+                property(name, "circuit-breaker.failure-rate-threshold", Double.class, 50.0),
+                property(name, "circuit-breaker.open-duration", Duration.class, Duration.ofSeconds(30)),
+                property(name, "circuit-breaker.half-open-calls", Integer.class, 3));
+        int maxConcurrentCalls = property(name, "bulkhead.max-concurrent-calls", Integer.class, 20);
+        UpstreamClient.RetrySettings retrySettings = new UpstreamClient.RetrySettings(
+                property(name, "retry.max-attempts", Integer.class, 3),
+                property(name, "retry.min-backoff", Duration.class, Duration.ofMillis(200)),
+                property(name, "retry.max-backoff", Duration.class, Duration.ofSeconds(2)),
+                property(name, "retry.jitter", Double.class, 0.5));
+
+        log.info("创建上游HTTP客户端: name={}, baseUrl={}, maxConcurrentCalls={}", name, baseUrl, maxConcurrentCalls);
+        return new UpstreamClient(name, builder.build(), circuitBreaker, maxConcurrentCalls,
+                retrySettings, poolMetrics.values());
+    }
+
+    private <T> T property(String name, String key, Class<T> type, T defaultValue) {
+        T value = environment.getProperty("app.http.upstreams." + name + "." + key, type);
+        return value != null ? value : environment.getProperty("app.http.defaults." + key, type, defaultValue);
+    }
+}
@@ -1,17 +1,31 @@
 package com.boxai.common.web;
 
+import com.boxai.common.http.UpstreamHttpClients;
+import com.boxai.domain.dto.UpstreamHttpStats;
+import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/health")
+@RequiredArgsConstructor
 public class HealthController {
 
+    private final UpstreamHttpClients upstreamHttpClients;
+
     @GetMapping
     public ApiResponse<String> ok() {
         return ApiResponse.ok("UP");
     }
-}
-
 
+    /**
+     * 外部服务HTTP客户端的连接池、熔断器和耗时统计
+     */
+    @GetMapping("/upstreams")
+    public ApiResponse<List<UpstreamHttpStats>> upstreams() {
+        return ApiResponse.ok(upstreamHttpClients.getAllStats());
+    }
+}
@@ -2,21 +2,28 @@ package com.boxai.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.boxai.common.web.ApiResponse;
+import com.boxai.domain.dto.ChunkedUploadStatusResponse;
+import com.boxai.domain.dto.MediaGcReport;
 import com.boxai.domain.dto.MediaUploadResponse;
+import com.boxai.domain.dto.request.ChunkedUploadInitRequest;
 import com.boxai.domain.dto.request.MediaUploadRequest;
 import com.boxai.domain.dto.request.SyncVersionUpdateRequest;
 import com.boxai.domain.dto.request.TrackCreateRequest;
 import com.boxai.domain.dto.request.TrackUpdateRequest;
 import com.boxai.domain.entity.Track;
 import com.boxai.service.AdminTrackService;
+import com.boxai.service.ChunkedUploadService;
+import com.boxai.service.MediaGcService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.validation.Valid;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -31,6 +38,8 @@ import java.util.Map;
 public class AdminTrackController {
     
     private final AdminTrackService adminTrackService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final MediaGcService mediaGcService;
     
     @PostMapping
     @Operation(summary = "新增歌曲", description = "云端管理员新增歌曲到曲库，会自动分配同步版本号")
@@ -74,6 +83,70 @@ public class AdminTrackController {
         return ApiResponse.success(response);
     }
     
+    @PostMapping("/{id}/media/chunked/init")
+    @Operation(summary = "初始化分片上传", description = "为大文件（如4K视频）创建分片上传任务，返回uploadId和分片规划")
+    public ApiResponse<ChunkedUploadStatusResponse> initChunkedUpload(
+            @Parameter(description = "歌曲ID", required = true) @PathVariable Long id,
+            @Parameter(description = "分片上传初始化信息", required = true) @Valid @RequestBody ChunkedUploadInitRequest request
+    ) {
+        request.setTrackId(id);
+        return ApiResponse.success(chunkedUploadService.initUpload(request));
+    }
+    
+    @PutMapping(value = "/media/chunked/{uploadId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(summary = "上传分片", description = "上传指定序号的分片（请求体为原始字节），分片可并行、重复上传")
+    public ApiResponse<ChunkedUploadStatusResponse> uploadChunk(
+            @Parameter(description = "上传任务ID", required = true) @PathVariable String uploadId,
+            @Parameter(description = "分片序号（从0开始）", required = true) @PathVariable int index,
+            @Parameter(description = "分片MD5校验码", required = true) @RequestParam String checksum,
+            InputStream data
+    ) {
+        return ApiResponse.success(chunkedUploadService.uploadChunk(uploadId, index, checksum, data));
+    }
+    
+    @GetMapping("/media/chunked/{uploadId}")
+    @Operation(summary = "查询分片上传状态", description = "返回已接收的分片列表，用于断点续传")
+    public ApiResponse<ChunkedUploadStatusResponse> getChunkedUploadStatus(
+            @Parameter(description = "上传任务ID", required = true) @PathVariable String uploadId
+    ) {
+        return ApiResponse.success(chunkedUploadService.getUploadStatus(uploadId));
+    }
+    
+    @PostMapping("/media/chunked/{uploadId}/complete")
+    @Operation(summary = "完成分片上传", description = "校验所有分片并合并为完整文件，关联到歌曲并更新同步版本")
+    public ApiResponse<MediaUploadResponse> completeChunkedUpload(
+            @Parameter(description = "上传任务ID", required = true) @PathVariable String uploadId
+    ) {
+        return ApiResponse.success(chunkedUploadService.completeUpload(uploadId));
+    }
+    
+    @DeleteMapping("/media/chunked/{uploadId}")
+    @Operation(summary = "取消分片上传", description = "取消上传任务并清理已接收的分片")
+    public ApiResponse<Void> abortChunkedUpload(
+            @Parameter(description = "上传任务ID", required = true) @PathVariable String uploadId
+    ) {
+        chunkedUploadService.abortUpload(uploadId);
+        return ApiResponse.success();
+    }
+    
+    @PostMapping("/media/gc")
+    @Operation(summary = "回收本地孤儿媒体文件", description = "删除未被任何歌曲引用的本地媒体文件，演练模式下只生成报告")
+    public ApiResponse<MediaGcReport> collectMediaGarbage(
+            @Parameter(description = "是否为演练模式") @RequestParam(defaultValue = "true") boolean dryRun
+    ) {
+        MediaGcReport report = mediaGcService.collect(dryRun);
+        if (report == null) {
+            throw new RuntimeException("垃圾回收正在进行中，请稍后查看回收报告");
+        }
+        return ApiResponse.success(report);
+    }
+    
+    @GetMapping("/media/gc/report")
+    @Operation(summary = "查询最近一次回收报告", description = "返回最近一次本地媒体文件垃圾回收（含定时任务）的报告")
+    public ApiResponse<MediaGcReport> getMediaGcReport() {
+        return ApiResponse.success(mediaGcService.getLastReport());
+    }
+    
     @PostMapping("/sync-version/update")
     @Operation(summary = "批量更新同步版本", description = "批量更新歌曲的同步版本号，触发包间同步更新")
     public ApiResponse<Map<String, Object>> updateSyncVersion(
@@ -2,16 +2,27 @@ package com.boxai.controller;
 
 import com.boxai.common.web.ApiResponse;
 import com.boxai.domain.dto.AiVideoStreamResponse;
+import com.boxai.domain.dto.StreamPipelineStats;
 import com.boxai.domain.dto.request.AiVideoGenerateRequest;
 import com.boxai.domain.entity.AiVideoSession;
+import com.boxai.service.AiVideoPregenerationService;
+import com.boxai.service.AiVideoResultCache;
 import com.boxai.service.AiVideoService;
+import com.boxai.service.StreamingPipelineService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -25,6 +36,9 @@ import java.util.List;
 public class AiVideoController {
     
     private final AiVideoService aiVideoService;
+    private final AiVideoResultCache aiVideoResultCache;
+    private final AiVideoPregenerationService aiVideoPregenerationService;
+    private final StreamingPipelineService streamingPipelineService;
     
     @PostMapping("/generate")
     @Operation(summary = "开始AI视频生成", description = "根据用户输入的提示词和参数生成AI视频并推送到桌面端大屏显示")
@@ -82,6 +96,40 @@ public class AiVideoController {
         return ApiResponse.success(history);
     }
     
+    @GetMapping("/cache/{cacheKey}")
+    @Operation(summary = "获取缓存的AI视频", description = "下载按生成参数缓存的AI视频文件（支持Range请求），供桌面端直接播放")
+    public ResponseEntity<Resource> getCachedVideo(
+            @Parameter(description = "缓存键", required = true) @PathVariable String cacheKey
+    ) {
+        Path path = aiVideoResultCache.resolve(cacheKey);
+        if (path == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // 缓存键由内容参数决定，同一键的文件内容不变，可长期缓存
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("video/mp4"))
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(7)))
+                .body(new FileSystemResource(path));
+    }
+    
+    @GetMapping("/pipelines")
+    @Operation(summary = "获取推流管线列表", description = "查询所有FFmpeg推流管线的状态及码率、帧率、丢帧等指标")
+    public ApiResponse<List<StreamPipelineStats>> getPipelines() {
+        return ApiResponse.success(streamingPipelineService.getAllStats());
+    }
+    
+    @GetMapping("/pipelines/{streamId}")
+    @Operation(summary = "获取推流管线状态", description = "查询指定视频流的FFmpeg推流管线状态及指标")
+    public ApiResponse<StreamPipelineStats> getPipeline(
+            @Parameter(description = "视频流ID", required = true, example = "ai_stream_12345") @PathVariable String streamId
+    ) {
+        StreamPipelineStats stats = streamingPipelineService.getStats(streamId);
+        if (stats == null) {
+            throw new RuntimeException("推流管线不存在: " + streamId);
+        }
+        return ApiResponse.success(stats);
+    }
+    
     @PostMapping("/progress/{streamId}")
     @Operation(summary = "更新生成进度", description = "内部接口：更新AI视频生成进度（由AI生成服务调用）")
     public ApiResponse<Void> updateProgress(
@@ -100,16 +148,11 @@ public class AiVideoController {
             @Parameter(description = "当前播放歌曲ID", example = "12345") @RequestParam(required = false) Long trackId,
             @Parameter(description = "可视化风格", example = "CYBERPUNK") @RequestParam(defaultValue = "MODERN") String style
     ) {
-        AiVideoGenerateRequest request = new AiVideoGenerateRequest();
-        request.setRoomId(roomId);
-        request.setVideoType("MUSIC_VISUALIZATION");
-        request.setStyle(style);
-        request.setCurrentTrackId(trackId);
-        request.setAudioSync(true);
-        request.setDuration(180); // 3分钟
-        request.setPrompt("根据音乐节拍生成动态视觉效果，" + style.toLowerCase() + "风格");
-        
+        AiVideoGenerateRequest request = AiVideoGenerateRequest.musicVisualization(roomId, trackId, style);
         AiVideoStreamResponse response = aiVideoService.startVideoGeneration(request);
+        
+        // 包间开启音乐可视化后，为队列中即将播放的歌曲预生成视频
+        aiVideoPregenerationService.enableRoom(roomId, style);
         return ApiResponse.success(response);
     }
     
@@ -1,6 +1,6 @@
 package com.boxai.controller;
 
-import com.boxai.service.AiVideoService;
+import com.boxai.service.AiVideoProgressBus;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -12,7 +12,6 @@ import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 
-import java.time.Duration;
 import java.util.Map;
 
 /**
@@ -26,11 +25,12 @@ import java.util.Map;
 @Tag(name = "AI视频流", description = "AI视频生成实时进度流")
 public class AiVideoStreamController {
     
-    private final AiVideoService aiVideoService;
+    private final AiVideoProgressBus aiVideoProgressBus;
     private final ObjectMapper objectMapper;
     
     /**
      * 获取AI视频生成进度流
+     * 同一流的所有订阅者共享一个事件源，只在状态变化时推送
      */
     @GetMapping(value = "/progress/{streamId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @Operation(summary = "获取生成进度流", description = "通过Server-Sent Events实时获取AI视频生成进度")
@@ -39,61 +39,39 @@ public class AiVideoStreamController {
         
         log.info("开始推送AI视频生成进度流: streamId={}", streamId);
         
-        return Flux.interval(Duration.ofSeconds(1))
-                .map(sequence -> {
+        return aiVideoProgressBus.progressStream(streamId)
+                .map(event -> {
                     try {
-                        // 获取当前会话状态
-                        var session = aiVideoService.getSessionByStreamId(streamId);
-                        if (session == null) {
-                            return ServerSentEvent.<String>builder()
-                                    .id(String.valueOf(sequence))
-                                    .event("error")
-                                    .data("{\"error\":\"会话不存在\"}")
-                                    .build();
-                        }
-                        
                         // 构建进度数据
                         Map<String, Object> progressData = Map.of(
                                 "streamId", streamId,
-                                "status", session.getStatus(),
-                                "progress", session.getProgress() != null ? session.getProgress() : 0,
-                                "message", getStatusMessage(session.getStatus(), session.getProgress()),
-                                "timestamp", System.currentTimeMillis(),
-                                "streamUrl", session.getStreamUrl() != null ? session.getStreamUrl() : "",
-                                "hlsUrl", session.getHlsUrl() != null ? session.getHlsUrl() : "",
-                                "webrtcUrl", session.getWebrtcUrl() != null ? session.getWebrtcUrl() : ""
+                                "status", event.getStatus(),
+                                "progress", event.getProgress() != null ? event.getProgress() : 0,
+                                "message", getStatusMessage(event.getStatus(), event.getProgress()),
+                                "timestamp", event.getTimestamp(),
+                                "streamUrl", event.getStreamUrl() != null ? event.getStreamUrl() : "",
+                                "hlsUrl", event.getHlsUrl() != null ? event.getHlsUrl() : "",
+                                "webrtcUrl", event.getWebrtcUrl() != null ? event.getWebrtcUrl() : ""
                         );
                         
-                        String jsonData = objectMapper.writeValueAsString(progressData);
-                        
                         return ServerSentEvent.<String>builder()
-                                .id(String.valueOf(sequence))
+                                .id(String.valueOf(event.getTimestamp()))
                                 .event("progress")
-                                .data(jsonData)
+                                .data(objectMapper.writeValueAsString(progressData))
                                 .build();
                         
                     } catch (Exception e) {
                         log.error("构建进度数据失败: streamId={}", streamId, e);
                         return ServerSentEvent.<String>builder()
-                                .id(String.valueOf(sequence))
                                 .event("error")
                                 .data("{\"error\":\"构建进度数据失败\"}")
                                 .build();
                     }
                 })
-                .takeUntil(sse -> {
-                    // 当状态为完成、失败或停止时结束流
-                    try {
-                        if (sse.data() != null && sse.data().contains("\"status\"")) {
-                            return sse.data().contains("\"COMPLETED\"") || 
-                                   sse.data().contains("\"FAILED\"") || 
-                                   sse.data().contains("\"STOPPED\"");
-                        }
-                    } catch (Exception e) {
-                        log.error("检查结束条件失败: streamId={}", streamId, e);
-                    }
-                    return false;
-                })
+                .switchIfEmpty(Flux.just(ServerSentEvent.<String>builder()
+                        .event("error")
+                        .data("{\"error\":\"会话不存在\"}")
+                        .build()))
                 .doOnSubscribe(subscription -> log.info("客户端订阅进度流: streamId={}", streamId))
                 .doOnCancel(() -> log.info("客户端取消进度流订阅: streamId={}", streamId))
                 .doOnComplete(() -> log.info("进度流推送完成: streamId={}", streamId))
@@ -102,6 +80,7 @@ public class AiVideoStreamController {
     
     /**
      * 获取所有活跃会话的状态流
+     * 所有订阅者共享同一个快照源，活跃会话变化时按间隔合并推送
      */
     @GetMapping(value = "/status", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @Operation(summary = "获取所有会话状态流", description = "实时推送所有活跃AI视频生成会话的状态")
@@ -109,12 +88,9 @@ public class AiVideoStreamController {
         
         log.info("开始推送所有会话状态流");
         
-        return Flux.interval(Duration.ofSeconds(2))
-                .map(sequence -> {
+        return aiVideoProgressBus.activeSessionsStream()
+                .map(activeSessions -> {
                     try {
-                        // 获取所有活跃会话
-                        var activeSessions = aiVideoService.getActiveSessions(50);
-                        
                         Map<String, Object> statusData = Map.of(
                                 "timestamp", System.currentTimeMillis(),
                                 "activeSessions", activeSessions.size(),
@@ -124,23 +100,20 @@ public class AiVideoStreamController {
                                                 "roomId", session.getRoomId(),
                                                 "status", session.getStatus(),
                                                 "progress", session.getProgress() != null ? session.getProgress() : 0,
-                                                "startTime", session.getStartTime().toString()
+                                                "startTime", session.getStartTime() != null ? session.getStartTime().toString() : ""
                                         ))
                                         .toList()
                         );
                         
-                        String jsonData = objectMapper.writeValueAsString(statusData);
-                        
                         return ServerSentEvent.<String>builder()
-                                .id(String.valueOf(sequence))
+                                .id(String.valueOf(System.currentTimeMillis()))
                                 .event("status")
-                                .data(jsonData)
+                                .data(objectMapper.writeValueAsString(statusData))
                                 .build();
                         
                     } catch (Exception e) {
                         log.error("构建状态数据失败", e);
                         return ServerSentEvent.<String>builder()
-                                .id(String.valueOf(sequence))
                                 .event("error")
                                 .data("{\"error\":\"构建状态数据失败\"}")
                                 .build();
@@ -1,6 +1,7 @@
 package com.boxai.controller;
 
 import com.boxai.auth.JwtAuthFilter;
+import com.boxai.auth.JwtTokenVerifier;
 import com.boxai.common.web.ApiResponse;
 import com.boxai.domain.dto.user.UserProfileDTO;
 import com.boxai.domain.dto.wechat.LoginResponse;
@@ -11,6 +12,7 @@ import io.swagger.v3.oas.annotations.Parameter;
 
 
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
@@ -26,6 +28,7 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "用户认证", description = "用户登录认证相关API")
 public class AuthController {
     private final WechatAuthService wechatAuthService;
+    private final JwtTokenVerifier jwtTokenVerifier;
 
     /**
      * 微信静默登录
@@ -50,10 +53,25 @@ public class AuthController {
     @Operation(summary = "获取当前用户信息", 
                description = "根据JWT令牌获取当前登录用户的详细信息")
 
-    public ApiResponse<UserProfileDTO> me() {
-        Long userId = JwtAuthFilter.CURRENT_USER.get();
+    public ApiResponse<UserProfileDTO> me(
+            @Parameter(hidden = true) @RequestAttribute(value = JwtAuthFilter.CURRENT_USER, required = false) Long userId) {
         return ApiResponse.ok(wechatAuthService.getCurrentUserProfile(userId));
     }
-}
 
+    /**
+     * 退出登录
+     * 启用令牌撤销时，当前令牌立即在所有节点失效
+     * @return 操作结果
+     */
+    @PostMapping("/logout")
+    @Operation(summary = "退出登录", 
+               description = "撤销当前JWT令牌（需启用 app.jwt.revocation.enabled）")
 
+    public ApiResponse<Void> logout(HttpServletRequest request) {
+        String token = JwtAuthFilter.resolveToken(request);
+        if (token != null) {
+            jwtTokenVerifier.revoke(token);
+        }
+        return ApiResponse.success();
+    }
+}
@@ -0,0 +1,70 @@
+package com.boxai.controller;
+
+import com.boxai.service.HlsStreamService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+/**
+ * HLS播放控制器
+ * 提供AI视频流的多码率主播放列表、变体播放列表和切片，内容经服务端缓存后共享给场所内的所有屏幕
+ */
+@RestController
+@RequestMapping("/api/hls")
+@RequiredArgsConstructor
+@Tag(name = "HLS播放", description = "AI视频流多码率HLS播放列表和切片")
+public class HlsController {
+    
+    private static final MediaType PLAYLIST_TYPE = MediaType.parseMediaType("application/vnd.apple.mpegurl");
+    private static final MediaType SEGMENT_TYPE = MediaType.parseMediaType("video/mp2t");
+    
+    private final HlsStreamService hlsStreamService;
+    
+    @GetMapping("/{streamId}/{file:.+}")
+    @Operation(summary = "获取主播放列表", description = "获取视频流的多码率主播放列表（master.m3u8）")
+    public ResponseEntity<byte[]> getMasterPlaylist(
+            @Parameter(description = "视频流ID", required = true, example = "ai_stream_12345") @PathVariable String streamId,
+            @Parameter(description = "文件名", required = true, example = "master.m3u8") @PathVariable String file
+    ) {
+        return serve(streamId, file);
+    }
+    
+    @GetMapping("/{streamId}/{rendition}/{file:.+}")
+    @Operation(summary = "获取变体播放列表或切片", description = "获取指定码率变体的播放列表（index.m3u8）或媒体切片")
+    public ResponseEntity<byte[]> getRenditionFile(
+            @Parameter(description = "视频流ID", required = true, example = "ai_stream_12345") @PathVariable String streamId,
+            @Parameter(description = "码率变体", required = true, example = "720p") @PathVariable String rendition,
+            @Parameter(description = "文件名", required = true, example = "seg_00001.ts") @PathVariable String file
+    ) {
+        return serve(streamId, rendition + "/" + file);
+    }
+    
+    private ResponseEntity<byte[]> serve(String streamId, String relativePath) {
+        byte[] data = hlsStreamService.read(streamId, relativePath);
+        if (data == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (relativePath.endsWith(".m3u8")) {
+            // 播放列表随直播滚动更新，只允许极短时间的缓存
+            return ResponseEntity.ok()
+                    .contentType(PLAYLIST_TYPE)
+                    .cacheControl(CacheControl.maxAge(Duration.ofSeconds(1)))
+                    .body(data);
+        }
+        // 切片写入后不再变化
+        return ResponseEntity.ok()
+                .contentType(SEGMENT_TYPE)
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(10)))
+                .body(data);
+    }
+}
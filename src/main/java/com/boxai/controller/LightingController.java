@@ -1,9 +1,8 @@
 package com.boxai.controller;
 
-import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.boxai.common.web.ApiResponse;
 import com.boxai.domain.entity.Lighting;
-import com.boxai.service.LightingService;
+import com.boxai.service.RoomStateService;
 import com.boxai.service.DeviceControlService;
 import com.boxai.domain.dto.device.LightingControlCommand;
 import com.boxai.domain.dto.request.LightingSaveRequest;
@@ -11,6 +10,7 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.Data;
 import org.springframework.web.bind.annotation.*;
 import lombok.RequiredArgsConstructor;
@@ -24,7 +24,7 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 @Tag(name = "灯光控制", description = "KTV房间灯光设置相关API")
 public class LightingController {
-    private final LightingService lightingService;
+    private final RoomStateService roomStateService;
     private final DeviceControlService deviceControlService;
 
     /**
@@ -39,21 +39,9 @@ public class LightingController {
 
     public ApiResponse<Lighting> save(
             @Parameter(description = "灯光保存请求参数", required = true)
-            @RequestBody LightingSaveRequest req) {
-        Lighting l = lightingService.getOne(Wrappers.<Lighting>lambdaQuery().eq(Lighting::getRoomId, req.getRoomId()));
-        if (l == null) {
-            l = new Lighting();
-            l.setRoomId(req.getRoomId());
-            l.setBrightness(req.getBrightness());
-            l.setColor(req.getColor());
-            l.setRhythm(req.getRhythm());
-            lightingService.save(l);
-        } else {
-            l.setBrightness(req.getBrightness());
-            l.setColor(req.getColor());
-            l.setRhythm(req.getRhythm());
-            lightingService.updateById(l);
-        }
+            @Valid @RequestBody LightingSaveRequest req) {
+        // 先写入房间实时状态，数据库异步写回
+        Lighting l = roomStateService.saveLighting(req);
         // 发布灯光控制命令到桌面端
         LightingControlCommand cmd = new LightingControlCommand();
         cmd.setRoomId(l.getRoomId());
@@ -72,7 +60,7 @@ public class LightingController {
      */
     @GetMapping("/{roomId}")
     public ApiResponse<Lighting> get(@PathVariable Long roomId) {
-        return ApiResponse.ok(lightingService.getOne(Wrappers.<Lighting>lambdaQuery().eq(Lighting::getRoomId, roomId)));
+        return ApiResponse.ok(roomStateService.getLighting(roomId));
     }
 
 
@@ -1,12 +1,15 @@
 package com.boxai.controller;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.boxai.common.web.ApiResponse;
+import com.boxai.domain.dto.QueueItemReadiness;
 import com.boxai.domain.entity.Playlist;
 import com.boxai.domain.dto.request.PlaybackControlRequest;
 import com.boxai.domain.dto.request.PlaybackQueueRequest;
-import com.boxai.service.PlaylistService;
+import com.boxai.service.AiVideoPregenerationService;
+import com.boxai.service.MediaCacheService;
+import com.boxai.service.QueuePrefetchService;
+import com.boxai.service.RoomQueueService;
+import com.boxai.service.RoomStateService;
 import com.boxai.service.DeviceControlService;
 import com.boxai.domain.dto.device.DeviceControlCommand;
 import io.swagger.v3.oas.annotations.Operation;
@@ -30,8 +33,12 @@ import java.util.List;
 @RequiredArgsConstructor
 @Tag(name = "播放控制", description = "音乐播放和队列管理相关API")
 public class PlaybackController {
-    private final PlaylistService playlistService;
+    private final RoomQueueService roomQueueService;
     private final DeviceControlService deviceControlService;
+    private final MediaCacheService mediaCacheService;
+    private final QueuePrefetchService queuePrefetchService;
+    private final RoomStateService roomStateService;
+    private final AiVideoPregenerationService aiVideoPregenerationService;
 
     /**
      * 添加曲目到播放队列
@@ -45,15 +52,15 @@ public class PlaybackController {
     public ApiResponse<String> queue(
             @Parameter(description = "播放队列请求参数", required = true)
             @RequestBody PlaybackQueueRequest req) {
-        Integer maxPos = playlistService.list(Wrappers.<Playlist>lambdaQuery().eq(Playlist::getRoomId, req.getRoomId()))
-                .stream().map(Playlist::getPosition).max(Integer::compareTo).orElse(0);
-        Playlist p = new Playlist();
-        p.setRoomId(req.getRoomId());
-        p.setTrackId(req.getTrackId());
-        p.setOrderedByUserId(req.getUserId());
-        p.setPosition(maxPos + 1);
-        p.setStatus("QUEUED");
-        playlistService.save(p);
+        roomQueueService.enqueue(req.getRoomId(), req.getTrackId(), req.getUserId());
+        
+        // 已排队的歌曲不允许被本地缓存淘汰，并计入本地点播频次
+        mediaCacheService.pin(req.getTrackId());
+        mediaCacheService.recordPlay(req.getTrackId());
+        
+        // 立即为队列前几首尚未在本地的歌曲安排下载
+        queuePrefetchService.onQueueChanged(req.getRoomId());
+        aiVideoPregenerationService.onQueueChanged(req.getRoomId());
         return ApiResponse.ok("queued");
     }
 
@@ -65,10 +72,71 @@ public class PlaybackController {
      */
     @GetMapping("/queue/{roomId}")
     public ApiResponse<List<Playlist>> list(@PathVariable Long roomId) {
-        List<Playlist> list = playlistService.list(new LambdaQueryWrapper<Playlist>()
-                .eq(Playlist::getRoomId, roomId)
-                .orderByAsc(Playlist::getPosition));
-        return ApiResponse.ok(list);
+        return ApiResponse.ok(roomQueueService.getQueue(roomId));
+    }
+
+    /**
+     * 置顶（下一首唱）
+     * 将队列项移动到队列最前面
+     * @param roomId 房间ID
+     * @param playlistId 队列项ID
+     * @return 更新后的队列项
+     */
+    @PostMapping("/queue/{roomId}/items/{playlistId}/sing-next")
+    @Operation(summary = "置顶播放队列项", description = "将指定队列项移动到队列最前面，作为下一首播放")
+    public ApiResponse<Playlist> singNext(@PathVariable Long roomId, @PathVariable Long playlistId) {
+        Playlist item = roomQueueService.singNext(roomId, playlistId);
+        queuePrefetchService.onQueueChanged(roomId);
+        aiVideoPregenerationService.onQueueChanged(roomId);
+        return ApiResponse.ok(item);
+    }
+
+    /**
+     * 调整播放队列顺序
+     * 将队列项移动到另一项之后，afterId为空时等同于置顶
+     * @param roomId 房间ID
+     * @param playlistId 队列项ID
+     * @param afterId 目标位置的前一项ID
+     * @return 更新后的队列项
+     */
+    @PutMapping("/queue/{roomId}/items/{playlistId}/position")
+    @Operation(summary = "调整播放队列顺序", description = "将指定队列项移动到另一队列项之后")
+    public ApiResponse<Playlist> move(
+            @PathVariable Long roomId,
+            @PathVariable Long playlistId,
+            @Parameter(description = "目标位置的前一项ID，为空时置顶") @RequestParam(required = false) Long afterId) {
+        Playlist item = roomQueueService.move(roomId, playlistId, afterId);
+        queuePrefetchService.onQueueChanged(roomId);
+        aiVideoPregenerationService.onQueueChanged(roomId);
+        return ApiResponse.ok(item);
+    }
+
+    /**
+     * 从播放队列移除
+     * @param roomId 房间ID
+     * @param playlistId 队列项ID
+     * @return 操作结果
+     */
+    @DeleteMapping("/queue/{roomId}/items/{playlistId}")
+    @Operation(summary = "移除播放队列项", description = "将指定队列项从房间播放队列中移除")
+    public ApiResponse<String> dequeue(@PathVariable Long roomId, @PathVariable Long playlistId) {
+        roomQueueService.dequeue(roomId, playlistId);
+        queuePrefetchService.onQueueChanged(roomId);
+        aiVideoPregenerationService.onQueueChanged(roomId);
+        return ApiResponse.ok("removed");
+    }
+
+    /**
+     * 获取房间播放队列的本地就绪状态
+     * 用于点歌界面显示各首歌曲是否已下载到包间本地
+     * @param roomId 房间ID
+     * @return 各队列项的就绪状态
+     */
+    @GetMapping("/queue/{roomId}/readiness")
+    @Operation(summary = "查询队列就绪状态",
+               description = "返回播放队列中每首歌曲的本地就绪状态（READY/DOWNLOADING/PENDING/FAILED/NOT_LOCAL）")
+    public ApiResponse<List<QueueItemReadiness>> readiness(@PathVariable Long roomId) {
+        return ApiResponse.ok(queuePrefetchService.getQueueReadiness(roomId));
     }
 
     /**
@@ -88,6 +156,7 @@ public class PlaybackController {
         cmd.setAction(req.getAction());
         cmd.setTimestamp(System.currentTimeMillis());
         deviceControlService.publish(cmd);
+        roomStateService.applyControl(req.getRoomId(), req.getAction());
         return ApiResponse.ok("published:" + req.getAction());
     }
 
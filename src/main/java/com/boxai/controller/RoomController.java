@@ -5,11 +5,16 @@ import com.boxai.common.web.ApiResponse;
 import com.boxai.domain.entity.Room;
 import com.boxai.domain.entity.RoomMember;
 import com.boxai.domain.dto.wechat.RoomQrResponse;
+import com.boxai.domain.dto.room.RoomLiveState;
 import com.boxai.domain.dto.room.RoomResetResponse;
+import com.boxai.domain.dto.request.RoomPlaybackStateRequest;
 import com.boxai.domain.dto.request.RoomBindRequest;
+import com.boxai.service.AiVideoPregenerationService;
 import com.boxai.service.RoomMemberService;
 import com.boxai.service.RoomService;
 import com.boxai.service.QrCodeService;
+import com.boxai.service.RoomEventStreamService;
+import com.boxai.service.RoomStateService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -17,11 +22,21 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -37,6 +52,9 @@ public class RoomController {
     private final RoomService roomService;
     private final RoomMemberService memberService;
     private final QrCodeService qrCodeService;
+    private final RoomStateService roomStateService;
+    private final RoomEventStreamService roomEventStreamService;
+    private final AiVideoPregenerationService aiVideoPregenerationService;
 
     /**
      * 绑定房间
@@ -70,6 +88,7 @@ public class RoomController {
             m.setUserId(req.getUserId());
             m.setRole(room.getOwnerUserId().equals(req.getUserId()) ? "OWNER" : "NORMAL");
             memberService.save(m);
+            roomStateService.invalidateMembers(room.getId());
         }
         return ApiResponse.ok(room);
     }
@@ -86,8 +105,57 @@ public class RoomController {
     public ApiResponse<List<RoomMember>> members(
             @Parameter(description = "房间ID", required = true, example = "1")
             @PathVariable Long roomId) {
-        List<RoomMember> list = memberService.list(new LambdaQueryWrapper<RoomMember>().eq(RoomMember::getRoomId, roomId));
-        return ApiResponse.ok(list);
+        return ApiResponse.ok(roomStateService.getMembers(roomId));
+    }
+
+    /**
+     * 获取房间实时状态
+     * 当前播放曲目、播放进度、成员、灯光、场景，一次返回
+     * @param roomId 房间ID
+     * @return 房间实时状态
+     */
+    @GetMapping("/{roomId}/state")
+    @Operation(summary = "获取房间实时状态",
+               description = "返回房间当前播放曲目、播放状态与进度、成员、灯光和场景")
+    public ApiResponse<RoomLiveState> state(
+            @Parameter(description = "房间ID", required = true, example = "1")
+            @PathVariable Long roomId) {
+        return ApiResponse.ok(roomStateService.getState(roomId));
+    }
+
+    /**
+     * 订阅房间事件流
+     * 首条为完整快照，之后推送播放队列、播放状态、成员、灯光、场景的变化，替代客户端轮询
+     * @param roomId 房间ID
+     * @return SSE事件流
+     */
+    @GetMapping(value = "/{roomId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "订阅房间事件流",
+               description = "通过Server-Sent Events推送房间状态变化，短时间内的多次变化合并为一条消息")
+    public Flux<ServerSentEvent<String>> events(
+            @Parameter(description = "房间ID", required = true, example = "1")
+            @PathVariable Long roomId) {
+        return roomEventStreamService.subscribe(roomId);
+    }
+
+    /**
+     * 设备端上报播放状态
+     * 包间设备在切歌、暂停、继续及定时进度同步时调用
+     * @param roomId 房间ID
+     * @param req 播放状态
+     * @return 操作结果
+     */
+    @PutMapping("/{roomId}/state/playback")
+    @Operation(summary = "上报播放状态",
+               description = "设备端上报当前曲目、播放状态和进度，更新房间实时状态")
+    public ApiResponse<String> reportPlayback(
+            @Parameter(description = "房间ID", required = true, example = "1")
+            @PathVariable Long roomId,
+            @RequestBody RoomPlaybackStateRequest req) {
+        roomStateService.updatePlayback(roomId, req);
+        // 切到新歌时挂载预生成的AI可视化视频
+        aiVideoPregenerationService.onTrackStarted(roomId, req.getTrackId());
+        return ApiResponse.ok("updated");
     }
 
     /**
@@ -95,18 +163,41 @@ public class RoomController {
      * 为指定房间生成唯一的微信小程序码，用于快速进入房间
      * @param roomId 房间ID
      * @param page 小程序页面路径（可选，默认为首页）
-     * @return 二维码信息（Base64编码的PNG图片）
+     * @return 二维码信息（版本号和图片地址）
      */
     @GetMapping("/{roomId}/qr")
     @Operation(summary = "生成房间小程序码", 
                description = "为指定房间生成微信小程序码，用于邀请其他用户扫码进入")
 
-    public ApiResponse<RoomQrResponse> generateQr(
+    public Mono<ApiResponse<RoomQrResponse>> generateQr(
             @Parameter(description = "房间ID", required = true, example = "1")
             @PathVariable Long roomId, 
             @Parameter(description = "小程序页面路径", example = "pages/room/room")
             @RequestParam(required = false) String page) {
-        return ApiResponse.ok(qrCodeService.generateRoomQr(roomId, page));
+        return qrCodeService.generateRoomQr(roomId, page).map(ApiResponse::ok);
+    }
+
+    /**
+     * 获取房间小程序码图片
+     * 图片按版本区分、内容不变，可被浏览器和CDN长期缓存；携带 If-None-Match 且未变化时返回304
+     * @param roomId 房间ID
+     * @param version 二维码版本号
+     * @return PNG图片
+     */
+    @GetMapping(value = "/{roomId}/qr/{version}.png", produces = MediaType.IMAGE_PNG_VALUE)
+    @Operation(summary = "获取房间小程序码图片", description = "按版本返回房间小程序码PNG图片，支持ETag")
+    public Mono<ResponseEntity<byte[]>> getQrImage(
+            @Parameter(description = "房间ID", required = true, example = "1")
+            @PathVariable Long roomId,
+            @Parameter(description = "二维码版本号", required = true, example = "1")
+            @PathVariable Integer version,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+        return qrCodeService.getRoomQrImage(roomId, version)
+                .map(image -> image.etag().equals(ifNoneMatch)
+                        ? ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(image.etag()).cacheControl(cacheControl).<byte[]>build()
+                        : ResponseEntity.ok().eTag(image.etag()).cacheControl(cacheControl)
+                                .contentType(MediaType.IMAGE_PNG).body(image.png()));
     }
 
     /**
@@ -120,13 +211,13 @@ public class RoomController {
     @Operation(summary = "刷新房间二维码", 
                description = "使当前二维码失效，重新生成新版本的二维码")
 
-    public ApiResponse<RoomQrResponse> refreshQr(
+    public Mono<ApiResponse<RoomQrResponse>> refreshQr(
             @Parameter(description = "房间ID", required = true, example = "1")
             @PathVariable Long roomId, 
             @Parameter(description = "小程序页面路径", example = "pages/room/room")
             @RequestParam(required = false) String page) {
         Integer newVersion = roomService.refreshQrVersion(roomId);
-        return ApiResponse.ok(qrCodeService.generateRoomQrWithVersion(roomId, newVersion, page));
+        return qrCodeService.generateRoomQrWithVersion(roomId, newVersion, page).map(ApiResponse::ok);
     }
 
     /**
@@ -139,11 +230,16 @@ public class RoomController {
     @Operation(summary = "重置房间", 
                description = "清空房间成员（保留房主）和播放列表，重新生成二维码")
 
-    @Transactional
-    public ApiResponse<RoomResetResponse> resetRoom(
+    public Mono<ApiResponse<RoomResetResponse>> resetRoom(
             @Parameter(description = "房间ID", required = true, example = "1")
             @PathVariable Long roomId) {
-        return ApiResponse.ok(roomService.resetRoom(roomId));
+        // 重置事务提交后再生成新版本二维码，等待微信期间不占用数据库连接
+        RoomResetResponse response = roomService.resetRoom(roomId);
+        return qrCodeService.generateRoomQrWithVersion(roomId, response.getRoom().getQrVersion(), null)
+                .map(newQr -> {
+                    response.setNewQr(newQr);
+                    return ApiResponse.ok(response);
+                });
     }
 
 
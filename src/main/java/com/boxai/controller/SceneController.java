@@ -1,9 +1,8 @@
 package com.boxai.controller;
 
-import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.boxai.common.web.ApiResponse;
 import com.boxai.domain.entity.Scene;
-import com.boxai.service.SceneService;
+import com.boxai.service.RoomStateService;
 import com.boxai.domain.dto.request.SceneSaveRequest;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -22,7 +21,7 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 @Tag(name = "场景管理", description = "KTV房间场景设置相关API")
 public class SceneController {
-    private final SceneService sceneService;
+    private final RoomStateService roomStateService;
 
     /**
      * 保存房间场景设置
@@ -37,19 +36,8 @@ public class SceneController {
     public ApiResponse<Scene> save(
             @Parameter(description = "场景保存请求参数", required = true)
             @RequestBody SceneSaveRequest req) {
-        Scene s = sceneService.getOne(Wrappers.<Scene>lambdaQuery().eq(Scene::getRoomId, req.getRoomId()));
-        if (s == null) {
-            s = new Scene();
-            s.setRoomId(req.getRoomId());
-            s.setType(req.getType());
-            s.setStateJson(req.getStateJson());
-            sceneService.save(s);
-        } else {
-            s.setType(req.getType());
-            s.setStateJson(req.getStateJson());
-            sceneService.updateById(s);
-        }
-        return ApiResponse.ok(s);
+        // 先写入房间实时状态，数据库异步写回
+        return ApiResponse.ok(roomStateService.saveScene(req));
     }
 
     /**
@@ -59,8 +47,7 @@ public class SceneController {
      */
     @GetMapping("/{roomId}")
     public ApiResponse<Scene> get(@PathVariable Long roomId) {
-        Scene s = sceneService.getOne(Wrappers.<Scene>lambdaQuery().eq(Scene::getRoomId, roomId));
-        return ApiResponse.ok(s);
+        return ApiResponse.ok(roomStateService.getScene(roomId));
     }
 
 
@@ -7,9 +7,11 @@ import com.boxai.domain.entity.SearchLog;
 import com.boxai.domain.entity.Track;
 import com.boxai.service.SearchLogService;
 import com.boxai.service.TrackService;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -37,9 +39,9 @@ public class SearchController {
      * @return 匹配的曲目列表
      */
     @GetMapping
-    public ApiResponse<List<Track>> search(@RequestParam String keyword) {
+    public ApiResponse<List<Track>> search(@RequestParam String keyword,
+            @Parameter(hidden = true) @RequestAttribute(value = JwtAuthFilter.CURRENT_USER, required = false) Long uid) {
         // 写入搜索日志
-        Long uid = JwtAuthFilter.CURRENT_USER.get();
         SearchLog log = new SearchLog();
         log.setUserId(uid);
         log.setKeyword(keyword);
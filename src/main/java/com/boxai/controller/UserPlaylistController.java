@@ -45,9 +45,10 @@ public class UserPlaylistController {
 
     public ApiResponse<UserPlaylist> create(
             @Parameter(description = "创建播放列表请求参数", required = true)
-            @RequestBody PlaylistCreateRequest req) {
+            @RequestBody PlaylistCreateRequest req,
+            @Parameter(hidden = true) @RequestAttribute(value = JwtAuthFilter.CURRENT_USER, required = false) Long uid) {
         UserPlaylist p = new UserPlaylist();
-        p.setUserId(JwtAuthFilter.CURRENT_USER.get());
+        p.setUserId(uid);
         p.setName(req.getName());
         playlistService.save(p);
         return ApiResponse.ok(p);
@@ -58,8 +59,8 @@ public class UserPlaylistController {
      * @return 用户播放列表列表
      */
     @GetMapping
-    public ApiResponse<List<UserPlaylist>> myPlaylists() {
-        Long uid = JwtAuthFilter.CURRENT_USER.get();
+    public ApiResponse<List<UserPlaylist>> myPlaylists(
+            @Parameter(hidden = true) @RequestAttribute(value = JwtAuthFilter.CURRENT_USER, required = false) Long uid) {
         return ApiResponse.ok(playlistService.list(Wrappers.<UserPlaylist>lambdaQuery().eq(UserPlaylist::getUserId, uid)));
     }
 
@@ -11,6 +11,7 @@ import io.swagger.v3.oas.annotations.media.Schema;
 
 
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.validation.annotation.Validated;
@@ -37,8 +38,8 @@ public class UserProfileController {
     @GetMapping("/analysis")
     @Operation(summary = "获取当前用户画像分析", 
                description = "获取当前登录用户的详细画像分析，包括音乐偏好、使用习惯等")
-    public ApiResponse<UserProfileAnalysisDTO> getUserProfileAnalysis() {
-        Long userId = JwtAuthFilter.CURRENT_USER.get();
+    public ApiResponse<UserProfileAnalysisDTO> getUserProfileAnalysis(HttpServletRequest request) {
+        Long userId = (Long) request.getAttribute(JwtAuthFilter.CURRENT_USER);
         return ApiResponse.ok(userProfileService.getUserProfileAnalysis(userId));
     }
     
@@ -65,8 +66,8 @@ public class UserProfileController {
     @Operation(summary = "手动更新用户画像", 
                description = "重新分析用户行为数据，更新用户画像信息")
 
-    public ApiResponse<String> refreshUserProfile() {
-        Long userId = JwtAuthFilter.CURRENT_USER.get();
+    public ApiResponse<String> refreshUserProfile(
+            @Parameter(hidden = true) @RequestAttribute(value = JwtAuthFilter.CURRENT_USER, required = false) Long userId) {
         userProfileService.updateUserProfile(userId);
         return ApiResponse.ok("用户画像已更新");
     }
@@ -82,8 +83,8 @@ public class UserProfileController {
                description = "手动记录用户的播放、点赞、搜索等行为，用于画像分析")
     public ApiResponse<String> recordBehavior(
             @Parameter(description = "行为记录请求参数", required = true)
-            @RequestBody @Validated BehaviorRecordRequest request) {
-        Long userId = JwtAuthFilter.CURRENT_USER.get();
+            @RequestBody @Validated BehaviorRecordRequest request,
+            @Parameter(hidden = true) @RequestAttribute(value = JwtAuthFilter.CURRENT_USER, required = false) Long userId) {
         userProfileService.recordUserBehavior(
             userId,
             request.getBehaviorType(),
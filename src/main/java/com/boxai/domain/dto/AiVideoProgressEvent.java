@@ -0,0 +1,68 @@
+package com.boxai.domain.dto;
+
+import com.boxai.domain.entity.AiVideoSession;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * AI视频生成进度事件DTO
+ * 会话状态或进度变化时通过进度事件总线广播到所有节点
+ */
+@Data
+@Schema(description = "AI视频生成进度事件")
+public class AiVideoProgressEvent {
+    
+    @Schema(description = "流ID", example = "ai_stream_123456")
+    private String streamId;
+    
+    @Schema(description = "包间ID", example = "1")
+    private Long roomId;
+    
+    @Schema(description = "状态", example = "GENERATING")
+    private String status;
+    
+    @Schema(description = "进度百分比", example = "45")
+    private Integer progress;
+    
+    @Schema(description = "错误信息")
+    private String errorMessage;
+    
+    @Schema(description = "RTMP推流地址")
+    private String streamUrl;
+    
+    @Schema(description = "HLS播放地址")
+    private String hlsUrl;
+    
+    @Schema(description = "WebRTC播放地址")
+    private String webrtcUrl;
+    
+    @Schema(description = "开始时间")
+    private LocalDateTime startTime;
+    
+    @Schema(description = "事件时间（毫秒时间戳）", example = "1718000000000")
+    private long timestamp;
+    
+    public static AiVideoProgressEvent of(AiVideoSession session) {
+        AiVideoProgressEvent event = new AiVideoProgressEvent();
+        event.setStreamId(session.getStreamId());
+        event.setRoomId(session.getRoomId());
+        event.setStatus(session.getStatus());
+        event.setProgress(session.getProgress());
+        event.setErrorMessage(session.getErrorMessage());
+        event.setStreamUrl(session.getStreamUrl());
+        event.setHlsUrl(session.getHlsUrl());
+        event.setWebrtcUrl(session.getWebrtcUrl());
+        event.setStartTime(session.getStartTime());
+        event.setTimestamp(System.currentTimeMillis());
+        return event;
+    }
+    
+    /**
+     * 是否为终止状态（之后不会再有进度事件）
+     */
+    public boolean isTerminal() {
+        return "COMPLETED".equals(status) || "FAILED".equals(status) || "STOPPED".equals(status);
+    }
+}
@@ -31,6 +31,9 @@ public class AiVideoStreamResponse {
     @Schema(description = "生成进度", example = "65")
     private Integer progress;
     
+    @Schema(description = "排队位置（从1开始，未排队时为空）", example = "3")
+    private Integer queuePosition;
+    
     @Schema(description = "预计剩余时间（秒）", example = "30")
     private Integer estimatedTimeRemaining;
     
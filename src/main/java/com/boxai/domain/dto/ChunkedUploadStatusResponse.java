@@ -0,0 +1,40 @@
+package com.boxai.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 分片上传状态响应DTO
+ * 客户端断线重连后可据此只补传缺失的分片
+ */
+@Data
+@Schema(description = "分片上传状态")
+public class ChunkedUploadStatusResponse {
+    
+    @Schema(description = "上传任务ID", example = "chunked_6f1c2a9e")
+    private String uploadId;
+    
+    @Schema(description = "歌曲ID", example = "1001")
+    private Long trackId;
+    
+    @Schema(description = "文件总大小（字节）", example = "4294967296")
+    private Long fileSize;
+    
+    @Schema(description = "分片大小（字节），最后一个分片可能更小", example = "8388608")
+    private Integer chunkSize;
+    
+    @Schema(description = "分片总数", example = "512")
+    private Integer totalChunks;
+    
+    @Schema(description = "已接收的分片序号（从0开始）", example = "[0, 1, 2]")
+    private List<Integer> uploadedChunks;
+    
+    @Schema(description = "上传状态（DEDUPLICATED表示存储中已有相同内容，无需上传分片）", example = "UPLOADING",
+            allowableValues = {"UPLOADING", "COMPLETED", "DEDUPLICATED"})
+    private String status;
+    
+    @Schema(description = "CDN文件URL（仅DEDUPLICATED时返回）", example = "https://cdn.boxai.com/media/blobs/d4/d41d8cd98f00b204e9800998ecf8427e.mp4")
+    private String cdnUrl;
+}
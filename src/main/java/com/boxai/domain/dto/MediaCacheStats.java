@@ -0,0 +1,30 @@
+package com.boxai.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * 本地媒体缓存统计DTO
+ */
+@Data
+@Schema(description = "本地媒体缓存统计")
+public class MediaCacheStats {
+    
+    @Schema(description = "缓存配额（字节）", example = "536870912000")
+    private long quotaBytes;
+    
+    @Schema(description = "已使用（字节），多首歌曲共享的文件只计一次", example = "429496729600")
+    private long usedBytes;
+    
+    @Schema(description = "已缓存歌曲数", example = "3200")
+    private int trackCount;
+    
+    @Schema(description = "被播放队列固定、不可淘汰的歌曲数", example = "12")
+    private int pinnedCount;
+    
+    @Schema(description = "启动以来淘汰的歌曲数", example = "150")
+    private long evictedCount;
+    
+    @Schema(description = "启动以来因空间不足被拒绝缓存的次数", example = "20")
+    private long rejectedCount;
+}
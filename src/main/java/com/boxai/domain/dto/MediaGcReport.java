@@ -0,0 +1,56 @@
+package com.boxai.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本地媒体文件垃圾回收报告DTO
+ * 每次回收（含演练模式）生成一份，记录扫描、删除与跳过的文件统计
+ */
+@Data
+@Schema(description = "本地媒体文件垃圾回收报告")
+public class MediaGcReport {
+    
+    @Schema(description = "是否为演练模式（只统计不删除）", example = "false")
+    private boolean dryRun;
+    
+    @Schema(description = "开始时间")
+    private LocalDateTime startedAt;
+    
+    @Schema(description = "结束时间")
+    private LocalDateTime completedAt;
+    
+    @Schema(description = "数据库中被引用的本地文件数", example = "1200")
+    private int referencedCount;
+    
+    @Schema(description = "扫描的文件数", example = "1250")
+    private int scannedCount;
+    
+    @Schema(description = "孤儿文件数（未被任何歌曲引用）", example = "50")
+    private int orphanCount;
+    
+    @Schema(description = "已删除文件数（演练模式下为0）", example = "48")
+    private int deletedCount;
+    
+    @Schema(description = "释放（或演练模式下可释放）的空间（字节）", example = "10737418240")
+    private long reclaimedBytes;
+    
+    @Schema(description = "因修改时间过近而跳过的文件数（可能正在下载）", example = "2")
+    private int skippedRecentCount;
+    
+    @Schema(description = "删除失败的文件数", example = "0")
+    private int failedCount;
+    
+    @Schema(description = "因达到单次删除上限而留待下次回收的孤儿文件数", example = "0")
+    private int deferredCount;
+    
+    @Schema(description = "孤儿文件路径样例（最多100条）")
+    private List<String> orphanSamples = new ArrayList<>();
+    
+    @Schema(description = "耗时（毫秒）", example = "3520")
+    private long durationMs;
+}
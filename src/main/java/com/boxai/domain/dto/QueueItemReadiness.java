@@ -0,0 +1,29 @@
+package com.boxai.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * 播放队列项本地就绪状态DTO
+ * 供点歌界面显示"下载中"等状态
+ */
+@Data
+@Schema(description = "播放队列项本地就绪状态")
+public class QueueItemReadiness {
+    
+    @Schema(description = "播放列表项ID", example = "1")
+    private Long playlistId;
+    
+    @Schema(description = "曲目ID", example = "1001")
+    private Long trackId;
+    
+    @Schema(description = "在播放队列中的位置", example = "3")
+    private Integer position;
+    
+    @Schema(description = "播放状态", example = "QUEUED", allowableValues = {"QUEUED", "PLAYING"})
+    private String status;
+    
+    @Schema(description = "本地就绪状态：READY已在本地，DOWNLOADING下载中，PENDING等待下载，FAILED下载失败，NOT_LOCAL尚未安排下载",
+            example = "DOWNLOADING", allowableValues = {"READY", "DOWNLOADING", "PENDING", "FAILED", "NOT_LOCAL"})
+    private String readiness;
+}
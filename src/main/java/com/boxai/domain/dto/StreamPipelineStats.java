@@ -0,0 +1,63 @@
+package com.boxai.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 推流管线状态与指标DTO
+ */
+@Data
+@Schema(description = "推流管线状态与指标")
+public class StreamPipelineStats {
+    
+    @Schema(description = "视频流ID", example = "ai_stream_12345")
+    private String streamId;
+    
+    @Schema(description = "管线状态", example = "RUNNING",
+            allowableValues = {"STARTING", "RUNNING", "RESTARTING", "STOPPING", "COMPLETED", "FAILED", "STOPPED"})
+    private String state;
+    
+    @Schema(description = "输入视频地址")
+    private String input;
+    
+    @Schema(description = "推流目标（RTMP地址或本地文件）")
+    private String output;
+    
+    @Schema(description = "FFmpeg进程ID", example = "12345")
+    private Long pid;
+    
+    @Schema(description = "已重启次数", example = "0")
+    private int restarts;
+    
+    @Schema(description = "已输出帧数", example = "900")
+    private long frames;
+    
+    @Schema(description = "当前帧率", example = "30.0")
+    private double fps;
+    
+    @Schema(description = "当前输出码率（kbps）", example = "3600.5")
+    private double bitrateKbps;
+    
+    @Schema(description = "丢帧数", example = "0")
+    private long droppedFrames;
+    
+    @Schema(description = "重复帧数", example = "0")
+    private long duplicatedFrames;
+    
+    @Schema(description = "已输出时长（毫秒）", example = "30000")
+    private long outTimeMs;
+    
+    @Schema(description = "处理速度（相对实时的倍数）", example = "1.0")
+    private double speed;
+    
+    @Schema(description = "最近一条错误输出")
+    private String lastError;
+    
+    @Schema(description = "本次进程启动时间")
+    private LocalDateTime startedAt;
+    
+    @Schema(description = "指标更新时间")
+    private LocalDateTime updatedAt;
+}
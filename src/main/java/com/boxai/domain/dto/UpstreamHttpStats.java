@@ -0,0 +1,57 @@
+package com.boxai.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * 外部服务HTTP客户端统计DTO
+ */
+@Data
+@Schema(description = "外部服务HTTP客户端统计")
+public class UpstreamHttpStats {
+
+    @Schema(description = "上游名称", example = "wechat", allowableValues = {"wechat", "runway", "stability", "default"})
+    private String name;
+
+    @Schema(description = "熔断器状态", example = "CLOSED", allowableValues = {"CLOSED", "OPEN", "HALF_OPEN"})
+    private String circuitState;
+
+    @Schema(description = "熔断器统计窗口内的失败率（%）", example = "5.0")
+    private double failureRate;
+
+    @Schema(description = "正在进行的请求数", example = "3")
+    private int activeCalls;
+
+    @Schema(description = "并发上限（隔离舱大小）", example = "20")
+    private int maxConcurrentCalls;
+
+    @Schema(description = "启动以来的请求总数", example = "1024")
+    private long totalCalls;
+
+    @Schema(description = "启动以来失败的请求数", example = "12")
+    private long failedCalls;
+
+    @Schema(description = "因并发已满被拒绝的请求数", example = "0")
+    private long rejectedCalls;
+
+    @Schema(description = "因熔断被拒绝的请求数", example = "0")
+    private long shortCircuitedCalls;
+
+    @Schema(description = "平均耗时（毫秒）", example = "85.3")
+    private double avgLatencyMs;
+
+    @Schema(description = "最大耗时（毫秒）", example = "1200")
+    private long maxLatencyMs;
+
+    @Schema(description = "连接池已借出连接数", example = "3")
+    private int poolAcquired;
+
+    @Schema(description = "连接池空闲连接数", example = "5")
+    private int poolIdle;
+
+    @Schema(description = "等待获取连接的请求数", example = "0")
+    private int poolPending;
+
+    @Schema(description = "连接池最大连接数", example = "50")
+    private int poolMaxConnections;
+}
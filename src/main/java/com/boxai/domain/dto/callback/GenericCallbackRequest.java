@@ -0,0 +1,29 @@
+package com.boxai.domain.dto.callback;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * 通用AI服务回调请求
+ */
+@Data
+@Schema(description = "通用AI服务回调请求")
+public class GenericCallbackRequest {
+    
+    @Schema(description = "AI服务提供商", example = "runway")
+    private String provider = "unknown";
+    
+    @Schema(description = "任务状态", example = "generating")
+    private String status;
+    
+    @Schema(description = "生成进度", example = "65")
+    private Integer progress;
+    
+    @Schema(description = "状态信息")
+    private String message;
+    
+    @JsonProperty("video_url")
+    @Schema(description = "生成的视频地址")
+    private String videoUrl;
+}
@@ -0,0 +1,21 @@
+package com.boxai.domain.dto.callback;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * Stability AI回调请求
+ */
+@Data
+@Schema(description = "Stability AI回调请求")
+public class StabilityCallbackRequest {
+    
+    @Schema(description = "任务状态", example = "complete-success")
+    private String status;
+    
+    @Schema(description = "生成的视频地址")
+    private String video;
+    
+    @Schema(description = "错误信息")
+    private String error;
+}
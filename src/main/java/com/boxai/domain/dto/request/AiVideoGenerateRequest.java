@@ -45,9 +45,24 @@ public class AiVideoGenerateRequest {
     @Schema(description = "当前播放的歌曲ID（用于音频同步）", example = "12345")
     private Long currentTrackId;
     
-    @Schema(description = "生成优先级", example = "HIGH", allowableValues = {"LOW", "NORMAL", "HIGH"})
+    @Schema(description = "生成优先级（HIGH仅授予优先包间，客户端指定时按NORMAL处理）", example = "NORMAL", allowableValues = {"LOW", "NORMAL"})
     private String priority = "NORMAL";
     
     @Schema(description = "是否实时生成", example = "true")
     private Boolean realtime = true;
+    
+    /**
+     * 音乐可视化预设请求，参数固定以便相同歌曲和风格的请求命中生成结果缓存
+     */
+    public static AiVideoGenerateRequest musicVisualization(Long roomId, Long trackId, String style) {
+        AiVideoGenerateRequest request = new AiVideoGenerateRequest();
+        request.setRoomId(roomId);
+        request.setVideoType("MUSIC_VISUALIZATION");
+        request.setStyle(style);
+        request.setCurrentTrackId(trackId);
+        request.setAudioSync(true);
+        request.setDuration(180); // 3分钟
+        request.setPrompt("根据音乐节拍生成动态视觉效果，" + style.toLowerCase() + "风格");
+        return request;
+    }
 }
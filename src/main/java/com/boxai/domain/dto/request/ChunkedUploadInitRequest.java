@@ -0,0 +1,45 @@
+package com.boxai.domain.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+/**
+ * 分片上传初始化请求DTO
+ */
+@Data
+@Schema(description = "分片上传初始化请求")
+public class ChunkedUploadInitRequest {
+    
+    @NotNull(message = "歌曲ID不能为空")
+    @Schema(description = "歌曲ID", example = "1001", required = true)
+    private Long trackId;
+    
+    @NotBlank(message = "文件类型不能为空")
+    @Schema(description = "文件类型", example = "VIDEO", allowableValues = {"VIDEO", "AUDIO", "COVER", "LYRICS"}, required = true)
+    private String fileType;
+    
+    @NotBlank(message = "文件名不能为空")
+    @Schema(description = "原始文件名", example = "告白气球_4K.mp4", required = true)
+    private String originalFileName;
+    
+    @NotNull(message = "文件大小不能为空")
+    @Positive(message = "文件大小必须大于0")
+    @Schema(description = "文件总大小（字节）", example = "4294967296", required = true)
+    private Long fileSize;
+    
+    @Schema(description = "整个文件的MD5校验码（可选，提供时合并后校验）", example = "d41d8cd98f00b204e9800998ecf8427e")
+    private String fileMd5;
+    
+    @Schema(description = "期望的分片大小（字节），为空时使用服务端默认值", example = "8388608")
+    private Integer chunkSize;
+    
+    @Schema(description = "文件质量标识", example = "4K")
+    private String quality;
+    
+    @Schema(description = "上传备注", example = "4K高清版本")
+    private String remark;
+}
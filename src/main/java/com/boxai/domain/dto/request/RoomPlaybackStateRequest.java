@@ -0,0 +1,35 @@
+package com.boxai.domain.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * 设备端上报播放状态请求参数
+ */
+@Data
+@Schema(description = "设备端上报播放状态请求")
+public class RoomPlaybackStateRequest {
+    /**
+     * 当前曲目ID
+     */
+    @Schema(description = "当前曲目ID", example = "1001")
+    private Long trackId;
+    
+    /**
+     * 当前播放列表项ID
+     */
+    @Schema(description = "当前播放列表项ID", example = "1")
+    private Long playlistId;
+    
+    /**
+     * 播放状态
+     */
+    @Schema(description = "播放状态", example = "PLAYING", allowableValues = {"PLAYING", "PAUSED", "STOPPED"}, required = true)
+    private String playState;
+    
+    /**
+     * 当前曲目已播放时长（毫秒）
+     */
+    @Schema(description = "当前曲目已播放时长（毫秒）", example = "83000")
+    private Long positionMs;
+}
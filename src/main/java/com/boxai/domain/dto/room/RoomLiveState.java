@@ -0,0 +1,45 @@
+package com.boxai.domain.dto.room;
+
+import com.boxai.domain.entity.Lighting;
+import com.boxai.domain.entity.RoomMember;
+import com.boxai.domain.entity.Scene;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 房间实时状态DTO
+ * 当前播放、成员、灯光和场景的快照，由Redis一次读取
+ */
+@Data
+@Schema(description = "房间实时状态")
+public class RoomLiveState {
+    
+    @Schema(description = "房间ID", example = "1")
+    private Long roomId;
+    
+    @Schema(description = "当前曲目ID", example = "1001")
+    private Long currentTrackId;
+    
+    @Schema(description = "当前播放列表项ID", example = "1")
+    private Long currentPlaylistId;
+    
+    @Schema(description = "播放状态", example = "PLAYING", allowableValues = {"PLAYING", "PAUSED", "STOPPED"})
+    private String playState;
+    
+    @Schema(description = "当前曲目已播放时长（毫秒），播放中时按上报时间推算", example = "83000")
+    private Long elapsedMs;
+    
+    @Schema(description = "播放状态最后更新时间（毫秒时间戳）", example = "1718000000000")
+    private Long playbackUpdatedAt;
+    
+    @Schema(description = "房间成员")
+    private List<RoomMember> members;
+    
+    @Schema(description = "灯光设置")
+    private Lighting lighting;
+    
+    @Schema(description = "场景设置")
+    private Scene scene;
+}
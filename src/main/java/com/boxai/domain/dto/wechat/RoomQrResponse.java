@@ -9,7 +9,6 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class RoomQrResponse {
     private Long roomId;
-    private String qrBase64; // data:image/png;base64,...
+    private Integer version;
+    private String qrUrl; // PNG图片地址，按版本区分，可长期缓存
 }
-
-
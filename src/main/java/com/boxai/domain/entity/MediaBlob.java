@@ -0,0 +1,41 @@
+package com.boxai.domain.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 内容寻址媒体文件实体
+ * 以文件内容MD5作为唯一键，相同内容的文件在存储中只保留一份
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@TableName("t_media_blob")
+@Schema(description = "内容寻址媒体文件")
+public class MediaBlob extends BaseEntity {
+    
+    @TableId(type = IdType.ASSIGN_ID)
+    @Schema(description = "主键ID")
+    private Long id;
+    
+    @Schema(description = "文件内容MD5（唯一）", example = "d41d8cd98f00b204e9800998ecf8427e")
+    private String contentHash;
+    
+    @Schema(description = "文件大小（字节）", example = "52428800")
+    private Long fileSize;
+    
+    @Schema(description = "文件扩展名（含点号）", example = ".mp4")
+    private String extension;
+    
+    @Schema(description = "存储路径", example = "/opt/boxai/uploads/blobs/d4/d41d8cd98f00b204e9800998ecf8427e.mp4")
+    private String storagePath;
+    
+    @Schema(description = "CDN访问地址", example = "https://cdn.boxai.com/media/blobs/d4/d41d8cd98f00b204e9800998ecf8427e.mp4")
+    private String cdnUrl;
+    
+    @Schema(description = "引用计数（引用该文件的歌曲媒体数）", example = "2")
+    private Integer refCount;
+}
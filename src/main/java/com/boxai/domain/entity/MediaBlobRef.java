@@ -0,0 +1,32 @@
+package com.boxai.domain.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 歌曲媒体文件引用实体
+ * 每首歌曲的每种媒体类型最多引用一个内容寻址文件
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@TableName("t_media_blob_ref")
+@Schema(description = "歌曲媒体文件引用")
+public class MediaBlobRef extends BaseEntity {
+    
+    @TableId(type = IdType.ASSIGN_ID)
+    @Schema(description = "主键ID")
+    private Long id;
+    
+    @Schema(description = "歌曲ID", example = "1001")
+    private Long trackId;
+    
+    @Schema(description = "媒体类型：VIDEO/AUDIO/COVER/LYRICS", example = "VIDEO")
+    private String mediaType;
+    
+    @Schema(description = "引用的文件内容MD5", example = "d41d8cd98f00b204e9800998ecf8427e")
+    private String contentHash;
+}
@@ -0,0 +1,32 @@
+package com.boxai.domain.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.boxai.domain.entity.MediaBlob;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * 内容寻址媒体文件Mapper接口
+ */
+@Mapper
+public interface MediaBlobMapper extends BaseMapper<MediaBlob> {
+    
+    /**
+     * 原子调整引用计数（不低于0）
+     */
+    @Update("UPDATE t_media_blob SET ref_count = GREATEST(ref_count + #{delta}, 0), updated_at = now() " +
+            "WHERE content_hash = #{contentHash}")
+    int adjustRefCount(@Param("contentHash") String contentHash, @Param("delta") int delta);
+    
+    /**
+     * 插入记录，内容哈希已存在时不插入（不抛唯一键异常，不会使所在事务失效）
+     * 
+     * @return 插入的行数，0表示已存在
+     */
+    @Insert("INSERT INTO t_media_blob (id, content_hash, file_size, extension, storage_path, cdn_url, ref_count, " +
+            "created_at, updated_at) VALUES (#{id}, #{contentHash}, #{fileSize}, #{extension}, #{storagePath}, " +
+            "#{cdnUrl}, #{refCount}, now(), now()) ON CONFLICT (content_hash) DO NOTHING")
+    int insertIfAbsent(MediaBlob blob);
+}
@@ -0,0 +1,12 @@
+package com.boxai.domain.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.boxai.domain.entity.MediaBlobRef;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 歌曲媒体文件引用Mapper接口
+ */
+@Mapper
+public interface MediaBlobRefMapper extends BaseMapper<MediaBlobRef> {
+}
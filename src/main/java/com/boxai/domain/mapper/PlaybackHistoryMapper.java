@@ -3,9 +3,22 @@ package com.boxai.domain.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.boxai.domain.entity.PlaybackHistory;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface PlaybackHistoryMapper extends BaseMapper<PlaybackHistory> {
+    
+    /**
+     * 统计指定时间之后各歌曲的本地播放次数
+     */
+    @Select("SELECT track_id, COUNT(*) AS play_count " +
+            "FROM t_playback_history " +
+            "WHERE started_at >= #{since} AND track_id IS NOT NULL " +
+            "GROUP BY track_id")
+    List<Map<String, Object>> countPlaysByTrackSince(@Param("since") OffsetDateTime since);
 }
-
-
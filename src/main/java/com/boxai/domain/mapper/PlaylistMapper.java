@@ -3,9 +3,28 @@ package com.boxai.domain.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.boxai.domain.entity.Playlist;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 @Mapper
 public interface PlaylistMapper extends BaseMapper<Playlist> {
+    
+    /**
+     * 查询房间队列的最大位置（用于恢复Redis位置序列）
+     */
+    @Select("SELECT MAX(position) FROM t_playlist WHERE room_id = #{roomId}")
+    Integer selectMaxPosition(@Param("roomId") Long roomId);
+    
+    /**
+     * 查询房间队列的最小位置（用于恢复Redis置顶序列）
+     */
+    @Select("SELECT MIN(position) FROM t_playlist WHERE room_id = #{roomId}")
+    Integer selectMinPosition(@Param("roomId") Long roomId);
+    
+    /**
+     * 只更新单个队列项的位置
+     */
+    @Update("UPDATE t_playlist SET position = #{position}, updated_at = now() WHERE id = #{id} AND room_id = #{roomId}")
+    int updatePosition(@Param("roomId") Long roomId, @Param("id") Long id, @Param("position") Integer position);
 }
-
-
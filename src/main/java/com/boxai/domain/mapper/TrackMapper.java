@@ -3,9 +3,15 @@ package com.boxai.domain.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.boxai.domain.entity.Track;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
 
 @Mapper
 public interface TrackMapper extends BaseMapper<Track> {
+    
+    /**
+     * 清除歌曲的本地文件信息（本地缓存淘汰后调用）
+     */
+    @Update("UPDATE t_track SET local_file_path = NULL, last_sync_at = NULL WHERE id = #{trackId}")
+    int clearLocalFile(@Param("trackId") Long trackId);
 }
-
-
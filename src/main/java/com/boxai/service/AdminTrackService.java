@@ -9,6 +9,7 @@ import com.boxai.domain.dto.request.TrackUpdateRequest;
 import com.boxai.domain.entity.Track;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 
@@ -51,6 +52,25 @@ public interface AdminTrackService {
      */
     MediaUploadResponse uploadMediaFile(MultipartFile file, MediaUploadRequest request);
     
+    /**
+     * 将已在服务器本地落盘的媒体文件（如分片上传合并后的文件）关联到歌曲
+     * 文件按内容MD5存入内容寻址存储，原路径在成功后不再存在
+     * 
+     * @param uploadId 上传任务ID
+     * @param file 本地文件路径；为null时表示内容已存在于存储中（秒传），按fileMd5直接引用
+     * @param request 上传请求信息（fileMd5需为整个文件的MD5）
+     * @return 上传结果
+     */
+    MediaUploadResponse attachUploadedFile(String uploadId, Path file, MediaUploadRequest request);
+    
+    /**
+     * 校验文件扩展名与媒体类型是否匹配，不匹配时抛出异常
+     * 
+     * @param originalFileName 原始文件名
+     * @param fileType 文件类型（VIDEO/AUDIO/COVER/LYRICS）
+     */
+    void validateMediaExtension(String originalFileName, String fileType);
+    
     /**
      * 批量更新同步版本号
      * 
@@ -0,0 +1,49 @@
+package com.boxai.service;
+
+/**
+ * AI服务回调接入服务
+ * 回调在接收线程中只做去重和入队，随即返回；同一个流的回调按到达顺序串行处理，
+ * 不同流之间并行。服务商重试产生的重复回调（相同的流、状态和进度）在短时间窗口内直接丢弃，
+ * 乱序到达的旧进度由会话注册表的状态机忽略；积压已满时拒绝回调，由服务商重试
+ */
+public interface AiCallbackIngestionService {
+    
+    /**
+     * 接收一条回调
+     * 
+     * @param callback 回调内容
+     * @return 接收结果
+     */
+    IngestResult ingest(AiCallback callback);
+    
+    /**
+     * 回调接收结果
+     */
+    enum IngestResult {
+        /** 已入队 */
+        ACCEPTED,
+        /** 重复回调，已丢弃 */
+        DUPLICATE,
+        /** 积压已满，未入队，需服务商重试 */
+        REJECTED
+    }
+    
+    /**
+     * 规范化后的回调内容
+     * 
+     * @param streamId 视频流ID
+     * @param provider AI服务提供商
+     * @param status 服务商原始状态
+     * @param progress 生成进度
+     * @param message 状态或错误信息
+     * @param videoUrl 生成的视频地址
+     */
+    record AiCallback(
+            String streamId,
+            String provider,
+            String status,
+            Integer progress,
+            String message,
+            String videoUrl
+    ) {}
+}
@@ -0,0 +1,56 @@
+package com.boxai.service;
+
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * AI视频生成任务调度器
+ * 限制同时提交给AI服务商的任务数，超出部分进入有界优先队列；
+ * 同优先级下优先调度当前运行任务较少的包间，避免单个包间占满配额
+ */
+public interface AiVideoJobScheduler {
+    
+    /** 低优先级 */
+    int PRIORITY_LOW = -10;
+    
+    /** 普通优先级 */
+    int PRIORITY_NORMAL = 0;
+    
+    /** 高优先级（付费包间、服务重启后恢复的任务），只由服务端授予，客户端请求不能达到 */
+    int PRIORITY_HIGH = 10;
+    
+    /**
+     * 提交生成任务
+     * 任务在获得执行配额后才会订阅，返回的Mono结束（完成、出错或取消）时释放配额
+     * 
+     * @param streamId 流ID
+     * @param roomId 包间ID
+     * @param priority 优先级，数值越大越先执行
+     * @param job 生成任务
+     */
+    void submit(String streamId, Long roomId, int priority, Supplier<Mono<Void>> job);
+    
+    /**
+     * 取消任务：排队中的直接移出队列，执行中的取消订阅并释放配额
+     * 
+     * @param streamId 流ID
+     * @return 是否找到并取消了任务
+     */
+    boolean cancel(String streamId);
+    
+    /**
+     * 获取任务的排队位置
+     * 
+     * @param streamId 流ID
+     * @return 从1开始的排队位置，未在排队时返回null
+     */
+    Integer getQueuePosition(String streamId);
+    
+    /**
+     * 获取空闲配额数（并发上限减去执行中和排队中的任务）
+     * 
+     * @return 空闲配额数，可能为负
+     */
+    int getIdleSlots();
+}
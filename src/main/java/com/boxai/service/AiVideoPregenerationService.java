@@ -0,0 +1,33 @@
+package com.boxai.service;
+
+/**
+ * AI视频预生成服务
+ * 对开启了音乐可视化的包间，在服务商有空闲配额时提前为队列中即将播放的歌曲（以及全站热门歌曲）
+ * 生成可视化视频并写入生成结果缓存；歌曲开始播放时若已预生成完成则直接推送到桌面端。
+ * 预生成受每小时预算和并发上限约束，歌曲移出队列后对应的预生成任务会被取消
+ */
+public interface AiVideoPregenerationService {
+    
+    /**
+     * 为包间开启预生成（包间请求音乐可视化时调用）
+     * 
+     * @param roomId 包间ID
+     * @param style 可视化风格
+     */
+    void enableRoom(Long roomId, String style);
+    
+    /**
+     * 包间播放队列变化时标记需要重新规划，规划在后台合并执行，调用方不等待
+     * 
+     * @param roomId 包间ID
+     */
+    void onQueueChanged(Long roomId);
+    
+    /**
+     * 包间开始播放歌曲时，若该歌曲的视频已预生成则推送到桌面端
+     * 
+     * @param roomId 包间ID
+     * @param trackId 歌曲ID
+     */
+    void onTrackStarted(Long roomId, Long trackId);
+}
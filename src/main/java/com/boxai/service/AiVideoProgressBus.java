@@ -0,0 +1,39 @@
+package com.boxai.service;
+
+import com.boxai.domain.dto.AiVideoProgressEvent;
+import com.boxai.domain.entity.AiVideoSession;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * AI视频生成进度事件总线
+ * 会话状态变化时发布事件，经Redis发布订阅复制到所有节点；
+ * 同一个流的所有SSE订阅者共享一个多播源，只在状态真正变化时收到事件，不再逐个订阅者轮询数据库
+ */
+public interface AiVideoProgressBus {
+    
+    /**
+     * 发布会话的最新状态
+     * 
+     * @param session AI视频会话
+     */
+    void publish(AiVideoSession session);
+    
+    /**
+     * 订阅指定流的进度事件
+     * 首个事件为当前状态，会话进入终止状态后流结束；会话不存在时返回空流
+     * 
+     * @param streamId 流ID
+     * @return 进度事件流
+     */
+    Flux<AiVideoProgressEvent> progressStream(String streamId);
+    
+    /**
+     * 订阅所有活跃会话的状态快照
+     * 活跃会话集合变化时推送（按固定间隔合并），所有订阅者共享同一个源
+     * 
+     * @return 活跃会话列表流
+     */
+    Flux<List<AiVideoProgressEvent>> activeSessionsStream();
+}
@@ -0,0 +1,71 @@
+package com.boxai.service;
+
+import com.boxai.domain.dto.request.AiVideoGenerateRequest;
+import com.boxai.domain.entity.AiVideoSession;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+
+/**
+ * AI视频生成结果缓存
+ * 以规范化后的生成参数（提示词、风格、分辨率、帧率、时长、歌曲）的哈希为键，
+ * 把服务商生成的视频保存到本地磁盘，按磁盘配额做LRU淘汰；相同参数的后续请求直接复用
+ */
+public interface AiVideoResultCache {
+    
+    /**
+     * 计算生成请求的缓存键
+     * 
+     * @param request 生成请求
+     * @return 缓存键
+     */
+    String cacheKey(AiVideoGenerateRequest request);
+    
+    /**
+     * 计算会话的缓存键（会话保存了创建时的生成参数）
+     * 
+     * @param session AI视频会话
+     * @return 缓存键
+     */
+    String cacheKey(AiVideoSession session);
+    
+    /**
+     * 查找缓存的视频，命中时刷新其LRU位置
+     * 
+     * @param cacheKey 缓存键
+     * @return 缓存的视频，未命中时返回null
+     */
+    CachedVideo lookup(String cacheKey);
+    
+    /**
+     * 下载生成结果并写入缓存，已缓存或正在下载时直接完成
+     * 
+     * @param cacheKey 缓存键
+     * @param videoUrl 服务商返回的视频地址
+     * @return 写入完成信号
+     */
+    Mono<Void> store(String cacheKey, String videoUrl);
+    
+    /**
+     * 获取缓存文件路径（供下载接口使用）
+     * 
+     * @param cacheKey 缓存键
+     * @return 文件路径，不存在时返回null
+     */
+    Path resolve(String cacheKey);
+    
+    /**
+     * 缓存的视频
+     * 
+     * @param cacheKey 缓存键
+     * @param path 本地文件路径
+     * @param url 播放地址
+     * @param size 文件大小（字节）
+     */
+    record CachedVideo(
+            String cacheKey,
+            Path path,
+            String url,
+            long size
+    ) {}
+}
@@ -59,6 +59,16 @@ public interface AiVideoService {
      */
     void updateGenerationProgress(String streamId, Integer progress, String status);
     
+    /**
+     * 更新视频生成进度，失败或停止时附带原因
+     * 
+     * @param streamId 流ID
+     * @param progress 进度百分比，为null时保持原进度
+     * @param status 状态，为null时保持原状态
+     * @param message 状态或错误信息
+     */
+    void updateGenerationProgress(String streamId, Integer progress, String status, String message);
+    
     /**
      * 获取视频生成历史
      * 
@@ -0,0 +1,86 @@
+package com.boxai.service;
+
+import com.boxai.domain.entity.AiVideoSession;
+
+import java.util.List;
+
+/**
+ * AI视频会话注册表
+ * 以streamId为键在内存中维护活跃会话，作为生成过程中会话状态的唯一来源；
+ * 状态按 PENDING → GENERATING → STREAMING → COMPLETED/FAILED/STOPPED 流转，
+ * 状态变化立即落库，同一状态内的进度更新只在内存合并，按固定间隔批量写回
+ */
+public interface AiVideoSessionRegistry {
+    
+    /**
+     * 注册新建的会话（调用方已完成插入），已是终止状态的会话只发布事件不驻留内存
+     * 
+     * @param session AI视频会话
+     */
+    void register(AiVideoSession session);
+    
+    /**
+     * 获取会话，活跃会话直接取内存，其余从数据库读取
+     * 
+     * @param streamId 流ID
+     * @return 会话，不存在时返回null
+     */
+    AiVideoSession get(String streamId);
+    
+    /**
+     * 获取本节点内存中的活跃会话
+     * 
+     * @return 活跃会话列表
+     */
+    List<AiVideoSession> getActiveSessions();
+    
+    /**
+     * 更新会话状态与进度
+     * 非法的状态流转和倒退的进度会被忽略
+     * 
+     * @param streamId 流ID
+     * @param status 新状态，为null时保持原状态
+     * @param progress 进度，为null时保持原进度
+     * @param message 错误或状态信息
+     * @return 更新结果，会话不存在或更新被忽略时返回null
+     */
+    SessionUpdate update(String streamId, String status, Integer progress, String message);
+    
+    /**
+     * 更新会话的播放地址，立即落库
+     * 
+     * @param streamId 流ID
+     * @param streamUrl 流媒体URL
+     * @param hlsUrl HLS播放URL
+     * @param webrtcUrl WebRTC流URL
+     */
+    void updateStreamUrls(String streamId, String streamUrl, String hlsUrl, String webrtcUrl);
+    
+    /**
+     * 更新会话的生成参数信息，立即落库
+     * 
+     * @param streamId 流ID
+     * @param generationInfo 生成参数信息
+     */
+    void updateGenerationInfo(String streamId, String generationInfo);
+    
+    /**
+     * 从数据库接管未结束且属主节点已下线（租约失效）的会话到内存，其他节点仍在跟踪的会话不会被接管
+     * 
+     * @return 本次接管的会话列表
+     */
+    List<AiVideoSession> recover();
+    
+    /**
+     * 会话更新结果
+     * 
+     * @param session 更新后的会话
+     * @param previousStatus 更新前的状态
+     * @param statusChanged 状态是否发生变化
+     */
+    record SessionUpdate(
+            AiVideoSession session,
+            String previousStatus,
+            boolean statusChanged
+    ) {}
+}
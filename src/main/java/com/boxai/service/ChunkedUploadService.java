@@ -0,0 +1,56 @@
+package com.boxai.service;
+
+import com.boxai.domain.dto.ChunkedUploadStatusResponse;
+import com.boxai.domain.dto.MediaUploadResponse;
+import com.boxai.domain.dto.request.ChunkedUploadInitRequest;
+
+import java.io.InputStream;
+
+/**
+ * 大文件分片上传服务接口
+ * 支持断点续传与并行上传分片，分片落盘后按偏移量合并为完整文件
+ */
+public interface ChunkedUploadService {
+    
+    /**
+     * 初始化分片上传任务
+     * 
+     * @param request 初始化请求
+     * @return 上传状态（包含uploadId和分片规划）
+     */
+    ChunkedUploadStatusResponse initUpload(ChunkedUploadInitRequest request);
+    
+    /**
+     * 上传单个分片，同一分片可重复上传（幂等）
+     * 
+     * @param uploadId 上传任务ID
+     * @param index 分片序号（从0开始）
+     * @param checksum 分片MD5校验码
+     * @param data 分片数据流
+     * @return 上传状态
+     */
+    ChunkedUploadStatusResponse uploadChunk(String uploadId, int index, String checksum, InputStream data);
+    
+    /**
+     * 查询上传状态，用于断点续传
+     * 
+     * @param uploadId 上传任务ID
+     * @return 上传状态
+     */
+    ChunkedUploadStatusResponse getUploadStatus(String uploadId);
+    
+    /**
+     * 完成上传：校验分片完整性，合并文件并关联到歌曲
+     * 
+     * @param uploadId 上传任务ID
+     * @return 上传结果
+     */
+    MediaUploadResponse completeUpload(String uploadId);
+    
+    /**
+     * 取消上传并清理已接收的分片
+     * 
+     * @param uploadId 上传任务ID
+     */
+    void abortUpload(String uploadId);
+}
@@ -6,7 +6,8 @@ import com.boxai.domain.dto.device.LightingControlCommand;
 
 /**
  * 设备控制服务
- * 负责将控制指令发布到消息通道（Redis Pub/Sub）供JavaFX桌面端消费
+ * 负责将控制指令追加到房间命令流（Redis Streams）供JavaFX桌面端消费，
+ * 盒子确认后才算送达，断线或重启期间的命令在重连后补发（至少一次）
  */
 public interface DeviceControlService {
     /**
@@ -0,0 +1,88 @@
+package com.boxai.service;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * HLS多码率输出服务
+ * 按源分辨率选取可配置的码率阶梯，FFmpeg为每个视频流输出一组不同码率的HLS变体和一个主播放列表；
+ * 播放列表和切片经服务端缓存后提供给场所内的多块屏幕，同一个流只编码一次
+ */
+public interface HlsStreamService {
+    
+    /**
+     * 是否启用多码率HLS输出
+     * 
+     * @return 是否启用
+     */
+    boolean isEnabled();
+    
+    /**
+     * 获取分辨率对应的码率阶梯，按码率从高到低排列
+     * 
+     * @param resolution 源分辨率，如1920x1080
+     * @return 码率阶梯
+     */
+    List<Rendition> getLadder(String resolution);
+    
+    /**
+     * 获取视频流的HLS输出目录
+     * 
+     * @param streamId 视频流ID
+     * @return 输出目录
+     */
+    Path getOutputDir(String streamId);
+    
+    /**
+     * 获取视频流的主播放列表地址
+     * 
+     * @param streamId 视频流ID
+     * @return 主播放列表URL
+     */
+    String getMasterPlaylistUrl(String streamId);
+    
+    /**
+     * 获取段时长（秒），FFmpeg按此间隔强制关键帧并切片
+     * 
+     * @return 段时长
+     */
+    int getSegmentDuration();
+    
+    /**
+     * 获取播放列表保留的段数
+     * 
+     * @return 段数
+     */
+    int getListSize();
+    
+    /**
+     * 读取播放列表或切片，优先从服务端缓存读取
+     * 
+     * @param streamId 视频流ID
+     * @param relativePath 相对于流输出目录的路径（如 master.m3u8、720p/index.m3u8、720p/seg_00001.ts）
+     * @return 文件内容，不存在时返回null
+     */
+    byte[] read(String streamId, String relativePath);
+    
+    /**
+     * 删除视频流的HLS输出并清除缓存
+     * 
+     * @param streamId 视频流ID
+     */
+    void purge(String streamId);
+    
+    /**
+     * 码率阶梯中的一档
+     * 
+     * @param name 变体名称，如720p
+     * @param width 宽度
+     * @param height 高度
+     * @param bitrateKbps 视频码率（kbps）
+     */
+    record Rendition(
+            String name,
+            int width,
+            int height,
+            int bitrateKbps
+    ) {}
+}
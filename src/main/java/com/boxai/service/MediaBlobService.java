@@ -0,0 +1,59 @@
+package com.boxai.service;
+
+import com.boxai.domain.entity.MediaBlob;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 内容寻址媒体存储服务接口
+ * 以文件内容MD5为键存储媒体文件，并按“歌曲+媒体类型”维护引用计数，
+ * 相同内容的文件无论被多少首歌曲、多少次上传引用，都只存储和同步一份
+ */
+public interface MediaBlobService {
+    
+    /**
+     * 根据内容MD5查找已存储的文件
+     * 
+     * @param contentHash 文件内容MD5
+     * @return 文件信息，不存在时返回null
+     */
+    MediaBlob findByHash(String contentHash);
+    
+    /**
+     * 查找歌曲指定媒体类型引用的文件
+     * 
+     * @param trackId 歌曲ID
+     * @param mediaType 媒体类型（VIDEO/AUDIO/COVER/LYRICS）
+     * @return 文件信息，未引用时返回null
+     */
+    MediaBlob findByTrack(Long trackId, String mediaType);
+    
+    /**
+     * 将本地文件存入内容寻址存储
+     * 内容已存在时直接删除源文件并返回已有记录，否则将源文件移动到存储目录
+     * 
+     * @param contentHash 文件内容MD5
+     * @param extension 文件扩展名（含点号）
+     * @param source 源文件
+     * @return 文件信息
+     */
+    MediaBlob storeBlob(String contentHash, String extension, Path source) throws IOException;
+    
+    /**
+     * 将歌曲的媒体类型绑定到指定文件，并调整新旧文件的引用计数
+     * 
+     * @param trackId 歌曲ID
+     * @param mediaType 媒体类型
+     * @param contentHash 文件内容MD5
+     */
+    void bindReference(Long trackId, String mediaType, String contentHash);
+    
+    /**
+     * 解除歌曲媒体类型的文件引用
+     * 
+     * @param trackId 歌曲ID
+     * @param mediaType 媒体类型
+     */
+    void releaseReference(Long trackId, String mediaType);
+}
@@ -0,0 +1,83 @@
+package com.boxai.service;
+
+import com.boxai.domain.dto.MediaCacheStats;
+import com.boxai.domain.entity.Track;
+
+/**
+ * 本地媒体缓存管理服务接口
+ * 按字节配额管理包间本地媒体文件，空间不足时按热度加权的LFU策略淘汰，
+ * 正在播放队列中的歌曲被固定，不会被淘汰
+ */
+public interface MediaCacheService {
+    
+    /**
+     * 判断歌曲是否值得预取到本地（只读判断，不做淘汰）
+     * 配额内仍有空间，或该歌曲的价值高于当前最低价值的可淘汰歌曲时返回true
+     * 
+     * @param track 歌曲
+     * @return 是否值得预取
+     */
+    boolean shouldPrefetch(Track track);
+    
+    /**
+     * 为即将下载的歌曲预留空间，必要时淘汰价值更低的歌曲
+     * 
+     * @param track 歌曲
+     * @param localPath 下载后的本地路径（内容寻址文件可能已被其他歌曲占用，此时不额外占用空间）
+     * @param expectedSize 预计文件大小（字节），未知时传0
+     * @return 是否预留成功，为false时不应下载
+     */
+    boolean reserve(Track track, String localPath, long expectedSize);
+    
+    /**
+     * 歌曲已缓存到本地，加入索引
+     * 
+     * @param track 已更新localFilePath和fileSize的歌曲
+     */
+    void onCached(Track track);
+    
+    /**
+     * 释放预留但未使用的空间（下载失败时调用）
+     * 
+     * @param trackId 歌曲ID
+     */
+    void release(Long trackId);
+    
+    /**
+     * 歌曲本地文件已被删除，移出索引
+     * 
+     * @param trackId 歌曲ID
+     */
+    void onRemoved(Long trackId);
+    
+    /**
+     * 记录一次本地点播，提高该歌曲的本地播放频次
+     * 
+     * @param trackId 歌曲ID
+     */
+    void recordPlay(Long trackId);
+    
+    /**
+     * 固定歌曲，使其在下一次队列刷新前不会被淘汰
+     * 
+     * @param trackId 歌曲ID
+     */
+    void pin(Long trackId);
+    
+    /**
+     * 根据播放队列刷新固定歌曲集合
+     */
+    void refreshPins();
+    
+    /**
+     * 从数据库和本地文件重建缓存索引
+     */
+    void rebuildIndex();
+    
+    /**
+     * 获取缓存统计
+     * 
+     * @return 缓存统计
+     */
+    MediaCacheStats getStats();
+}
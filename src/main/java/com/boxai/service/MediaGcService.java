@@ -0,0 +1,26 @@
+package com.boxai.service;
+
+import com.boxai.domain.dto.MediaGcReport;
+
+/**
+ * 本地媒体文件垃圾回收服务接口
+ * 采用标记-清除方式：一次性加载数据库中引用的本地路径作为标记集合，
+ * 遍历本地媒体目录，删除未被引用的孤儿文件
+ */
+public interface MediaGcService {
+    
+    /**
+     * 执行一次垃圾回收
+     * 
+     * @param dryRun 是否为演练模式，演练模式下只统计孤儿文件，不做删除
+     * @return 本次回收报告，已有回收正在进行时不重复执行并返回null
+     */
+    MediaGcReport collect(boolean dryRun);
+    
+    /**
+     * 获取最近一次回收报告
+     * 
+     * @return 回收报告，尚未执行过回收时返回null
+     */
+    MediaGcReport getLastReport();
+}
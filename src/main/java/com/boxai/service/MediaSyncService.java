@@ -72,7 +72,7 @@ public interface MediaSyncService {
      * 清理未使用的本地文件
      * 删除不在数据库中或已被标记为删除的本地文件
      * 
-     * @return 清理的文件数量
+     * @return 清理的文件数量，已有回收正在进行时返回0
      */
     int cleanupUnusedFiles();
     
@@ -93,6 +93,8 @@ public interface MediaSyncService {
         private long usedSpace;      // 已使用空间
         private long freeSpace;      // 可用空间
         private int trackCount;      // 本地歌曲数量
+        private long cacheQuota;     // 本地媒体缓存配额
+        private long cacheUsed;      // 本地媒体缓存已使用空间
         
         // Getters and Setters
         public long getTotalSpace() { return totalSpace; }
@@ -106,5 +108,11 @@ public interface MediaSyncService {
         
         public int getTrackCount() { return trackCount; }
         public void setTrackCount(int trackCount) { this.trackCount = trackCount; }
+        
+        public long getCacheQuota() { return cacheQuota; }
+        public void setCacheQuota(long cacheQuota) { this.cacheQuota = cacheQuota; }
+        
+        public long getCacheUsed() { return cacheUsed; }
+        public void setCacheUsed(long cacheUsed) { this.cacheUsed = cacheUsed; }
     }
 }
@@ -1,27 +1,52 @@
 package com.boxai.service;
 
 import com.boxai.domain.dto.wechat.RoomQrResponse;
+import reactor.core.publisher.Mono;
 
 /**
  * 二维码生成服务接口
- * 专门负责微信小程序二维码的生成和管理
+ * 专门负责微信小程序二维码的生成和管理。
+ * 每个 (房间, 版本) 的PNG只生成并保存一次，接口返回图片地址，图片由独立的GET接口按ETag提供
  */
 public interface QrCodeService {
     /**
-     * 生成房间专属小程序码
+     * 获取房间当前版本的小程序码
      * 为指定房间生成带有房间信息的微信小程序二维码，用于快速进入房间
      * @param roomId 房间ID
      * @param page 小程序页面路径（可选，默认为首页）
-     * @return 二维码响应（包含房间ID和Base64编码的二维码图片）
+     * @return 二维码响应（包含房间ID、版本号和图片地址）
      */
-    RoomQrResponse generateRoomQr(Long roomId, String page);
+    Mono<RoomQrResponse> generateRoomQr(Long roomId, String page);
     
     /**
      * 为指定房间和版本生成二维码
+     * 同一房间同一版本的并发请求合并为一次生成
      * @param roomId 房间ID
      * @param version 二维码版本号
      * @param page 小程序页面路径（可选）
      * @return 二维码响应
      */
-    RoomQrResponse generateRoomQrWithVersion(Long roomId, Integer version, String page);
+    Mono<RoomQrResponse> generateRoomQrWithVersion(Long roomId, Integer version, String page);
+    
+    /**
+     * 读取二维码图片，尚未生成时只为房间当前版本生成
+     * @param roomId 房间ID
+     * @param version 二维码版本号
+     * @return PNG图片及ETag
+     */
+    Mono<QrImage> getRoomQrImage(Long roomId, Integer version);
+    
+    /**
+     * 房间二维码版本变更后调用：删除旧版本图片并在后台预生成新版本
+     * @param roomId 房间ID
+     * @param version 新版本号
+     */
+    void onVersionChanged(Long roomId, Integer version);
+    
+    /**
+     * 二维码图片
+     * @param png PNG内容
+     * @param etag 内容摘要（带引号）
+     */
+    record QrImage(byte[] png, String etag) {}
 }
@@ -0,0 +1,27 @@
+package com.boxai.service;
+
+import com.boxai.domain.dto.QueueItemReadiness;
+
+import java.util.List;
+
+/**
+ * 播放队列预取服务接口
+ * 点歌后立即按队列顺序将即将播放的歌曲下载到包间本地，使开播时直接读取本地文件
+ */
+public interface QueuePrefetchService {
+    
+    /**
+     * 房间播放队列发生变化，为队列前N首尚未在本地的歌曲安排下载
+     * 
+     * @param roomId 房间ID
+     */
+    void onQueueChanged(Long roomId);
+    
+    /**
+     * 获取房间播放队列中各项的本地就绪状态
+     * 
+     * @param roomId 房间ID
+     * @return 按队列顺序排列的就绪状态
+     */
+    List<QueueItemReadiness> getQueueReadiness(Long roomId);
+}
@@ -0,0 +1,23 @@
+package com.boxai.service;
+
+/**
+ * 房间事件发布服务接口
+ * 房间状态变化后通过Redis发布订阅通知所有节点，由各节点向已连接的客户端推送
+ */
+public interface RoomEventService {
+    
+    String TOPIC_QUEUE = "queue";
+    String TOPIC_PLAYBACK = "playback";
+    String TOPIC_MEMBERS = "members";
+    String TOPIC_LIGHTING = "lighting";
+    String TOPIC_SCENE = "scene";
+    
+    /**
+     * 发布房间状态变化通知
+     * 只通知发生变化的部分，推送内容由订阅节点合并后读取最新状态生成
+     * 
+     * @param roomId 房间ID
+     * @param topics 发生变化的部分（queue/playback/members/lighting/scene）
+     */
+    void publish(Long roomId, String... topics);
+}
@@ -0,0 +1,21 @@
+package com.boxai.service;
+
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+/**
+ * 房间事件推送服务接口
+ * 订阅Redis房间事件，在合并窗口内把同一房间的多次变化合并为一条消息，
+ * 每个房间只读取一次最新状态并序列化一次，再分发给该房间的所有客户端
+ */
+public interface RoomEventStreamService {
+    
+    /**
+     * 订阅房间事件流
+     * 首条为完整快照（snapshot），之后为变化部分（change），并定期发送心跳
+     * 
+     * @param roomId 房间ID
+     * @return SSE事件流
+     */
+    Flux<ServerSentEvent<String>> subscribe(Long roomId);
+}
@@ -0,0 +1,73 @@
+package com.boxai.service;
+
+import com.boxai.domain.entity.Playlist;
+
+import java.util.List;
+
+/**
+ * 房间播放队列服务接口
+ * 队列位置由每个房间独立的Redis原子序列分配，并发点歌不会产生重复位置；
+ * 点歌、调整顺序、置顶、移除均只更新一行记录，队列同时镜像在Redis中供快速读取
+ */
+public interface RoomQueueService {
+    
+    /**
+     * 点歌，追加到队列末尾
+     * 
+     * @param roomId 房间ID
+     * @param trackId 曲目ID
+     * @param userId 点歌用户ID（可为null）
+     * @return 新建的队列项
+     */
+    Playlist enqueue(Long roomId, Long trackId, Long userId);
+    
+    /**
+     * 置顶（下一首唱），移动到队列最前面
+     * 
+     * @param roomId 房间ID
+     * @param playlistId 队列项ID
+     * @return 更新后的队列项
+     */
+    Playlist singNext(Long roomId, Long playlistId);
+    
+    /**
+     * 调整顺序，将队列项移动到另一项之后
+     * 
+     * @param roomId 房间ID
+     * @param playlistId 要移动的队列项ID
+     * @param afterPlaylistId 目标位置的前一项ID，为null时等同于置顶
+     * @return 更新后的队列项
+     */
+    Playlist move(Long roomId, Long playlistId, Long afterPlaylistId);
+    
+    /**
+     * 从队列中移除
+     * 
+     * @param roomId 房间ID
+     * @param playlistId 队列项ID
+     */
+    void dequeue(Long roomId, Long playlistId);
+    
+    /**
+     * 标记队列项开始播放，之前正在播放的项标记为已播完
+     * 
+     * @param roomId 房间ID
+     * @param playlistId 开始播放的队列项ID
+     */
+    void markPlaying(Long roomId, Long playlistId);
+    
+    /**
+     * 获取房间播放队列，按位置排序，优先从Redis镜像读取
+     * 
+     * @param roomId 房间ID
+     * @return 队列项列表
+     */
+    List<Playlist> getQueue(Long roomId);
+    
+    /**
+     * 清空房间播放队列并重置位置序列
+     * 
+     * @param roomId 房间ID
+     */
+    void clear(Long roomId);
+}
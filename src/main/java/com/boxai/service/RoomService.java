@@ -11,9 +11,9 @@ import com.boxai.domain.dto.room.RoomResetResponse;
 public interface RoomService extends IService<Room> {
     /**
      * 重置房间
-     * 清空成员、播放列表，更新二维码版本，返回新的二维码
+     * 清空成员、播放列表，更新二维码版本；新版本的二维码由调用方在事务提交后生成
      * @param roomId 房间ID
-     * @return 重置结果（包含房间信息和新二维码）
+     * @return 重置结果（包含房间信息，房间的 qrVersion 为新版本号）
      */
     RoomResetResponse resetRoom(Long roomId);
     
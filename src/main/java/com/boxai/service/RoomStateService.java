@@ -0,0 +1,97 @@
+package com.boxai.service;
+
+import com.boxai.domain.dto.request.LightingSaveRequest;
+import com.boxai.domain.dto.request.RoomPlaybackStateRequest;
+import com.boxai.domain.dto.request.SceneSaveRequest;
+import com.boxai.domain.dto.room.RoomLiveState;
+import com.boxai.domain.entity.Lighting;
+import com.boxai.domain.entity.RoomMember;
+import com.boxai.domain.entity.Scene;
+
+import java.util.List;
+
+/**
+ * 房间实时状态服务接口
+ * 房间的当前播放、成员、灯光、场景保存在Redis哈希中，读取一次往返；
+ * 灯光和场景先写Redis，再异步合并写回数据库
+ */
+public interface RoomStateService {
+    
+    /**
+     * 获取房间实时状态快照
+     * 
+     * @param roomId 房间ID
+     * @return 实时状态
+     */
+    RoomLiveState getState(Long roomId);
+    
+    /**
+     * 获取房间成员
+     * 
+     * @param roomId 房间ID
+     * @return 成员列表
+     */
+    List<RoomMember> getMembers(Long roomId);
+    
+    /**
+     * 获取房间灯光设置
+     * 
+     * @param roomId 房间ID
+     * @return 灯光设置，未设置时返回null
+     */
+    Lighting getLighting(Long roomId);
+    
+    /**
+     * 获取房间场景设置
+     * 
+     * @param roomId 房间ID
+     * @return 场景设置，未设置时返回null
+     */
+    Scene getScene(Long roomId);
+    
+    /**
+     * 保存灯光设置（异步写回数据库）
+     * 
+     * @param request 灯光保存请求
+     * @return 保存后的灯光设置
+     */
+    Lighting saveLighting(LightingSaveRequest request);
+    
+    /**
+     * 保存场景设置（异步写回数据库）
+     * 
+     * @param request 场景保存请求
+     * @return 保存后的场景设置
+     */
+    Scene saveScene(SceneSaveRequest request);
+    
+    /**
+     * 房间成员发生变化，下次读取时从数据库重新加载
+     * 
+     * @param roomId 房间ID
+     */
+    void invalidateMembers(Long roomId);
+    
+    /**
+     * 设备端上报播放状态
+     * 
+     * @param roomId 房间ID
+     * @param request 播放状态
+     */
+    void updatePlayback(Long roomId, RoomPlaybackStateRequest request);
+    
+    /**
+     * 根据播放控制命令更新播放状态
+     * 
+     * @param roomId 房间ID
+     * @param action 控制动作（PLAY/PAUSE/STOP等）
+     */
+    void applyControl(Long roomId, String action);
+    
+    /**
+     * 清除房间实时状态（房间重置时调用）
+     * 
+     * @param roomId 房间ID
+     */
+    void reset(Long roomId);
+}
@@ -0,0 +1,64 @@
+package com.boxai.service;
+
+import com.boxai.domain.dto.StreamPipelineStats;
+
+import java.util.List;
+
+/**
+ * 推流管线服务
+ * 为每个AI视频流启动并监管一个FFmpeg进程，把生成的视频推送到流媒体服务器（或写入本地文件用于测试）；
+ * 进程数有上限，异常退出时按退避间隔自动重启，并从FFmpeg的进度输出中采集码率、帧率、丢帧等指标
+ */
+public interface StreamingPipelineService {
+    
+    /**
+     * 是否启用推流管线
+     * 
+     * @return 是否启用
+     */
+    boolean isEnabled();
+    
+    /**
+     * 为视频流启动推流管线，同一个流已有运行中的管线时先停止旧的
+     * 启用多码率HLS时按源分辨率的码率阶梯输出HLS，否则按 sink 配置推送单路流
+     * 
+     * @param streamId 视频流ID
+     * @param inputUrl 输入视频地址（URL或本地文件）
+     * @param resolution 源分辨率，用于选取码率阶梯
+     * @return 管线状态
+     */
+    StreamPipelineStats start(String streamId, String inputUrl, String resolution);
+    
+    /**
+     * 视频流没有运行中、重启中或已完成的管线时启动推流管线，否则返回现有管线的状态
+     * 判断与启动在该流的锁内完成，并发调用只会拉起一个进程
+     * 
+     * @param streamId 视频流ID
+     * @param inputUrl 输入视频地址（URL或本地文件）
+     * @param resolution 源分辨率，用于选取码率阶梯
+     * @return 管线状态
+     */
+    StreamPipelineStats startIfIdle(String streamId, String inputUrl, String resolution);
+    
+    /**
+     * 停止视频流的推流管线
+     * 
+     * @param streamId 视频流ID
+     */
+    void stop(String streamId);
+    
+    /**
+     * 获取推流管线状态与指标
+     * 
+     * @param streamId 视频流ID
+     * @return 管线状态，不存在时返回null
+     */
+    StreamPipelineStats getStats(String streamId);
+    
+    /**
+     * 获取所有推流管线的状态与指标
+     * 
+     * @return 管线状态列表
+     */
+    List<StreamPipelineStats> getAllStats();
+}
@@ -0,0 +1,19 @@
+package com.boxai.service;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * 微信 access_token 管理服务
+ * 后台在过期前主动刷新，多节点通过Redis锁保证同一时刻只有一个节点调用微信接口；
+ * 各节点在进程内持有当前token，请求路径上命中时不访问Redis
+ */
+public interface WechatAccessTokenService {
+
+    /**
+     * 获取当前有效的 access_token
+     * 进程内token有效时立即返回；否则从Redis同步，Redis中也已失效时由抢到锁的节点刷新，其余节点等待
+     *
+     * @return access_token
+     */
+    Mono<String> getAccessToken();
+}
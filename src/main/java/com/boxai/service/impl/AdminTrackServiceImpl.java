@@ -7,11 +7,13 @@ import com.boxai.domain.dto.request.MediaUploadRequest;
 import com.boxai.domain.dto.request.SyncVersionUpdateRequest;
 import com.boxai.domain.dto.request.TrackCreateRequest;
 import com.boxai.domain.dto.request.TrackUpdateRequest;
+import com.boxai.domain.entity.MediaBlob;
 import com.boxai.domain.entity.MediaSyncLog;
 import com.boxai.domain.entity.Track;
 import com.boxai.domain.mapper.MediaSyncLogMapper;
 import com.boxai.domain.mapper.TrackMapper;
 import com.boxai.service.AdminTrackService;
+import com.boxai.service.MediaBlobService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -21,11 +23,11 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -40,6 +42,7 @@ public class AdminTrackServiceImpl implements AdminTrackService {
     
     private final TrackMapper trackMapper;
     private final MediaSyncLogMapper mediaSyncLogMapper;
+    private final MediaBlobService mediaBlobService;
     
     @Override
     @Transactional
@@ -119,26 +122,19 @@ public class AdminTrackServiceImpl implements AdminTrackService {
                 throw new RuntimeException("歌曲不存在: " + request.getTrackId());
             }
             
-            // 3. 计算文件MD5（如果没有提供）
-            String fileMd5 = request.getFileMd5();
-            if (fileMd5 == null || fileMd5.isEmpty()) {
-                fileMd5 = calculateFileMd5(file);
+            // 3. 计算文件MD5（作为内容寻址存储的键，客户端提供时进行校验）
+            String fileMd5 = calculateFileMd5(file);
+            if (request.getFileMd5() != null && !request.getFileMd5().isEmpty()
+                    && !request.getFileMd5().equalsIgnoreCase(fileMd5)) {
+                throw new RuntimeException("文件MD5校验失败");
             }
             
-            // 4. 实际上传文件到CDN/对象存储
-            String cdnUrl = uploadToStorage(file, request.getTrackId(), request.getFileType());
+            // 4. 存入内容寻址存储（相同内容已存在时跳过写入）
+            MediaBlob blob = uploadToStorage(file, fileMd5);
+            String cdnUrl = blob.getCdnUrl();
             
-            // 5. 根据文件类型更新相应字段
-            updateTrackMediaInfo(track, request.getFileType(), cdnUrl, file.getSize(), request.getQuality());
-            
-            // 6. 更新同步版本号
-            Long currentVersion = track.getSyncVersion();
-            track.setSyncVersion(currentVersion != null ? currentVersion + 1 : 1L);
-            track.setLastSyncAt(LocalDateTime.now());
-            trackMapper.updateById(track);
-            
-            // 7. 记录上传日志
-            recordUploadLog(request.getTrackId(), request.getFileType(), cdnUrl, file.getSize(), "SUCCESS");
+            // 5-7. 绑定文件引用、更新歌曲媒体信息、同步版本号并记录上传日志
+            applyUploadedMedia(track, request, blob, file.getSize());
             
             MediaUploadResponse response = new MediaUploadResponse();
             response.setUploadId(uploadId);
@@ -167,6 +163,64 @@ public class AdminTrackServiceImpl implements AdminTrackService {
         }
     }
     
+    @Override
+    @Transactional
+    public MediaUploadResponse attachUploadedFile(String uploadId, Path file, MediaUploadRequest request) {
+        long fileSize = request.getFileSize() != null ? request.getFileSize() : 0L;
+        try {
+            // 1. 验证文件格式（分片上传不受单文件100MB限制）
+            validateMediaExtension(request.getOriginalFileName(), request.getFileType());
+            
+            // 2. 验证歌曲是否存在
+            Track track = trackMapper.selectById(request.getTrackId());
+            if (track == null) {
+                throw new RuntimeException("歌曲不存在: " + request.getTrackId());
+            }
+            
+            // 3. 存入内容寻址存储（file为null时为秒传，直接引用已有内容）
+            MediaBlob blob;
+            if (file != null) {
+                String extension = request.getOriginalFileName().substring(request.getOriginalFileName().lastIndexOf(".")).toLowerCase();
+                blob = mediaBlobService.storeBlob(request.getFileMd5(), extension, file);
+            } else {
+                blob = mediaBlobService.findByHash(request.getFileMd5());
+                if (blob == null) {
+                    throw new RuntimeException("存储中不存在该文件内容: " + request.getFileMd5());
+                }
+            }
+            String cdnUrl = blob.getCdnUrl();
+            fileSize = blob.getFileSize() != null ? blob.getFileSize() : fileSize;
+            
+            // 4. 绑定文件引用、更新歌曲媒体信息、同步版本号并记录上传日志
+            applyUploadedMedia(track, request, blob, fileSize);
+            
+            MediaUploadResponse response = new MediaUploadResponse();
+            response.setUploadId(uploadId);
+            response.setCdnUrl(cdnUrl);
+            response.setFileSize(fileSize);
+            response.setUploadStatus("SUCCESS");
+            response.setMessage("文件上传成功");
+            response.setFileMd5(request.getFileMd5());
+            
+            log.info("分片上传文件入库成功: uploadId={}, trackId={}, fileType={}, cdnUrl={}, size={}", 
+                    uploadId, request.getTrackId(), request.getFileType(), cdnUrl, fileSize);
+            
+            return response;
+            
+        } catch (Exception e) {
+            log.error("分片上传文件入库失败: uploadId={}, trackId={}, fileType={}", 
+                    uploadId, request.getTrackId(), request.getFileType(), e);
+            
+            recordUploadLog(request.getTrackId(), request.getFileType(), null, fileSize, "FAILED: " + e.getMessage());
+            
+            MediaUploadResponse response = new MediaUploadResponse();
+            response.setUploadId(uploadId);
+            response.setUploadStatus("FAILED");
+            response.setMessage("文件上传失败: " + e.getMessage());
+            return response;
+        }
+    }
+    
     @Override
     @Transactional
     public Map<String, Object> updateSyncVersion(SyncVersionUpdateRequest request) {
@@ -615,6 +669,15 @@ public class AdminTrackServiceImpl implements AdminTrackService {
             throw new RuntimeException("文件大小不能超过100MB");
         }
         
+        validateMediaExtension(originalFilename, fileType);
+    }
+    
+    @Override
+    public void validateMediaExtension(String originalFilename, String fileType) {
+        if (originalFilename == null || !originalFilename.contains(".")) {
+            throw new RuntimeException("文件名缺少扩展名");
+        }
+        
         // 验证文件格式
         String extension = originalFilename.substring(originalFilename.lastIndexOf(".") + 1).toLowerCase();
         switch (fileType.toUpperCase()) {
@@ -644,50 +707,74 @@ public class AdminTrackServiceImpl implements AdminTrackService {
     }
     
     /**
-     * 计算文件MD5
+     * 流式计算文件MD5，避免将整个文件读入内存
      */
     private String calculateFileMd5(MultipartFile file) {
-        try {
+        try (InputStream in = file.getInputStream()) {
             java.security.MessageDigest md = java.security.MessageDigest.getInstance("MD5");
-            byte[] digest = md.digest(file.getBytes());
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                md.update(buffer, 0, read);
+            }
             StringBuilder sb = new StringBuilder();
-            for (byte b : digest) {
+            for (byte b : md.digest()) {
                 sb.append(String.format("%02x", b));
             }
             return sb.toString();
         } catch (Exception e) {
-            log.warn("计算文件MD5失败", e);
-            return "unknown";
+            throw new RuntimeException("计算文件MD5失败: " + e.getMessage());
         }
     }
     
     /**
-     * 上传文件到存储服务
+     * 上传文件到内容寻址存储
+     * 相同内容已存在时不再写入，直接复用已有文件
      */
-    private String uploadToStorage(MultipartFile file, Long trackId, String fileType) throws IOException {
-        // 生成存储路径
-        String extension = file.getOriginalFilename().substring(file.getOriginalFilename().lastIndexOf("."));
-        String fileName = String.format("%d_%s_%d%s", trackId, fileType.toLowerCase(), System.currentTimeMillis(), extension);
+    private MediaBlob uploadToStorage(MultipartFile file, String fileMd5) throws IOException {
+        MediaBlob existing = mediaBlobService.findByHash(fileMd5);
+        if (existing != null && existing.getStoragePath() != null && Files.exists(Paths.get(existing.getStoragePath()))) {
+            log.info("文件内容已存在，跳过上传: hash={}, cdnUrl={}", fileMd5, existing.getCdnUrl());
+            return existing;
+        }
         
-        // 实际部署时应该上传到CDN或对象存储（如阿里云OSS、腾讯云COS等）
-        // 这里模拟本地存储，实际应该替换为真实的CDN上传逻辑
-        String uploadDir = "/opt/boxai/uploads/" + fileType.toLowerCase() + "/";
-        Path uploadPath = Paths.get(uploadDir);
+        String extension = file.getOriginalFilename().substring(file.getOriginalFilename().lastIndexOf(".")).toLowerCase();
         
-        // 确保目录存在
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+        // 实际部署时应该上传到CDN或对象存储（如阿里云OSS、腾讯云COS等）
+        // 这里模拟本地存储：先落盘到临时文件，再移动到内容寻址目录
+        Path tmpDir = Paths.get("/opt/boxai/uploads/tmp/");
+        if (!Files.exists(tmpDir)) {
+            Files.createDirectories(tmpDir);
+        }
+        Path tmpFile = Files.createTempFile(tmpDir, "upload_", extension);
+        try {
+            file.transferTo(tmpFile);
+            MediaBlob blob = mediaBlobService.storeBlob(fileMd5, extension, tmpFile);
+            log.info("文件上传到存储: hash={}, cdnUrl={}", fileMd5, blob.getCdnUrl());
+            return blob;
+        } finally {
+            Files.deleteIfExists(tmpFile);
         }
+    }
+    
+    /**
+     * 绑定文件引用、更新歌曲媒体信息、递增同步版本号并记录上传日志
+     */
+    private void applyUploadedMedia(Track track, MediaUploadRequest request, MediaBlob blob, long fileSize) {
+        // 按“歌曲+媒体类型”维护引用计数
+        mediaBlobService.bindReference(track.getId(), request.getFileType(), blob.getContentHash());
         
-        // 保存文件
-        Path filePath = uploadPath.resolve(fileName);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+        // 根据文件类型更新相应字段
+        updateTrackMediaInfo(track, request.getFileType(), blob.getCdnUrl(), fileSize, request.getQuality());
         
-        // 返回CDN URL（实际部署时应该返回真实的CDN地址）
-        String cdnUrl = String.format("https://cdn.boxai.com/media/%s/%s", fileType.toLowerCase(), fileName);
+        // 更新同步版本号
+        Long currentVersion = track.getSyncVersion();
+        track.setSyncVersion(currentVersion != null ? currentVersion + 1 : 1L);
+        track.setLastSyncAt(LocalDateTime.now());
+        trackMapper.updateById(track);
         
-        log.info("文件上传到存储: localPath={}, cdnUrl={}", filePath, cdnUrl);
-        return cdnUrl;
+        // 记录上传日志
+        recordUploadLog(request.getTrackId(), request.getFileType(), blob.getCdnUrl(), fileSize, "SUCCESS");
     }
     
     /**
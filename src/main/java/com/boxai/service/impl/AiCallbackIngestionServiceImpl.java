@@ -0,0 +1,193 @@
+package com.boxai.service.impl;
+
+import com.boxai.service.AiCallbackIngestionService;
+import com.boxai.service.AiVideoService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI服务回调接入服务实现
+ * 每个流一个待处理队列：队列由空变为非空时启动一个虚拟线程排空队列，逐条处理直到队列为空，
+ * 从而保证同一个流的回调串行且有序；同时处理的流数受 workers 限制。待处理回调总数和单个流的积压
+ * 都有上限，超出时拒绝，由服务商稍后重试。去重表记录 (流, 状态, 进度) 的过期时间，处理失败或被拒绝时
+ * 删除对应记录，使服务商的重试能够再次处理；过期记录定时清理
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AiCallbackIngestionServiceImpl implements AiCallbackIngestionService {
+    
+    private final AiVideoService aiVideoService;
+    
+    @Value("${app.ai.callback.dedupe-ttl:PT5M}")
+    private Duration dedupeTtl;
+    
+    @Value("${app.ai.callback.workers:4}")
+    private int workers;
+    
+    @Value("${app.ai.callback.max-pending:10000}")
+    private int maxPending;
+    
+    @Value("${app.ai.callback.max-pending-per-stream:100}")
+    private int maxPendingPerStream;
+    
+    private final Map<String, Long> seen = new ConcurrentHashMap<>();
+    private final Map<String, Deque<Pending>> queues = new HashMap<>();
+    private int pendingCount;
+    private ExecutorService executor;
+    private Semaphore permits;
+    
+    @PostConstruct
+    public void init() {
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ai-callback-", 1).factory());
+        permits = new Semaphore(workers);
+    }
+    
+    @Override
+    public IngestResult ingest(AiCallback callback) {
+        String status = normalizeStatus(callback.status());
+        String dedupeKey = callback.streamId() + "|" + status + "|" + callback.progress();
+        long now = System.currentTimeMillis();
+        long expiresAt = now + dedupeTtl.toMillis();
+        Long previous = seen.putIfAbsent(dedupeKey, expiresAt);
+        if (previous != null) {
+            if (previous > now) {
+                log.debug("丢弃重复的AI回调: streamId={}, status={}, progress={}",
+                        callback.streamId(), status, callback.progress());
+                return IngestResult.DUPLICATE;
+            }
+            seen.put(dedupeKey, expiresAt);
+        }
+        
+        Pending pending = new Pending(callback, dedupeKey, expiresAt);
+        boolean schedule;
+        synchronized (queues) {
+            Deque<Pending> queue = queues.get(callback.streamId());
+            if (pendingCount >= maxPending || (queue != null && queue.size() >= maxPendingPerStream)) {
+                forget(pending);
+                log.warn("AI回调积压已满，拒绝回调等待服务商重试: streamId={}, pending={}",
+                        callback.streamId(), pendingCount);
+                return IngestResult.REJECTED;
+            }
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(callback.streamId(), queue);
+            }
+            queue.addLast(pending);
+            pendingCount++;
+            schedule = queue.size() == 1;
+        }
+        if (schedule) {
+            executor.execute(() -> drain(callback.streamId()));
+        }
+        return IngestResult.ACCEPTED;
+    }
+    
+    /**
+     * 定时清理过期的去重记录
+     */
+    @Scheduled(fixedDelayString = "${app.ai.callback.dedupe-cleanup-interval:PT1M}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        seen.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+    
+    private void drain(String streamId) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            while (true) {
+                Pending pending;
+                synchronized (queues) {
+                    pending = queues.get(streamId).peekFirst();
+                }
+                try {
+                    process(pending.callback());
+                } catch (Exception e) {
+                    forget(pending);
+                    log.error("处理AI回调失败: streamId={}, provider={}", streamId, pending.callback().provider(), e);
+                }
+                synchronized (queues) {
+                    Deque<Pending> queue = queues.get(streamId);
+                    queue.pollFirst();
+                    pendingCount--;
+                    if (queue.isEmpty()) {
+                        queues.remove(streamId);
+                        return;
+                    }
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+    
+    /**
+     * 删除去重记录，服务商重试同一回调时重新处理
+     */
+    private void forget(Pending pending) {
+        seen.remove(pending.dedupeKey(), pending.expiresAt());
+    }
+    
+    private void process(AiCallback callback) {
+        String status = normalizeStatus(callback.status());
+        log.info("处理AI回调: streamId={}, provider={}, status={}, progress={}",
+                callback.streamId(), callback.provider(), status, callback.progress());
+        
+        if ("COMPLETED".equals(status) && callback.videoUrl() != null) {
+            log.info("AI视频生成完成: streamId={}, videoUrl={}", callback.streamId(), callback.videoUrl());
+        } else if ("FAILED".equals(status)) {
+            log.warn("AI视频生成失败: streamId={}, message={}", callback.streamId(), callback.message());
+        }
+        
+        // 非法的状态流转和倒退的进度由会话注册表忽略
+        Integer progress = "COMPLETED".equals(status) && callback.progress() == null ? Integer.valueOf(100) : callback.progress();
+        aiVideoService.updateGenerationProgress(callback.streamId(), progress, status, callback.message());
+    }
+    
+    /**
+     * 把各服务商的状态映射为会话状态，无法识别的状态返回null（只更新进度）
+     */
+    private String normalizeStatus(String status) {
+        return switch (status != null ? status.toLowerCase(Locale.ROOT) : "") {
+            case "completed", "success", "succeeded", "complete-success" -> "COMPLETED";
+            case "failed", "error", "complete-error" -> "FAILED";
+            case "processing", "in-progress", "generating", "running" -> "GENERATING";
+            case "streaming" -> "STREAMING";
+            case "cancelled", "canceled", "stopped" -> "STOPPED";
+            default -> null;
+        };
+    }
+    
+    /**
+     * 待处理的回调及其去重记录
+     */
+    private record Pending(AiCallback callback, String dedupeKey, long expiresAt) {}
+}
@@ -0,0 +1,167 @@
+package com.boxai.service.impl;
+
+import com.boxai.service.AiVideoJobScheduler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * AI视频生成任务调度器实现
+ * 队列与运行表由同一把锁保护，调度只做内存操作；任务本身以响应式方式订阅执行，
+ * 不占用任何线程等待服务商响应，结束时在doFinally中释放配额并触发下一轮调度
+ */
+@Slf4j
+@Service
+public class AiVideoJobSchedulerImpl implements AiVideoJobScheduler {
+    
+    @Value("${app.ai.provider:mock}")
+    private String provider;
+    
+    @Value("${app.ai.scheduler.max-concurrent.${app.ai.provider:mock}:2}")
+    private int maxConcurrent;
+    
+    @Value("${app.ai.scheduler.max-queue:100}")
+    private int maxQueue;
+    
+    private final Object lock = new Object();
+    private final List<Job> pending = new ArrayList<>();
+    private final Map<String, Job> running = new HashMap<>();
+    private final Map<Long, Integer> runningPerRoom = new HashMap<>();
+    private long sequence;
+    
+    /** 优先级高者先；同优先级下运行任务少的包间先；再按提交顺序 */
+    private final Comparator<Job> order = Comparator.<Job>comparingInt(job -> -job.priority)
+            .thenComparingInt(job -> runningPerRoom.getOrDefault(job.roomId, 0))
+            .thenComparingLong(job -> job.sequence);
+    
+    @Override
+    public void submit(String streamId, Long roomId, int priority, Supplier<Mono<Void>> job) {
+        synchronized (lock) {
+            if (pending.size() >= maxQueue) {
+                throw new RuntimeException("AI视频生成排队任务过多，请稍后再试");
+            }
+            pending.add(new Job(streamId, roomId, priority, ++sequence, job));
+        }
+        log.debug("提交AI视频生成任务: streamId={}, roomId={}, priority={}, provider={}",
+                streamId, roomId, priority, provider);
+        dispatch();
+    }
+    
+    @Override
+    public boolean cancel(String streamId) {
+        Job job;
+        synchronized (lock) {
+            if (pending.removeIf(queued -> queued.streamId.equals(streamId))) {
+                log.info("取消排队中的AI视频生成任务: streamId={}", streamId);
+                return true;
+            }
+            job = running.get(streamId);
+            if (job == null) {
+                return false;
+            }
+            job.cancelled = true;
+        }
+        // 取消订阅会触发doFinally释放配额；尚未完成订阅的任务在start中检查cancelled标记
+        Disposable disposable = job.disposable;
+        if (disposable != null) {
+            disposable.dispose();
+        }
+        log.info("取消执行中的AI视频生成任务: streamId={}", streamId);
+        return true;
+    }
+    
+    @Override
+    public Integer getQueuePosition(String streamId) {
+        synchronized (lock) {
+            List<Job> ordered = new ArrayList<>(pending);
+            ordered.sort(order);
+            for (int i = 0; i < ordered.size(); i++) {
+                if (ordered.get(i).streamId.equals(streamId)) {
+                    return i + 1;
+                }
+            }
+            return null;
+        }
+    }
+    
+    @Override
+    public int getIdleSlots() {
+        synchronized (lock) {
+            return maxConcurrent - running.size() - pending.size();
+        }
+    }
+    
+    /**
+     * 在配额允许的范围内从队列中取出任务执行
+     */
+    private void dispatch() {
+        List<Job> toStart = new ArrayList<>();
+        synchronized (lock) {
+            while (running.size() < maxConcurrent && !pending.isEmpty()) {
+                Job next = pending.get(0);
+                for (Job candidate : pending) {
+                    if (order.compare(candidate, next) < 0) {
+                        next = candidate;
+                    }
+                }
+                pending.remove(next);
+                running.put(next.streamId, next);
+                runningPerRoom.merge(next.roomId, 1, Integer::sum);
+                toStart.add(next);
+            }
+        }
+        toStart.forEach(this::start);
+    }
+    
+    private void start(Job job) {
+        log.info("开始执行AI视频生成任务: streamId={}, roomId={}, provider={}", job.streamId, job.roomId, provider);
+        try {
+            job.disposable = Mono.defer(job.work)
+                    .doFinally(signal -> release(job))
+                    .subscribe(null, error -> log.error("AI视频生成任务异常结束: streamId={}", job.streamId, error));
+            if (job.cancelled) {
+                job.disposable.dispose();
+            }
+        } catch (Exception e) {
+            log.error("AI视频生成任务启动失败: streamId={}", job.streamId, e);
+            release(job);
+        }
+    }
+    
+    private void release(Job job) {
+        synchronized (lock) {
+            if (!running.remove(job.streamId, job)) {
+                return;
+            }
+            runningPerRoom.computeIfPresent(job.roomId, (roomId, count) -> count > 1 ? count - 1 : null);
+        }
+        dispatch();
+    }
+    
+    private static final class Job {
+        private final String streamId;
+        private final Long roomId;
+        private final int priority;
+        private final long sequence;
+        private final Supplier<Mono<Void>> work;
+        private volatile Disposable disposable;
+        private volatile boolean cancelled;
+        
+        private Job(String streamId, Long roomId, int priority, long sequence, Supplier<Mono<Void>> work) {
+            this.streamId = streamId;
+            this.roomId = roomId;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.work = work;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.boxai.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.boxai.domain.dto.request.AiVideoGenerateRequest;
+import com.boxai.domain.entity.AiVideoSession;
+import com.boxai.domain.entity.Playlist;
+import com.boxai.domain.entity.Track;
+import com.boxai.domain.mapper.TrackMapper;
+import com.boxai.service.AiVideoGenerationClient;
+import com.boxai.service.AiVideoJobScheduler;
+import com.boxai.service.AiVideoPregenerationService;
+import com.boxai.service.AiVideoResultCache;
+import com.boxai.service.AiVideoService;
+import com.boxai.service.RoomQueueService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AI视频预生成服务实现
+ * 每次规划都重新计算"期望预生成"的集合（各包间队列前几首 + 热门歌曲），
+ * 不在集合中的进行中任务被取消，集合中既未缓存也未在生成的按顺序以低优先级提交给调度器；
+ * 只有调度器在保留配额之外仍有空闲时才提交，保证用户的实时请求不被预生成挤占。
+ * 队列变化只标记需要规划，由后台短间隔任务合并处理，不在请求线程上执行
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AiVideoPregenerationServiceImpl implements AiVideoPregenerationService {
+    
+    private static final Set<String> TERMINAL_STATUSES = Set.of("COMPLETED", "FAILED", "STOPPED");
+    private static final long BUDGET_WINDOW_MS = Duration.ofHours(1).toMillis();
+    
+    private final AiVideoGenerationClient aiVideoGenerationClient;
+    private final AiVideoJobScheduler aiVideoJobScheduler;
+    private final AiVideoResultCache aiVideoResultCache;
+    private final AiVideoService aiVideoService;
+    private final RoomQueueService roomQueueService;
+    private final TrackMapper trackMapper;
+    
+    @Value("${app.ai.pregen.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.ai.pregen.queue-depth:3}")
+    private int queueDepth;
+    
+    @Value("${app.ai.pregen.hot-depth:5}")
+    private int hotDepth;
+    
+    @Value("${app.ai.pregen.hot-style:MODERN}")
+    private String hotStyle;
+    
+    @Value("${app.ai.pregen.max-concurrent:1}")
+    private int maxConcurrent;
+    
+    @Value("${app.ai.pregen.reserve-slots:1}")
+    private int reserveSlots;
+    
+    @Value("${app.ai.pregen.hourly-budget:20}")
+    private int hourlyBudget;
+    
+    @Value("${app.ai.pregen.room-ttl:PT4H}")
+    private Duration roomTtl;
+    
+    @Value("${app.ai.scheduler.start-timeout:PT30S}")
+    private Duration startTimeout;
+    
+    private final Map<Long, RoomPreference> rooms = new ConcurrentHashMap<>();
+    /** 进行中的预生成：缓存键 → 调度任务ID */
+    private final Map<String, String> inFlight = new ConcurrentHashMap<>();
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+    /** 队列变化后尚未规划 */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private long budgetWindowStart;
+    private int budgetUsed;
+    
+    @Override
+    public void enableRoom(Long roomId, String style) {
+        if (!enabled || roomId == null) {
+            return;
+        }
+        RoomPreference previous = rooms.get(roomId);
+        rooms.put(roomId, new RoomPreference(style, System.currentTimeMillis() + roomTtl.toMillis(),
+                previous != null ? previous.lastTrackId() : null));
+        onQueueChanged(roomId);
+    }
+    
+    @Override
+    public void onQueueChanged(Long roomId) {
+        if (!enabled || !rooms.containsKey(roomId)) {
+            return;
+        }
+        dirty.set(true);
+    }
+    
+    @Override
+    public void onTrackStarted(Long roomId, Long trackId) {
+        RoomPreference preference = rooms.get(roomId);
+        if (!enabled || trackId == null || preference == null || trackId.equals(preference.lastTrackId())) {
+            return;
+        }
+        rooms.put(roomId, new RoomPreference(preference.style(),
+                System.currentTimeMillis() + roomTtl.toMillis(), trackId));
+        
+        try {
+            AiVideoGenerateRequest request = AiVideoGenerateRequest.musicVisualization(roomId, trackId, preference.style());
+            if (aiVideoResultCache.resolve(aiVideoResultCache.cacheKey(request)) != null) {
+                // 已预生成，走缓存命中路径直接推送到桌面端
+                aiVideoService.startVideoGeneration(request);
+                log.info("挂载预生成的AI视频: roomId={}, trackId={}", roomId, trackId);
+            }
+        } catch (Exception e) {
+            log.error("挂载预生成的AI视频失败: roomId={}, trackId={}", roomId, trackId, e);
+        }
+        onQueueChanged(roomId);
+    }
+    
+    /**
+     * 合并处理队列变化：一个间隔内的多次变化只规划一次
+     */
+    @Scheduled(fixedDelayString = "${app.ai.pregen.debounce:PT1S}")
+    public void reconcileDirty() {
+        if (!enabled || !dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("规划AI视频预生成失败", e);
+        }
+    }
+    
+    /**
+     * 定时规划：清理过期包间、补充空闲配额下的预生成任务
+     */
+    @Scheduled(fixedDelayString = "${app.ai.pregen.interval:PT15S}")
+    public void scheduledReconcile() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        rooms.entrySet().removeIf(entry -> entry.getValue().expiresAt() < now);
+        dirty.set(false);
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("定时规划AI视频预生成失败", e);
+        }
+    }
+    
+    /**
+     * 规划过程会查询数据库，用ReentrantLock串行化而不是 synchronized，避免虚拟线程固定载体线程
+     */
+    private void reconcile() {
+        reconcileLock.lock();
+        try {
+            reconcileLocked();
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+    
+    private void reconcileLocked() {
+        // 1. 期望预生成的集合，按重要性排序：各包间队列靠前的歌曲，其次是热门歌曲
+        Map<String, AiVideoGenerateRequest> desired = new LinkedHashMap<>();
+        rooms.forEach((roomId, preference) -> roomQueueService.getQueue(roomId).stream()
+                .filter(item -> "QUEUED".equals(item.getStatus()))
+                .limit(queueDepth)
+                .map(Playlist::getTrackId)
+                .forEach(trackId -> put(desired,
+                        AiVideoGenerateRequest.musicVisualization(roomId, trackId, preference.style()))));
+        for (Long trackId : loadHotTrackIds()) {
+            put(desired, AiVideoGenerateRequest.musicVisualization(null, trackId, hotStyle));
+        }
+        
+        // 2. 歌曲已移出队列（且不是热门歌曲）的预生成任务取消
+        inFlight.forEach((cacheKey, jobId) -> {
+            if (!desired.containsKey(cacheKey) && inFlight.remove(cacheKey, jobId)) {
+                aiVideoJobScheduler.cancel(jobId);
+                log.info("取消AI视频预生成: jobId={}, cacheKey={}", jobId, cacheKey);
+            }
+        });
+        
+        // 3. 在空闲配额和预算内提交新的预生成任务
+        for (Map.Entry<String, AiVideoGenerateRequest> entry : desired.entrySet()) {
+            String cacheKey = entry.getKey();
+            if (inFlight.containsKey(cacheKey) || aiVideoResultCache.resolve(cacheKey) != null) {
+                continue;
+            }
+            if (inFlight.size() >= maxConcurrent || aiVideoJobScheduler.getIdleSlots() <= reserveSlots) {
+                break;
+            }
+            if (!tryConsumeBudget()) {
+                log.debug("AI视频预生成本小时预算已用完: budget={}", hourlyBudget);
+                break;
+            }
+            
+            AiVideoGenerateRequest request = entry.getValue();
+            String jobId = "ai_pregen_" + UUID.randomUUID().toString().replace("-", "");
+            inFlight.put(cacheKey, jobId);
+            try {
+                aiVideoJobScheduler.submit(jobId, request.getRoomId(), AiVideoJobScheduler.PRIORITY_LOW,
+                        () -> pregenerate(jobId, cacheKey, request));
+                log.info("提交AI视频预生成: jobId={}, roomId={}, trackId={}", jobId, request.getRoomId(), request.getCurrentTrackId());
+            } catch (RuntimeException e) {
+                inFlight.remove(cacheKey, jobId);
+                log.warn("提交AI视频预生成失败: trackId={}", request.getCurrentTrackId(), e);
+                break;
+            }
+        }
+    }
+    
+    /**
+     * 执行一次预生成：不创建会话记录、不推送桌面端，生成完成后只写入结果缓存；
+     * 任务被取消时同时通知服务商停止
+     */
+    private Mono<Void> pregenerate(String jobId, String cacheKey, AiVideoGenerateRequest request) {
+        AiVideoSession session = new AiVideoSession();
+        BeanUtils.copyProperties(request, session);
+        session.setStreamId(jobId);
+        
+        return aiVideoGenerationClient.startGeneration(request, session)
+                .timeout(startTimeout)
+                .flatMap(taskId -> aiVideoGenerationClient.getProgressStream(taskId)
+                        .filter(progress -> TERMINAL_STATUSES.contains(progress.status()))
+                        .next()
+                        .flatMap(progress -> "COMPLETED".equals(progress.status())
+                                ? aiVideoGenerationClient.getGenerationResult(taskId)
+                                : Mono.error(new RuntimeException("预生成未完成: " + progress.status())))
+                        .flatMap(result -> aiVideoResultCache.store(cacheKey, result.videoUrl()))
+                        .doOnCancel(() -> aiVideoGenerationClient.stopGeneration(taskId)
+                                .subscribe(stopped -> { }, error -> log.warn("停止AI视频预生成失败: taskId={}", taskId, error))))
+                .doOnSuccess(ignored -> log.info("AI视频预生成完成: jobId={}, trackId={}", jobId, request.getCurrentTrackId()))
+                .onErrorResume(e -> {
+                    log.warn("AI视频预生成失败: jobId={}, trackId={}", jobId, request.getCurrentTrackId(), e);
+                    return Mono.empty();
+                })
+                .doFinally(signal -> inFlight.remove(cacheKey, jobId));
+    }
+    
+    private void put(Map<String, AiVideoGenerateRequest> desired, AiVideoGenerateRequest request) {
+        desired.putIfAbsent(aiVideoResultCache.cacheKey(request), request);
+    }
+    
+    private List<Long> loadHotTrackIds() {
+        if (hotDepth <= 0) {
+            return List.of();
+        }
+        QueryWrapper<Track> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id")
+                   .eq("status", "ACTIVE")
+                   .orderByDesc("hot_score")
+                   .last("LIMIT " + hotDepth);
+        return trackMapper.selectObjs(queryWrapper).stream()
+                .map(id -> ((Number) id).longValue())
+                .toList();
+    }
+    
+    private synchronized boolean tryConsumeBudget() {
+        long now = System.currentTimeMillis();
+        if (now - budgetWindowStart >= BUDGET_WINDOW_MS) {
+            budgetWindowStart = now;
+            budgetUsed = 0;
+        }
+        if (budgetUsed >= hourlyBudget) {
+            return false;
+        }
+        budgetUsed++;
+        return true;
+    }
+    
+    private record RoomPreference(String style, long expiresAt, Long lastTrackId) {}
+}
@@ -0,0 +1,185 @@
+package com.boxai.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.boxai.domain.dto.AiVideoProgressEvent;
+import com.boxai.domain.entity.AiVideoSession;
+import com.boxai.domain.mapper.AiVideoSessionMapper;
+import com.boxai.service.AiVideoProgressBus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AI视频生成进度事件总线实现
+ * 所有节点订阅同一个Redis频道；每个流在本节点有订阅者时才持有一个"保留最新值"的Sink，
+ * 新订阅者立即拿到最新状态，之后只在收到事件时推送。活跃会话列表在内存中维护，
+ * 仅在没有任何订阅者时首次从数据库加载一次
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AiVideoProgressBusImpl implements AiVideoProgressBus, MessageListener {
+    
+    private static final String CHANNEL = "ai-video:progress";
+    private static final int ACTIVE_SESSIONS_LIMIT = 50;
+    
+    private final AiVideoSessionMapper aiVideoSessionMapper;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${app.ai.progress.status-interval:PT2S}")
+    private Duration statusInterval;
+    
+    private final Map<String, StreamChannel> streams = new ConcurrentHashMap<>();
+    private final Map<String, AiVideoProgressEvent> activeSessions = new ConcurrentHashMap<>();
+    private final AtomicBoolean activeSeeded = new AtomicBoolean(false);
+    private final Sinks.Many<Boolean> activeChanges = Sinks.many().multicast().directBestEffort();
+    private Flux<List<AiVideoProgressEvent>> activeSessionsFlux;
+    
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        
+        // 所有订阅者共享：首个订阅者触发一次快照，之后按间隔合并变化，新订阅者重放最近一次快照
+        activeSessionsFlux = Flux.merge(Flux.just(true), activeChanges.asFlux().sample(statusInterval))
+                .map(changed -> snapshotActiveSessions())
+                .replay(1)
+                .refCount();
+    }
+    
+    @Override
+    public void publish(AiVideoSession session) {
+        if (session == null || session.getStreamId() == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(AiVideoProgressEvent.of(session)));
+        } catch (Exception e) {
+            // Redis不可用时至少保证本节点的订阅者收到事件
+            log.warn("发布AI视频进度事件失败，仅本地分发: streamId={}", session.getStreamId(), e);
+            dispatch(AiVideoProgressEvent.of(session));
+        }
+    }
+    
+    @Override
+    public Flux<AiVideoProgressEvent> progressStream(String streamId) {
+        return Flux.defer(() -> {
+            StreamChannel channel = streams.compute(streamId, (id, existing) -> {
+                StreamChannel c = existing != null ? existing : new StreamChannel();
+                c.subscribers.incrementAndGet();
+                return c;
+            });
+            
+            // 本节点首个订阅者从数据库加载一次当前状态，之后的订阅者直接重放最新值
+            if (!channel.hasValue()) {
+                AiVideoSession session = aiVideoSessionMapper.selectOne(
+                        new QueryWrapper<AiVideoSession>().eq("stream_id", streamId));
+                if (session == null) {
+                    release(streamId);
+                    return Flux.empty();
+                }
+                channel.offerIfEmpty(AiVideoProgressEvent.of(session));
+            }
+            
+            return channel.sink.asFlux()
+                    .takeUntil(AiVideoProgressEvent::isTerminal)
+                    .doFinally(signal -> release(streamId));
+        });
+    }
+    
+    @Override
+    public Flux<List<AiVideoProgressEvent>> activeSessionsStream() {
+        return activeSessionsFlux;
+    }
+    
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            dispatch(objectMapper.readValue(message.getBody(), AiVideoProgressEvent.class));
+        } catch (Exception e) {
+            log.error("解析AI视频进度事件失败", e);
+        }
+    }
+    
+    private void dispatch(AiVideoProgressEvent event) {
+        StreamChannel channel = streams.get(event.getStreamId());
+        if (channel != null) {
+            channel.offer(event);
+        }
+        
+        if (event.isTerminal()) {
+            activeSessions.remove(event.getStreamId());
+        } else {
+            activeSessions.put(event.getStreamId(), event);
+        }
+        activeChanges.tryEmitNext(true);
+    }
+    
+    private void release(String streamId) {
+        streams.computeIfPresent(streamId, (id, channel) ->
+                channel.subscribers.decrementAndGet() <= 0 ? null : channel);
+    }
+    
+    private List<AiVideoProgressEvent> snapshotActiveSessions() {
+        if (activeSeeded.compareAndSet(false, true)) {
+            QueryWrapper<AiVideoSession> queryWrapper = new QueryWrapper<>();
+            queryWrapper.in("status", "PENDING", "GENERATING", "STREAMING")
+                       .orderByDesc("created_at")
+                       .last("LIMIT " + ACTIVE_SESSIONS_LIMIT);
+            for (AiVideoSession session : aiVideoSessionMapper.selectList(queryWrapper)) {
+                activeSessions.putIfAbsent(session.getStreamId(), AiVideoProgressEvent.of(session));
+            }
+        }
+        return activeSessions.values().stream()
+                .sorted(Comparator.comparing(AiVideoProgressEvent::getStartTime,
+                        Comparator.nullsLast(Comparator.reverseOrder())))
+                .limit(ACTIVE_SESSIONS_LIMIT)
+                .toList();
+    }
+    
+    /**
+     * 单个流在本节点的多播源，保留最新一次事件供新订阅者重放
+     */
+    private static class StreamChannel {
+        private final Sinks.Many<AiVideoProgressEvent> sink = Sinks.many().replay().latest();
+        private final AtomicInteger subscribers = new AtomicInteger();
+        private AiVideoProgressEvent latest;
+        
+        synchronized boolean hasValue() {
+            return latest != null;
+        }
+        
+        synchronized void offer(AiVideoProgressEvent event) {
+            latest = event;
+            sink.tryEmitNext(event);
+            if (event.isTerminal()) {
+                sink.tryEmitComplete();
+            }
+        }
+        
+        synchronized void offerIfEmpty(AiVideoProgressEvent event) {
+            if (latest == null) {
+                offer(event);
+            }
+        }
+    }
+}
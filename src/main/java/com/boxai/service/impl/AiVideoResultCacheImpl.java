@@ -0,0 +1,268 @@
+package com.boxai.service.impl;
+
+import com.boxai.domain.dto.request.AiVideoGenerateRequest;
+import com.boxai.domain.entity.AiVideoSession;
+import com.boxai.service.AiVideoResultCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * AI视频生成结果缓存实现
+ * 索引为按访问顺序排列的LinkedHashMap（键 → 文件大小），启动时按文件修改时间重建，
+ * 命中时同步刷新文件修改时间，使LRU顺序在重启后仍然有效。下载先写临时文件，完成后原子重命名
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AiVideoResultCacheImpl implements AiVideoResultCache {
+    
+    private static final String FILE_SUFFIX = ".mp4";
+    private static final String TEMP_SUFFIX = ".downloading";
+    
+    private final WebClient webClient;
+    
+    @Value("${app.ai.cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.ai.cache.dir:/opt/boxai/ai-cache}")
+    private String cacheDir;
+    
+    @Value("${app.ai.cache.quota-bytes:53687091200}")
+    private long quotaBytes;
+    
+    @Value("${app.ai.cache.base-url:http://localhost:9998/api/ai-video/cache}")
+    private String baseUrl;
+    
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> downloading = ConcurrentHashMap.newKeySet();
+    private long usedBytes;
+    private Path root;
+    
+    @PostConstruct
+    public void init() {
+        root = Paths.get(cacheDir);
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(root);
+            try (Stream<Path> files = Files.list(root)) {
+                List<Path> entries = files.filter(Files::isRegularFile).toList();
+                entries.stream()
+                        .filter(path -> path.getFileName().toString().endsWith(TEMP_SUFFIX))
+                        .forEach(this::deleteQuietly);
+                entries.stream()
+                        .filter(path -> path.getFileName().toString().endsWith(FILE_SUFFIX))
+                        .sorted(Comparator.comparingLong(this::lastModified))
+                        .forEach(path -> {
+                            String name = path.getFileName().toString();
+                            long size = sizeOf(path);
+                            index.put(name.substring(0, name.length() - FILE_SUFFIX.length()), size);
+                            usedBytes += size;
+                        });
+            }
+            log.info("AI视频结果缓存已加载: dir={}, entries={}, usedBytes={}", root, index.size(), usedBytes);
+        } catch (IOException e) {
+            log.error("加载AI视频结果缓存失败，缓存停用: dir={}", root, e);
+            enabled = false;
+        }
+    }
+    
+    @Override
+    public String cacheKey(AiVideoGenerateRequest request) {
+        return hash(request.getPrompt(), request.getStyle(), request.getResolution(),
+                request.getFrameRate(), request.getDuration(), request.getCurrentTrackId());
+    }
+    
+    @Override
+    public String cacheKey(AiVideoSession session) {
+        return hash(session.getPrompt(), session.getStyle(), session.getResolution(),
+                session.getFrameRate(), session.getDuration(), session.getCurrentTrackId());
+    }
+    
+    @Override
+    public CachedVideo lookup(String cacheKey) {
+        if (!enabled || cacheKey == null) {
+            return null;
+        }
+        Long size;
+        synchronized (index) {
+            size = index.get(cacheKey);
+        }
+        if (size == null) {
+            return null;
+        }
+        Path path = root.resolve(cacheKey + FILE_SUFFIX);
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // 文件已被外部删除，移出索引
+            log.warn("AI视频缓存文件丢失: cacheKey={}", cacheKey);
+            remove(cacheKey);
+            return null;
+        }
+        return new CachedVideo(cacheKey, path, baseUrl + "/" + cacheKey, size);
+    }
+    
+    @Override
+    public Mono<Void> store(String cacheKey, String videoUrl) {
+        if (!enabled || cacheKey == null || videoUrl == null) {
+            return Mono.empty();
+        }
+        synchronized (index) {
+            if (index.containsKey(cacheKey)) {
+                return Mono.empty();
+            }
+        }
+        if (!downloading.add(cacheKey)) {
+            return Mono.empty();
+        }
+        
+        Path temp = root.resolve(cacheKey + FILE_SUFFIX + TEMP_SUFFIX);
+        Flux<DataBuffer> body = webClient.get().uri(videoUrl).retrieve().bodyToFlux(DataBuffer.class);
+        return DataBufferUtils.write(body, temp,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)
+                .then(Mono.fromRunnable(() -> commit(cacheKey, temp)).subscribeOn(Schedulers.boundedElastic()))
+                .doOnError(e -> {
+                    log.warn("缓存AI视频失败: cacheKey={}, videoUrl={}", cacheKey, videoUrl, e);
+                    deleteQuietly(temp);
+                })
+                .onErrorResume(e -> Mono.empty())
+                .doFinally(signal -> downloading.remove(cacheKey))
+                .then();
+    }
+    
+    @Override
+    public Path resolve(String cacheKey) {
+        if (!enabled || cacheKey == null) {
+            return null;
+        }
+        synchronized (index) {
+            if (!index.containsKey(cacheKey)) {
+                return null;
+            }
+        }
+        return root.resolve(cacheKey + FILE_SUFFIX);
+    }
+    
+    /**
+     * 下载完成后加入索引，并按配额淘汰最久未使用的条目
+     */
+    private void commit(String cacheKey, Path temp) {
+        long size = sizeOf(temp);
+        if (size <= 0 || size > quotaBytes) {
+            log.warn("AI视频大小不适合缓存，跳过: cacheKey={}, size={}", cacheKey, size);
+            deleteQuietly(temp);
+            return;
+        }
+        try {
+            Files.move(temp, root.resolve(cacheKey + FILE_SUFFIX),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("缓存文件重命名失败: " + cacheKey, e);
+        }
+        
+        List<String> evicted = new ArrayList<>();
+        synchronized (index) {
+            Long previous = index.put(cacheKey, size);
+            usedBytes += size - (previous != null ? previous : 0);
+            Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+            while (usedBytes > quotaBytes && iterator.hasNext()) {
+                Map.Entry<String, Long> eldest = iterator.next();
+                if (eldest.getKey().equals(cacheKey)) {
+                    continue;
+                }
+                usedBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                iterator.remove();
+            }
+        }
+        evicted.forEach(key -> deleteQuietly(root.resolve(key + FILE_SUFFIX)));
+        log.info("AI视频已缓存: cacheKey={}, size={}, evicted={}", cacheKey, size, evicted.size());
+    }
+    
+    private void remove(String cacheKey) {
+        synchronized (index) {
+            Long size = index.remove(cacheKey);
+            if (size != null) {
+                usedBytes -= size;
+            }
+        }
+    }
+    
+    /**
+     * 规范化生成参数后计算SHA-256：提示词去首尾空白、合并连续空白并转小写，风格转大写
+     */
+    private String hash(String prompt, String style, String resolution, Integer frameRate,
+                        Integer duration, Long currentTrackId) {
+        String normalizedPrompt = prompt != null ? prompt.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT) : "";
+        String normalized = String.join("|",
+                normalizedPrompt,
+                style != null ? style.trim().toUpperCase(Locale.ROOT) : "",
+                resolution != null ? resolution.trim().toLowerCase(Locale.ROOT) : "",
+                String.valueOf(frameRate),
+                String.valueOf(duration),
+                String.valueOf(currentTrackId));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+    
+    private long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+    
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除AI视频缓存文件失败: path={}", path, e);
+        }
+    }
+}
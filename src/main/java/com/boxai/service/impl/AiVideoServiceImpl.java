@@ -7,19 +7,31 @@ import com.boxai.domain.dto.request.AiVideoGenerateRequest;
 import com.boxai.domain.entity.AiVideoSession;
 import com.boxai.domain.mapper.AiVideoSessionMapper;
 import com.boxai.service.AiVideoGenerationClient;
+import com.boxai.service.AiVideoJobScheduler;
+import com.boxai.service.AiVideoResultCache;
 import com.boxai.service.AiVideoService;
+import com.boxai.service.AiVideoSessionRegistry;
 import com.boxai.service.DeviceControlService;
+import com.boxai.service.HlsStreamService;
+import com.boxai.service.StreamingPipelineService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -33,15 +45,29 @@ public class AiVideoServiceImpl implements AiVideoService {
     private final AiVideoSessionMapper aiVideoSessionMapper;
     private final DeviceControlService deviceControlService;
     private final AiVideoGenerationClient aiVideoGenerationClient;
+    private final AiVideoSessionRegistry aiVideoSessionRegistry;
+    private final AiVideoJobScheduler aiVideoJobScheduler;
+    private final AiVideoResultCache aiVideoResultCache;
+    private final StreamingPipelineService streamingPipelineService;
+    private final HlsStreamService hlsStreamService;
     
-    // AI视频生成服务的基础URL（实际部署时需要配置）
-    private static final String AI_VIDEO_SERVICE_URL = "http://localhost:8888";
-    private static final String STREAM_SERVER_URL = "rtmp://localhost:1935/live";
-    private static final String HLS_SERVER_URL = "http://localhost:8080/hls";
-    private static final String WEBRTC_SERVER_URL = "webrtc://localhost:8080/stream";
+    @Value("${app.ai.scheduler.start-timeout:PT30S}")
+    private Duration startTimeout;
+    
+    @Value("${app.ai.scheduler.priority-room-ids:}")
+    private Set<Long> priorityRoomIds;
+    
+    // 流媒体服务地址
+    @Value("${app.streaming.rtmp-url:rtmp://localhost:1935/live}")
+    private String rtmpBaseUrl;
+    
+    @Value("${app.streaming.hls-url:http://localhost:8080/hls}")
+    private String hlsBaseUrl;
+    
+    @Value("${app.streaming.webrtc-url:webrtc://localhost:8080/stream}")
+    private String webrtcBaseUrl;
     
     @Override
-    @Transactional
     public AiVideoStreamResponse startVideoGeneration(AiVideoGenerateRequest request) {
         // 生成唯一的流ID
         String streamId = "ai_stream_" + UUID.randomUUID().toString().replace("-", "");
@@ -55,26 +81,36 @@ public class AiVideoServiceImpl implements AiVideoService {
         session.setStartTime(LocalDateTime.now());
         
         // 生成流媒体URL
-        session.setStreamUrl(STREAM_SERVER_URL + "/" + streamId);
-        session.setHlsUrl(HLS_SERVER_URL + "/" + streamId + ".m3u8");
-        session.setWebrtcUrl(WEBRTC_SERVER_URL + "/" + streamId);
+        session.setStreamUrl(rtmpBaseUrl + "/" + streamId);
+        session.setHlsUrl(useAbrLadder()
+                ? hlsStreamService.getMasterPlaylistUrl(streamId)
+                : hlsBaseUrl + "/" + streamId + ".m3u8");
+        session.setWebrtcUrl(webrtcBaseUrl + "/" + streamId);
         session.setBitrate(calculateBitrate(request.getResolution(), request.getFrameRate()));
         
+        // 相同参数的视频已生成过，直接复用缓存
+        AiVideoResultCache.CachedVideo cached = aiVideoResultCache.lookup(aiVideoResultCache.cacheKey(request));
+        if (cached != null) {
+            return startFromCache(session, cached);
+        }
+        
         aiVideoSessionMapper.insert(session);
+        aiVideoSessionRegistry.register(session);
         
-        // 异步启动AI视频生成
-        CompletableFuture.runAsync(() -> {
-            try {
-                startAiVideoGenerationWithClient(session, request);
-            } catch (Exception e) {
-                log.error("AI视频生成失败: streamId={}", streamId, e);
-                updateSessionStatus(streamId, "FAILED", 0, e.getMessage());
-            }
-        });
+        // 提交到生成调度器，获得服务商配额后才真正启动
+        int priority = resolvePriority(request);
+        try {
+            aiVideoJobScheduler.submit(streamId, request.getRoomId(), priority,
+                    () -> startAiVideoGenerationWithClient(session, request));
+        } catch (RuntimeException e) {
+            updateSessionStatus(streamId, "FAILED", 0, e.getMessage());
+            throw e;
+        }
         
         // 返回响应
         AiVideoStreamResponse response = new AiVideoStreamResponse();
         BeanUtils.copyProperties(session, response);
+        response.setQueuePosition(aiVideoJobScheduler.getQueuePosition(streamId));
         response.setEstimatedTimeRemaining(request.getDuration());
         response.setEstimatedEndTime(LocalDateTime.now().plusSeconds(request.getDuration()));
         
@@ -83,6 +119,32 @@ public class AiVideoServiceImpl implements AiVideoService {
         return response;
     }
     
+    /**
+     * 以缓存的视频直接完成会话并推送到桌面端，不占用服务商配额
+     */
+    private AiVideoStreamResponse startFromCache(AiVideoSession session, AiVideoResultCache.CachedVideo cached) {
+        session.setStatus("COMPLETED");
+        session.setProgress(100);
+        session.setStreamUrl(cached.url());
+        session.setHlsUrl(null);
+        session.setWebrtcUrl(null);
+        session.setEndTime(LocalDateTime.now());
+        session.setGenerationInfo("Cache Key: " + cached.cacheKey());
+        
+        aiVideoSessionMapper.insert(session);
+        aiVideoSessionRegistry.register(session);
+        pushStreamToDesktop(session.getStreamId(), session.getRoomId());
+        
+        AiVideoStreamResponse response = new AiVideoStreamResponse();
+        BeanUtils.copyProperties(session, response);
+        response.setEstimatedTimeRemaining(0);
+        response.setEstimatedEndTime(session.getEndTime());
+        
+        log.info("AI视频命中缓存: streamId={}, roomId={}, cacheKey={}", session.getStreamId(), session.getRoomId(), cached.cacheKey());
+        
+        return response;
+    }
+    
     @Override
     public AiVideoStreamResponse getGenerationStatus(String streamId) {
         AiVideoSession session = getSessionByStreamId(streamId);
@@ -92,6 +154,7 @@ public class AiVideoServiceImpl implements AiVideoService {
         
         AiVideoStreamResponse response = new AiVideoStreamResponse();
         BeanUtils.copyProperties(session, response);
+        response.setQueuePosition(aiVideoJobScheduler.getQueuePosition(streamId));
         
         // 计算预计剩余时间
         if ("GENERATING".equals(session.getStatus()) && session.getProgress() > 0) {
@@ -112,6 +175,10 @@ public class AiVideoServiceImpl implements AiVideoService {
             throw new RuntimeException("视频流不存在: " + streamId);
         }
         
+        // 移出调度队列或停止监听，释放服务商配额
+        aiVideoJobScheduler.cancel(streamId);
+        streamingPipelineService.stop(streamId);
+        
         // 停止AI生成进程
         try {
             stopAiVideoGeneration(streamId);
@@ -119,10 +186,8 @@ public class AiVideoServiceImpl implements AiVideoService {
             log.error("停止AI视频生成失败: streamId={}", streamId, e);
         }
         
-        // 更新会话状态
-        session.setStatus("STOPPED");
-        session.setEndTime(LocalDateTime.now());
-        aiVideoSessionMapper.updateById(session);
+        // 更新会话状态（已由stopAiVideoGeneration流转为STOPPED时此处被忽略）
+        aiVideoSessionRegistry.update(streamId, "STOPPED", null, "用户停止");
         
         // 通知桌面端停止播放
         AiVideoStreamCommand command = new AiVideoStreamCommand();
@@ -179,26 +244,23 @@ public class AiVideoServiceImpl implements AiVideoService {
     }
     
     @Override
-    @Transactional
     public void updateGenerationProgress(String streamId, Integer progress, String status) {
-        AiVideoSession session = getSessionByStreamId(streamId);
-        if (session == null) {
-            log.warn("更新进度时视频流不存在: streamId={}", streamId);
+        updateGenerationProgress(streamId, progress, status, null);
+    }
+    
+    @Override
+    @Transactional
+    public void updateGenerationProgress(String streamId, Integer progress, String status, String message) {
+        AiVideoSessionRegistry.SessionUpdate update = aiVideoSessionRegistry.update(streamId, status, progress, message);
+        if (update == null) {
             return;
         }
         
-        session.setProgress(progress);
-        session.setStatus(status);
-        
-        if ("STREAMING".equals(status)) {
-            // 视频开始流式传输，推送到桌面端
-            pushStreamToDesktop(streamId, session.getRoomId());
-        } else if ("COMPLETED".equals(status)) {
-            session.setEndTime(LocalDateTime.now());
+        if (update.statusChanged() && "STREAMING".equals(status)) {
+            // 视频开始流式传输，推送到桌面端（只在进入该状态时推送一次）
+            pushStreamToDesktop(streamId, update.session().getRoomId());
         }
         
-        aiVideoSessionMapper.updateById(session);
-        
         log.debug("更新AI视频生成进度: streamId={}, progress={}%, status={}", streamId, progress, status);
     }
     
@@ -214,81 +276,118 @@ public class AiVideoServiceImpl implements AiVideoService {
     
     /**
      * 使用AI客户端启动视频生成
+     * 整个过程不阻塞线程：提交任务、记录任务ID、监听进度依次组合，进度流结束时任务结束
      */
-    private void startAiVideoGenerationWithClient(AiVideoSession session, AiVideoGenerateRequest request) {
+    private Mono<Void> startAiVideoGenerationWithClient(AiVideoSession session, AiVideoGenerateRequest request) {
         String streamId = session.getStreamId();
+        log.info("开始AI视频生成: streamId={}, provider={}", streamId, aiVideoGenerationClient.getClass().getSimpleName());
         
-        try {
-            log.info("开始AI视频生成: streamId={}, provider={}", streamId, aiVideoGenerationClient.getClass().getSimpleName());
-            
-            // 1. 启动AI生成任务
-            String taskId = aiVideoGenerationClient.startGeneration(request, session)
-                    .block(Duration.ofSeconds(30));
-            
-            if (taskId == null) {
-                throw new RuntimeException("启动AI生成任务失败");
-            }
-            
-            // 更新会话信息
-            session.setGenerationInfo("AI Task ID: " + taskId);
-            aiVideoSessionMapper.updateById(session);
-            
-            log.info("AI生成任务启动成功: streamId={}, taskId={}", streamId, taskId);
-            
-            // 2. 监听生成进度
-            aiVideoGenerationClient.getProgressStream(taskId)
-                    .doOnNext(progress -> {
-                        log.debug("收到进度更新: streamId={}, progress={}%, status={}", 
-                                streamId, progress.progress(), progress.status());
-                        
-                        // 更新数据库状态
-                        updateSessionStatus(streamId, progress.status(), progress.progress(), progress.message());
-                        
-                        // 当状态变为STREAMING时，推送到桌面端
-                        if ("STREAMING".equals(progress.status()) || 
-                            ("COMPLETED".equals(progress.status()) && progress.progress() >= 100)) {
-                            
-                            // 获取生成结果并推送流
-                            aiVideoGenerationClient.getGenerationResult(taskId)
-                                    .subscribe(result -> {
-                                        if (result.streamUrl() != null) {
-                                            // 更新会话的流URL
-                                            AiVideoSession updatedSession = getSessionByStreamId(streamId);
-                                            if (updatedSession != null) {
-                                                updatedSession.setStreamUrl(result.streamUrl());
-                                                updatedSession.setHlsUrl(result.hlsUrl());
-                                                updatedSession.setWebrtcUrl(result.webrtcUrl());
-                                                aiVideoSessionMapper.updateById(updatedSession);
-                                            }
-                                            
-                                            // 推送到桌面端
-                                            pushStreamToDesktop(streamId, session.getRoomId());
-                                        }
-                                    }, error -> {
-                                        log.error("获取生成结果失败: streamId={}", streamId, error);
-                                    });
-                        }
-                    })
-                    .doOnComplete(() -> {
-                        log.info("AI视频生成进度流完成: streamId={}", streamId);
-                    })
-                    .doOnError(error -> {
-                        log.error("AI视频生成进度流出错: streamId={}", streamId, error);
-                        updateSessionStatus(streamId, "FAILED", 0, error.getMessage());
-                    })
-                    .subscribe();
+        // 1. 启动AI生成任务
+        return aiVideoGenerationClient.startGeneration(request, session)
+                .timeout(startTimeout)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("启动AI生成任务失败")))
+                .publishOn(Schedulers.boundedElastic())
+                .flatMapMany(taskId -> {
+                    // 更新会话信息
+                    aiVideoSessionRegistry.updateGenerationInfo(streamId, "AI Task ID: " + taskId);
+                    log.info("AI生成任务启动成功: streamId={}, taskId={}", streamId, taskId);
                     
-        } catch (Exception e) {
-            log.error("AI视频生成启动失败: streamId={}", streamId, e);
-            updateSessionStatus(streamId, "FAILED", 0, e.getMessage());
+                    // 2. 监听生成进度
+                    return monitorGenerationProgress(session, taskId);
+                })
+                .then()
+                .onErrorResume(e -> {
+                    log.error("AI视频生成失败: streamId={}", streamId, e);
+                    updateSessionStatus(streamId, "FAILED", 0, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+    
+    /**
+     * 监听AI生成进度
+     * 进度只写入注册表，生成结果只在进入STREAMING/COMPLETED状态时获取一次
+     */
+    private Flux<AiVideoGenerationClient.AiGenerationProgress> monitorGenerationProgress(AiVideoSession session, String taskId) {
+        String streamId = session.getStreamId();
+        return aiVideoGenerationClient.getProgressStream(taskId)
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(progress -> {
+                    log.debug("收到进度更新: streamId={}, progress={}%, status={}", 
+                            streamId, progress.progress(), progress.status());
+                    
+                    AiVideoSessionRegistry.SessionUpdate update = aiVideoSessionRegistry.update(
+                            streamId, progress.status(), progress.progress(), progress.message());
+                    if (update == null || !update.statusChanged()) {
+                        return;
+                    }
+                    
+                    // 状态变为STREAMING或COMPLETED时，获取生成结果并推送到桌面端
+                    if ("STREAMING".equals(progress.status()) || "COMPLETED".equals(progress.status())) {
+                        aiVideoGenerationClient.getGenerationResult(taskId)
+                                .publishOn(Schedulers.boundedElastic())
+                                .subscribe(result -> {
+                                    if (streamingPipelineService.isEnabled() && result.videoUrl() != null) {
+                                        // 由本地FFmpeg管线推流，会话沿用创建时分配的流地址
+                                        startPipeline(streamId, result.videoUrl(), session.getResolution());
+                                        pushStreamToDesktop(streamId, session.getRoomId());
+                                    } else if (result.streamUrl() != null) {
+                                        aiVideoSessionRegistry.updateStreamUrls(
+                                                streamId, result.streamUrl(), result.hlsUrl(), result.webrtcUrl());
+                                        pushStreamToDesktop(streamId, session.getRoomId());
+                                    }
+                                    // 生成完成后保存成品视频，供相同参数的请求复用
+                                    if ("COMPLETED".equals(progress.status()) && result.videoUrl() != null) {
+                                        aiVideoResultCache.store(aiVideoResultCache.cacheKey(session), result.videoUrl())
+                                                .subscribe();
+                                    }
+                                }, error -> {
+                                    log.error("获取生成结果失败: streamId={}", streamId, error);
+                                });
+                    }
+                })
+                .doOnComplete(() -> {
+                    log.info("AI视频生成进度流完成: streamId={}", streamId);
+                });
+    }
+    
+    /**
+     * 启动推流管线，已有运行中的管线时不重复启动（STREAMING和COMPLETED都会触发，可能并发）；
+     * 正在停止的管线等待退出后重新启动
+     */
+    private void startPipeline(String streamId, String videoUrl, String resolution) {
+        streamingPipelineService.startIfIdle(streamId, videoUrl, resolution);
+    }
+    
+    /**
+     * 接管属主节点已下线的会话：已拿到任务ID的重新监听进度，尚未提交到AI服务的标记为失败。
+     * 启动时执行一次，之后定期执行以接管运行中宕机节点的会话
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.ai.session.recover-interval:PT1M}",
+            fixedDelayString = "${app.ai.session.recover-interval:PT1M}")
+    public void recoverSessions() {
+        for (AiVideoSession session : aiVideoSessionRegistry.recover()) {
+            String taskId = extractTaskId(session);
+            if (taskId != null) {
+                log.info("恢复AI视频生成进度监听: streamId={}, taskId={}", session.getStreamId(), taskId);
+                // 服务商侧任务仍在运行，同样占用配额，优先于新任务调度
+                aiVideoJobScheduler.submit(session.getStreamId(), session.getRoomId(), AiVideoJobScheduler.PRIORITY_HIGH,
+                        () -> monitorGenerationProgress(session, taskId)
+                                .then()
+                                .onErrorResume(e -> {
+                                    log.error("AI视频生成进度流出错: streamId={}", session.getStreamId(), e);
+                                    updateSessionStatus(session.getStreamId(), "FAILED", 0, e.getMessage());
+                                    return Mono.empty();
+                                }));
+            } else {
+                updateSessionStatus(session.getStreamId(), "FAILED", null, "节点下线，生成任务未提交");
+            }
         }
     }
     
     @Override
     public AiVideoSession getSessionByStreamId(String streamId) {
-        QueryWrapper<AiVideoSession> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("stream_id", streamId);
-        return aiVideoSessionMapper.selectOne(queryWrapper);
+        return aiVideoSessionRegistry.get(streamId);
     }
     
     @Override
@@ -317,10 +416,8 @@ public class AiVideoServiceImpl implements AiVideoService {
             }
             
             // 从生成信息中提取任务ID
-            String generationInfo = session.getGenerationInfo();
-            if (generationInfo != null && generationInfo.contains("AI Task ID: ")) {
-                String taskId = generationInfo.substring(generationInfo.indexOf("AI Task ID: ") + 12);
-                
+            String taskId = extractTaskId(session);
+            if (taskId != null) {
                 // 调用AI客户端停止任务
                 aiVideoGenerationClient.stopGeneration(taskId)
                         .subscribe(success -> {
@@ -347,24 +444,48 @@ public class AiVideoServiceImpl implements AiVideoService {
      * 更新会话状态
      */
     private void updateSessionStatus(String streamId, String status, Integer progress, String errorMessage) {
-        AiVideoSession session = getSessionByStreamId(streamId);
-        if (session != null) {
-            session.setStatus(status);
-            session.setProgress(progress);
-            if (errorMessage != null) {
-                session.setErrorMessage(errorMessage);
-            }
-            if ("COMPLETED".equals(status) || "FAILED".equals(status) || "STOPPED".equals(status)) {
-                session.setEndTime(LocalDateTime.now());
-            }
-            aiVideoSessionMapper.updateById(session);
+        aiVideoSessionRegistry.update(streamId, status, progress, errorMessage);
+    }
+    
+    /**
+     * 从生成信息中提取任务ID
+     */
+    private String extractTaskId(AiVideoSession session) {
+        String generationInfo = session.getGenerationInfo();
+        if (generationInfo != null && generationInfo.contains("AI Task ID: ")) {
+            return generationInfo.substring(generationInfo.indexOf("AI Task ID: ") + 12);
         }
+        return null;
+    }
+    
+    /**
+     * 解析调度优先级：客户端只能选择LOW或NORMAL（指定HIGH按NORMAL处理），
+     * HIGH只由服务端授予——配置中的优先包间和恢复的任务，严格高于客户端能请求的任何优先级
+     */
+    private int resolvePriority(AiVideoGenerateRequest request) {
+        if (priorityRoomIds.contains(request.getRoomId())) {
+            return AiVideoJobScheduler.PRIORITY_HIGH;
+        }
+        return "LOW".equalsIgnoreCase(request.getPriority())
+                ? AiVideoJobScheduler.PRIORITY_LOW
+                : AiVideoJobScheduler.PRIORITY_NORMAL;
+    }
+    
+    /**
+     * 是否由本地管线输出多码率HLS
+     */
+    private boolean useAbrLadder() {
+        return streamingPipelineService.isEnabled() && hlsStreamService.isEnabled();
     }
     
     /**
      * 计算比特率
      */
     private Integer calculateBitrate(String resolution, Integer frameRate) {
+        // 多码率输出时取码率阶梯的最高一档
+        if (useAbrLadder()) {
+            return hlsStreamService.getLadder(resolution).get(0).bitrateKbps();
+        }
         // 根据分辨率和帧率计算合适的比特率
         if ("1920x1080".equals(resolution)) {
             return frameRate * 200; // 1080p: ~6000kbps for 30fps
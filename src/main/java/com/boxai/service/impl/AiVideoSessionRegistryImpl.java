@@ -0,0 +1,334 @@
+package com.boxai.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.boxai.domain.entity.AiVideoSession;
+import com.boxai.domain.mapper.AiVideoSessionMapper;
+import com.boxai.service.AiVideoJobScheduler;
+import com.boxai.service.AiVideoProgressBus;
+import com.boxai.service.AiVideoSessionRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AI视频会话注册表实现
+ * 活跃会话常驻内存，每个会话以自身为锁串行化修改；进度更新只标记为脏，
+ * 由定时任务按 app.ai.session.persist-interval 写回进度字段，状态变化和地址变化则立即整行落库。
+ * 会话进入终止状态后从内存移除，之后的查询回落到数据库。
+ * 多节点部署时每个活跃会话在Redis中有一个属主租约 ai:session:owner:{streamId}，由跟踪它的节点定期续约；
+ * 恢复时只接管租约已失效（属主节点已下线）的会话，不会重复接管其他节点正在跟踪的会话。
+ * 续约在独立线程上执行，不受 @Scheduled 线程池中其他定时任务拖慢的影响
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AiVideoSessionRegistryImpl implements AiVideoSessionRegistry {
+    
+    /** 允许的状态流转，终止状态没有后继 */
+    private static final Map<String, Set<String>> TRANSITIONS = Map.of(
+            "PENDING", Set.of("GENERATING", "STREAMING", "COMPLETED", "FAILED", "STOPPED"),
+            "GENERATING", Set.of("STREAMING", "COMPLETED", "FAILED", "STOPPED"),
+            "STREAMING", Set.of("COMPLETED", "FAILED", "STOPPED"),
+            "COMPLETED", Set.of(),
+            "FAILED", Set.of(),
+            "STOPPED", Set.of()
+    );
+    
+    private static final String OWNER_PREFIX = "ai:session:owner:";
+    /** 租约仍属于本节点时续约；已过期或已被其他节点接管时返回0，不再重新占用 */
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+    
+    private final AiVideoSessionMapper aiVideoSessionMapper;
+    private final AiVideoProgressBus aiVideoProgressBus;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final AiVideoJobScheduler aiVideoJobScheduler;
+    
+    private final String nodeId = UUID.randomUUID().toString();
+    
+    @Value("${app.ai.session.owner-lease:PT30S}")
+    private Duration ownerLease;
+    
+    @Value("${app.ai.session.lease-renew-interval:PT10S}")
+    private Duration leaseRenewInterval;
+    
+    private final Map<String, AiVideoSession> sessions = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    /** 每个会话一把锁，状态变更与落库在锁内完成；不用 synchronized，避免虚拟线程在数据库I/O期间固定载体线程 */
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    
+    private final ScheduledExecutorService leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ai-session-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    @PostConstruct
+    public void init() {
+        long intervalMillis = leaseRenewInterval.toMillis();
+        leaseRenewer.scheduleWithFixedDelay(this::renewOwnership, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    public void register(AiVideoSession session) {
+        if (!isTerminal(session.getStatus())) {
+            sessions.put(session.getStreamId(), session);
+            stringRedisTemplate.opsForValue().set(OWNER_PREFIX + session.getStreamId(), nodeId, ownerLease);
+        }
+        aiVideoProgressBus.publish(session);
+    }
+    
+    @Override
+    public AiVideoSession get(String streamId) {
+        AiVideoSession session = sessions.get(streamId);
+        if (session != null) {
+            return session;
+        }
+        QueryWrapper<AiVideoSession> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("stream_id", streamId);
+        return aiVideoSessionMapper.selectOne(queryWrapper);
+    }
+    
+    @Override
+    public List<AiVideoSession> getActiveSessions() {
+        return new ArrayList<>(sessions.values());
+    }
+    
+    @Override
+    public SessionUpdate update(String streamId, String status, Integer progress, String message) {
+        AiVideoSession session = sessions.get(streamId);
+        if (session == null) {
+            // 不在本节点内存中（已结束或由其他节点跟踪），按数据库当前状态校验后直接落库
+            session = get(streamId);
+            if (session == null) {
+                log.warn("更新状态时视频流不存在: streamId={}", streamId);
+                return null;
+            }
+        }
+        
+        SessionUpdate update;
+        ReentrantLock lock = lockFor(streamId);
+        lock.lock();
+        try {
+            String previousStatus = session.getStatus();
+            boolean statusChanged = status != null && !status.equals(previousStatus);
+            if (statusChanged && !TRANSITIONS.containsKey(status)) {
+                log.debug("忽略未知的会话状态: streamId={}, status={}", streamId, status);
+                statusChanged = false;
+                status = null;
+            }
+            if (statusChanged && !TRANSITIONS.getOrDefault(previousStatus, Set.of()).contains(status)) {
+                log.debug("忽略非法的会话状态流转: streamId={}, {} -> {}", streamId, previousStatus, status);
+                return null;
+            }
+            boolean progressChanged = progress != null
+                    && (session.getProgress() == null || progress > session.getProgress());
+            if (!statusChanged && !progressChanged) {
+                return null;
+            }
+            
+            if (statusChanged) {
+                session.setStatus(status);
+                if (isTerminal(status)) {
+                    session.setEndTime(LocalDateTime.now());
+                }
+                if (message != null && ("FAILED".equals(status) || "STOPPED".equals(status))) {
+                    session.setErrorMessage(message);
+                }
+            }
+            if (progressChanged) {
+                session.setProgress(progress);
+            }
+            
+            if (statusChanged) {
+                dirty.remove(streamId);
+                aiVideoSessionMapper.updateById(session);
+                if (isTerminal(status)) {
+                    sessions.remove(streamId);
+                    locks.remove(streamId);
+                    releaseOwnership(streamId);
+                }
+            } else if (sessions.containsKey(streamId)) {
+                dirty.add(streamId);
+            } else {
+                persistProgress(session);
+            }
+            update = new SessionUpdate(session, previousStatus, statusChanged);
+        } finally {
+            lock.unlock();
+        }
+        
+        aiVideoProgressBus.publish(session);
+        return update;
+    }
+    
+    @Override
+    public void updateStreamUrls(String streamId, String streamUrl, String hlsUrl, String webrtcUrl) {
+        AiVideoSession session = get(streamId);
+        if (session == null) {
+            return;
+        }
+        ReentrantLock lock = lockFor(streamId);
+        lock.lock();
+        try {
+            session.setStreamUrl(streamUrl);
+            session.setHlsUrl(hlsUrl);
+            session.setWebrtcUrl(webrtcUrl);
+            dirty.remove(streamId);
+            aiVideoSessionMapper.updateById(session);
+        } finally {
+            lock.unlock();
+        }
+        aiVideoProgressBus.publish(session);
+    }
+    
+    @Override
+    public void updateGenerationInfo(String streamId, String generationInfo) {
+        AiVideoSession session = get(streamId);
+        if (session == null) {
+            return;
+        }
+        ReentrantLock lock = lockFor(streamId);
+        lock.lock();
+        try {
+            session.setGenerationInfo(generationInfo);
+            dirty.remove(streamId);
+            aiVideoSessionMapper.updateById(session);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public List<AiVideoSession> recover() {
+        QueryWrapper<AiVideoSession> queryWrapper = new QueryWrapper<>();
+        queryWrapper.in("status", "PENDING", "GENERATING", "STREAMING");
+        List<AiVideoSession> candidates = aiVideoSessionMapper.selectList(queryWrapper);
+        // 刚插入的会话可能还没来得及登记租约，留给下一轮
+        LocalDateTime grace = LocalDateTime.now().minus(ownerLease);
+        List<AiVideoSession> recovered = new ArrayList<>();
+        for (AiVideoSession session : candidates) {
+            String streamId = session.getStreamId();
+            if (sessions.containsKey(streamId)
+                    || (session.getStartTime() != null && session.getStartTime().isAfter(grace))) {
+                continue;
+            }
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                    .setIfAbsent(OWNER_PREFIX + streamId, nodeId, ownerLease))) {
+                sessions.put(streamId, session);
+                recovered.add(session);
+            }
+        }
+        if (!recovered.isEmpty()) {
+            log.info("接管属主已下线的AI视频会话: candidates={}, recovered={}", candidates.size(), recovered.size());
+        }
+        return recovered;
+    }
+    
+    /**
+     * 为本节点跟踪的会话续约；租约已过期或已被其他节点接管（如本节点长时间停顿）时
+     * 不再跟踪该会话并取消本节点上的进度监听，由恢复流程重新分配属主
+     */
+    void renewOwnership() {
+        String leaseMillis = String.valueOf(ownerLease.toMillis());
+        for (String streamId : sessions.keySet()) {
+            try {
+                Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, List.of(OWNER_PREFIX + streamId),
+                        nodeId, leaseMillis);
+                if (renewed != null && renewed == 0L) {
+                    log.warn("AI视频会话租约已失效，本节点停止跟踪: streamId={}", streamId);
+                    sessions.remove(streamId);
+                    dirty.remove(streamId);
+                    locks.remove(streamId);
+                    aiVideoJobScheduler.cancel(streamId);
+                }
+            } catch (Exception e) {
+                log.error("AI视频会话租约续约失败: streamId={}", streamId, e);
+            }
+        }
+    }
+    
+    /**
+     * 定时写回合并后的进度
+     */
+    @Scheduled(fixedDelayString = "${app.ai.session.persist-interval:PT5S}")
+    public void flushProgress() {
+        Iterator<String> iterator = dirty.iterator();
+        while (iterator.hasNext()) {
+            String streamId = iterator.next();
+            iterator.remove();
+            AiVideoSession session = sessions.get(streamId);
+            if (session == null) {
+                continue;
+            }
+            ReentrantLock lock = lockFor(streamId);
+            lock.lock();
+            try {
+                persistProgress(session);
+            } catch (Exception e) {
+                // 写回失败时重新标记，等待下次重试
+                dirty.add(streamId);
+                log.error("AI视频会话进度写回失败: streamId={}", streamId, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        leaseRenewer.shutdownNow();
+        flushProgress();
+    }
+    
+    /**
+     * 只更新进度字段，避免覆盖其他节点或回调写入的列
+     */
+    private void persistProgress(AiVideoSession session) {
+        AiVideoSession patch = new AiVideoSession();
+        patch.setId(session.getId());
+        patch.setProgress(session.getProgress());
+        aiVideoSessionMapper.updateById(patch);
+    }
+    
+    private void releaseOwnership(String streamId) {
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(OWNER_PREFIX + streamId), nodeId);
+        } catch (Exception e) {
+            log.warn("释放AI视频会话租约失败，等待过期: streamId={}", streamId, e);
+        }
+    }
+    
+    private ReentrantLock lockFor(String streamId) {
+        return locks.computeIfAbsent(streamId, key -> new ReentrantLock());
+    }
+    
+    private boolean isTerminal(String status) {
+        return "COMPLETED".equals(status) || "FAILED".equals(status) || "STOPPED".equals(status);
+    }
+}
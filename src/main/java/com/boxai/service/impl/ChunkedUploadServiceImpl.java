@@ -0,0 +1,484 @@
+package com.boxai.service.impl;
+
+import com.boxai.domain.dto.ChunkedUploadStatusResponse;
+import com.boxai.domain.dto.MediaUploadResponse;
+import com.boxai.domain.dto.request.ChunkedUploadInitRequest;
+import com.boxai.domain.dto.request.MediaUploadRequest;
+import com.boxai.domain.entity.Track;
+import com.boxai.domain.mapper.TrackMapper;
+import com.boxai.service.AdminTrackService;
+import com.boxai.service.ChunkedUploadService;
+import com.boxai.service.MediaBlobService;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 大文件分片上传服务实现
+ * <p>
+ * 每个上传任务在磁盘上对应一个目录：manifest.json 记录任务元数据，data.part 为按文件总大小预分配的数据文件，
+ * 每个分片按 index * chunkSize 的偏移量直接定位写入 data.part，写入并校验成功后创建 chunk-{index}.ok 标记。
+ * 分片之间互不影响，可由管理后台并行上传；服务重启后根据 manifest 与标记文件恢复进度，实现断点续传。
+ * 任务目录的修改时间即最近一次成功上传分片的时间，超过 session-ttl 没有进展的任务由定时任务连同预分配的
+ * 数据文件一起删除。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChunkedUploadServiceImpl implements ChunkedUploadService {
+
+    private static final String MANIFEST_FILE = "manifest.json";
+    private static final String DATA_FILE = "data.part";
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;          // 256KB
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;    // 64MB
+    private static final int IO_BUFFER_SIZE = 256 * 1024;
+
+    private final TrackMapper trackMapper;
+    private final AdminTrackService adminTrackService;
+    private final MediaBlobService mediaBlobService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.media.upload.chunk-dir:/opt/boxai/uploads/chunked}")
+    private String chunkDir;
+
+    @Value("${app.media.upload.chunk-size:8388608}")
+    private int defaultChunkSize;
+
+    @Value("${app.media.upload.max-file-size:21474836480}")
+    private long maxFileSize;
+
+    @Value("${app.media.upload.session-ttl:P1D}")
+    private Duration sessionTtl;
+
+    // 活跃上传任务（内存缓存，未命中时从磁盘manifest恢复）
+    private final ConcurrentHashMap<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public ChunkedUploadStatusResponse initUpload(ChunkedUploadInitRequest request) {
+        if (request.getFileSize() > maxFileSize) {
+            throw new RuntimeException("文件大小不能超过" + (maxFileSize / 1024 / 1024) + "MB");
+        }
+        adminTrackService.validateMediaExtension(request.getOriginalFileName(), request.getFileType());
+
+        Track track = trackMapper.selectById(request.getTrackId());
+        if (track == null) {
+            throw new RuntimeException("歌曲不存在: " + request.getTrackId());
+        }
+
+        int chunkSize = request.getChunkSize() != null ? request.getChunkSize() : defaultChunkSize;
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE) {
+            throw new RuntimeException("分片大小需在" + MIN_CHUNK_SIZE + "到" + MAX_CHUNK_SIZE + "字节之间");
+        }
+
+        String uploadId = "chunked_" + UUID.randomUUID().toString().replace("-", "");
+
+        // 存储中已有相同内容时直接引用（秒传），跳过全部分片传输
+        if (request.getFileMd5() != null && mediaBlobService.findByHash(request.getFileMd5()) != null) {
+            return attachExisting(uploadId, request);
+        }
+
+        UploadSession session = new UploadSession();
+        session.setUploadId(uploadId);
+        session.setTrackId(request.getTrackId());
+        session.setFileType(request.getFileType());
+        session.setOriginalFileName(request.getOriginalFileName());
+        session.setFileSize(request.getFileSize());
+        session.setFileMd5(request.getFileMd5());
+        session.setQuality(request.getQuality());
+        session.setRemark(request.getRemark());
+        session.setChunkSize(chunkSize);
+        session.setTotalChunks((int) ((request.getFileSize() + chunkSize - 1) / chunkSize));
+        session.setCreatedAt(System.currentTimeMillis());
+
+        try {
+            Path dir = sessionDir(session.getUploadId());
+            Files.createDirectories(dir);
+            // 预分配数据文件，分片按偏移量定位写入
+            try (RandomAccessFile raf = new RandomAccessFile(dir.resolve(DATA_FILE).toFile(), "rw")) {
+                raf.setLength(session.getFileSize());
+            }
+            objectMapper.writeValue(dir.resolve(MANIFEST_FILE).toFile(), session);
+        } catch (IOException e) {
+            log.error("初始化分片上传失败: trackId={}", request.getTrackId(), e);
+            throw new RuntimeException("初始化分片上传失败: " + e.getMessage());
+        }
+
+        sessions.put(session.getUploadId(), session);
+        log.info("初始化分片上传: uploadId={}, trackId={}, fileSize={}, chunkSize={}, totalChunks={}",
+                session.getUploadId(), session.getTrackId(), session.getFileSize(), chunkSize, session.getTotalChunks());
+
+        return toStatus(session);
+    }
+
+    @Override
+    public ChunkedUploadStatusResponse uploadChunk(String uploadId, int index, String checksum, InputStream data) {
+        UploadSession session = loadSession(uploadId);
+        if (index < 0 || index >= session.getTotalChunks()) {
+            throw new RuntimeException("分片序号越界: " + index);
+        }
+        if (checksum == null || checksum.isEmpty()) {
+            throw new RuntimeException("分片校验码不能为空");
+        }
+
+        synchronized (session) {
+            if (session.isCompleting()) {
+                throw new RuntimeException("上传任务正在合并，不能再上传分片");
+            }
+            if (session.getReceived().get(index)) {
+                // 已接收的分片直接返回，客户端重试无副作用
+                return toStatus(session);
+            }
+            if (!session.getInFlight().add(index)) {
+                throw new RuntimeException("分片正在上传中: " + index);
+            }
+        }
+
+        try {
+            long offset = (long) index * session.getChunkSize();
+            long expectedLength = Math.min(session.getChunkSize(), session.getFileSize() - offset);
+            Path dir = sessionDir(uploadId);
+
+            String actualMd5 = writeChunk(dir.resolve(DATA_FILE), offset, expectedLength, data);
+            if (!actualMd5.equalsIgnoreCase(checksum)) {
+                throw new RuntimeException("分片校验失败: index=" + index);
+            }
+
+            Files.createFile(dir.resolve(chunkMarker(index)));
+            synchronized (session) {
+                session.getReceived().set(index);
+            }
+            log.debug("分片上传成功: uploadId={}, index={}, size={}", uploadId, index, expectedLength);
+            return toStatus(session);
+
+        } catch (IOException e) {
+            log.error("分片写入失败: uploadId={}, index={}", uploadId, index, e);
+            throw new RuntimeException("分片写入失败: " + e.getMessage());
+        } finally {
+            synchronized (session) {
+                session.getInFlight().remove(index);
+            }
+        }
+    }
+
+    @Override
+    public ChunkedUploadStatusResponse getUploadStatus(String uploadId) {
+        return toStatus(loadSession(uploadId));
+    }
+
+    @Override
+    public MediaUploadResponse completeUpload(String uploadId) {
+        UploadSession session = loadSession(uploadId);
+        synchronized (session) {
+            if (session.isCompleting()) {
+                throw new RuntimeException("上传任务正在合并: " + uploadId);
+            }
+            if (!session.getInFlight().isEmpty()) {
+                throw new RuntimeException("仍有分片正在上传，请稍后再完成");
+            }
+            int missing = session.getTotalChunks() - session.getReceived().cardinality();
+            if (missing > 0) {
+                throw new RuntimeException("还有" + missing + "个分片未上传");
+            }
+            session.setCompleting(true);
+        }
+
+        try {
+            Path dir = sessionDir(uploadId);
+            Path dataFile = dir.resolve(DATA_FILE);
+
+            String fileMd5 = calculateMd5(dataFile);
+            if (session.getFileMd5() != null && !session.getFileMd5().isEmpty()
+                    && !session.getFileMd5().equalsIgnoreCase(fileMd5)) {
+                throw new RuntimeException("文件MD5校验失败");
+            }
+
+            MediaUploadRequest request = new MediaUploadRequest();
+            request.setTrackId(session.getTrackId());
+            request.setFileType(session.getFileType());
+            request.setOriginalFileName(session.getOriginalFileName());
+            request.setFileSize(session.getFileSize());
+            request.setFileMd5(fileMd5);
+            request.setQuality(session.getQuality());
+            request.setRemark(session.getRemark());
+
+            MediaUploadResponse response = adminTrackService.attachUploadedFile(uploadId, dataFile, request);
+            if ("SUCCESS".equals(response.getUploadStatus())) {
+                sessions.remove(uploadId);
+                deleteSessionDir(dir);
+                log.info("分片上传完成: uploadId={}, trackId={}, size={}", uploadId, session.getTrackId(), session.getFileSize());
+            }
+            return response;
+
+        } catch (IOException e) {
+            log.error("合并分片失败: uploadId={}", uploadId, e);
+            throw new RuntimeException("合并分片失败: " + e.getMessage());
+        } finally {
+            synchronized (session) {
+                session.setCompleting(false);
+            }
+        }
+    }
+
+    @Override
+    public void abortUpload(String uploadId) {
+        UploadSession session = sessions.remove(uploadId);
+        Path dir = sessionDir(uploadId);
+        if (session == null && !Files.exists(dir)) {
+            throw new RuntimeException("上传任务不存在: " + uploadId);
+        }
+        deleteSessionDir(dir);
+        log.info("取消分片上传: uploadId={}", uploadId);
+    }
+
+    /**
+     * 定时清理超过 session-ttl 没有进展的上传任务（含服务重启前遗留、未被访问过的任务目录）
+     */
+    @Scheduled(fixedDelayString = "${app.media.upload.cleanup-interval:PT1H}")
+    public void cleanupExpired() {
+        Path root = Paths.get(chunkDir);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        long threshold = System.currentTimeMillis() - sessionTtl.toMillis();
+        Path[] dirs;
+        try (Stream<Path> entries = Files.list(root)) {
+            dirs = entries.filter(Files::isDirectory).toArray(Path[]::new);
+        } catch (IOException e) {
+            log.warn("扫描分片上传目录失败: {}", root, e);
+            return;
+        }
+        for (Path dir : dirs) {
+            String uploadId = dir.getFileName().toString();
+            try {
+                if (Files.getLastModifiedTime(dir).toMillis() >= threshold) {
+                    continue;
+                }
+            } catch (IOException e) {
+                continue;
+            }
+            UploadSession session = sessions.get(uploadId);
+            if (session != null) {
+                synchronized (session) {
+                    if (session.isCompleting() || !session.getInFlight().isEmpty()) {
+                        continue;
+                    }
+                    sessions.remove(uploadId, session);
+                }
+            }
+            deleteSessionDir(dir);
+            log.info("清理过期的分片上传任务: uploadId={}", uploadId);
+        }
+    }
+
+    /**
+     * 秒传：将歌曲直接关联到存储中已有的相同内容
+     */
+    private ChunkedUploadStatusResponse attachExisting(String uploadId, ChunkedUploadInitRequest init) {
+        MediaUploadRequest request = new MediaUploadRequest();
+        request.setTrackId(init.getTrackId());
+        request.setFileType(init.getFileType());
+        request.setOriginalFileName(init.getOriginalFileName());
+        request.setFileSize(init.getFileSize());
+        request.setFileMd5(init.getFileMd5());
+        request.setQuality(init.getQuality());
+        request.setRemark(init.getRemark());
+
+        MediaUploadResponse uploaded = adminTrackService.attachUploadedFile(uploadId, null, request);
+        if (!"SUCCESS".equals(uploaded.getUploadStatus())) {
+            throw new RuntimeException(uploaded.getMessage());
+        }
+
+        ChunkedUploadStatusResponse response = new ChunkedUploadStatusResponse();
+        response.setUploadId(uploadId);
+        response.setTrackId(init.getTrackId());
+        response.setFileSize(init.getFileSize());
+        response.setTotalChunks(0);
+        response.setUploadedChunks(List.of());
+        response.setStatus("DEDUPLICATED");
+        response.setCdnUrl(uploaded.getCdnUrl());
+
+        log.info("分片上传命中已有内容，跳过传输: uploadId={}, trackId={}, hash={}",
+                uploadId, init.getTrackId(), init.getFileMd5());
+        return response;
+    }
+
+    /**
+     * 将分片数据按偏移量写入数据文件，同时计算MD5
+     */
+    private String writeChunk(Path dataFile, long offset, long expectedLength, InputStream data) throws IOException {
+        MessageDigest md = newMd5();
+        byte[] buffer = new byte[IO_BUFFER_SIZE];
+        long written = 0;
+
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = data.read(buffer)) != -1) {
+                if (written + read > expectedLength) {
+                    throw new RuntimeException("分片大小超出预期: 期望" + expectedLength + "字节");
+                }
+                md.update(buffer, 0, read);
+                ByteBuffer bb = ByteBuffer.wrap(buffer, 0, read);
+                while (bb.hasRemaining()) {
+                    written += channel.write(bb, offset + written);
+                }
+            }
+            if (written != expectedLength) {
+                throw new RuntimeException("分片大小不完整: 期望" + expectedLength + "字节，实际" + written + "字节");
+            }
+            channel.force(false);
+        }
+        return toHex(md.digest());
+    }
+
+    /**
+     * 顺序读取合并后的文件计算整体MD5
+     */
+    private String calculateMd5(Path file) throws IOException {
+        MessageDigest md = newMd5();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(md.digest());
+    }
+
+    /**
+     * 获取上传任务，内存中不存在时从磁盘恢复（服务重启后的断点续传）
+     */
+    private UploadSession loadSession(String uploadId) {
+        if (uploadId == null || !uploadId.matches("[A-Za-z0-9_]+")) {
+            throw new RuntimeException("上传任务ID无效: " + uploadId);
+        }
+        return sessions.computeIfAbsent(uploadId, id -> {
+            Path dir = sessionDir(id);
+            Path manifest = dir.resolve(MANIFEST_FILE);
+            if (!Files.exists(manifest)) {
+                throw new RuntimeException("上传任务不存在: " + id);
+            }
+            try {
+                UploadSession session = objectMapper.readValue(manifest.toFile(), UploadSession.class);
+                for (int i = 0; i < session.getTotalChunks(); i++) {
+                    if (Files.exists(dir.resolve(chunkMarker(i)))) {
+                        session.getReceived().set(i);
+                    }
+                }
+                log.info("从磁盘恢复分片上传任务: uploadId={}, received={}/{}",
+                        id, session.getReceived().cardinality(), session.getTotalChunks());
+                return session;
+            } catch (IOException e) {
+                throw new RuntimeException("读取上传任务失败: " + e.getMessage());
+            }
+        });
+    }
+
+    private ChunkedUploadStatusResponse toStatus(UploadSession session) {
+        List<Integer> uploaded = new ArrayList<>();
+        synchronized (session) {
+            BitSet received = session.getReceived();
+            for (int i = received.nextSetBit(0); i >= 0; i = received.nextSetBit(i + 1)) {
+                uploaded.add(i);
+            }
+        }
+        ChunkedUploadStatusResponse response = new ChunkedUploadStatusResponse();
+        response.setUploadId(session.getUploadId());
+        response.setTrackId(session.getTrackId());
+        response.setFileSize(session.getFileSize());
+        response.setChunkSize(session.getChunkSize());
+        response.setTotalChunks(session.getTotalChunks());
+        response.setUploadedChunks(uploaded);
+        response.setStatus(uploaded.size() == session.getTotalChunks() ? "COMPLETED" : "UPLOADING");
+        return response;
+    }
+
+    private Path sessionDir(String uploadId) {
+        return Paths.get(chunkDir, uploadId);
+    }
+
+    private static String chunkMarker(int index) {
+        return "chunk-" + index + ".ok";
+    }
+
+    private void deleteSessionDir(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toArray(Path[]::new)) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            log.warn("清理分片上传目录失败: {}", dir, e);
+        }
+    }
+
+    private static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (Exception e) {
+            throw new IllegalStateException("MD5 不可用", e);
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 分片上传任务（manifest.json）
+     */
+    @Data
+    static class UploadSession {
+        private String uploadId;
+        private Long trackId;
+        private String fileType;
+        private String originalFileName;
+        private Long fileSize;
+        private String fileMd5;
+        private String quality;
+        private String remark;
+        private Integer chunkSize;
+        private Integer totalChunks;
+        private Long createdAt;
+
+        @JsonIgnore
+        private final BitSet received = new BitSet();
+        @JsonIgnore
+        private final Set<Integer> inFlight = new HashSet<>();
+        @JsonIgnore
+        private boolean completing;
+    }
+}
@@ -1,5 +1,6 @@
 package com.boxai.service.impl;
 
+import com.boxai.common.device.DeviceCommandCodec;
 import com.boxai.domain.dto.device.AiVideoStreamCommand;
 import com.boxai.domain.dto.device.DeviceControlCommand;
 import com.boxai.domain.dto.device.LightingControlCommand;
@@ -8,17 +9,51 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
 /**
  * 设备控制服务实现
+ * 命令追加到房间命令流 device:commands:{roomId}，字段 type 为命令类型、payload 为命令内容；
+ * 盒子以各自的消费组读取并确认，断线重连或重启后从上次确认处继续，流按 MAXLEN ~ 近似裁剪。
+ * 按配置同时发布到 Pub/Sub：room 模式发布到按房间分片的频道 {channel}:{roomId}，盒子只订阅本房间，
+ * 每条命令只投递给本房间的盒子；global 模式发布到旧版全局频道，仅用于兼容未配置房间的旧盒子；
+ * both 模式（默认）同时发布到两者，供新旧盒子混布的过渡期使用。
+ * <p>
+ * 命令流的 payload 在房间内所有盒子都声明支持时使用二进制格式（{@link DeviceCommandCodec}），否则为JSON：
+ * 盒子把支持的格式登记在 device:codecs:{roomId}（字段为盒子标识，值为 "格式;过期时间毫秒"），
+ * 流上每个消费组 box:{boxId} 对应一个盒子，任一消费组没有有效登记（如未升级的旧盒子、暂时离线的盒子）
+ * 就继续发送JSON，避免只认JSON的盒子读到二进制命令后确认丢弃；所有消费者空闲超过 stale-group-ttl
+ * 的消费组（如已拆除或更换的盒子，按 XINFO CONSUMERS 的空闲时间）会被删除，不再参与编码选择。
+ * Pub/Sub 频道上的副本始终为JSON
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DeviceControlServiceImpl implements DeviceControlService {
 
+    private static final String STREAM_PREFIX = "device:commands:";
+    private static final String CODECS_PREFIX = "device:codecs:";
+    private static final String GROUP_PREFIX = "box:";
+    private static final byte[] FIELD_TYPE = "type".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FIELD_PAYLOAD = "payload".getBytes(StandardCharsets.UTF_8);
+    private static final String TYPE_CONTROL = "control";
+    private static final String TYPE_LIGHT = "light";
+    private static final String TYPE_AI_VIDEO = "ai-video";
+
     private static final String CHANNEL = "device:control";
     private static final String LIGHT_CHANNEL = "device:light";
     private static final String AI_VIDEO_CHANNEL = "device:ai-video";
@@ -26,12 +61,32 @@ public class DeviceControlServiceImpl implements DeviceControlService {
     private final StringRedisTemplate stringRedisTemplate;
     private final ObjectMapper objectMapper;
 
+    /**
+     * 各房间的编码选择缓存，避免每条命令都查询登记信息
+     */
+    private final Map<Long, CodecChoice> codecChoices = new ConcurrentHashMap<>();
+
+    @Value("${app.device.commands.stream-max-len:1000}")
+    private long streamMaxLen;
+
+    @Value("${app.device.commands.pubsub-mode:both}")
+    private String pubSubMode;
+
+    @Value("${app.device.commands.binary-enabled:true}")
+    private boolean binaryEnabled;
+
+    @Value("${app.device.commands.codec-cache-ttl:PT5S}")
+    private Duration codecCacheTtl;
+
+    @Value("${app.device.commands.stale-group-ttl:P7D}")
+    private Duration staleGroupTtl;
+
     @Override
     public void publish(DeviceControlCommand command) {
         try {
-            String payload = objectMapper.writeValueAsString(command);
-            stringRedisTemplate.convertAndSend(CHANNEL, payload);
-            log.info("已发布设备控制命令: {}", payload);
+            RecordId id = send(command.getRoomId(), TYPE_CONTROL, CHANNEL, command,
+                    () -> DeviceCommandCodec.encode(command));
+            log.info("已发布设备控制命令: id={}, command={}", id, command);
         } catch (JsonProcessingException e) {
             log.error("序列化控制命令失败", e);
             throw new RuntimeException("发布控制命令失败");
@@ -41,26 +96,159 @@ public class DeviceControlServiceImpl implements DeviceControlService {
     @Override
     public void publishLighting(LightingControlCommand command) {
         try {
-            String payload = objectMapper.writeValueAsString(command);
-            stringRedisTemplate.convertAndSend(LIGHT_CHANNEL, payload);
-            log.info("已发布灯光控制命令: {}", payload);
+            RecordId id = send(command.getRoomId(), TYPE_LIGHT, LIGHT_CHANNEL, command,
+                    () -> DeviceCommandCodec.encode(command));
+            log.info("已发布灯光控制命令: id={}, command={}", id, command);
         } catch (JsonProcessingException e) {
             log.error("序列化灯光命令失败", e);
             throw new RuntimeException("发布灯光命令失败");
         }
     }
-    
+
     @Override
     public void publishAiVideo(AiVideoStreamCommand command) {
         try {
-            String payload = objectMapper.writeValueAsString(command);
-            stringRedisTemplate.convertAndSend(AI_VIDEO_CHANNEL, payload);
-            log.info("已发布AI视频流控制命令: streamId={}, action={}", command.getStreamId(), command.getAction());
+            RecordId id = send(command.getRoomId(), TYPE_AI_VIDEO, AI_VIDEO_CHANNEL, command,
+                    () -> DeviceCommandCodec.encode(command));
+            log.info("已发布AI视频流控制命令: id={}, streamId={}, action={}",
+                    id, command.getStreamId(), command.getAction());
         } catch (JsonProcessingException e) {
             log.error("序列化AI视频流命令失败", e);
             throw new RuntimeException("发布AI视频流命令失败");
         }
     }
-}
 
+    /**
+     * 追加到房间命令流（XADD MAXLEN ~），并按配置同时发布到房间频道和/或旧版全局频道
+     */
+    private RecordId send(Long roomId, String type, String channel, Object command,
+                          Supplier<byte[]> binaryEncoder) throws JsonProcessingException {
+        if (roomId == null) {
+            throw new RuntimeException("设备命令缺少房间ID");
+        }
+        boolean binary = useBinary(roomId);
+        String json = binary && "none".equals(pubSubMode) ? null : objectMapper.writeValueAsString(command);
+        byte[] payload = binary ? binaryEncoder.get() : json.getBytes(StandardCharsets.UTF_8);
+
+        ByteRecord record = StreamRecords.rawBytes(Map.of(
+                        FIELD_TYPE, type.getBytes(StandardCharsets.UTF_8),
+                        FIELD_PAYLOAD, payload))
+                .withStreamKey((STREAM_PREFIX + roomId).getBytes(StandardCharsets.UTF_8));
+        RedisStreamCommands.XAddOptions options = RedisStreamCommands.XAddOptions.maxlen(streamMaxLen)
+                .approximateTrimming(true);
+        RecordId id = stringRedisTemplate.execute((RedisCallback<RecordId>) connection ->
+                connection.streamCommands().xAdd(record, options));
+        switch (pubSubMode) {
+            case "room" -> stringRedisTemplate.convertAndSend(channel + ":" + roomId, json);
+            case "global" -> stringRedisTemplate.convertAndSend(channel, json);
+            case "both" -> {
+                stringRedisTemplate.convertAndSend(channel + ":" + roomId, json);
+                stringRedisTemplate.convertAndSend(channel, json);
+            }
+            default -> { }
+        }
+        return id;
+    }
 
+    private boolean useBinary(Long roomId) {
+        if (!binaryEnabled) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        CodecChoice cached = codecChoices.get(roomId);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.binary();
+        }
+        boolean binary = allBoxesSupportBinary(roomId, now);
+        CodecChoice choice = new CodecChoice(binary, now + codecCacheTtl.toMillis());
+        CodecChoice previous = codecChoices.put(roomId, choice);
+        if (previous == null || previous.binary() != binary) {
+            log.info("房间设备命令编码: roomId={}, codec={}", roomId, binary ? DeviceCommandCodec.CAPABILITY : "json");
+        }
+        return binary;
+    }
+
+    /**
+     * 房间命令流上每个未过期的消费组都有未过期的二进制能力登记时才使用二进制，没有消费组时使用JSON；
+     * 顺带删除长期无人读取的消费组。查询失败按JSON处理
+     */
+    private boolean allBoxesSupportBinary(Long roomId, long now) {
+        try {
+            String streamKey = STREAM_PREFIX + roomId;
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(streamKey))) {
+                return false;
+            }
+            StreamInfo.XInfoGroups groups = stringRedisTemplate.opsForStream().groups(streamKey);
+            if (groups.isEmpty()) {
+                return false;
+            }
+            Map<Object, Object> registrations = stringRedisTemplate.opsForHash().entries(CODECS_PREFIX + roomId);
+            boolean anyGroup = false;
+            boolean allBinary = true;
+            for (StreamInfo.XInfoGroup group : groups) {
+                String name = group.groupName();
+                long idleMillis = minConsumerIdle(streamKey, name);
+                if (idleMillis > staleGroupTtl.toMillis()) {
+                    stringRedisTemplate.opsForStream().destroyGroup(streamKey, name);
+                    log.info("删除长期无人读取的设备命令消费组: roomId={}, group={}", roomId, name);
+                    continue;
+                }
+                anyGroup = true;
+                if (!name.startsWith(GROUP_PREFIX)
+                        || !supportsBinary(registrations.get(name.substring(GROUP_PREFIX.length())), now)) {
+                    allBinary = false;
+                }
+            }
+            return anyGroup && allBinary;
+        } catch (RuntimeException e) {
+            log.warn("查询房间设备编码能力失败，使用JSON: roomId={}, error={}", roomId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 消费组内消费者的最小空闲时间（毫秒），即该组最近一次读取距今的时长；还没有消费者时返回-1，
+     * 这样的消费组（刚创建、尚未读取）不会被当作长期无人读取而删除，仍参与编码选择
+     */
+    private long minConsumerIdle(String streamKey, String group) {
+        StreamInfo.XInfoConsumers consumers = stringRedisTemplate.opsForStream().consumers(streamKey, group);
+        if (consumers.isEmpty()) {
+            return -1;
+        }
+        long idle = Long.MAX_VALUE;
+        for (StreamInfo.XInfoConsumer consumer : consumers) {
+            idle = Math.min(idle, consumer.idleTimeMs());
+        }
+        return idle;
+    }
+
+    private static boolean supportsBinary(Object registration, long now) {
+        if (registration == null) {
+            return false;
+        }
+        String value = registration.toString();
+        int separator = value.lastIndexOf(';');
+        if (separator < 0) {
+            return false;
+        }
+        try {
+            long expiresAt = Long.parseLong(value.substring(separator + 1));
+            if (expiresAt <= now) {
+                return false;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        for (String codec : value.substring(0, separator).split(",")) {
+            if (DeviceCommandCodec.CAPABILITY.equals(codec.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 房间的编码选择及其缓存到期时间
+     */
+    private record CodecChoice(boolean binary, long expiresAt) {}
+}
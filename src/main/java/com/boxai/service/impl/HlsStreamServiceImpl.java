@@ -0,0 +1,215 @@
+package com.boxai.service.impl;
+
+import com.boxai.service.HlsStreamService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * HLS多码率输出服务实现
+ * 码率阶梯配置格式为"宽x高:码率kbps"的逗号分隔列表（app.streaming.abr.ladder.{分辨率}），
+ * 未配置的分辨率使用 default 阶梯。切片文件写入后不再变化，缓存到按字节数淘汰的LRU中；
+ * 播放列表随FFmpeg滚动更新，只缓存很短的时间。多块屏幕同时请求未缓存的文件时只读一次磁盘
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HlsStreamServiceImpl implements HlsStreamService {
+    
+    private static final Pattern SAFE_PATH = Pattern.compile("[A-Za-z0-9_-]+(/[A-Za-z0-9_-]+)?\\.(m3u8|ts|m4s|mp4)");
+    
+    private final Environment environment;
+    
+    @Value("${app.streaming.abr.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${app.streaming.abr.output-dir:/tmp/boxai/hls}")
+    private String outputDir;
+    
+    @Value("${app.streaming.abr.public-base-url:http://localhost:9998/api/hls}")
+    private String publicBaseUrl;
+    
+    @Value("${app.streaming.abr.segment-duration:2}")
+    private int segmentDuration;
+    
+    @Value("${app.streaming.abr.list-size:6}")
+    private int listSize;
+    
+    @Value("${app.streaming.abr.segment-cache-bytes:268435456}")
+    private long segmentCacheBytes;
+    
+    @Value("${app.streaming.abr.playlist-ttl:PT0.5S}")
+    private Duration playlistTtl;
+    
+    private final Map<String, List<Rendition>> ladders = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, CachedFile> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, CompletableFuture<byte[]>> loading = new ConcurrentHashMap<>();
+    private long cachedBytes;
+    
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @Override
+    public List<Rendition> getLadder(String resolution) {
+        String key = resolution != null ? resolution : "default";
+        return ladders.computeIfAbsent(key, k -> {
+            String spec = environment.getProperty("app.streaming.abr.ladder." + k);
+            if (spec == null) {
+                spec = environment.getProperty("app.streaming.abr.ladder.default", "1280x720:3000,854x480:1200,640x360:700");
+            }
+            return parseLadder(spec);
+        });
+    }
+    
+    @Override
+    public Path getOutputDir(String streamId) {
+        return Paths.get(outputDir, streamId);
+    }
+    
+    @Override
+    public String getMasterPlaylistUrl(String streamId) {
+        return publicBaseUrl + "/" + streamId + "/master.m3u8";
+    }
+    
+    @Override
+    public int getSegmentDuration() {
+        return segmentDuration;
+    }
+    
+    @Override
+    public int getListSize() {
+        return listSize;
+    }
+    
+    @Override
+    public byte[] read(String streamId, String relativePath) {
+        if (!SAFE_PATH.matcher(relativePath).matches() || !SAFE_PATH.matcher(streamId + ".ts").matches()) {
+            return null;
+        }
+        String key = streamId + "/" + relativePath;
+        boolean playlist = relativePath.endsWith(".m3u8");
+        
+        synchronized (cache) {
+            CachedFile cached = cache.get(key);
+            if (cached != null && (!playlist || System.currentTimeMillis() - cached.loadedAt() < playlistTtl.toMillis())) {
+                return cached.data();
+            }
+        }
+        
+        // 同一文件的并发未命中只读一次磁盘
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing.join();
+        }
+        try {
+            byte[] data = load(getOutputDir(streamId).resolve(relativePath));
+            if (data != null) {
+                put(key, data);
+            }
+            future.complete(data);
+            return data;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+    
+    @Override
+    public void purge(String streamId) {
+        String prefix = streamId + "/";
+        synchronized (cache) {
+            Iterator<Map.Entry<String, CachedFile>> iterator = cache.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, CachedFile> entry = iterator.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    cachedBytes -= entry.getValue().data().length;
+                    iterator.remove();
+                }
+            }
+        }
+        Path dir = getOutputDir(streamId);
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("删除HLS输出失败: path={}", path, e);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("清理HLS输出目录失败: streamId={}", streamId, e);
+        }
+    }
+    
+    private byte[] load(Path path) {
+        try {
+            return Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("读取HLS文件失败: " + path, e);
+        }
+    }
+    
+    private void put(String key, byte[] data) {
+        if (data.length > segmentCacheBytes) {
+            return;
+        }
+        synchronized (cache) {
+            CachedFile previous = cache.put(key, new CachedFile(data, System.currentTimeMillis()));
+            cachedBytes += data.length - (previous != null ? previous.data().length : 0);
+            Iterator<Map.Entry<String, CachedFile>> iterator = cache.entrySet().iterator();
+            while (cachedBytes > segmentCacheBytes && iterator.hasNext()) {
+                Map.Entry<String, CachedFile> eldest = iterator.next();
+                cachedBytes -= eldest.getValue().data().length;
+                iterator.remove();
+            }
+        }
+    }
+    
+    private List<Rendition> parseLadder(String spec) {
+        List<Rendition> ladder = new ArrayList<>();
+        for (String rung : spec.split(",")) {
+            String[] parts = rung.trim().split("[x:]");
+            if (parts.length != 3) {
+                log.warn("忽略无效的码率阶梯配置: {}", rung);
+                continue;
+            }
+            int width = Integer.parseInt(parts[0].trim());
+            int height = Integer.parseInt(parts[1].trim());
+            int bitrate = Integer.parseInt(parts[2].trim());
+            ladder.add(new Rendition(height + "p", width, height, bitrate));
+        }
+        ladder.sort(Comparator.comparingInt(Rendition::bitrateKbps).reversed());
+        return List.copyOf(ladder);
+    }
+    
+    private record CachedFile(byte[] data, long loadedAt) {}
+}
@@ -0,0 +1,136 @@
+package com.boxai.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.boxai.domain.entity.MediaBlob;
+import com.boxai.domain.entity.MediaBlobRef;
+import com.boxai.domain.mapper.MediaBlobMapper;
+import com.boxai.domain.mapper.MediaBlobRefMapper;
+import com.boxai.service.MediaBlobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 内容寻址媒体存储服务实现
+ * 文件存放在 {blob-dir}/{hash前两位}/{hash}{ext}，按前缀分目录避免单目录文件过多
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MediaBlobServiceImpl implements MediaBlobService {
+    
+    private final MediaBlobMapper mediaBlobMapper;
+    private final MediaBlobRefMapper mediaBlobRefMapper;
+    
+    @Value("${app.media.blob-dir:/opt/boxai/uploads/blobs}")
+    private String blobDir;
+    
+    @Value("${app.media.blob-cdn-base-url:https://cdn.boxai.com/media/blobs}")
+    private String blobCdnBaseUrl;
+    
+    @Override
+    public MediaBlob findByHash(String contentHash) {
+        if (contentHash == null || contentHash.isEmpty()) {
+            return null;
+        }
+        return mediaBlobMapper.selectOne(new QueryWrapper<MediaBlob>().eq("content_hash", contentHash.toLowerCase()));
+    }
+    
+    @Override
+    public MediaBlob findByTrack(Long trackId, String mediaType) {
+        MediaBlobRef ref = findRef(trackId, mediaType);
+        return ref != null ? findByHash(ref.getContentHash()) : null;
+    }
+    
+    @Override
+    public MediaBlob storeBlob(String contentHash, String extension, Path source) throws IOException {
+        String hash = contentHash.toLowerCase();
+        MediaBlob existing = findByHash(hash);
+        if (existing != null && existing.getStoragePath() != null && Files.exists(Paths.get(existing.getStoragePath()))) {
+            Files.deleteIfExists(source);
+            log.info("媒体文件内容已存在，跳过存储: hash={}", hash);
+            return existing;
+        }
+        
+        String relative = hash.substring(0, 2) + "/" + hash + extension;
+        Path target = Paths.get(blobDir, relative);
+        Files.createDirectories(target.getParent());
+        Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        
+        if (existing != null) {
+            // 记录存在但文件丢失，重新写入后沿用原记录
+            existing.setStoragePath(target.toString());
+            mediaBlobMapper.updateById(existing);
+            return existing;
+        }
+        
+        MediaBlob blob = new MediaBlob();
+        blob.setId(IdWorker.getId());
+        blob.setContentHash(hash);
+        blob.setFileSize(Files.size(target));
+        blob.setExtension(extension);
+        blob.setStoragePath(target.toString());
+        blob.setCdnUrl(blobCdnBaseUrl + "/" + relative);
+        blob.setRefCount(0);
+        // 调用方可能处于事务中，唯一键冲突会使PostgreSQL事务失效，因此用 ON CONFLICT DO NOTHING 而不是捕获异常
+        if (mediaBlobMapper.insertIfAbsent(blob) == 0) {
+            // 并发上传同一内容，文件已就位，使用先写入的记录
+            return findByHash(hash);
+        }
+        
+        log.info("媒体文件存入内容寻址存储: hash={}, path={}", hash, target);
+        return blob;
+    }
+    
+    @Override
+    @Transactional
+    public void bindReference(Long trackId, String mediaType, String contentHash) {
+        String type = mediaType.toUpperCase();
+        String hash = contentHash.toLowerCase();
+        MediaBlobRef ref = findRef(trackId, type);
+        
+        if (ref == null) {
+            ref = new MediaBlobRef();
+            ref.setTrackId(trackId);
+            ref.setMediaType(type);
+            ref.setContentHash(hash);
+            mediaBlobRefMapper.insert(ref);
+            mediaBlobMapper.adjustRefCount(hash, 1);
+        } else if (!hash.equals(ref.getContentHash())) {
+            String oldHash = ref.getContentHash();
+            ref.setContentHash(hash);
+            mediaBlobRefMapper.updateById(ref);
+            mediaBlobMapper.adjustRefCount(oldHash, -1);
+            mediaBlobMapper.adjustRefCount(hash, 1);
+        }
+        
+        log.debug("绑定媒体文件引用: trackId={}, mediaType={}, hash={}", trackId, type, hash);
+    }
+    
+    @Override
+    @Transactional
+    public void releaseReference(Long trackId, String mediaType) {
+        MediaBlobRef ref = findRef(trackId, mediaType.toUpperCase());
+        if (ref == null) {
+            return;
+        }
+        mediaBlobRefMapper.deleteById(ref.getId());
+        mediaBlobMapper.adjustRefCount(ref.getContentHash(), -1);
+        log.debug("解除媒体文件引用: trackId={}, mediaType={}, hash={}", trackId, mediaType, ref.getContentHash());
+    }
+    
+    private MediaBlobRef findRef(Long trackId, String mediaType) {
+        return mediaBlobRefMapper.selectOne(new QueryWrapper<MediaBlobRef>()
+                .eq("track_id", trackId)
+                .eq("media_type", mediaType.toUpperCase()));
+    }
+}
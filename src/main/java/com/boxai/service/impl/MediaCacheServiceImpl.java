@@ -0,0 +1,402 @@
+package com.boxai.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.boxai.domain.dto.MediaCacheStats;
+import com.boxai.domain.entity.Playlist;
+import com.boxai.domain.entity.Track;
+import com.boxai.domain.mapper.PlaybackHistoryMapper;
+import com.boxai.domain.mapper.PlaylistMapper;
+import com.boxai.domain.mapper.TrackMapper;
+import com.boxai.service.MediaCacheService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地媒体缓存管理服务实现类
+ * 内存索引以TreeSet按价值分（热度分 × 权重 + 本地播放次数 × 权重）升序排列可淘汰歌曲，
+ * 淘汰、插入、价值更新均为O(log n)；固定歌曲不在可淘汰集合中。
+ * 内容寻址文件可能被多首歌曲共享，按路径引用计数统计空间，最后一个引用被淘汰时才删除文件
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MediaCacheServiceImpl implements MediaCacheService {
+    
+    private static final Comparator<CacheEntry> EVICTION_ORDER = Comparator
+            .comparingDouble(CacheEntry::score)
+            .thenComparingLong(CacheEntry::lastAccess)
+            .thenComparing(CacheEntry::trackId);
+    
+    private final TrackMapper trackMapper;
+    private final PlaylistMapper playlistMapper;
+    private final PlaybackHistoryMapper playbackHistoryMapper;
+    
+    @Value("${app.media.cache.quota-bytes:536870912000}")
+    private long quotaBytes;
+    
+    @Value("${app.media.cache.hot-score-weight:1.0}")
+    private double hotScoreWeight;
+    
+    @Value("${app.media.cache.play-count-weight:10.0}")
+    private double playCountWeight;
+    
+    @Value("${app.media.cache.play-window:P30D}")
+    private Duration playWindow;
+    
+    // 以下状态均由 this 锁保护
+    private final Map<Long, CacheEntry> entries = new HashMap<>();
+    private final TreeSet<CacheEntry> evictable = new TreeSet<>(EVICTION_ORDER);
+    private final Map<String, Integer> pathRefs = new HashMap<>();
+    private final Map<String, Long> pathSizes = new HashMap<>();
+    private final Map<Long, Long> reservations = new HashMap<>();
+    private Set<Long> pinned = new HashSet<>();
+    private Map<Long, Integer> historyPlays = new HashMap<>();
+    private long usedBytes;
+    private long reservedBytes;
+    
+    // 点歌计数，每次重建索引时减半以实现频次老化
+    private final Map<Long, Integer> queuePlays = new ConcurrentHashMap<>();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private volatile boolean loaded;
+    
+    @Override
+    public boolean shouldPrefetch(Track track) {
+        ensureLoaded();
+        long size = track.getFileSize() != null ? track.getFileSize() : 0;
+        synchronized (this) {
+            if (entries.containsKey(track.getId()) || usedBytes + reservedBytes + size <= quotaBytes) {
+                return true;
+            }
+            double candidateScore = candidateScore(track);
+            return !evictable.isEmpty() && evictable.first().score() < candidateScore;
+        }
+    }
+    
+    @Override
+    public boolean reserve(Track track, String localPath, long expectedSize) {
+        ensureLoaded();
+        String path = normalize(localPath);
+        List<Victim> victims;
+        synchronized (this) {
+            long needed = pathRefs.containsKey(path) ? 0 : Math.max(expectedSize, 0);
+            long overflow = usedBytes + reservedBytes + needed - quotaBytes;
+            List<CacheEntry> selected = new ArrayList<>();
+            
+            if (overflow > 0) {
+                // 从价值最低的歌曲开始选择淘汰对象，遇到价值不低于候选歌曲的即放弃
+                double candidateScore = candidateScore(track);
+                Map<String, Integer> releasedRefs = new HashMap<>();
+                long freed = 0;
+                Iterator<CacheEntry> iterator = evictable.iterator();
+                while (freed < overflow && iterator.hasNext()) {
+                    CacheEntry entry = iterator.next();
+                    if (entry.score() >= candidateScore) {
+                        break;
+                    }
+                    if (entry.trackId().equals(track.getId())) {
+                        continue;
+                    }
+                    selected.add(entry);
+                    int released = releasedRefs.merge(entry.path(), 1, Integer::sum);
+                    if (released == pathRefs.getOrDefault(entry.path(), 0)) {
+                        freed += pathSizes.getOrDefault(entry.path(), 0L);
+                    }
+                }
+                if (freed < overflow) {
+                    rejectedCount.incrementAndGet();
+                    log.info("本地缓存空间不足，拒绝缓存: trackId={}, needed={}, used={}, quota={}",
+                            track.getId(), needed, usedBytes, quotaBytes);
+                    return false;
+                }
+            }
+            
+            victims = new ArrayList<>(selected.size());
+            for (CacheEntry entry : selected) {
+                victims.add(new Victim(entry.trackId(), entry.path(), removeEntry(entry.trackId())));
+            }
+            Long previous = reservations.put(track.getId(), needed);
+            reservedBytes += needed - (previous != null ? previous : 0);
+        }
+        
+        evict(victims);
+        return true;
+    }
+    
+    @Override
+    public void onCached(Track track) {
+        if (track.getLocalFilePath() == null) {
+            return;
+        }
+        String path = normalize(track.getLocalFilePath());
+        long size = track.getFileSize() != null ? track.getFileSize() : fileSize(path);
+        synchronized (this) {
+            releaseReservation(track.getId());
+            removeEntry(track.getId());
+            int hotScore = track.getHotScore() != null ? track.getHotScore() : 0;
+            addEntry(new CacheEntry(track.getId(), path, size, hotScore,
+                    score(track.getId(), hotScore), System.currentTimeMillis()));
+        }
+    }
+    
+    @Override
+    public synchronized void release(Long trackId) {
+        releaseReservation(trackId);
+    }
+    
+    @Override
+    public synchronized void onRemoved(Long trackId) {
+        releaseReservation(trackId);
+        removeEntry(trackId);
+    }
+    
+    @Override
+    public void recordPlay(Long trackId) {
+        queuePlays.merge(trackId, 1, Integer::sum);
+        synchronized (this) {
+            CacheEntry entry = entries.get(trackId);
+            if (entry != null) {
+                replaceEntry(entry, new CacheEntry(entry.trackId(), entry.path(), entry.size(), entry.hotScore(),
+                        score(trackId, entry.hotScore()), System.currentTimeMillis()));
+            }
+        }
+    }
+    
+    @Override
+    public synchronized void pin(Long trackId) {
+        if (pinned.add(trackId)) {
+            CacheEntry entry = entries.get(trackId);
+            if (entry != null) {
+                evictable.remove(entry);
+            }
+        }
+    }
+    
+    @Override
+    @Scheduled(fixedDelayString = "${app.media.cache.pin-refresh-interval:PT30S}")
+    public void refreshPins() {
+        QueryWrapper<Playlist> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("DISTINCT track_id").in("status", "QUEUED", "PLAYING");
+        Set<Long> latest = new HashSet<>();
+        for (Object trackId : playlistMapper.selectObjs(queryWrapper)) {
+            if (trackId != null) {
+                latest.add(((Number) trackId).longValue());
+            }
+        }
+        
+        synchronized (this) {
+            for (Long trackId : pinned) {
+                CacheEntry entry = entries.get(trackId);
+                if (entry != null && !latest.contains(trackId)) {
+                    evictable.add(entry);
+                }
+            }
+            for (Long trackId : latest) {
+                CacheEntry entry = entries.get(trackId);
+                if (entry != null) {
+                    evictable.remove(entry);
+                }
+            }
+            pinned = latest;
+        }
+    }
+    
+    @Override
+    @Scheduled(fixedDelayString = "${app.media.cache.rebuild-interval:PT10M}")
+    public void rebuildIndex() {
+        // 本地播放频次：历史播放 + 点歌计数（点歌计数每次重建减半）
+        Map<Long, Integer> plays = new HashMap<>();
+        for (Map<String, Object> row : playbackHistoryMapper.countPlaysByTrackSince(OffsetDateTime.now().minus(playWindow))) {
+            plays.put(((Number) row.get("track_id")).longValue(), ((Number) row.get("play_count")).intValue());
+        }
+        queuePlays.replaceAll((trackId, count) -> count / 2);
+        queuePlays.values().removeIf(count -> count == 0);
+        
+        QueryWrapper<Track> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", "local_file_path", "file_size", "hot_score").isNotNull("local_file_path");
+        List<Track> tracks = trackMapper.selectList(queryWrapper);
+        
+        List<Track> present = new ArrayList<>(tracks.size());
+        for (Track track : tracks) {
+            Path file = Paths.get(track.getLocalFilePath());
+            try {
+                if (Files.isRegularFile(file)) {
+                    track.setFileSize(Files.size(file));
+                    present.add(track);
+                }
+            } catch (IOException e) {
+                log.warn("读取本地文件大小失败: {}", file, e);
+            }
+        }
+        
+        synchronized (this) {
+            historyPlays = plays;
+            entries.clear();
+            evictable.clear();
+            pathRefs.clear();
+            pathSizes.clear();
+            usedBytes = 0;
+            long now = System.currentTimeMillis();
+            for (Track track : present) {
+                int hotScore = track.getHotScore() != null ? track.getHotScore() : 0;
+                addEntry(new CacheEntry(track.getId(), normalize(track.getLocalFilePath()), track.getFileSize(),
+                        hotScore, score(track.getId(), hotScore), now));
+            }
+            loaded = true;
+        }
+        
+        log.info("本地媒体缓存索引重建完成: tracks={}, used={} bytes, quota={} bytes", present.size(), usedBytes, quotaBytes);
+        trimToQuota();
+    }
+    
+    @Override
+    public synchronized MediaCacheStats getStats() {
+        MediaCacheStats stats = new MediaCacheStats();
+        stats.setQuotaBytes(quotaBytes);
+        stats.setUsedBytes(usedBytes);
+        stats.setTrackCount(entries.size());
+        stats.setPinnedCount(entries.size() - evictable.size());
+        stats.setEvictedCount(evictedCount.get());
+        stats.setRejectedCount(rejectedCount.get());
+        return stats;
+    }
+    
+    /**
+     * 配额调小后淘汰超出部分
+     */
+    private void trimToQuota() {
+        List<Victim> victims = new ArrayList<>();
+        synchronized (this) {
+            while (usedBytes > quotaBytes && !evictable.isEmpty()) {
+                CacheEntry entry = evictable.first();
+                victims.add(new Victim(entry.trackId(), entry.path(), removeEntry(entry.trackId())));
+            }
+        }
+        evict(victims);
+    }
+    
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (loaded) {
+                    return;
+                }
+            }
+            rebuildIndex();
+        }
+    }
+    
+    private double candidateScore(Track track) {
+        if (pinned.contains(track.getId())) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return score(track.getId(), track.getHotScore() != null ? track.getHotScore() : 0);
+    }
+    
+    private double score(Long trackId, int hotScore) {
+        int plays = historyPlays.getOrDefault(trackId, 0) + queuePlays.getOrDefault(trackId, 0);
+        return hotScore * hotScoreWeight + plays * playCountWeight;
+    }
+    
+    private void addEntry(CacheEntry entry) {
+        entries.put(entry.trackId(), entry);
+        if (!pinned.contains(entry.trackId())) {
+            evictable.add(entry);
+        }
+        if (pathRefs.merge(entry.path(), 1, Integer::sum) == 1) {
+            pathSizes.put(entry.path(), entry.size());
+            usedBytes += entry.size();
+        }
+    }
+    
+    /**
+     * 移出索引
+     * 
+     * @return 该路径是否已无其他歌曲引用（可以删除文件）
+     */
+    private boolean removeEntry(Long trackId) {
+        CacheEntry entry = entries.remove(trackId);
+        if (entry == null) {
+            return false;
+        }
+        evictable.remove(entry);
+        int refs = pathRefs.merge(entry.path(), -1, Integer::sum);
+        if (refs <= 0) {
+            pathRefs.remove(entry.path());
+            Long size = pathSizes.remove(entry.path());
+            usedBytes -= size != null ? size : 0;
+            return true;
+        }
+        return false;
+    }
+    
+    private void replaceEntry(CacheEntry oldEntry, CacheEntry newEntry) {
+        // TreeSet中的元素排序键不可变，先移除再插入
+        boolean wasEvictable = evictable.remove(oldEntry);
+        entries.put(newEntry.trackId(), newEntry);
+        if (wasEvictable) {
+            evictable.add(newEntry);
+        }
+    }
+    
+    private void releaseReservation(Long trackId) {
+        Long reserved = reservations.remove(trackId);
+        if (reserved != null) {
+            reservedBytes -= reserved;
+        }
+    }
+    
+    private void evict(List<Victim> victims) {
+        for (Victim victim : victims) {
+            trackMapper.clearLocalFile(victim.trackId());
+            if (victim.deleteFile()) {
+                try {
+                    Files.deleteIfExists(Paths.get(victim.path()));
+                } catch (IOException e) {
+                    log.warn("删除淘汰文件失败，留待垃圾回收: {}", victim.path(), e);
+                }
+            }
+            evictedCount.incrementAndGet();
+            log.info("淘汰本地缓存歌曲: trackId={}, path={}, fileDeleted={}", victim.trackId(), victim.path(), victim.deleteFile());
+        }
+    }
+    
+    private static String normalize(String path) {
+        return Paths.get(path).toAbsolutePath().normalize().toString();
+    }
+    
+    private static long fileSize(String path) {
+        try {
+            return Files.size(Paths.get(path));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+    
+    private record CacheEntry(Long trackId, String path, long size, int hotScore, double score, long lastAccess) {
+    }
+    
+    private record Victim(Long trackId, String path, boolean deleteFile) {
+    }
+}
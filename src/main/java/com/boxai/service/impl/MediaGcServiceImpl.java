@@ -0,0 +1,263 @@
+package com.boxai.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.boxai.domain.dto.MediaGcReport;
+import com.boxai.domain.entity.Track;
+import com.boxai.domain.mapper.TrackMapper;
+import com.boxai.service.MediaGcService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 本地媒体文件垃圾回收服务实现类
+ * 标记阶段一次性查询所有被引用的本地路径放入哈希集合，清除阶段遍历目录逐个O(1)判断，
+ * 孤儿文件由低优先级线程池并行删除，并按每秒删除数限速，避免影响播放时的磁盘I/O
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MediaGcServiceImpl implements MediaGcService {
+    
+    private static final int MAX_ORPHAN_SAMPLES = 100;
+    
+    private final TrackMapper trackMapper;
+    
+    @Value("${app.media.local-dir:/opt/boxai/media/}")
+    private String localMediaDir;
+    
+    @Value("${app.media.gc.enabled:true}")
+    private boolean scheduleEnabled;
+    
+    @Value("${app.media.gc.dry-run:false}")
+    private boolean scheduleDryRun;
+    
+    @Value("${app.media.gc.min-age:PT1H}")
+    private Duration minAge;
+    
+    @Value("${app.media.gc.parallelism:2}")
+    private int parallelism;
+    
+    @Value("${app.media.gc.max-deletes-per-second:50}")
+    private int maxDeletesPerSecond;
+    
+    @Value("${app.media.gc.max-deletes-per-run:10000}")
+    private int maxDeletesPerRun;
+    
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile MediaGcReport lastReport;
+    private volatile ExecutorService deleteExecutor;
+    
+    @Scheduled(cron = "${app.media.gc.cron:0 30 4 * * ?}")
+    public void scheduledCollect() {
+        if (!scheduleEnabled) {
+            return;
+        }
+        collect(scheduleDryRun);
+    }
+    
+    @Override
+    public MediaGcReport collect(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("垃圾回收正在进行中，跳过本次请求");
+            return null;
+        }
+        
+        MediaGcReport report = new MediaGcReport();
+        report.setDryRun(dryRun);
+        report.setStartedAt(LocalDateTime.now());
+        long startNanos = System.nanoTime();
+        
+        try {
+            Path root = Paths.get(localMediaDir).toAbsolutePath().normalize();
+            if (!Files.isDirectory(root)) {
+                return report;
+            }
+            
+            // 标记：一次性加载所有被引用的本地路径
+            Set<String> referenced = loadReferencedPaths();
+            report.setReferencedCount(referenced.size());
+            
+            // 清除：遍历目录，找出未被引用且不是最近写入的文件
+            List<Orphan> orphans = findOrphans(root, referenced, report);
+            report.setOrphanCount(orphans.size());
+            
+            if (dryRun) {
+                report.setReclaimedBytes(orphans.stream().mapToLong(Orphan::size).sum());
+            } else {
+                deleteOrphans(orphans, report);
+            }
+        } catch (Exception e) {
+            log.error("本地媒体文件垃圾回收失败", e);
+        } finally {
+            report.setCompletedAt(LocalDateTime.now());
+            report.setDurationMs((System.nanoTime() - startNanos) / 1_000_000);
+            lastReport = report;
+            running.set(false);
+        }
+        
+        log.info("本地媒体文件垃圾回收完成: dryRun={}, scanned={}, orphans={}, deleted={}, reclaimed={} bytes, skippedRecent={}, failed={}, deferred={}, duration={}ms",
+                dryRun, report.getScannedCount(), report.getOrphanCount(), report.getDeletedCount(),
+                report.getReclaimedBytes(), report.getSkippedRecentCount(), report.getFailedCount(),
+                report.getDeferredCount(), report.getDurationMs());
+        return report;
+    }
+    
+    @Override
+    public MediaGcReport getLastReport() {
+        return lastReport;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (deleteExecutor != null) {
+            deleteExecutor.shutdownNow();
+        }
+    }
+    
+    /**
+     * 查询所有歌曲引用的本地路径，规范化后放入哈希集合
+     */
+    private Set<String> loadReferencedPaths() {
+        QueryWrapper<Track> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("local_file_path").isNotNull("local_file_path");
+        
+        List<Object> paths = trackMapper.selectObjs(queryWrapper);
+        Set<String> referenced = new HashSet<>(paths.size() * 2);
+        for (Object path : paths) {
+            if (path != null && !path.toString().isEmpty()) {
+                referenced.add(Paths.get(path.toString()).toAbsolutePath().normalize().toString());
+            }
+        }
+        return referenced;
+    }
+    
+    /**
+     * 遍历媒体目录，收集孤儿文件
+     * 修改时间在 min-age 以内的文件可能正在下载或尚未写回数据库，本轮跳过
+     */
+    private List<Orphan> findOrphans(Path root, Set<String> referenced, MediaGcReport report) throws IOException {
+        List<Orphan> orphans = new ArrayList<>();
+        long cutoffMillis = System.currentTimeMillis() - minAge.toMillis();
+        
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                report.setScannedCount(report.getScannedCount() + 1);
+                
+                if (referenced.contains(file.toString())) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (attrs.lastModifiedTime().toMillis() > cutoffMillis) {
+                    report.setSkippedRecentCount(report.getSkippedRecentCount() + 1);
+                    return FileVisitResult.CONTINUE;
+                }
+                
+                orphans.add(new Orphan(file, attrs.size()));
+                if (report.getOrphanSamples().size() < MAX_ORPHAN_SAMPLES) {
+                    report.getOrphanSamples().add(file.toString());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                log.warn("访问文件失败，跳过: {}", file, exc);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return orphans;
+    }
+    
+    /**
+     * 并行删除孤儿文件，按每秒删除数限速，超出单次上限的留待下次回收
+     */
+    private void deleteOrphans(List<Orphan> orphans, MediaGcReport report) {
+        int limit = Math.min(orphans.size(), Math.max(maxDeletesPerRun, 0));
+        report.setDeferredCount(orphans.size() - limit);
+        
+        AtomicInteger deleted = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong reclaimed = new AtomicLong();
+        
+        ExecutorService executor = getDeleteExecutor();
+        long intervalNanos = maxDeletesPerSecond > 0 ? 1_000_000_000L / maxDeletesPerSecond : 0;
+        long nextSubmitNanos = System.nanoTime();
+        
+        List<CompletableFuture<Void>> futures = new ArrayList<>(limit);
+        for (int i = 0; i < limit; i++) {
+            Orphan orphan = orphans.get(i);
+            if (intervalNanos > 0) {
+                long waitNanos = nextSubmitNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                }
+                nextSubmitNanos = Math.max(nextSubmitNanos, System.nanoTime()) + intervalNanos;
+            }
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    if (Files.deleteIfExists(orphan.path())) {
+                        deleted.incrementAndGet();
+                        reclaimed.addAndGet(orphan.size());
+                        log.debug("清理未使用文件: {}", orphan.path());
+                    }
+                } catch (IOException e) {
+                    failed.incrementAndGet();
+                    log.warn("删除未使用文件失败: {}", orphan.path(), e);
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        
+        report.setDeletedCount(deleted.get());
+        report.setFailedCount(failed.get());
+        report.setReclaimedBytes(reclaimed.get());
+    }
+    
+    private ExecutorService getDeleteExecutor() {
+        if (deleteExecutor == null) {
+            synchronized (this) {
+                if (deleteExecutor == null) {
+                    AtomicInteger threadIndex = new AtomicInteger();
+                    deleteExecutor = Executors.newFixedThreadPool(Math.max(parallelism, 1), r -> {
+                        Thread thread = new Thread(r, "media-gc-" + threadIndex.incrementAndGet());
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return deleteExecutor;
+    }
+    
+    private record Orphan(Path path, long size) {
+    }
+}
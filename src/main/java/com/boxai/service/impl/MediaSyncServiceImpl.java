@@ -1,10 +1,16 @@
 package com.boxai.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.boxai.domain.dto.MediaCacheStats;
+import com.boxai.domain.dto.MediaGcReport;
+import com.boxai.domain.entity.MediaBlob;
 import com.boxai.domain.entity.MediaSyncLog;
 import com.boxai.domain.entity.Track;
 import com.boxai.domain.mapper.MediaSyncLogMapper;
 import com.boxai.domain.mapper.TrackMapper;
+import com.boxai.service.MediaBlobService;
+import com.boxai.service.MediaCacheService;
+import com.boxai.service.MediaGcService;
 import com.boxai.service.MediaSyncService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,6 +22,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Stream;
@@ -31,6 +39,9 @@ public class MediaSyncServiceImpl implements MediaSyncService {
     
     private final TrackMapper trackMapper;
     private final MediaSyncLogMapper mediaSyncLogMapper;
+    private final MediaBlobService mediaBlobService;
+    private final MediaGcService mediaGcService;
+    private final MediaCacheService mediaCacheService;
     
     /**
      * 获取同步历史记录
@@ -50,6 +61,7 @@ public class MediaSyncServiceImpl implements MediaSyncService {
     }
     
     private static final String LOCAL_MEDIA_PATH = "/opt/boxai/media/"; // 本地媒体存储路径
+    private static final String LOCAL_BLOB_PATH = LOCAL_MEDIA_PATH + "blobs/"; // 按内容MD5命名的本地媒体文件
     
     @Override
     @Transactional
@@ -70,29 +82,53 @@ public class MediaSyncServiceImpl implements MediaSyncService {
         mediaSyncLogMapper.insert(syncLog);
         
         try {
-            // 实现实际的文件下载逻辑
-            String localPath = LOCAL_MEDIA_PATH + trackId + ".mp4";
+            // 已知内容MD5的歌曲按内容寻址存放，不同歌曲引用相同内容时共享同一本地文件
+            MediaBlob blob = mediaBlobService.findByTrack(trackId, "VIDEO");
+            String localPath;
+            if (blob != null) {
+                localPath = LOCAL_BLOB_PATH + blob.getContentHash() + (blob.getExtension() != null ? blob.getExtension() : ".mp4");
+            } else {
+                localPath = LOCAL_MEDIA_PATH + trackId + ".mp4";
+            }
             
             // 确保本地目录存在
-            Path mediaDir = Paths.get(LOCAL_MEDIA_PATH);
-            if (!Files.exists(mediaDir)) {
-                Files.createDirectories(mediaDir);
+            Path localFile = Paths.get(localPath);
+            if (!Files.exists(localFile.getParent())) {
+                Files.createDirectories(localFile.getParent());
             }
             
-            // 从云端下载媒体文件
-            boolean downloadSuccess = downloadFromCloud(track, localPath);
-            if (!downloadSuccess) {
-                throw new RuntimeException("文件下载失败");
+            if (blob != null && Files.exists(localFile) && blob.getFileSize() != null
+                    && Files.size(localFile) == blob.getFileSize()) {
+                // 相同内容已在本地，跳过下载
+                track.setFileSize(blob.getFileSize());
+                log.info("本地已存在相同内容，跳过下载: trackId={}, hash={}", trackId, blob.getContentHash());
+            } else {
+                // 按缓存配额预留空间，必要时淘汰价值更低的歌曲
+                long expectedSize = blob != null && blob.getFileSize() != null ? blob.getFileSize()
+                        : (track.getFileSize() != null ? track.getFileSize() : 0);
+                if (!mediaCacheService.reserve(track, localPath, expectedSize)) {
+                    throw new RuntimeException("本地缓存空间不足，且没有价值更低的歌曲可淘汰");
+                }
+                
+                // 从云端下载媒体文件
+                String cloudUrl = blob != null ? blob.getCdnUrl() : null;
+                String expectedMd5 = blob != null ? blob.getContentHash() : null;
+                boolean downloadSuccess = downloadFromCloud(track, cloudUrl, localPath, expectedMd5);
+                if (!downloadSuccess) {
+                    throw new RuntimeException("文件下载失败");
+                }
             }
             
             // 更新歌曲的本地文件信息
             track.setLocalFilePath(localPath);
             track.setLastSyncAt(LocalDateTime.now());
             trackMapper.updateById(track);
+            mediaCacheService.onCached(track);
             
             // 更新同步状态为成功
             syncLog.setSyncStatus("SUCCESS");
             syncLog.setFilePath(localPath);
+            syncLog.setFileSize(track.getFileSize());
             syncLog.setCompletedAt(LocalDateTime.now());
             mediaSyncLogMapper.updateById(syncLog);
             
@@ -100,6 +136,8 @@ public class MediaSyncServiceImpl implements MediaSyncService {
             return true;
             
         } catch (Exception e) {
+            mediaCacheService.release(trackId);
+            
             // 更新同步状态为失败
             syncLog.setSyncStatus("FAILED");
             syncLog.setErrorMessage(e.getMessage());
@@ -146,10 +184,17 @@ public class MediaSyncServiceImpl implements MediaSyncService {
             return false;
         }
         
-        File file = new File(track.getLocalFilePath());
-        boolean deleted = file.delete();
+        String localPath = track.getLocalFilePath();
+        File file = new File(localPath);
+        
+        // 内容寻址文件可能被多首歌曲共享，仅在没有其他歌曲引用时删除
+        QueryWrapper<Track> sharedWrapper = new QueryWrapper<>();
+        sharedWrapper.eq("local_file_path", localPath).ne("id", trackId);
+        boolean shared = trackMapper.selectCount(sharedWrapper) > 0;
+        boolean deleted = shared || file.delete();
         
         if (deleted) {
+            mediaCacheService.onRemoved(trackId);
             // 清空数据库中的本地文件路径
             track.setLocalFilePath(null);
             track.setFileSize(null);
@@ -160,12 +205,12 @@ public class MediaSyncServiceImpl implements MediaSyncService {
             syncLog.setTrackId(trackId);
             syncLog.setSyncType("DELETE");
             syncLog.setSyncStatus("SUCCESS");
-            syncLog.setFilePath(track.getLocalFilePath());
+            syncLog.setFilePath(localPath);
             syncLog.setStartedAt(LocalDateTime.now());
             syncLog.setCompletedAt(LocalDateTime.now());
             mediaSyncLogMapper.insert(syncLog);
             
-            log.info("本地文件删除成功: trackId={}", trackId);
+            log.info("本地文件删除成功: trackId={}, shared={}", trackId, shared);
         }
         
         return deleted;
@@ -173,24 +218,31 @@ public class MediaSyncServiceImpl implements MediaSyncService {
     
     @Override
     public int syncUpdatedTracks(Long roomId) {
-        // 获取需要更新的歌曲（本地版本低于云端版本）
+        // 获取需要更新的歌曲（本地版本低于云端版本），按热度降序优先预取热门歌曲
         QueryWrapper<Track> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("status", "ACTIVE")
                    .isNotNull("sync_version")
                    .and(wrapper -> wrapper.isNull("local_file_path")
                                          .or()
-                                         .isNull("last_sync_at"));
+                                         .isNull("last_sync_at"))
+                   .orderByDesc("hot_score");
         
         List<Track> tracksToUpdate = trackMapper.selectList(queryWrapper);
         
         int successCount = 0;
+        int skippedCount = 0;
         for (Track track : tracksToUpdate) {
+            // 缓存已满且该歌曲价值不高于现有歌曲时不再下载，避免拉取整个曲库
+            if (!mediaCacheService.shouldPrefetch(track)) {
+                skippedCount++;
+                continue;
+            }
             if (syncTrackToLocal(track.getId(), roomId)) {
                 successCount++;
             }
         }
         
-        log.info("批量同步更新完成: 成功={}, 总数={}", successCount, tracksToUpdate.size());
+        log.info("批量同步更新完成: 成功={}, 跳过={}, 总数={}", successCount, skippedCount, tracksToUpdate.size());
         return successCount;
     }
     
@@ -215,6 +267,10 @@ public class MediaSyncServiceImpl implements MediaSyncService {
                 queryWrapper.isNotNull("local_file_path");
                 int trackCount = Math.toIntExact(trackMapper.selectCount(queryWrapper));
                 info.setTrackCount(trackCount);
+                
+                MediaCacheStats cacheStats = mediaCacheService.getStats();
+                info.setCacheQuota(cacheStats.getQuotaBytes());
+                info.setCacheUsed(cacheStats.getUsedBytes());
             }
         } catch (IOException e) {
             log.error("获取存储信息失败", e);
@@ -225,46 +281,30 @@ public class MediaSyncServiceImpl implements MediaSyncService {
     
     @Override
     public int cleanupUnusedFiles() {
-        int cleanedCount = 0;
-        
-        try {
-            Path mediaPath = Paths.get(LOCAL_MEDIA_PATH);
-            if (!Files.exists(mediaPath)) {
-                return 0;
-            }
-            
-            // 获取所有本地文件
-            try (Stream<Path> files = Files.list(mediaPath)) {
-                for (Path file : files.toArray(Path[]::new)) {
-                    String fileName = file.getFileName().toString();
-                    
-                    // 检查文件是否在数据库中存在
-                    QueryWrapper<Track> queryWrapper = new QueryWrapper<>();
-                    queryWrapper.like("local_file_path", fileName);
-                    
-                    if (trackMapper.selectCount(queryWrapper) == 0) {
-                        // 文件在数据库中不存在，删除
-                        Files.delete(file);
-                        cleanedCount++;
-                        log.info("清理未使用文件: {}", fileName);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            log.error("清理未使用文件失败", e);
+        // 标记-清除式回收，避免逐个文件对数据库做LIKE查询
+        MediaGcReport report = mediaGcService.collect(false);
+        if (report == null) {
+            log.info("垃圾回收正在进行中，本次未清理文件");
+            return 0;
         }
-        
-        log.info("清理完成，删除文件数量: {}", cleanedCount);
-        return cleanedCount;
+        return report.getDeletedCount();
     }
     
     /**
      * 从云端下载媒体文件到本地
+     * 先写入临时文件，校验通过后原子替换目标文件，避免留下不完整的文件
+     *
+     * @param cloudUrl 下载地址，为空时回退到歌曲的预览地址
+     * @param expectedMd5 期望的内容MD5，为空时不校验
      */
-    private boolean downloadFromCloud(Track track, String localPath) {
+    private boolean downloadFromCloud(Track track, String cloudUrl, String localPath, String expectedMd5) {
+        Path localFile = Paths.get(localPath);
+        Path tmpFile = Paths.get(localPath + ".downloading");
         try {
-            // 使用预览URL作为下载源（实际部署时应该有专门的媒体文件URL字段）
-            String cloudUrl = track.getPreviewUrl();
+            if (cloudUrl == null || cloudUrl.isEmpty()) {
+                // 使用预览URL作为下载源（未登记内容寻址文件的历史歌曲）
+                cloudUrl = track.getPreviewUrl();
+            }
             if (cloudUrl == null || cloudUrl.isEmpty()) {
                 cloudUrl = track.getCoverUrl(); // 备用方案
             }
@@ -277,42 +317,50 @@ public class MediaSyncServiceImpl implements MediaSyncService {
             log.info("开始下载媒体文件: trackId={}, cloudUrl={}, localPath={}", 
                     track.getId(), cloudUrl, localPath);
             
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            long totalBytes = 0;
+            
             // 使用Java的HTTP客户端下载文件
             try (var inputStream = new java.net.URL(cloudUrl).openStream();
-                 var outputStream = Files.newOutputStream(Paths.get(localPath))) {
+                 var outputStream = Files.newOutputStream(tmpFile)) {
                 
-                byte[] buffer = new byte[8192];
+                byte[] buffer = new byte[64 * 1024];
                 int bytesRead;
-                long totalBytes = 0;
                 
                 while ((bytesRead = inputStream.read(buffer)) != -1) {
                     outputStream.write(buffer, 0, bytesRead);
+                    md.update(buffer, 0, bytesRead);
                     totalBytes += bytesRead;
                 }
-                
-                // 更新文件大小信息
-                track.setFileSize(totalBytes);
-                
-                log.info("媒体文件下载完成: trackId={}, size={} bytes", track.getId(), totalBytes);
-                return true;
-                
-            } catch (Exception e) {
-                log.error("下载媒体文件失败: trackId={}, url={}", track.getId(), cloudUrl, e);
-                
-                // 清理可能的不完整文件
-                Path localFile = Paths.get(localPath);
-                if (Files.exists(localFile)) {
-                    try {
-                        Files.delete(localFile);
-                    } catch (IOException deleteEx) {
-                        log.warn("清理不完整文件失败: {}", localPath, deleteEx);
-                    }
+            }
+            
+            if (expectedMd5 != null) {
+                StringBuilder sb = new StringBuilder();
+                for (byte b : md.digest()) {
+                    sb.append(String.format("%02x", b));
+                }
+                if (!expectedMd5.equalsIgnoreCase(sb.toString())) {
+                    throw new IOException("下载文件MD5校验失败: 期望" + expectedMd5 + "，实际" + sb);
                 }
-                return false;
             }
             
+            Files.move(tmpFile, localFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            
+            // 更新文件大小信息
+            track.setFileSize(totalBytes);
+            
+            log.info("媒体文件下载完成: trackId={}, size={} bytes", track.getId(), totalBytes);
+            return true;
+            
         } catch (Exception e) {
-            log.error("下载媒体文件异常: trackId={}", track.getId(), e);
+            log.error("下载媒体文件失败: trackId={}, url={}", track.getId(), cloudUrl, e);
+            
+            // 清理可能的不完整文件
+            try {
+                Files.deleteIfExists(tmpFile);
+            } catch (IOException deleteEx) {
+                log.warn("清理不完整文件失败: {}", tmpFile, deleteEx);
+            }
             return false;
         }
     }
@@ -1,53 +1,151 @@
 package com.boxai.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.boxai.common.http.UpstreamClient;
+import com.boxai.common.http.UpstreamHttpClients;
 import com.boxai.domain.dto.wechat.RoomQrResponse;
+import com.boxai.domain.entity.Room;
+import com.boxai.domain.mapper.RoomMapper;
 import com.boxai.service.QrCodeService;
-import com.boxai.service.RoomService;
+import com.boxai.service.WechatAccessTokenService;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.util.DigestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * 二维码生成服务实现
- * 负责微信小程序二维码的生成、缓存和版本管理
+ * 负责微信小程序二维码的生成、存储和版本管理。
+ * PNG原样保存在本地目录 {dir}/{roomId}/v{version}.png（先写临时文件再原子重命名），接口只返回图片地址；
+ * 同一 (roomId, version) 的生成是单飞的，并发请求共享同一次微信调用。启动时为所有未关闭的房间预生成当前版本
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class QrCodeServiceImpl implements QrCodeService {
-    @Value("${app.wechat.appid}")
-    private String appid;
-    @Value("${app.wechat.secret}")
-    private String secret;
-    private final WebClient.Builder webClientBuilder;
-    private final StringRedisTemplate redis;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G'};
 
+    private final UpstreamHttpClients upstreamHttpClients;
+    private final WechatAccessTokenService wechatAccessTokenService;
+    private final RoomMapper roomMapper;
+
+    @Value("${app.wechat.qr.dir:/opt/boxai/qr}")
+    private String qrDir;
+    @Value("${app.wechat.qr.base-url:http://localhost:9998/api/rooms}")
+    private String baseUrl;
+    @Value("${app.wechat.qr.pregenerate-on-startup:true}")
+    private boolean pregenerateOnStartup;
+    @Value("${app.wechat.qr.pregenerate-concurrency:2}")
+    private int pregenerateConcurrency;
+
+    private Path root;
+
+    /**
+     * 进行中的二维码生成，键为 {roomId}:v{version}
+     */
+    private final Map<String, Mono<?>> inflight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        root = Paths.get(qrDir);
+    }
+
+    /**
+     * 启动时为所有未关闭的房间预生成当前版本的二维码
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void pregenerateAll() {
+        if (!pregenerateOnStartup) {
+            return;
+        }
+        Mono.fromCallable(() -> roomMapper.selectList(new QueryWrapper<Room>().ne("status", "CLOSED")))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(room -> ensureGenerated(room.getId(), currentVersion(room), null)
+                        .onErrorResume(e -> {
+                            log.warn("预生成房间小程序码失败: roomId={}, error={}", room.getId(), e.getMessage());
+                            return Mono.empty();
+                        }), pregenerateConcurrency)
+                .count()
+                .subscribe(count -> log.info("房间小程序码预生成完成: rooms={}", count),
+                        e -> log.warn("房间小程序码预生成失败", e));
+    }
 
     @Override
-    public RoomQrResponse generateRoomQr(Long roomId, String page) {
-        // 默认使用版本1
-        return generateRoomQrWithVersion(roomId, 1, page);
+    public Mono<RoomQrResponse> generateRoomQr(Long roomId, String page) {
+        return Mono.fromCallable(() -> roomMapper.selectById(roomId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("房间不存在")))
+                .flatMap(room -> generateRoomQrWithVersion(roomId, currentVersion(room), page));
     }
     
     @Override
-    public RoomQrResponse generateRoomQrWithVersion(Long roomId, Integer version, String page) {
+    public Mono<RoomQrResponse> generateRoomQrWithVersion(Long roomId, Integer version, String page) {
         if (roomId == null || version == null) {
-            throw new RuntimeException("房间ID和版本号不能为空");
-        }
-        
-        // 检查缓存
-        String cacheKey = "wx:room_qr:" + roomId + ":v" + version;
-        String cached = redis.opsForValue().get(cacheKey);
-        if (cached != null) {
-            return new RoomQrResponse(roomId, cached);
+            return Mono.error(new RuntimeException("房间ID和版本号不能为空"));
         }
-        
-        String accessToken = getAccessTokenWithCache();
+        return ensureGenerated(roomId, version, page)
+                .thenReturn(new RoomQrResponse(roomId, version, baseUrl + "/" + roomId + "/qr/" + version + ".png"));
+    }
 
+    @Override
+    public Mono<QrImage> getRoomQrImage(Long roomId, Integer version) {
+        Path path = pathOf(roomId, version);
+        return Mono.fromCallable(() -> Files.exists(path))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(exists -> exists ? Mono.<Void>empty() : Mono.fromCallable(() -> roomMapper.selectById(roomId))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .filter(room -> version.equals(currentVersion(room)))
+                        .switchIfEmpty(Mono.error(() -> new RuntimeException("二维码已失效")))
+                        .flatMap(room -> ensureGenerated(roomId, version, null)))
+                .then(Mono.fromCallable(() -> {
+                    byte[] png = Files.readAllBytes(path);
+                    return new QrImage(png, "\"" + DigestUtils.md5DigestAsHex(png) + "\"");
+                }).subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    @Override
+    public void onVersionChanged(Long roomId, Integer version) {
+        Mono.fromRunnable(() -> deleteOtherVersions(roomId, version))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(ensureGenerated(roomId, version, null))
+                .subscribe(null, e -> log.warn("预生成房间小程序码失败: roomId={}, version={}, error={}",
+                        roomId, version, e.getMessage()));
+    }
+
+    /**
+     * 图片不存在时生成，存在时直接完成
+     */
+    private Mono<Void> ensureGenerated(Long roomId, Integer version, String page) {
+        Path path = pathOf(roomId, version);
+        return Mono.fromCallable(() -> Files.exists(path))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(exists -> exists ? Mono.<Void>empty()
+                        : singleFlight(roomId + ":v" + version, () -> createRoomQr(roomId, version, page, path)));
+    }
+
+    private Mono<Void> createRoomQr(Long roomId, Integer version, String page, Path path) {
         // 生成小程序码（场景参数包含roomId和版本号）
         Map<String, Object> body = new HashMap<>();
         body.put("scene", "room=" + roomId + "&v=" + version);
@@ -55,52 +153,79 @@ public class QrCodeServiceImpl implements QrCodeService {
         body.put("check_path", false);
         body.put("width", 430);
 
-        byte[] png = retry(3, 200L, () -> webClientBuilder.build().post()
-                .uri("https://api.weixin.qq.com/wxa/getwxacodeunlimit?access_token=" + accessToken)
-                .bodyValue(body)
-                .retrieve().bodyToMono(byte[].class).block());
-
-        String base64 = "data:image/png;base64," + java.util.Base64.getEncoder().encodeToString(png);
-        
-        // 缓存二维码（30分钟）
-        redis.opsForValue().set(cacheKey, base64, java.time.Duration.ofMinutes(30));
-        
-        return new RoomQrResponse(roomId, base64);
+        UpstreamClient wechat = upstreamHttpClients.get(UpstreamHttpClients.WECHAT);
+        return wechatAccessTokenService.getAccessToken()
+                .flatMap(accessToken -> wechat.execute(webClient -> webClient.post()
+                        .uri("/wxa/getwxacodeunlimit?access_token={token}", accessToken)
+                        .bodyValue(body)
+                        .retrieve().bodyToMono(byte[].class)))
+                .retryWhen(wechat.retry())
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(png -> {
+                    store(path, png);
+                    log.info("生成房间小程序码: roomId={}, version={}, size={}", roomId, version, png.length);
+                })
+                .then();
     }
-    
-
 
-    private String getAccessTokenWithCache() {
-        String key = "wx:access_token";
-        String cached = redis.opsForValue().get(key);
-        if (cached != null && !cached.isEmpty()) {
-            return cached;
+    /**
+     * 校验为PNG后写入临时文件并原子重命名；微信出错时以200返回JSON，不能当作图片保存
+     */
+    private void store(Path path, byte[] png) {
+        if (png == null || png.length < PNG_SIGNATURE.length
+                || !Arrays.equals(png, 0, PNG_SIGNATURE.length, PNG_SIGNATURE, 0, PNG_SIGNATURE.length)) {
+            String error = png != null ? new String(png, StandardCharsets.UTF_8) : "empty";
+            throw new RuntimeException("生成小程序码失败: " + error);
         }
-        Map<?, ?> tokenMap = retry(3, 200L, () -> webClientBuilder.baseUrl("https://api.weixin.qq.com").build()
-                .get()
-                .uri(uri -> uri.path("/cgi-bin/token").queryParam("grant_type","client_credential")
-                        .queryParam("appid", appid).queryParam("secret", secret).build())
-                .retrieve().bodyToMono(Map.class).block());
-        String accessToken = tokenMap != null ? (String) tokenMap.get("access_token") : null;
-        Number expiresIn = tokenMap != null ? (Number) tokenMap.get("expires_in") : null;
-        if (accessToken == null) {
-            throw new RuntimeException("获取access_token失败");
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            Files.write(temp, png);
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("保存小程序码失败: " + path, e);
         }
-        long ttl = expiresIn != null ? Math.max(1, expiresIn.longValue() - 120) : 660L; // 提前2分钟失效
-        redis.opsForValue().set(key, accessToken, java.time.Duration.ofSeconds(ttl));
-        return accessToken;
     }
 
-    private <T> T retry(int times, long backoffMs, java.util.concurrent.Callable<T> call) {
-        RuntimeException last = null;
-        for (int i = 0; i < times; i++) {
-            try {
-                return call.call();
-            } catch (Exception e) {
-                last = e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
-                try { Thread.sleep(backoffMs); } catch (InterruptedException ignored) {}
+    private void deleteOtherVersions(Long roomId, Integer version) {
+        Path roomDir = root.resolve(String.valueOf(roomId));
+        if (!Files.isDirectory(roomDir)) {
+            return;
+        }
+        String keep = pathOf(roomId, version).getFileName().toString();
+        try (Stream<Path> files = Files.list(roomDir)) {
+            List<Path> stale = files.filter(file -> !file.getFileName().toString().equals(keep)).toList();
+            for (Path file : stale) {
+                Files.deleteIfExists(file);
             }
+        } catch (IOException e) {
+            log.warn("删除旧版本小程序码失败: roomId={}", roomId, e);
         }
-        throw last != null ? last : new RuntimeException("未知重试错误");
+    }
+
+    private Path pathOf(Long roomId, Integer version) {
+        return root.resolve(String.valueOf(roomId)).resolve("v" + version + ".png");
+    }
+
+    private Integer currentVersion(Room room) {
+        return room.getQrVersion() != null ? room.getQrVersion() : 1;
+    }
+
+    /**
+     * 同一个键同时只有一次上游调用，后到的订阅者共享其结果；调用结束后移除，下次重新发起
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Mono<T> singleFlight(String key, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            Mono<?>[] created = new Mono<?>[1];
+            Mono<?> shared = inflight.computeIfAbsent(key, k -> {
+                Mono<T> mono = call.get()
+                        .doFinally(signal -> inflight.remove(k, created[0]))
+                        .cache();
+                created[0] = mono;
+                return mono;
+            });
+            return (Mono<T>) shared;
+        });
     }
 }
@@ -0,0 +1,206 @@
+package com.boxai.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.boxai.domain.dto.QueueItemReadiness;
+import com.boxai.domain.entity.Playlist;
+import com.boxai.domain.entity.Track;
+import com.boxai.domain.mapper.PlaylistMapper;
+import com.boxai.domain.mapper.TrackMapper;
+import com.boxai.service.MediaSyncService;
+import com.boxai.service.QueuePrefetchService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 播放队列预取服务实现类
+ * 下载任务按在队列中的先后排优先级（越靠前越先下载），由有界线程池执行；
+ * 同一首歌曲同时只会有一个下载任务，下载状态保存在内存中供就绪状态查询
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class QueuePrefetchServiceImpl implements QueuePrefetchService {
+    
+    private static final String PENDING = "PENDING";
+    private static final String DOWNLOADING = "DOWNLOADING";
+    private static final String FAILED = "FAILED";
+    private static final String READY = "READY";
+    private static final String NOT_LOCAL = "NOT_LOCAL";
+    
+    private final PlaylistMapper playlistMapper;
+    private final TrackMapper trackMapper;
+    private final MediaSyncService mediaSyncService;
+    
+    @Value("${app.media.prefetch.depth:5}")
+    private int prefetchDepth;
+    
+    @Value("${app.media.prefetch.concurrency:2}")
+    private int concurrency;
+    
+    // 正在预取或预取失败的歌曲状态，下载成功后移除（以本地文件为准）
+    private final Map<Long, String> downloadStates = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile ThreadPoolExecutor executor;
+    
+    @Override
+    public void onQueueChanged(Long roomId) {
+        List<Playlist> upcoming = loadActiveQueue(roomId, prefetchDepth);
+        if (upcoming.isEmpty()) {
+            return;
+        }
+        Map<Long, Track> tracks = loadTracks(upcoming);
+        
+        for (int i = 0; i < upcoming.size(); i++) {
+            Long trackId = upcoming.get(i).getTrackId();
+            if (isLocal(tracks.get(trackId))) {
+                continue;
+            }
+            // 未在下载中的歌曲（含上次失败的）才安排下载
+            String previous = downloadStates.get(trackId);
+            boolean scheduled = previous == null
+                    ? downloadStates.putIfAbsent(trackId, PENDING) == null
+                    : FAILED.equals(previous) && downloadStates.replace(trackId, FAILED, PENDING);
+            if (scheduled) {
+                getExecutor().execute(new PrefetchTask(i, sequence.incrementAndGet(), trackId, roomId));
+                log.info("安排预取队列歌曲: roomId={}, trackId={}, queueIndex={}", roomId, trackId, i);
+            }
+        }
+    }
+    
+    @Override
+    public List<QueueItemReadiness> getQueueReadiness(Long roomId) {
+        List<Playlist> queue = loadActiveQueue(roomId, null);
+        if (queue.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Track> tracks = loadTracks(queue);
+        
+        List<QueueItemReadiness> result = new ArrayList<>(queue.size());
+        for (Playlist item : queue) {
+            QueueItemReadiness readiness = new QueueItemReadiness();
+            readiness.setPlaylistId(item.getId());
+            readiness.setTrackId(item.getTrackId());
+            readiness.setPosition(item.getPosition());
+            readiness.setStatus(item.getStatus());
+            
+            String state = downloadStates.get(item.getTrackId());
+            if (state != null) {
+                readiness.setReadiness(state);
+            } else {
+                readiness.setReadiness(isLocal(tracks.get(item.getTrackId())) ? READY : NOT_LOCAL);
+            }
+            result.add(readiness);
+        }
+        return result;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * 查询房间未播完的队列项（正在播放和排队中），按位置排序
+     */
+    private List<Playlist> loadActiveQueue(Long roomId, Integer limit) {
+        QueryWrapper<Playlist> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("room_id", roomId)
+                   .in("status", "PLAYING", "QUEUED")
+                   .orderByAsc("position");
+        if (limit != null && limit > 0) {
+            queryWrapper.last("LIMIT " + limit);
+        }
+        return playlistMapper.selectList(queryWrapper);
+    }
+    
+    private Map<Long, Track> loadTracks(List<Playlist> items) {
+        List<Long> trackIds = items.stream().map(Playlist::getTrackId).distinct().collect(Collectors.toList());
+        return trackMapper.selectBatchIds(trackIds).stream()
+                .collect(Collectors.toMap(Track::getId, Function.identity()));
+    }
+    
+    private boolean isLocal(Track track) {
+        return track != null && track.getLocalFilePath() != null && Files.isRegularFile(Paths.get(track.getLocalFilePath()));
+    }
+    
+    private ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    int threads = Math.max(concurrency, 1);
+                    AtomicInteger threadIndex = new AtomicInteger();
+                    executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                            new PriorityBlockingQueue<>(), r -> {
+                                Thread thread = new Thread(r, "queue-prefetch-" + threadIndex.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                }
+            }
+        }
+        return executor;
+    }
+    
+    /**
+     * 预取任务，队列位置越靠前优先级越高，同位置按提交顺序执行
+     */
+    private class PrefetchTask implements Runnable, Comparable<PrefetchTask> {
+        private final int queueIndex;
+        private final long seq;
+        private final Long trackId;
+        private final Long roomId;
+        
+        PrefetchTask(int queueIndex, long seq, Long trackId, Long roomId) {
+            this.queueIndex = queueIndex;
+            this.seq = seq;
+            this.trackId = trackId;
+            this.roomId = roomId;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                // 等待期间可能已被其他房间的预取或批量同步下载完成
+                if (mediaSyncService.isLocalFileExists(trackId)) {
+                    downloadStates.remove(trackId);
+                    return;
+                }
+                downloadStates.put(trackId, DOWNLOADING);
+                if (mediaSyncService.syncTrackToLocal(trackId, roomId)) {
+                    downloadStates.remove(trackId);
+                } else {
+                    downloadStates.put(trackId, FAILED);
+                }
+            } catch (Exception e) {
+                downloadStates.put(trackId, FAILED);
+                log.error("预取队列歌曲失败: roomId={}, trackId={}", roomId, trackId, e);
+            }
+        }
+        
+        @Override
+        public int compareTo(PrefetchTask other) {
+            int byIndex = Integer.compare(queueIndex, other.queueIndex);
+            return byIndex != 0 ? byIndex : Long.compare(seq, other.seq);
+        }
+    }
+}
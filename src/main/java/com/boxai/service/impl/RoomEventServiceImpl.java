@@ -0,0 +1,34 @@
+package com.boxai.service.impl;
+
+import com.boxai.service.RoomEventService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * 房间事件发布服务实现
+ * 每个房间一个频道 room:events:{roomId}，消息内容为逗号分隔的变化部分
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RoomEventServiceImpl implements RoomEventService {
+    
+    static final String CHANNEL_PREFIX = "room:events:";
+    
+    private final StringRedisTemplate stringRedisTemplate;
+    
+    @Override
+    public void publish(Long roomId, String... topics) {
+        if (roomId == null || topics.length == 0) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL_PREFIX + roomId, String.join(",", topics));
+        } catch (Exception e) {
+            // 推送失败不影响业务操作，客户端重连时会拿到完整快照
+            log.warn("发布房间事件失败: roomId={}, topics={}", roomId, String.join(",", topics), e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.boxai.service.impl;
+
+import com.boxai.domain.dto.room.RoomLiveState;
+import com.boxai.service.RoomEventService;
+import com.boxai.service.RoomEventStreamService;
+import com.boxai.service.RoomQueueService;
+import com.boxai.service.RoomStateService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 房间事件推送服务实现
+ * Redis监听线程只标记房间的变化部分；定时任务在每个合并窗口结束时为有变化且有本节点订阅者的房间
+ * 读取一次最新状态、序列化一次，通过多播Sink分发给所有订阅者。没有订阅者的房间不占用资源
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RoomEventStreamServiceImpl implements RoomEventStreamService, MessageListener {
+    
+    private final RedisMessageListenerContainer listenerContainer;
+    private final RoomStateService roomStateService;
+    private final RoomQueueService roomQueueService;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${app.room-events.heartbeat-interval:PT15S}")
+    private Duration heartbeatInterval;
+    
+    @Value("${app.room-events.max-buffer:256}")
+    private int maxBuffer;
+    
+    private final Map<Long, RoomChannel> channels = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new PatternTopic(RoomEventServiceImpl.CHANNEL_PREFIX + "*"));
+    }
+    
+    @Override
+    public Flux<ServerSentEvent<String>> subscribe(Long roomId) {
+        return Flux.defer(() -> {
+            RoomChannel channel = channels.compute(roomId, (id, existing) -> {
+                RoomChannel c = existing != null ? existing : new RoomChannel();
+                c.subscribers.incrementAndGet();
+                return c;
+            });
+            
+            // 先订阅变化并缓冲，再读取快照：读取快照期间发生的变化不会丢失，快照发送后依次补发
+            Disposable[] connection = new Disposable[1];
+            Flux<RoomEvent> live = channel.sink.asFlux()
+                    .onBackpressureBuffer(maxBuffer)
+                    .publish()
+                    .autoConnect(0, disposable -> connection[0] = disposable);
+            long snapshotVersion = channel.version.get();
+            
+            Mono<ServerSentEvent<String>> snapshot = Mono.fromCallable(() -> ServerSentEvent.<String>builder()
+                    .id(String.valueOf(snapshotVersion))
+                    .event("snapshot")
+                    .data(buildSnapshot(roomId, snapshotVersion))
+                    .build());
+            
+            // 超出缓冲的慢客户端会被断开，重连后重新获取快照；快照版本及之前的变化已包含在快照中
+            Flux<ServerSentEvent<String>> changes = live
+                    .filter(event -> event.version() > snapshotVersion)
+                    .map(event -> ServerSentEvent.<String>builder()
+                            .id(String.valueOf(event.version()))
+                            .event("change")
+                            .data(event.json())
+                            .build());
+            
+            Flux<ServerSentEvent<String>> heartbeats = Flux.interval(heartbeatInterval)
+                    .map(sequence -> ServerSentEvent.<String>builder().comment("heartbeat").build());
+            
+            return Flux.concat(snapshot, Flux.merge(changes, heartbeats))
+                    .doFinally(signal -> {
+                        connection[0].dispose();
+                        release(roomId);
+                    });
+        })
+        .doOnSubscribe(subscription -> log.debug("客户端订阅房间事件流: roomId={}", roomId))
+        .doOnError(error -> log.warn("房间事件流异常结束: roomId={}, error={}", roomId, error.toString()));
+    }
+    
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channelName = new String(message.getChannel(), StandardCharsets.UTF_8);
+        Long roomId;
+        try {
+            roomId = Long.valueOf(channelName.substring(RoomEventServiceImpl.CHANNEL_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        RoomChannel channel = channels.get(roomId);
+        if (channel == null) {
+            return;
+        }
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        for (String topic : body.split(",")) {
+            if (!topic.isBlank()) {
+                channel.dirty.add(topic.trim());
+            }
+        }
+    }
+    
+    /**
+     * 合并窗口结束，为有变化的房间生成并分发一条消息
+     */
+    @Scheduled(fixedDelayString = "${app.room-events.coalesce-window:PT0.2S}")
+    public void flush() {
+        channels.forEach((roomId, channel) -> {
+            if (channel.dirty.isEmpty()) {
+                return;
+            }
+            List<String> topics = new ArrayList<>(channel.dirty);
+            topics.forEach(channel.dirty::remove);
+            try {
+                long version = channel.version.incrementAndGet();
+                String json = buildChange(roomId, version, topics);
+                channel.sink.tryEmitNext(new RoomEvent(version, json));
+            } catch (Exception e) {
+                log.error("生成房间事件失败: roomId={}, topics={}", roomId, topics, e);
+            }
+        });
+    }
+    
+    private void release(Long roomId) {
+        channels.computeIfPresent(roomId, (id, channel) -> {
+            if (channel.subscribers.decrementAndGet() <= 0) {
+                channel.sink.tryEmitComplete();
+                return null;
+            }
+            return channel;
+        });
+    }
+    
+    private String buildSnapshot(Long roomId, long version) throws Exception {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("roomId", roomId);
+        data.put("version", version);
+        data.put("state", roomStateService.getState(roomId));
+        data.put(RoomEventService.TOPIC_QUEUE, roomQueueService.getQueue(roomId));
+        return objectMapper.writeValueAsString(data);
+    }
+    
+    /**
+     * 只包含变化部分的最新值
+     */
+    private String buildChange(Long roomId, long version, List<String> topics) throws Exception {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        for (String topic : topics) {
+            switch (topic) {
+                case RoomEventService.TOPIC_QUEUE -> changes.put(topic, roomQueueService.getQueue(roomId));
+                case RoomEventService.TOPIC_MEMBERS -> changes.put(topic, roomStateService.getMembers(roomId));
+                case RoomEventService.TOPIC_LIGHTING -> changes.put(topic, roomStateService.getLighting(roomId));
+                case RoomEventService.TOPIC_SCENE -> changes.put(topic, roomStateService.getScene(roomId));
+                case RoomEventService.TOPIC_PLAYBACK -> {
+                    RoomLiveState state = roomStateService.getState(roomId);
+                    Map<String, Object> playback = new LinkedHashMap<>();
+                    playback.put("currentTrackId", state.getCurrentTrackId());
+                    playback.put("currentPlaylistId", state.getCurrentPlaylistId());
+                    playback.put("playState", state.getPlayState());
+                    playback.put("elapsedMs", state.getElapsedMs());
+                    playback.put("playbackUpdatedAt", state.getPlaybackUpdatedAt());
+                    changes.put(topic, playback);
+                }
+                default -> log.debug("忽略未知的房间事件类型: {}", topic);
+            }
+        }
+        
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("roomId", roomId);
+        data.put("version", version);
+        data.put("changes", changes);
+        return objectMapper.writeValueAsString(data);
+    }
+    
+    /**
+     * 本节点上一个房间的订阅状态
+     */
+    private static class RoomChannel {
+        private final Sinks.Many<RoomEvent> sink = Sinks.many().multicast().directBestEffort();
+        private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger subscribers = new AtomicInteger();
+        private final AtomicLong version = new AtomicLong();
+    }
+    
+    private record RoomEvent(long version, String json) {
+    }
+}
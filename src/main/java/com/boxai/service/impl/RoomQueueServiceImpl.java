@@ -0,0 +1,483 @@
+package com.boxai.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.boxai.domain.entity.Playlist;
+import com.boxai.domain.mapper.PlaylistMapper;
+import com.boxai.service.RoomEventService;
+import com.boxai.service.RoomQueueService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * 房间播放队列服务实现类
+ * 位置按固定步长分配：末尾追加用 INCRBY 序列，置顶取正在播放项之后的位置（没有正在播放项时用 DECRBY 序列），
+ * 调整顺序取相邻两项位置的中间值，只有相邻位置之间没有空隙时才整体重排该房间的队列。
+ * 位置分配不加锁，只有重排持有房间锁：重排开始时递增重排代数，位置写入后若代数变化或重排仍在进行，
+ * 说明可能与重排交错，按重排后的位置重新分配。
+ * Redis镜像：有序集合保存队列项ID与位置，哈希保存队列项JSON，读取时一次往返取回；单项写入先递增镜像版本，
+ * 整体重建用Lua脚本在版本未变时原子替换，版本变化（期间有单项写入）时重新从数据库加载
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RoomQueueServiceImpl implements RoomQueueService {
+    
+    private static final String QUEUE_KEY = "room:queue:";
+    private static final String ITEMS_KEY = "room:queue:items:";
+    private static final String LOADED_KEY = "room:queue:loaded:";
+    private static final String VERSION_KEY = "room:queue:version:";
+    private static final String SEQ_KEY = "room:queue:seq:";
+    private static final String HEAD_KEY = "room:queue:head:";
+    private static final String LOCK_KEY = "room:queue:lock:";
+    private static final String EPOCH_KEY = "room:queue:epoch:";
+    
+    // 位置步长，为调整顺序预留空隙
+    private static final int POSITION_STRIDE = 1024;
+    private static final Duration LOCK_TTL = Duration.ofSeconds(30);
+    private static final long LOCK_POLL_MILLIS = 20;
+    private static final int MAX_ATTEMPTS = 5;
+    
+    /**
+     * 只释放自己持有的锁
+     */
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+    
+    /**
+     * 镜像版本等于 ARGV[1] 时原子替换整个镜像并递增版本，ARGV[2..] 为 (成员, 位置, JSON) 三元组；版本已变化返回0
+     */
+    private static final DefaultRedisScript<Long> REBUILD_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('get', KEYS[4]) or '0') ~= ARGV[1] then return 0 end " +
+            "redis.call('del', KEYS[1], KEYS[2]) " +
+            "for i = 2, #ARGV, 3 do " +
+            "  redis.call('zadd', KEYS[1], ARGV[i + 1], ARGV[i]) " +
+            "  redis.call('hset', KEYS[2], ARGV[i], ARGV[i + 2]) " +
+            "end " +
+            "redis.call('set', KEYS[3], '1') " +
+            "redis.call('incr', KEYS[4]) " +
+            "return 1",
+            Long.class);
+    
+    private final PlaylistMapper playlistMapper;
+    private final StringRedisTemplate redis;
+    private final ObjectMapper objectMapper;
+    private final RoomEventService roomEventService;
+    
+    @Value("${app.room-queue.lock-wait:PT3S}")
+    private Duration lockWait;
+    
+    @Override
+    public Playlist enqueue(Long roomId, Long trackId, Long userId) {
+        String epoch = awaitRenumber(roomId);
+        Playlist item = new Playlist();
+        item.setRoomId(roomId);
+        item.setTrackId(trackId);
+        item.setOrderedByUserId(userId);
+        item.setPosition(nextTailPosition(roomId));
+        item.setStatus("QUEUED");
+        playlistMapper.insert(item);
+        
+        if (!isUnchanged(roomId, epoch)) {
+            // 与重排交错，序列已重置，重新追加到末尾
+            return assignPosition(item, () -> nextTailPosition(roomId));
+        }
+        mirrorPut(item);
+        roomEventService.publish(roomId, RoomEventService.TOPIC_QUEUE);
+        return item;
+    }
+    
+    @Override
+    public Playlist singNext(Long roomId, Long playlistId) {
+        Playlist item = requireItem(roomId, playlistId);
+        // 排在正在播放的歌曲之后，不会排到它前面
+        return assignPosition(item, () -> {
+            Playlist playing = findPlaying(roomId);
+            if (playing == null) {
+                return nextHeadPosition(roomId);
+            }
+            return playing.getId().equals(playlistId) ? item.getPosition() : positionAfter(roomId, playing, playlistId);
+        });
+    }
+    
+    @Override
+    public Playlist move(Long roomId, Long playlistId, Long afterPlaylistId) {
+        if (afterPlaylistId == null) {
+            return singNext(roomId, playlistId);
+        }
+        if (afterPlaylistId.equals(playlistId)) {
+            throw new RuntimeException("不能移动到自身之后");
+        }
+        Playlist item = requireItem(roomId, playlistId);
+        return assignPosition(item, () -> positionAfter(roomId, requireItem(roomId, afterPlaylistId), playlistId));
+    }
+    
+    @Override
+    public void dequeue(Long roomId, Long playlistId) {
+        Playlist item = requireItem(roomId, playlistId);
+        playlistMapper.deleteById(item.getId());
+        
+        try {
+            String member = String.valueOf(playlistId);
+            redis.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> redisOperations) throws DataAccessException {
+                    RedisOperations<String, String> operations = (RedisOperations<String, String>) redisOperations;
+                    // 先递增版本，进行中的整体重建不会把已删除的项写回
+                    operations.opsForValue().increment(VERSION_KEY + roomId);
+                    operations.opsForZSet().remove(QUEUE_KEY + roomId, member);
+                    operations.opsForHash().delete(ITEMS_KEY + roomId, member);
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            invalidateMirror(roomId, e);
+        }
+        roomEventService.publish(roomId, RoomEventService.TOPIC_QUEUE);
+    }
+    
+    @Override
+    @Transactional
+    public void markPlaying(Long roomId, Long playlistId) {
+        playlistMapper.update(null, new UpdateWrapper<Playlist>()
+                .set("status", "DONE")
+                .eq("room_id", roomId)
+                .eq("status", "PLAYING")
+                .ne("id", playlistId));
+        playlistMapper.update(null, new UpdateWrapper<Playlist>()
+                .set("status", "PLAYING")
+                .eq("room_id", roomId)
+                .eq("id", playlistId));
+        // 提交后再重建镜像并通知，避免其他节点读到未提交的状态
+        afterCommit(() -> {
+            rebuildMirror(roomId);
+            roomEventService.publish(roomId, RoomEventService.TOPIC_QUEUE);
+        });
+    }
+    
+    @Override
+    public List<Playlist> getQueue(Long roomId) {
+        try {
+            List<Object> results = redis.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> redisOperations) throws DataAccessException {
+                    RedisOperations<String, String> operations = (RedisOperations<String, String>) redisOperations;
+                    operations.hasKey(LOADED_KEY + roomId);
+                    operations.opsForZSet().range(QUEUE_KEY + roomId, 0, -1);
+                    operations.opsForHash().entries(ITEMS_KEY + roomId);
+                    return null;
+                }
+            });
+            if (Boolean.TRUE.equals(results.get(0))) {
+                @SuppressWarnings("unchecked")
+                Set<String> ids = (Set<String>) results.get(1);
+                @SuppressWarnings("unchecked")
+                Map<Object, Object> items = (Map<Object, Object>) results.get(2);
+                List<Playlist> queue = new ArrayList<>(ids.size());
+                for (String id : ids) {
+                    Object json = items.get(id);
+                    if (json != null) {
+                        queue.add(objectMapper.readValue(json.toString(), Playlist.class));
+                    }
+                }
+                return queue;
+            }
+        } catch (Exception e) {
+            log.warn("读取Redis队列镜像失败，回退到数据库: roomId={}", roomId, e);
+            return loadFromDb(roomId);
+        }
+        
+        // 镜像未加载（首次访问或Redis数据丢失），从数据库加载并回填
+        return rebuildMirror(roomId);
+    }
+    
+    @Override
+    @Transactional
+    public void clear(Long roomId) {
+        playlistMapper.delete(new QueryWrapper<Playlist>().eq("room_id", roomId));
+        try {
+            redis.opsForValue().increment(VERSION_KEY + roomId);
+            redis.delete(List.of(QUEUE_KEY + roomId, ITEMS_KEY + roomId, SEQ_KEY + roomId, HEAD_KEY + roomId));
+            redis.opsForValue().set(LOADED_KEY + roomId, "1");
+        } catch (Exception e) {
+            invalidateMirror(roomId, e);
+        }
+        roomEventService.publish(roomId, RoomEventService.TOPIC_QUEUE);
+    }
+    
+    /**
+     * 为已存在的队列项分配并写入新位置。positions 返回null表示相邻位置之间没有空隙，重排后重试；
+     * 写入后发现与重排交错时按重排后的位置重新计算
+     */
+    private Playlist assignPosition(Playlist item, Supplier<Integer> positions) {
+        Long roomId = item.getRoomId();
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            String epoch = awaitRenumber(roomId);
+            Integer position = positions.get();
+            if (position == null) {
+                renumber(roomId);
+                continue;
+            }
+            playlistMapper.updatePosition(roomId, item.getId(), position);
+            if (isUnchanged(roomId, epoch)) {
+                item.setPosition(position);
+                mirrorPut(item);
+                roomEventService.publish(roomId, RoomEventService.TOPIC_QUEUE);
+                return item;
+            }
+        }
+        throw new RuntimeException("调整队列顺序失败，请稍后重试");
+    }
+    
+    /**
+     * 等待进行中的重排结束（至多 lock-wait），返回当前重排代数
+     */
+    private String awaitRenumber(Long roomId) {
+        long deadline = System.currentTimeMillis() + lockWait.toMillis();
+        while (true) {
+            List<String> values = redis.opsForValue().multiGet(List.of(EPOCH_KEY + roomId, LOCK_KEY + roomId));
+            if (values == null || values.get(1) == null) {
+                return values != null && values.get(0) != null ? values.get(0) : "0";
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new RuntimeException("播放队列正在整理，请稍后重试");
+            }
+            sleep();
+        }
+    }
+    
+    /**
+     * 自读取 epoch 以来没有发生过重排，且当前没有重排在进行
+     */
+    private boolean isUnchanged(Long roomId, String epoch) {
+        List<String> values = redis.opsForValue().multiGet(List.of(EPOCH_KEY + roomId, LOCK_KEY + roomId));
+        if (values == null || values.get(1) != null) {
+            return false;
+        }
+        return epoch.equals(values.get(0) != null ? values.get(0) : "0");
+    }
+    
+    /**
+     * 在事务提交后执行；没有活动事务时立即执行
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    
+    /**
+     * 末尾追加位置，序列丢失时按数据库最大位置恢复
+     */
+    private int nextTailPosition(Long roomId) {
+        String key = SEQ_KEY + roomId;
+        if (!Boolean.TRUE.equals(redis.hasKey(key))) {
+            Integer max = playlistMapper.selectMaxPosition(roomId);
+            redis.opsForValue().setIfAbsent(key, String.valueOf(max != null ? Math.max(max, 0) : 0));
+        }
+        Long position = redis.opsForValue().increment(key, POSITION_STRIDE);
+        if (position == null || position > Integer.MAX_VALUE) {
+            renumber(roomId);
+            position = redis.opsForValue().increment(key, POSITION_STRIDE);
+        }
+        return position.intValue();
+    }
+    
+    /**
+     * 置顶位置（没有正在播放的歌曲时使用），序列丢失时按数据库最小位置恢复
+     */
+    private int nextHeadPosition(Long roomId) {
+        String key = HEAD_KEY + roomId;
+        if (!Boolean.TRUE.equals(redis.hasKey(key))) {
+            Integer min = playlistMapper.selectMinPosition(roomId);
+            redis.opsForValue().setIfAbsent(key, String.valueOf(min != null ? Math.min(min, 0) : 0));
+        }
+        Long position = redis.opsForValue().decrement(key, POSITION_STRIDE);
+        if (position == null || position < Integer.MIN_VALUE) {
+            renumber(roomId);
+            position = redis.opsForValue().decrement(key, POSITION_STRIDE);
+        }
+        return position.intValue();
+    }
+    
+    /**
+     * 计算紧跟在 after 之后的位置
+     * 
+     * @return 新位置；相邻位置之间没有空隙时返回null
+     */
+    private Integer positionAfter(Long roomId, Playlist after, Long movingId) {
+        QueryWrapper<Playlist> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("room_id", roomId)
+                   .ne("id", movingId)
+                   .gt("position", after.getPosition())
+                   .orderByAsc("position")
+                   .last("LIMIT 1");
+        Playlist next = playlistMapper.selectOne(queryWrapper);
+        if (next == null) {
+            return nextTailPosition(roomId);
+        }
+        long gap = (long) next.getPosition() - after.getPosition();
+        if (gap < 2) {
+            return null;
+        }
+        return (int) (after.getPosition() + gap / 2);
+    }
+    
+    /**
+     * 按当前顺序以固定步长重新分配整个房间的位置，并重置序列与镜像。
+     * 持有房间锁执行；其他节点正在重排时等待其结束后直接返回，由调用方按新位置重试
+     */
+    private void renumber(Long roomId) {
+        String lockKey = LOCK_KEY + roomId;
+        String token = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(redis.opsForValue().setIfAbsent(lockKey, token, LOCK_TTL))) {
+            awaitRenumber(roomId);
+            return;
+        }
+        try {
+            redis.opsForValue().increment(EPOCH_KEY + roomId);
+            // 使重排前开始的镜像重建失效
+            redis.opsForValue().increment(VERSION_KEY + roomId);
+            List<Playlist> queue = loadFromDb(roomId);
+            int position = 0;
+            for (Playlist item : queue) {
+                position += POSITION_STRIDE;
+                playlistMapper.updatePosition(roomId, item.getId(), position);
+            }
+            redis.opsForValue().set(SEQ_KEY + roomId, String.valueOf(position));
+            redis.opsForValue().set(HEAD_KEY + roomId, "0");
+            rebuildMirror(roomId);
+            log.info("房间播放队列已重排: roomId={}, size={}", roomId, queue.size());
+        } finally {
+            redis.execute(UNLOCK_SCRIPT, List.of(lockKey), token);
+        }
+    }
+    
+    private Playlist findPlaying(Long roomId) {
+        return playlistMapper.selectOne(new QueryWrapper<Playlist>()
+                .eq("room_id", roomId)
+                .eq("status", "PLAYING")
+                .last("LIMIT 1"));
+    }
+    
+    private void sleep() {
+        try {
+            Thread.sleep(LOCK_POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待播放队列整理被中断");
+        }
+    }
+    
+    private Playlist requireItem(Long roomId, Long playlistId) {
+        Playlist item = playlistMapper.selectById(playlistId);
+        if (item == null || !roomId.equals(item.getRoomId())) {
+            throw new RuntimeException("队列项不存在");
+        }
+        return item;
+    }
+    
+    private List<Playlist> loadFromDb(Long roomId) {
+        QueryWrapper<Playlist> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("room_id", roomId).orderByAsc("position").orderByAsc("id");
+        return playlistMapper.selectList(queryWrapper);
+    }
+    
+    private void mirrorPut(Playlist item) {
+        Long roomId = item.getRoomId();
+        try {
+            String member = String.valueOf(item.getId());
+            String json = objectMapper.writeValueAsString(item);
+            redis.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> redisOperations) throws DataAccessException {
+                    RedisOperations<String, String> operations = (RedisOperations<String, String>) redisOperations;
+                    // 先递增版本，进行中的整体重建不会覆盖本次写入
+                    operations.opsForValue().increment(VERSION_KEY + roomId);
+                    operations.opsForZSet().add(QUEUE_KEY + roomId, member, item.getPosition());
+                    operations.opsForHash().put(ITEMS_KEY + roomId, member, json);
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            invalidateMirror(roomId, e);
+        }
+    }
+    
+    /**
+     * 从数据库加载队列并整体替换镜像。加载期间有单项写入（版本变化）时重新加载，多次失败则删除加载标记
+     * 
+     * @return 从数据库加载的队列
+     */
+    private List<Playlist> rebuildMirror(Long roomId) {
+        List<Playlist> queue = List.of();
+        try {
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                String version = redis.opsForValue().get(VERSION_KEY + roomId);
+                queue = loadFromDb(roomId);
+                List<String> args = new ArrayList<>(queue.size() * 3 + 1);
+                args.add(version != null ? version : "0");
+                for (Playlist item : queue) {
+                    args.add(String.valueOf(item.getId()));
+                    args.add(String.valueOf(item.getPosition()));
+                    args.add(objectMapper.writeValueAsString(item));
+                }
+                Long applied = redis.execute(REBUILD_SCRIPT,
+                        List.of(QUEUE_KEY + roomId, ITEMS_KEY + roomId, LOADED_KEY + roomId, VERSION_KEY + roomId),
+                        args.toArray());
+                if (Long.valueOf(1).equals(applied)) {
+                    return queue;
+                }
+            }
+            invalidateMirror(roomId, new IllegalStateException("重建期间镜像持续变化"));
+        } catch (Exception e) {
+            if (queue.isEmpty()) {
+                queue = loadFromDb(roomId);
+            }
+            invalidateMirror(roomId, e);
+        }
+        return queue;
+    }
+    
+    /**
+     * 镜像写入失败时删除加载标记，下次读取从数据库重建
+     */
+    private void invalidateMirror(Long roomId, Exception cause) {
+        log.warn("更新Redis队列镜像失败，下次读取将从数据库重建: roomId={}", roomId, cause);
+        try {
+            redis.delete(LOADED_KEY + roomId);
+        } catch (Exception e) {
+            log.warn("删除队列镜像标记失败: roomId={}", roomId, e);
+        }
+    }
+}
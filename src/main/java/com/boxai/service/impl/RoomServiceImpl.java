@@ -5,22 +5,24 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.boxai.domain.dto.room.RoomResetResponse;
 import com.boxai.domain.entity.Room;
 import com.boxai.domain.entity.RoomMember;
-import com.boxai.domain.entity.Playlist;
 import com.boxai.domain.mapper.RoomMapper;
-import com.boxai.domain.dto.wechat.RoomQrResponse;
+import com.boxai.service.RoomQueueService;
 import com.boxai.service.RoomService;
+import com.boxai.service.RoomStateService;
 import com.boxai.service.RoomMemberService;
-import com.boxai.service.PlaylistService;
 import com.boxai.service.QrCodeService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 @RequiredArgsConstructor
 public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room> implements RoomService {
     private final RoomMemberService roomMemberService;
-    private final PlaylistService playlistService;
+    private final RoomQueueService roomQueueService;
+    private final RoomStateService roomStateService;
     private final QrCodeService qrCodeService;
     
     @Override
@@ -38,24 +40,23 @@ public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room> implements Ro
                 .ne(RoomMember::getUserId, room.getOwnerUserId()));
         
         // 清空播放列表
-        playlistService.remove(new LambdaQueryWrapper<Playlist>()
-                .eq(Playlist::getRoomId, roomId));
+        roomQueueService.clear(roomId);
+        roomStateService.reset(roomId);
         
         // 更新房间状态为重置
         room.setStatus("RESET");
         updateById(room);
         
-        // 刷新二维码版本并生成新的二维码
+        // 刷新二维码版本，新版本的二维码在事务提交后生成
         Integer newVersion = refreshQrVersion(roomId);
-        RoomQrResponse newQr = qrCodeService.generateRoomQrWithVersion(roomId, newVersion, null);
         
-        // 更新房间状态为活跃
+        // 更新房间状态为活跃（带上新版本号，避免用重置前读到的版本号覆盖）
+        room.setQrVersion(newVersion);
         room.setStatus("ACTIVE");
         updateById(room);
         
         RoomResetResponse response = new RoomResetResponse();
         response.setRoom(room);
-        response.setNewQr(newQr);
         response.setMessage("房间已重置，请使用新的二维码邀请客人进入");
         
         return response;
@@ -72,9 +73,27 @@ public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room> implements Ro
         Integer newVersion = (room.getQrVersion() != null ? room.getQrVersion() : 0) + 1;
         room.setQrVersion(newVersion);
         updateById(room);
+        // 旧版本图片在新版本号提交后再删除，事务回滚时旧二维码仍然可用
+        afterCommit(() -> qrCodeService.onVersionChanged(roomId, newVersion));
         
         return newVersion;
     }
+    
+    /**
+     * 在当前事务提交后执行，没有事务时立即执行
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 }
 
 
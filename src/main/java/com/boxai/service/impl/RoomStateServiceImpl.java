@@ -0,0 +1,306 @@
+package com.boxai.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.boxai.domain.dto.request.LightingSaveRequest;
+import com.boxai.domain.dto.request.RoomPlaybackStateRequest;
+import com.boxai.domain.dto.request.SceneSaveRequest;
+import com.boxai.domain.dto.room.RoomLiveState;
+import com.boxai.domain.entity.Lighting;
+import com.boxai.domain.entity.RoomMember;
+import com.boxai.domain.entity.Scene;
+import com.boxai.service.LightingService;
+import com.boxai.service.RoomEventService;
+import com.boxai.service.RoomMemberService;
+import com.boxai.service.RoomQueueService;
+import com.boxai.service.RoomStateService;
+import com.boxai.service.SceneService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 房间实时状态服务实现类
+ * 每个房间一个Redis哈希 room:state:{roomId}，字段缺失时从数据库按需加载并回填；
+ * 数据库写回按"房间+字段"合并，定时只写最新值，同一字段的多次修改不会乱序
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RoomStateServiceImpl implements RoomStateService {
+    
+    private static final String STATE_KEY = "room:state:";
+    private static final Duration STATE_TTL = Duration.ofHours(24);
+    
+    private static final String F_TRACK_ID = "trackId";
+    private static final String F_PLAYLIST_ID = "playlistId";
+    private static final String F_PLAY_STATE = "playState";
+    private static final String F_POSITION_MS = "positionMs";
+    private static final String F_POSITION_AT = "positionAt";
+    private static final String F_MEMBERS = "members";
+    private static final String F_LIGHTING = "lighting";
+    private static final String F_SCENE = "scene";
+    
+    private static final String PLAYING = "PLAYING";
+    private static final String PAUSED = "PAUSED";
+    private static final String STOPPED = "STOPPED";
+    
+    private final StringRedisTemplate redis;
+    private final ObjectMapper objectMapper;
+    private final RoomMemberService roomMemberService;
+    private final LightingService lightingService;
+    private final SceneService sceneService;
+    private final RoomQueueService roomQueueService;
+    private final RoomEventService roomEventService;
+    
+    // 待写回数据库的最新修改，键为"字段:房间ID"
+    private final Map<String, Runnable> pendingWrites = new ConcurrentHashMap<>();
+    
+    @Override
+    public RoomLiveState getState(Long roomId) {
+        Map<Object, Object> hash = redis.opsForHash().entries(STATE_KEY + roomId);
+        
+        RoomLiveState state = new RoomLiveState();
+        state.setRoomId(roomId);
+        state.setCurrentTrackId(parseLong(hash.get(F_TRACK_ID)));
+        state.setCurrentPlaylistId(parseLong(hash.get(F_PLAYLIST_ID)));
+        String playState = hash.get(F_PLAY_STATE) != null ? hash.get(F_PLAY_STATE).toString() : STOPPED;
+        state.setPlayState(playState);
+        Long positionAt = parseLong(hash.get(F_POSITION_AT));
+        state.setPlaybackUpdatedAt(positionAt);
+        state.setElapsedMs(elapsed(playState, parseLong(hash.get(F_POSITION_MS)), positionAt));
+        
+        state.setMembers(readOrLoad(roomId, hash, F_MEMBERS, new TypeReference<List<RoomMember>>() {}, () -> loadMembers(roomId)));
+        state.setLighting(readOrLoad(roomId, hash, F_LIGHTING, new TypeReference<Lighting>() {}, () -> loadLighting(roomId)));
+        state.setScene(readOrLoad(roomId, hash, F_SCENE, new TypeReference<Scene>() {}, () -> loadScene(roomId)));
+        return state;
+    }
+    
+    @Override
+    public List<RoomMember> getMembers(Long roomId) {
+        return readField(roomId, F_MEMBERS, new TypeReference<List<RoomMember>>() {}, () -> loadMembers(roomId));
+    }
+    
+    @Override
+    public Lighting getLighting(Long roomId) {
+        return readField(roomId, F_LIGHTING, new TypeReference<Lighting>() {}, () -> loadLighting(roomId));
+    }
+    
+    @Override
+    public Scene getScene(Long roomId) {
+        return readField(roomId, F_SCENE, new TypeReference<Scene>() {}, () -> loadScene(roomId));
+    }
+    
+    @Override
+    public Lighting saveLighting(LightingSaveRequest request) {
+        Lighting current = getLighting(request.getRoomId());
+        Lighting lighting = new Lighting();
+        // 新建时预先分配ID，保证异步写回前返回的数据已完整
+        lighting.setId(current != null ? current.getId() : IdWorker.getId());
+        lighting.setRoomId(request.getRoomId());
+        lighting.setBrightness(request.getBrightness());
+        lighting.setColor(request.getColor());
+        lighting.setRhythm(request.getRhythm());
+        
+        writeField(request.getRoomId(), F_LIGHTING, lighting);
+        pendingWrites.put(F_LIGHTING + ":" + request.getRoomId(), () -> lightingService.saveOrUpdate(lighting));
+        roomEventService.publish(request.getRoomId(), RoomEventService.TOPIC_LIGHTING);
+        return lighting;
+    }
+    
+    @Override
+    public Scene saveScene(SceneSaveRequest request) {
+        Scene current = getScene(request.getRoomId());
+        Scene scene = new Scene();
+        scene.setId(current != null ? current.getId() : IdWorker.getId());
+        scene.setRoomId(request.getRoomId());
+        scene.setType(request.getType());
+        scene.setStateJson(request.getStateJson());
+        
+        writeField(request.getRoomId(), F_SCENE, scene);
+        pendingWrites.put(F_SCENE + ":" + request.getRoomId(), () -> sceneService.saveOrUpdate(scene));
+        roomEventService.publish(request.getRoomId(), RoomEventService.TOPIC_SCENE);
+        return scene;
+    }
+    
+    @Override
+    public void invalidateMembers(Long roomId) {
+        redis.opsForHash().delete(STATE_KEY + roomId, F_MEMBERS);
+        roomEventService.publish(roomId, RoomEventService.TOPIC_MEMBERS);
+    }
+    
+    @Override
+    public void updatePlayback(Long roomId, RoomPlaybackStateRequest request) {
+        String key = STATE_KEY + roomId;
+        Object previousPlaylistId = redis.opsForHash().get(key, F_PLAYLIST_ID);
+        
+        Map<String, String> fields = new HashMap<>();
+        if (request.getTrackId() != null) {
+            fields.put(F_TRACK_ID, String.valueOf(request.getTrackId()));
+        }
+        if (request.getPlaylistId() != null) {
+            fields.put(F_PLAYLIST_ID, String.valueOf(request.getPlaylistId()));
+        }
+        fields.put(F_PLAY_STATE, request.getPlayState() != null ? request.getPlayState() : PLAYING);
+        fields.put(F_POSITION_MS, String.valueOf(request.getPositionMs() != null ? request.getPositionMs() : 0L));
+        fields.put(F_POSITION_AT, String.valueOf(System.currentTimeMillis()));
+        redis.opsForHash().putAll(key, fields);
+        redis.expire(key, STATE_TTL);
+        
+        // 切歌时异步更新播放队列状态
+        Long playlistId = request.getPlaylistId();
+        if (playlistId != null && (previousPlaylistId == null || !previousPlaylistId.toString().equals(playlistId.toString()))) {
+            pendingWrites.put("queue:" + roomId, () -> roomQueueService.markPlaying(roomId, playlistId));
+        }
+        roomEventService.publish(roomId, RoomEventService.TOPIC_PLAYBACK);
+    }
+    
+    @Override
+    public void applyControl(Long roomId, String action) {
+        if (action == null) {
+            return;
+        }
+        String key = STATE_KEY + roomId;
+        List<Object> values = redis.opsForHash().multiGet(key, List.of(F_PLAY_STATE, F_POSITION_MS, F_POSITION_AT));
+        String playState = values.get(0) != null ? values.get(0).toString() : STOPPED;
+        long now = System.currentTimeMillis();
+        Long elapsed = elapsed(playState, parseLong(values.get(1)), parseLong(values.get(2)));
+        
+        Map<String, String> fields = new HashMap<>();
+        switch (action.toUpperCase()) {
+            case "PLAY" -> fields.put(F_PLAY_STATE, PLAYING);
+            case "PAUSE" -> fields.put(F_PLAY_STATE, PAUSED);
+            case "STOP" -> {
+                fields.put(F_PLAY_STATE, STOPPED);
+                elapsed = 0L;
+            }
+            default -> {
+                // 切歌类命令由设备端播放新曲目后上报
+                return;
+            }
+        }
+        fields.put(F_POSITION_MS, String.valueOf(elapsed != null ? elapsed : 0L));
+        fields.put(F_POSITION_AT, String.valueOf(now));
+        redis.opsForHash().putAll(key, fields);
+        redis.expire(key, STATE_TTL);
+        roomEventService.publish(roomId, RoomEventService.TOPIC_PLAYBACK);
+    }
+    
+    @Override
+    public void reset(Long roomId) {
+        redis.delete(STATE_KEY + roomId);
+        roomEventService.publish(roomId, RoomEventService.TOPIC_PLAYBACK, RoomEventService.TOPIC_MEMBERS,
+                RoomEventService.TOPIC_LIGHTING, RoomEventService.TOPIC_SCENE);
+    }
+    
+    /**
+     * 定时将合并后的修改写回数据库
+     */
+    @Scheduled(fixedDelayString = "${app.room-state.flush-interval:PT0.5S}")
+    public void flushPendingWrites() {
+        Iterator<String> iterator = pendingWrites.keySet().iterator();
+        while (iterator.hasNext()) {
+            String key = iterator.next();
+            Runnable write = pendingWrites.remove(key);
+            if (write == null) {
+                continue;
+            }
+            try {
+                write.run();
+            } catch (Exception e) {
+                // 失败时若期间没有更新的修改则放回，等待下次重试
+                pendingWrites.putIfAbsent(key, write);
+                log.error("房间状态写回数据库失败: key={}", key, e);
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        flushPendingWrites();
+    }
+    
+    private <T> T readField(Long roomId, String field, TypeReference<T> type, Supplier<T> loader) {
+        Object json = redis.opsForHash().get(STATE_KEY + roomId, field);
+        Map<Object, Object> hash = json != null ? Map.of(field, json) : Map.of();
+        return readOrLoad(roomId, hash, field, type, loader);
+    }
+    
+    /**
+     * 从哈希中解析字段，缺失时从数据库加载并回填（"null"表示数据库中也没有）
+     */
+    private <T> T readOrLoad(Long roomId, Map<Object, Object> hash, String field, TypeReference<T> type,
+                             Supplier<T> loader) {
+        Object json = hash.get(field);
+        if (json != null) {
+            try {
+                return objectMapper.readValue(json.toString(), type);
+            } catch (JsonProcessingException e) {
+                log.warn("解析房间状态字段失败，重新加载: roomId={}, field={}", roomId, field, e);
+            }
+        }
+        T value = loader.get();
+        writeField(roomId, field, value);
+        return value;
+    }
+    
+    private void writeField(Long roomId, String field, Object value) {
+        String key = STATE_KEY + roomId;
+        try {
+            redis.opsForHash().put(key, field, objectMapper.writeValueAsString(value));
+            redis.expire(key, STATE_TTL);
+        } catch (JsonProcessingException e) {
+            log.error("序列化房间状态字段失败: roomId={}, field={}", roomId, field, e);
+        }
+    }
+    
+    private List<RoomMember> loadMembers(Long roomId) {
+        return roomMemberService.list(new LambdaQueryWrapper<RoomMember>().eq(RoomMember::getRoomId, roomId));
+    }
+    
+    private Lighting loadLighting(Long roomId) {
+        return lightingService.getOne(new LambdaQueryWrapper<Lighting>().eq(Lighting::getRoomId, roomId));
+    }
+    
+    private Scene loadScene(Long roomId) {
+        return sceneService.getOne(new LambdaQueryWrapper<Scene>().eq(Scene::getRoomId, roomId));
+    }
+    
+    /**
+     * 播放中时按上报时间推算已播放时长
+     */
+    private static Long elapsed(String playState, Long positionMs, Long positionAt) {
+        if (positionMs == null) {
+            return null;
+        }
+        if (PLAYING.equals(playState) && positionAt != null) {
+            return positionMs + Math.max(System.currentTimeMillis() - positionAt, 0);
+        }
+        return positionMs;
+    }
+    
+    private static Long parseLong(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
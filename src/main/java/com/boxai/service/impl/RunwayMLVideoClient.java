@@ -1,5 +1,7 @@
 package com.boxai.service.impl;
 
+import com.boxai.common.http.UpstreamClient;
+import com.boxai.common.http.UpstreamHttpClients;
 import com.boxai.domain.dto.request.AiVideoGenerateRequest;
 import com.boxai.domain.entity.AiVideoSession;
 import com.boxai.service.AiVideoGenerationClient;
@@ -12,7 +14,6 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -29,7 +30,7 @@ import java.util.Map;
 @ConditionalOnProperty(name = "app.ai.provider", havingValue = "runway")
 public class RunwayMLVideoClient implements AiVideoGenerationClient {
     
-    private final WebClient webClient;
+    private final UpstreamHttpClients upstreamHttpClients;
     private final ObjectMapper objectMapper;
     
     @Value("${app.ai.runway.api-key:}")
@@ -68,13 +69,13 @@ public class RunwayMLVideoClient implements AiVideoGenerationClient {
             "callback_url", buildCallbackUrl(session.getStreamId())
         );
         
-        return webClient.post()
+        return upstream().execute(webClient -> webClient.post()
                 .uri(baseUrl + "/v1/image_to_video")
                 .header("Authorization", "Bearer " + apiKey)
                 .header("Content-Type", "application/json")
                 .bodyValue(requestBody)
                 .retrieve()
-                .bodyToMono(String.class)
+                .bodyToMono(String.class))
                 .map(response -> {
                     try {
                         JsonNode jsonNode = objectMapper.readTree(response);
@@ -94,12 +95,12 @@ public class RunwayMLVideoClient implements AiVideoGenerationClient {
         log.info("开始监听Runway ML生成进度: taskId={}", taskId);
         
         // 使用Server-Sent Events获取实时进度
-        return webClient.get()
+        return upstream().stream(webClient -> webClient.get()
                 .uri(baseUrl + "/v1/tasks/{taskId}/progress", taskId)
                 .header("Authorization", "Bearer " + apiKey)
                 .accept(MediaType.TEXT_EVENT_STREAM)
                 .retrieve()
-                .bodyToFlux(ServerSentEvent.class)
+                .bodyToFlux(ServerSentEvent.class))
                 .map(sse -> {
                     try {
                         Object dataObj = sse.data();
@@ -132,11 +133,11 @@ public class RunwayMLVideoClient implements AiVideoGenerationClient {
     public Mono<AiGenerationResult> getGenerationResult(String taskId) {
         log.info("获取Runway ML生成结果: taskId={}", taskId);
         
-        return webClient.get()
+        return upstream().execute(webClient -> webClient.get()
                 .uri(baseUrl + "/v1/tasks/{taskId}", taskId)
                 .header("Authorization", "Bearer " + apiKey)
                 .retrieve()
-                .bodyToMono(String.class)
+                .bodyToMono(String.class))
                 .map(response -> {
                     try {
                         JsonNode jsonNode = objectMapper.readTree(response);
@@ -150,9 +151,6 @@ public class RunwayMLVideoClient implements AiVideoGenerationClient {
                         String webrtcUrl = null;
                         
                         if ("COMPLETED".equals(mapRunwayStatus(status)) && videoUrl != null) {
-                            // 启动流媒体转换服务
-                            startStreamingConversion(videoUrl, streamId);
-                            
                             streamUrl = rtmpBaseUrl + "/" + streamId;
                             hlsUrl = hlsBaseUrl + "/" + streamId + ".m3u8";
                             webrtcUrl = webrtcBaseUrl + "/" + streamId;
@@ -181,11 +179,11 @@ public class RunwayMLVideoClient implements AiVideoGenerationClient {
     public Mono<Boolean> stopGeneration(String taskId) {
         log.info("停止Runway ML生成任务: taskId={}", taskId);
         
-        return webClient.delete()
+        return upstream().execute(webClient -> webClient.delete()
                 .uri(baseUrl + "/v1/tasks/{taskId}", taskId)
                 .header("Authorization", "Bearer " + apiKey)
                 .retrieve()
-                .bodyToMono(String.class)
+                .bodyToMono(String.class))
                 .map(response -> {
                     log.info("Runway ML任务停止成功: taskId={}", taskId);
                     return true;
@@ -225,37 +223,9 @@ public class RunwayMLVideoClient implements AiVideoGenerationClient {
     }
     
     /**
-     * 启动流媒体转换
-     * 将AI生成的视频文件转换为实时流
+     * Runway ML上游客户端（独立连接池、熔断和隔离舱）
      */
-    private void startStreamingConversion(String videoUrl, String streamId) {
-        log.info("启动流媒体转换: videoUrl={}, streamId={}", videoUrl, streamId);
-        
-        // 使用FFmpeg将视频文件转换为RTMP流
-        // 这里是异步处理，实际部署时需要配置FFmpeg
-        Mono.fromRunnable(() -> {
-            try {
-                // FFmpeg命令示例：
-                // ffmpeg -re -i {videoUrl} -c:v libx264 -c:a aac -f flv {rtmpUrl}
-                String ffmpegCommand = String.format(
-                    "ffmpeg -re -i %s -c:v libx264 -c:a aac -f flv %s/%s",
-                    videoUrl, rtmpBaseUrl, streamId
-                );
-                
-                log.info("执行FFmpeg转换: {}", ffmpegCommand);
-                
-                // 实际部署时需要执行这个命令
-                // Process process = Runtime.getRuntime().exec(ffmpegCommand);
-                
-                // 模拟转换过程
-                Thread.sleep(2000);
-                log.info("流媒体转换完成: streamId={}", streamId);
-                
-            } catch (Exception e) {
-                log.error("流媒体转换失败: streamId={}", streamId, e);
-            }
-        })
-        .subscribeOn(reactor.core.scheduler.Schedulers.boundedElastic())
-        .subscribe();
+    private UpstreamClient upstream() {
+        return upstreamHttpClients.get(UpstreamHttpClients.RUNWAY);
     }
 }
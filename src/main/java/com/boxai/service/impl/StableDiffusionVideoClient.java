@@ -1,5 +1,7 @@
 package com.boxai.service.impl;
 
+import com.boxai.common.http.UpstreamClient;
+import com.boxai.common.http.UpstreamHttpClients;
 import com.boxai.domain.dto.request.AiVideoGenerateRequest;
 import com.boxai.domain.entity.AiVideoSession;
 import com.boxai.service.AiVideoGenerationClient;
@@ -11,7 +13,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -28,7 +29,7 @@ import java.util.Map;
 @ConditionalOnProperty(name = "app.ai.provider", havingValue = "stability", matchIfMissing = false)
 public class StableDiffusionVideoClient implements AiVideoGenerationClient {
     
-    private final WebClient webClient;
+    private final UpstreamHttpClients upstreamHttpClients;
     private final ObjectMapper objectMapper;
     
     @Value("${app.ai.stability.api-key:}")
@@ -58,13 +59,13 @@ public class StableDiffusionVideoClient implements AiVideoGenerationClient {
             "video_length", Math.min(request.getDuration(), 25) // SVD限制25帧
         );
         
-        return webClient.post()
+        return upstream().execute(webClient -> webClient.post()
                 .uri(baseUrl + "/v2beta/image-to-video")
                 .header("Authorization", "Bearer " + apiKey)
                 .header("Accept", "application/json")
                 .bodyValue(requestBody)
                 .retrieve()
-                .bodyToMono(String.class)
+                .bodyToMono(String.class))
                 .map(response -> {
                     try {
                         JsonNode jsonNode = objectMapper.readTree(response);
@@ -95,11 +96,11 @@ public class StableDiffusionVideoClient implements AiVideoGenerationClient {
     }
     
     private Mono<AiGenerationProgress> getTaskStatus(String taskId) {
-        return webClient.get()
+        return upstream().execute(webClient -> webClient.get()
                 .uri(baseUrl + "/v2beta/image-to-video/result/{taskId}", taskId)
                 .header("Authorization", "Bearer " + apiKey)
                 .retrieve()
-                .bodyToMono(String.class)
+                .bodyToMono(String.class))
                 .map(response -> {
                     try {
                         JsonNode jsonNode = objectMapper.readTree(response);
@@ -132,12 +133,12 @@ public class StableDiffusionVideoClient implements AiVideoGenerationClient {
     public Mono<AiGenerationResult> getGenerationResult(String taskId) {
         log.info("获取Stability AI生成结果: taskId={}", taskId);
         
-        return webClient.get()
+        return upstream().execute(webClient -> webClient.get()
                 .uri(baseUrl + "/v2beta/image-to-video/result/{taskId}", taskId)
                 .header("Authorization", "Bearer " + apiKey)
                 .header("Accept", "video/*")
                 .retrieve()
-                .bodyToMono(String.class)
+                .bodyToMono(String.class))
                 .map(response -> {
                     try {
                         JsonNode jsonNode = objectMapper.readTree(response);
@@ -154,9 +155,6 @@ public class StableDiffusionVideoClient implements AiVideoGenerationClient {
                         String webrtcUrl = null;
                         
                         if (videoUrl != null) {
-                            // 启动流媒体转换
-                            startStreamingConversion(videoUrl, streamId);
-                            
                             streamUrl = rtmpBaseUrl + "/" + streamId;
                             hlsUrl = hlsBaseUrl + "/" + streamId + ".m3u8";
                             webrtcUrl = "webrtc://localhost:8080/stream/" + streamId;
@@ -203,19 +201,10 @@ public class StableDiffusionVideoClient implements AiVideoGenerationClient {
         return "ai_stream_" + taskId.substring(0, Math.min(taskId.length(), 10));
     }
     
-    private void startStreamingConversion(String videoUrl, String streamId) {
-        log.info("启动Stability AI视频流转换: videoUrl={}, streamId={}", videoUrl, streamId);
-        
-        Mono.fromRunnable(() -> {
-            try {
-                // 模拟FFmpeg转换过程
-                Thread.sleep(1000);
-                log.info("Stability AI流媒体转换完成: streamId={}", streamId);
-            } catch (Exception e) {
-                log.error("流媒体转换失败: streamId={}", streamId, e);
-            }
-        })
-        .subscribeOn(reactor.core.scheduler.Schedulers.boundedElastic())
-        .subscribe();
+    /**
+     * Stability AI上游客户端（独立连接池、熔断和隔离舱）
+     */
+    private UpstreamClient upstream() {
+        return upstreamHttpClients.get(UpstreamHttpClients.STABILITY);
     }
 }
@@ -0,0 +1,585 @@
+package com.boxai.service.impl;
+
+import com.boxai.domain.dto.StreamPipelineStats;
+import com.boxai.service.HlsStreamService;
+import com.boxai.service.StreamingPipelineService;
+import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 推流管线服务实现
+ * FFmpeg以 -progress pipe:1 输出机器可读的进度，stdout/stderr各由一个虚拟线程读取，
+ * 不占用平台线程；进程退出通过 Process.onExit() 回调处理：主动停止 → STOPPING → 进程退出后 STOPPED，
+ * 正常结束 → COMPLETED，异常退出且未超过重启上限 → 按指数退避重新拉起，否则 → FAILED。
+ * 设置 app.streaming.pipeline.sink=file 时输出到本地文件，可在无网络环境下用本地FFmpeg验证；
+ * 启用多码率HLS时一个进程同时编码阶梯中的所有变体（split + scale），关键帧按段时长对齐。
+ * 同一个流的启动、停止和重启按流ID分段加锁串行执行，并发触发的启动不会拉起两个进程
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StreamingPipelineServiceImpl implements StreamingPipelineService {
+    
+    /** 占用进程名额的状态：STOPPING 的进程仍在写容器尾部，退出前继续计入 max-processes */
+    private static final Set<String> ACTIVE_STATES = Set.of("STARTING", "RUNNING", "RESTARTING", "STOPPING");
+    /** 不需要重新启动的状态：运行中、重启中或已正常结束 */
+    private static final Set<String> RESTARTABLE_STATES = Set.of("FAILED", "STOPPING", "STOPPED");
+    private static final int STDERR_TAIL_LINES = 20;
+    private static final int LOCK_STRIPES = 64;
+    
+    @Value("${app.streaming.pipeline.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${app.streaming.pipeline.max-processes:8}")
+    private int maxProcesses;
+    
+    @Value("${app.streaming.pipeline.max-restarts:3}")
+    private int maxRestarts;
+    
+    @Value("${app.streaming.pipeline.restart-delay:PT2S}")
+    private Duration restartDelay;
+    
+    @Value("${app.streaming.pipeline.retention:PT10M}")
+    private Duration retention;
+    
+    @Value("${app.streaming.pipeline.sink:rtmp}")
+    private String sink;
+    
+    @Value("${app.streaming.pipeline.file-sink-dir:/tmp/boxai/streams}")
+    private String fileSinkDir;
+    
+    @Value("${app.streaming.rtmp-url:rtmp://localhost:1935/live}")
+    private String rtmpBaseUrl;
+    
+    @Value("${app.streaming.ffmpeg.path:ffmpeg}")
+    private String ffmpegPath;
+    
+    @Value("${app.streaming.ffmpeg.video-codec:libx264}")
+    private String videoCodec;
+    
+    @Value("${app.streaming.ffmpeg.audio-codec:aac}")
+    private String audioCodec;
+    
+    @Value("${app.streaming.ffmpeg.format:flv}")
+    private String format;
+    
+    @Value("${app.streaming.ffmpeg.input-args:-re}")
+    private String inputArgs;
+    
+    @Value("${app.streaming.ffmpeg.extra-args:-preset ultrafast -tune zerolatency}")
+    private String extraArgs;
+    
+    private final HlsStreamService hlsStreamService;
+    
+    private final Map<String, Pipeline> pipelines = new ConcurrentHashMap<>();
+    /** 按流ID分段的锁，数量固定，不随流的增减创建和清理；不用 synchronized，避免等待旧进程退出时固定虚拟线程的载体线程 */
+    private final ReentrantLock[] streamLocks = new ReentrantLock[LOCK_STRIPES];
+    {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            streamLocks[i] = new ReentrantLock();
+        }
+    }
+    private final ScheduledExecutorService supervisor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ffmpeg-supervisor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @Override
+    public StreamPipelineStats start(String streamId, String inputUrl, String resolution) {
+        if (!enabled) {
+            throw new RuntimeException("推流管线未启用");
+        }
+        ReentrantLock lock = lockFor(streamId);
+        lock.lock();
+        try {
+            return doStart(streamId, inputUrl, resolution);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public StreamPipelineStats startIfIdle(String streamId, String inputUrl, String resolution) {
+        if (!enabled) {
+            throw new RuntimeException("推流管线未启用");
+        }
+        ReentrantLock lock = lockFor(streamId);
+        lock.lock();
+        try {
+            Pipeline existing = pipelines.get(streamId);
+            if (existing != null && !existing.stopped) {
+                StreamPipelineStats stats = existing.snapshot();
+                if (!RESTARTABLE_STATES.contains(stats.getState())) {
+                    return stats;
+                }
+            }
+            return doStart(streamId, inputUrl, resolution);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 调用方持有该流的锁：先停止并等待旧进程退出，再登记并拉起新管线
+     */
+    private StreamPipelineStats doStart(String streamId, String inputUrl, String resolution) {
+        Pipeline previous = pipelines.get(streamId);
+        if (previous != null) {
+            stopLocked(streamId);
+            awaitExit(previous);
+        }
+        
+        Pipeline pipeline = new Pipeline(streamId, inputUrl, resolution, resolveOutput(streamId));
+        synchronized (pipelines) {
+            // 同一个流的旧管线已在上面等待退出，即将被替换，不计入
+            long active = pipelines.entrySet().stream()
+                    .filter(entry -> !entry.getKey().equals(streamId) && entry.getValue().isActive())
+                    .count();
+            if (active >= maxProcesses) {
+                throw new RuntimeException("推流进程数已达上限: " + maxProcesses);
+            }
+            pipelines.put(streamId, pipeline);
+        }
+        launch(pipeline);
+        return pipeline.snapshot();
+    }
+    
+    @Override
+    public void stop(String streamId) {
+        ReentrantLock lock = lockFor(streamId);
+        lock.lock();
+        try {
+            stopLocked(streamId);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void stopLocked(String streamId) {
+        Pipeline pipeline = pipelines.get(streamId);
+        if (pipeline == null || pipeline.stopped || !pipeline.isActive()) {
+            return;
+        }
+        pipeline.stopped = true;
+        Process process = pipeline.process;
+        if (process == null || !process.isAlive()) {
+            // 等待重启或进程已退出，没有需要等待的进程
+            pipeline.update(stats -> stats.setState("STOPPED"));
+        } else {
+            // 进程退出后由 onExit 置为 STOPPED
+            pipeline.update(stats -> stats.setState("STOPPING"));
+            if (process.isAlive()) {
+                process.destroy();
+                // 给FFmpeg留出写完容器尾部的时间，超时后强制结束
+                supervisor.schedule(() -> {
+                    if (process.isAlive()) {
+                        process.destroyForcibly();
+                    }
+                }, 5, TimeUnit.SECONDS);
+            } else {
+                // 进程恰好已退出，onExit 可能先于上面的更新执行
+                pipeline.update(stats -> stats.setState("STOPPED"));
+            }
+        }
+        log.info("停止推流管线: streamId={}", streamId);
+    }
+    
+    @Override
+    public StreamPipelineStats getStats(String streamId) {
+        Pipeline pipeline = pipelines.get(streamId);
+        return pipeline != null ? pipeline.snapshot() : null;
+    }
+    
+    @Override
+    public List<StreamPipelineStats> getAllStats() {
+        return pipelines.values().stream().map(Pipeline::snapshot).toList();
+    }
+    
+    /**
+     * 定时清理已结束超过保留时长的管线记录
+     */
+    @Scheduled(fixedDelayString = "${app.streaming.pipeline.cleanup-interval:PT1M}")
+    public void cleanupFinished() {
+        LocalDateTime threshold = LocalDateTime.now().minus(retention);
+        pipelines.entrySet().removeIf(entry -> {
+            StreamPipelineStats stats = entry.getValue().snapshot();
+            boolean expired = !ACTIVE_STATES.contains(stats.getState()) && stats.getUpdatedAt().isBefore(threshold);
+            if (expired && hlsStreamService.isEnabled()) {
+                hlsStreamService.purge(entry.getKey());
+            }
+            return expired;
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        pipelines.keySet().forEach(this::stop);
+        supervisor.shutdownNow();
+    }
+    
+    /**
+     * 等待旧进程退出（stop 最多5秒后强制结束），避免新旧进程同时写同一个输出目录
+     */
+    private void awaitExit(Pipeline pipeline) {
+        Process process = pipeline.process;
+        if (process == null) {
+            return;
+        }
+        try {
+            if (!process.waitFor(6, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor(1, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待旧推流进程退出被中断");
+        }
+    }
+    
+    private void launch(Pipeline pipeline) {
+        if (pipeline.stopped) {
+            return;
+        }
+        List<String> command = buildCommand(pipeline);
+        try {
+            if (hlsStreamService.isEnabled()) {
+                // 每次拉起前清除上一个进程留下的切片、播放列表和服务端缓存
+                hlsStreamService.purge(pipeline.streamId);
+            }
+            if (hlsStreamService.isEnabled() || "file".equals(sink)) {
+                Files.createDirectories(Paths.get(pipeline.output).getParent());
+            }
+            Process process = new ProcessBuilder(command).start();
+            pipeline.process = process;
+            pipeline.update(stats -> {
+                stats.setState("STARTING");
+                stats.setPid(process.pid());
+                stats.setStartedAt(LocalDateTime.now());
+                stats.setFrames(0);
+                stats.setFps(0);
+                stats.setBitrateKbps(0);
+                stats.setDroppedFrames(0);
+                stats.setDuplicatedFrames(0);
+                stats.setOutTimeMs(0);
+                stats.setSpeed(0);
+            });
+            log.info("启动推流管线: streamId={}, pid={}, command={}", pipeline.streamId, process.pid(), String.join(" ", command));
+            
+            Thread.ofVirtual().name("ffmpeg-progress-" + pipeline.streamId).start(() -> readProgress(pipeline, process));
+            Thread.ofVirtual().name("ffmpeg-stderr-" + pipeline.streamId).start(() -> readStderr(pipeline, process));
+            process.onExit().thenAccept(exited -> onExit(pipeline, exited));
+        } catch (IOException e) {
+            log.error("启动FFmpeg进程失败: streamId={}", pipeline.streamId, e);
+            pipeline.update(stats -> stats.setLastError(e.getMessage()));
+            handleFailure(pipeline, -1);
+        }
+    }
+    
+    /**
+     * 退避结束后重新拉起；期间已被停止或被新的 start 替换的管线不再拉起
+     */
+    private void relaunch(Pipeline pipeline) {
+        ReentrantLock lock = lockFor(pipeline.streamId);
+        lock.lock();
+        try {
+            if (pipelines.get(pipeline.streamId) == pipeline) {
+                launch(pipeline);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void onExit(Pipeline pipeline, Process exited) {
+        if (pipeline.process != exited) {
+            return;
+        }
+        int exitCode = exited.exitValue();
+        if (pipeline.stopped) {
+            pipeline.update(stats -> stats.setState("STOPPED"));
+        } else if (exitCode == 0) {
+            pipeline.update(stats -> stats.setState("COMPLETED"));
+            log.info("推流管线完成: streamId={}", pipeline.streamId);
+        } else {
+            handleFailure(pipeline, exitCode);
+        }
+    }
+    
+    private void handleFailure(Pipeline pipeline, int exitCode) {
+        int restarts = pipeline.snapshot().getRestarts();
+        if (pipeline.stopped || restarts >= maxRestarts) {
+            pipeline.update(stats -> stats.setState(pipeline.stopped ? "STOPPED" : "FAILED"));
+            log.error("推流管线失败: streamId={}, exitCode={}, restarts={}, stderr={}",
+                    pipeline.streamId, exitCode, restarts, pipeline.stderrTail());
+            return;
+        }
+        long delayMs = restartDelay.toMillis() << Math.min(restarts, 6);
+        pipeline.update(stats -> {
+            stats.setState("RESTARTING");
+            stats.setRestarts(restarts + 1);
+        });
+        log.warn("推流管线异常退出，{}ms后重启: streamId={}, exitCode={}, restarts={}, stderr={}",
+                delayMs, pipeline.streamId, exitCode, restarts + 1, pipeline.stderrTail());
+        supervisor.schedule(() -> relaunch(pipeline), delayMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 解析 -progress 输出：每个进度块由若干 key=value 行组成，以 progress=continue|end 结束
+     */
+    private void readProgress(Pipeline pipeline, Process process) {
+        Map<String, String> block = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf('=');
+                if (separator <= 0) {
+                    continue;
+                }
+                String key = line.substring(0, separator).trim();
+                String value = line.substring(separator + 1).trim();
+                block.put(key, value);
+                if ("progress".equals(key)) {
+                    applyProgress(pipeline, block);
+                    block.clear();
+                }
+            }
+        } catch (IOException e) {
+            log.debug("读取FFmpeg进度输出结束: streamId={}", pipeline.streamId, e);
+        }
+    }
+    
+    private void applyProgress(Pipeline pipeline, Map<String, String> block) {
+        pipeline.update(stats -> {
+            if ("STARTING".equals(stats.getState())) {
+                stats.setState("RUNNING");
+            }
+            stats.setFrames(parseLong(block.get("frame"), stats.getFrames()));
+            stats.setFps(parseDouble(block.get("fps"), stats.getFps()));
+            stats.setBitrateKbps(parseDouble(stripSuffix(block.get("bitrate"), "kbits/s"), stats.getBitrateKbps()));
+            stats.setDroppedFrames(parseLong(block.get("drop_frames"), stats.getDroppedFrames()));
+            stats.setDuplicatedFrames(parseLong(block.get("dup_frames"), stats.getDuplicatedFrames()));
+            // out_time_us 为微秒；旧版本的 out_time_ms 实际也是微秒
+            String outTimeUs = block.getOrDefault("out_time_us", block.get("out_time_ms"));
+            stats.setOutTimeMs(parseLong(outTimeUs, stats.getOutTimeMs() * 1000) / 1000);
+            stats.setSpeed(parseDouble(stripSuffix(block.get("speed"), "x"), stats.getSpeed()));
+        });
+    }
+    
+    private void readStderr(Pipeline pipeline, Process process) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                pipeline.appendStderr(line);
+                log.debug("FFmpeg[{}]: {}", pipeline.streamId, line);
+            }
+        } catch (IOException e) {
+            log.debug("读取FFmpeg错误输出结束: streamId={}", pipeline.streamId, e);
+        }
+    }
+    
+    private List<String> buildCommand(Pipeline pipeline) {
+        List<String> command = new ArrayList<>(List.of(ffmpegPath, "-hide_banner", "-nostats",
+                "-loglevel", "warning", "-progress", "pipe:1"));
+        command.addAll(splitArgs(inputArgs));
+        command.addAll(List.of("-i", pipeline.input));
+        if (hlsStreamService.isEnabled()) {
+            addHlsLadderArgs(command, pipeline);
+            return command;
+        }
+        command.addAll(List.of("-c:v", videoCodec));
+        command.addAll(splitArgs(extraArgs));
+        command.addAll(List.of("-c:a", audioCodec, "-f", format));
+        if ("file".equals(sink)) {
+            command.add("-y");
+        }
+        command.add(pipeline.output);
+        return command;
+    }
+    
+    /**
+     * 多码率HLS输出：源视频拆分缩放为阶梯中的各档，每档独立码率控制（maxrate约为目标码率的1.07倍、
+     * 缓冲区1.5倍），按段时长强制关键帧以保证各档切片边界一致；可视化视频不含伴奏，输出不带音轨
+     */
+    private void addHlsLadderArgs(List<String> command, Pipeline pipeline) {
+        List<HlsStreamService.Rendition> ladder = hlsStreamService.getLadder(pipeline.resolution);
+        int segment = hlsStreamService.getSegmentDuration();
+        Path outputDir = hlsStreamService.getOutputDir(pipeline.streamId);
+        
+        StringBuilder filter = new StringBuilder("[0:v]split=").append(ladder.size());
+        for (int i = 0; i < ladder.size(); i++) {
+            filter.append("[s").append(i).append("]");
+        }
+        StringBuilder streamMap = new StringBuilder();
+        for (int i = 0; i < ladder.size(); i++) {
+            HlsStreamService.Rendition rendition = ladder.get(i);
+            filter.append(";[s").append(i).append("]scale=").append(rendition.width()).append(":")
+                    .append(rendition.height()).append("[v").append(i).append("]");
+            streamMap.append(i > 0 ? " " : "").append("v:").append(i).append(",name:").append(rendition.name());
+        }
+        command.addAll(List.of("-filter_complex", filter.toString()));
+        
+        for (int i = 0; i < ladder.size(); i++) {
+            int bitrate = ladder.get(i).bitrateKbps();
+            command.addAll(List.of("-map", "[v" + i + "]",
+                    "-c:v:" + i, videoCodec,
+                    "-b:v:" + i, bitrate + "k",
+                    "-maxrate:v:" + i, (bitrate * 107 / 100) + "k",
+                    "-bufsize:v:" + i, (bitrate * 3 / 2) + "k"));
+        }
+        command.addAll(splitArgs(extraArgs));
+        command.addAll(List.of(
+                "-force_key_frames", "expr:gte(t,n_forced*" + segment + ")",
+                "-sc_threshold", "0",
+                "-an",
+                "-f", "hls",
+                "-hls_time", String.valueOf(segment),
+                "-hls_list_size", String.valueOf(hlsStreamService.getListSize()),
+                // 切片序号从当前时间（微秒）开始，重启后的切片不会与客户端已缓存的旧切片同名；
+                // temp_file 先写临时文件再重命名，读到的切片总是完整的
+                "-hls_start_number_source", "epoch_us",
+                "-hls_flags", "delete_segments+independent_segments+temp_file",
+                "-hls_segment_filename", outputDir.resolve("%v").resolve("seg_%05d.ts").toString(),
+                "-master_pl_name", "master.m3u8",
+                "-var_stream_map", streamMap.toString(),
+                outputDir.resolve("%v").resolve("index.m3u8").toString()));
+    }
+    
+    private ReentrantLock lockFor(String streamId) {
+        return streamLocks[Math.floorMod(streamId.hashCode(), LOCK_STRIPES)];
+    }
+    
+    private String resolveOutput(String streamId) {
+        if (hlsStreamService.isEnabled()) {
+            return hlsStreamService.getOutputDir(streamId).resolve("master.m3u8").toString();
+        }
+        if ("file".equals(sink)) {
+            Path file = Paths.get(fileSinkDir, streamId + "." + format);
+            return file.toString();
+        }
+        return rtmpBaseUrl + "/" + streamId;
+    }
+    
+    private static List<String> splitArgs(String args) {
+        if (args == null || args.isBlank()) {
+            return List.of();
+        }
+        return Arrays.asList(args.trim().split("\\s+"));
+    }
+    
+    private static String stripSuffix(String value, String suffix) {
+        return value != null && value.endsWith(suffix) ? value.substring(0, value.length() - suffix.length()) : value;
+    }
+    
+    private static long parseLong(String value, long fallback) {
+        try {
+            return value != null ? Long.parseLong(value) : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+    
+    private static double parseDouble(String value, double fallback) {
+        try {
+            return value != null ? Double.parseDouble(value) : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+    
+    /**
+     * 单个流的推流管线，重启时复用同一个对象，只替换进程
+     */
+    private static final class Pipeline {
+        private final String streamId;
+        private final String input;
+        private final String resolution;
+        private final String output;
+        private final StreamPipelineStats stats = new StreamPipelineStats();
+        private final List<String> stderr = new ArrayList<>();
+        private volatile Process process;
+        private volatile boolean stopped;
+        
+        private Pipeline(String streamId, String input, String resolution, String output) {
+            this.streamId = streamId;
+            this.input = input;
+            this.resolution = resolution;
+            this.output = output;
+            stats.setStreamId(streamId);
+            stats.setInput(input);
+            stats.setOutput(output);
+            stats.setState("STARTING");
+            stats.setUpdatedAt(LocalDateTime.now());
+        }
+        
+        private boolean isActive() {
+            synchronized (stats) {
+                return ACTIVE_STATES.contains(stats.getState());
+            }
+        }
+        
+        private void update(Consumer<StreamPipelineStats> change) {
+            synchronized (stats) {
+                change.accept(stats);
+                stats.setUpdatedAt(LocalDateTime.now());
+            }
+        }
+        
+        private StreamPipelineStats snapshot() {
+            StreamPipelineStats copy = new StreamPipelineStats();
+            synchronized (stats) {
+                BeanUtils.copyProperties(stats, copy);
+            }
+            return copy;
+        }
+        
+        private void appendStderr(String line) {
+            synchronized (stderr) {
+                if (stderr.size() >= STDERR_TAIL_LINES) {
+                    stderr.remove(0);
+                }
+                stderr.add(line);
+            }
+            update(stats -> stats.setLastError(line));
+        }
+        
+        private String stderrTail() {
+            synchronized (stderr) {
+                return String.join("\n", stderr);
+            }
+        }
+    }
+}
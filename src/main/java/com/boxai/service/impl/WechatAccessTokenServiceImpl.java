@@ -0,0 +1,192 @@
+package com.boxai.service.impl;
+
+import com.boxai.common.http.UpstreamClient;
+import com.boxai.common.http.UpstreamHttpClients;
+import com.boxai.service.WechatAccessTokenService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 微信 access_token 管理服务实现
+ * Redis中的 wx:access_token 以微信返回的有效期（提前2分钟）为TTL，是各节点共享的权威副本；
+ * 进程内持有 token 和过期时间。定时任务在剩余有效期不足 refresh-ahead 时先从Redis同步，
+ * Redis中的也即将过期才抢锁刷新。微信在新token生成后旧token仍有5分钟有效期，提前刷新不影响进行中的请求。
+ * 调用微信（含重试）限制在锁有效期的3/4以内，锁不会在刷新完成前过期而被其他节点重复刷新
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WechatAccessTokenServiceImpl implements WechatAccessTokenService {
+
+    private static final String TOKEN_KEY = "wx:access_token";
+    private static final String LOCK_KEY = "wx:access_token:lock";
+    private static final long EXPIRY_MARGIN_SECONDS = 120;
+    private static final Duration LOCK_POLL_INTERVAL = Duration.ofMillis(100);
+
+    /**
+     * 只释放自己持有的锁
+     */
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final UpstreamHttpClients upstreamHttpClients;
+    private final StringRedisTemplate redis;
+
+    @Value("${app.wechat.appid}")
+    private String appid;
+    @Value("${app.wechat.secret}")
+    private String secret;
+    @Value("${app.wechat.token.refresh-ahead:PT5M}")
+    private Duration refreshAhead;
+    @Value("${app.wechat.token.lock-ttl:PT2M}")
+    private Duration lockTtl;
+    @Value("${app.wechat.token.lock-wait:PT5S}")
+    private Duration lockWait;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private volatile CachedToken current;
+    private final AtomicReference<Mono<String>> loading = new AtomicReference<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    @Override
+    public Mono<String> getAccessToken() {
+        CachedToken token = current;
+        if (token != null && token.remainingMillis() > 0) {
+            return Mono.just(token.value());
+        }
+        return Mono.defer(this::loadShared);
+    }
+
+    /**
+     * 定时检查，剩余有效期不足 refresh-ahead 时提前刷新；刷新在 boundedElastic 上执行，
+     * 等待微信重试期间不占用定时任务线程，上一次刷新未结束时跳过
+     */
+    @Scheduled(fixedDelayString = "${app.wechat.token.check-interval:PT30S}")
+    public void refreshAhead() {
+        CachedToken token = current;
+        if (token != null && token.remainingMillis() > refreshAhead.toMillis()) {
+            return;
+        }
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Mono.fromCallable(() -> syncOrRefresh(refreshAhead.toMillis()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> refreshing.set(false))
+                .subscribe(null, e -> log.warn("主动刷新access_token失败: {}", e.getMessage()));
+    }
+
+    /**
+     * 本节点并发的加载请求共享同一次加载
+     */
+    private Mono<String> loadShared() {
+        while (true) {
+            Mono<String> inflight = loading.get();
+            if (inflight != null) {
+                return inflight;
+            }
+            AtomicReference<Mono<String>> self = new AtomicReference<>();
+            Mono<String> created = Mono.fromCallable(() -> syncOrRefresh(0))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    // 其他节点正在刷新：轮询Redis等待新token写入，轮询次数用尽后为空
+                    .switchIfEmpty(Mono.fromCallable(() -> syncFromRedis(0))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .repeatWhenEmpty(attempts -> attempts
+                                    .take(Math.max(1, lockWait.toMillis() / LOCK_POLL_INTERVAL.toMillis()))
+                                    .delayElements(LOCK_POLL_INTERVAL)))
+                    .switchIfEmpty(Mono.error(() -> new RuntimeException("获取access_token超时")))
+                    .doFinally(signal -> loading.compareAndSet(self.get(), null))
+                    .cache();
+            self.set(created);
+            if (loading.compareAndSet(null, created)) {
+                return created;
+            }
+        }
+    }
+
+    /**
+     * 从Redis同步token，剩余有效期不足 minRemainingMillis 时抢锁刷新
+     *
+     * @return 最新token；锁被其他节点持有时返回null
+     */
+    private String syncOrRefresh(long minRemainingMillis) {
+        String token = syncFromRedis(minRemainingMillis);
+        if (token != null) {
+            return token;
+        }
+        if (!Boolean.TRUE.equals(redis.opsForValue().setIfAbsent(LOCK_KEY, nodeId, lockTtl))) {
+            return null;
+        }
+        try {
+            // 加锁后再检查一次，其他节点可能刚刚完成刷新
+            token = syncFromRedis(minRemainingMillis);
+            if (token != null) {
+                return token;
+            }
+            CachedToken fresh = fetchFromWechat()
+                    .timeout(lockTtl.multipliedBy(3).dividedBy(4))
+                    .onErrorMap(TimeoutException.class, e -> new RuntimeException("刷新access_token超时"))
+                    .block();
+            redis.opsForValue().set(TOKEN_KEY, fresh.value(), Duration.ofMillis(fresh.remainingMillis()));
+            current = fresh;
+            log.info("刷新access_token成功: expiresIn={}s", fresh.remainingMillis() / 1000);
+            return fresh.value();
+        } finally {
+            redis.execute(UNLOCK_SCRIPT, List.of(LOCK_KEY), nodeId);
+        }
+    }
+
+    /**
+     * Redis中的token剩余有效期足够时更新进程内副本并返回，否则返回null
+     */
+    private String syncFromRedis(long minRemainingMillis) {
+        String value = redis.opsForValue().get(TOKEN_KEY);
+        Long ttlMillis = redis.getExpire(TOKEN_KEY, TimeUnit.MILLISECONDS);
+        if (value == null || value.isEmpty() || ttlMillis == null || ttlMillis <= minRemainingMillis) {
+            return null;
+        }
+        current = new CachedToken(value, System.currentTimeMillis() + ttlMillis);
+        return value;
+    }
+
+    private Mono<CachedToken> fetchFromWechat() {
+        UpstreamClient wechat = upstreamHttpClients.get(UpstreamHttpClients.WECHAT);
+        return wechat.execute(webClient -> webClient.get()
+                        .uri(uri -> uri.path("/cgi-bin/token").queryParam("grant_type", "client_credential")
+                                .queryParam("appid", appid).queryParam("secret", secret).build())
+                        .retrieve().bodyToMono(Map.class))
+                .retryWhen(wechat.retry())
+                .map(tokenMap -> {
+                    String accessToken = (String) tokenMap.get("access_token");
+                    Number expiresIn = (Number) tokenMap.get("expires_in");
+                    if (accessToken == null) {
+                        throw new RuntimeException("获取access_token失败: " + tokenMap.get("errmsg"));
+                    }
+                    long ttl = expiresIn != null ? Math.max(1, expiresIn.longValue() - EXPIRY_MARGIN_SECONDS) : 660L;
+                    return new CachedToken(accessToken, System.currentTimeMillis() + ttl * 1000);
+                });
+    }
+
+    private record CachedToken(String value, long expiresAtMillis) {
+        long remainingMillis() {
+            return expiresAtMillis - System.currentTimeMillis();
+        }
+    }
+}
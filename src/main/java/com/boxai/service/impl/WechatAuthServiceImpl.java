@@ -2,6 +2,7 @@ package com.boxai.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.boxai.auth.JwtService;
+import com.boxai.common.http.UpstreamHttpClients;
 import com.boxai.domain.dto.user.UserProfileDTO;
 import com.boxai.domain.dto.wechat.LoginResponse;
 import com.boxai.domain.dto.wechat.WechatLoginRequest;
@@ -17,7 +18,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.HashMap;
@@ -31,7 +31,7 @@ public class WechatAuthServiceImpl implements WechatAuthService {
     private String appid;
     @Value("${app.wechat.secret}")
     private String secret;
-    private final WebClient.Builder webClientBuilder;
+    private final UpstreamHttpClients upstreamHttpClients;
     private final UserService userService;
     private final JwtService jwtService;
     private final StringRedisTemplate redis;
@@ -40,16 +40,17 @@ public class WechatAuthServiceImpl implements WechatAuthService {
 
     @Override
     public LoginResponse loginSilent(WechatLoginRequest req) {
-        String json = webClientBuilder.baseUrl("https://api.weixin.qq.com").build().get()
-                .uri(uriBuilder -> uriBuilder.path("/sns/jscode2session")
-                        .queryParam("appid", appid)
-                        .queryParam("secret", secret)
-                        .queryParam("js_code", req.getJsCode())
-                        .queryParam("grant_type", "authorization_code")
-                        .build())
-                .accept(MediaType.ALL)
-                .retrieve()
-                .bodyToMono(String.class)
+        String json = upstreamHttpClients.get(UpstreamHttpClients.WECHAT)
+                .execute(webClient -> webClient.get()
+                        .uri(uriBuilder -> uriBuilder.path("/sns/jscode2session")
+                                .queryParam("appid", appid)
+                                .queryParam("secret", secret)
+                                .queryParam("js_code", req.getJsCode())
+                                .queryParam("grant_type", "authorization_code")
+                                .build())
+                        .accept(MediaType.ALL)
+                        .retrieve()
+                        .bodyToMono(String.class))
                 .block();
         Js2SessionResp resp;
         try {
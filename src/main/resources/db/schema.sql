@@ -203,6 +203,31 @@ create table if not exists t_media_sync_log (
   completed_at timestamptz
 );
 
+-- 内容寻址媒体文件（按内容MD5去重）
+create table if not exists t_media_blob (
+  id bigint primary key,
+  content_hash varchar(64) not null unique,
+  file_size bigint,
+  extension varchar(16),
+  storage_path varchar(512),
+  cdn_url varchar(512),
+  ref_count int not null default 0,
+  created_at timestamptz default now(),
+  updated_at timestamptz default now()
+);
+
+-- 歌曲媒体文件引用（每首歌每种媒体类型一条）
+create table if not exists t_media_blob_ref (
+  id bigint primary key,
+  track_id bigint references t_track(id) on delete cascade,
+  media_type varchar(16) not null, -- VIDEO/AUDIO/COVER/LYRICS
+  content_hash varchar(64) not null references t_media_blob(content_hash),
+  created_at timestamptz default now(),
+  updated_at timestamptz default now(),
+  unique(track_id, media_type)
+);
+create index if not exists idx_media_blob_ref_hash on t_media_blob_ref(content_hash);
+
 -- 热门榜单缓存（定时计算生成）
 create table if not exists t_hot_ranking (
   id bigint primary key,